@@ -0,0 +1,523 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.arrow.iterator;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.*;
+import org.apache.arrow.vector.complex.FixedSizeListVector;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.bytedeco.javacpp.DoublePointer;
+import org.bytedeco.javacpp.FloatPointer;
+import org.bytedeco.javacpp.indexer.DoubleIndexer;
+import org.bytedeco.javacpp.indexer.FloatIndexer;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * DataSetIterator that builds features and labels directly from Arrow record batches,
+ * read from Arrow files or from Arrow IPC stream. Each record batch becomes one DataSet.
+ *
+ * Values are never converted to Writables: each column is copied into features/labels array with a single
+ * native op over the Arrow vector buffer. If zero-copy mode is enabled, and features (or labels)
+ * come from a single FLOAT/DOUBLE column, or a single FixedSizeList column of such values, and its type
+ * matches Nd4j data type, INDArray is created directly on top of Arrow buffer, without any copy at all.
+ *
+ * Supported column types: Float4, Float8, Int, BigInt, SmallInt, TinyInt, and FixedSizeList of those.
+ * For classification, label column must contain class indices, and labels will be one-hot encoded.
+ *
+ * PLEASE NOTE: In zero-copy mode arrays returned by next() are only valid until the next call to next(),
+ * since Arrow reuses its buffers for the next record batch. Async prefetching is disabled in this mode.
+ * PLEASE NOTE: Null values aren't supported: columns containing nulls are rejected with an exception.
+ * PLEASE NOTE: Each column of a record batch must fit into 2GB, since Arrow buffers are accessed with int offsets.
+ */
+@Slf4j
+public class ArrowDataSetIterator implements DataSetIterator {
+    private final List<File> files;
+    private final InputStream stream;
+    private final List<String> featureColumns;
+    private final List<String> labelColumns;
+    private final int numClasses;
+    private final boolean zeroCopy;
+
+    private final BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+    private ArrowReader reader;
+    private int fileIndex = 0;
+    private boolean batchLoaded = false;
+    private boolean streamConsumed = false;
+
+    private List<String> resolvedFeatures;
+    private int lastBatchSize = -1;
+
+    @Getter
+    private DataSetPreProcessor preProcessor;
+
+    protected ArrowDataSetIterator(List<File> files, InputStream stream, List<String> featureColumns,
+                    List<String> labelColumns, int numClasses, boolean zeroCopy) {
+        this.files = files;
+        this.stream = stream;
+        this.featureColumns = featureColumns;
+        this.labelColumns = labelColumns;
+        this.numClasses = numClasses;
+        this.zeroCopy = zeroCopy;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (batchLoaded)
+            return true;
+
+        try {
+            while (true) {
+                if (reader == null && !openNextReader())
+                    return false;
+
+                if (reader.loadNextBatch() && reader.getVectorSchemaRoot().getRowCount() > 0) {
+                    batchLoaded = true;
+                    return true;
+                }
+
+                reader.close();
+                reader = null;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private boolean openNextReader() throws IOException {
+        if (stream != null) {
+            if (streamConsumed)
+                return false;
+
+            streamConsumed = true;
+            reader = new ArrowStreamReader(stream, allocator);
+            return true;
+        }
+
+        if (fileIndex >= files.size())
+            return false;
+
+        reader = new ArrowFileReader(new FileInputStream(files.get(fileIndex++)).getChannel(), allocator);
+        return true;
+    }
+
+    @Override
+    public DataSet next() {
+        if (!hasNext())
+            throw new NoSuchElementException("No more record batches");
+
+        batchLoaded = false;
+
+        VectorSchemaRoot root;
+        try {
+            root = reader.getVectorSchemaRoot();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        int rows = root.getRowCount();
+        lastBatchSize = rows;
+
+        INDArray features = toArray(root, featureColumns(root), rows);
+        INDArray labels;
+        if (numClasses > 0)
+            labels = toOneHot(root.getVector(labelColumns.get(0)), rows);
+        else
+            labels = toArray(root, labelColumns, rows);
+
+        DataSet ds = new DataSet(features, labels);
+        if (preProcessor != null)
+            preProcessor.preProcess(ds);
+
+        return ds;
+    }
+
+    private List<String> featureColumns(VectorSchemaRoot root) {
+        if (featureColumns != null)
+            return featureColumns;
+
+        if (resolvedFeatures == null) {
+            // all columns except labels are features
+            resolvedFeatures = new ArrayList<>();
+            for (FieldVector vector : root.getFieldVectors()) {
+                String name = vector.getField().getName();
+                if (!labelColumns.contains(name))
+                    resolvedFeatures.add(name);
+            }
+        }
+        return resolvedFeatures;
+    }
+
+    protected INDArray toArray(VectorSchemaRoot root, List<String> columns, int rows) {
+        if (columns.size() == 1) {
+            FieldVector vector = column(root, columns.get(0));
+            INDArray wrapped = wrap(vector, rows);
+            if (wrapped != null)
+                return zeroCopy ? wrapped : wrapped.dup('c');
+        }
+
+        int width = 0;
+        FieldVector[] vectors = new FieldVector[columns.size()];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = column(root, columns.get(i));
+            width += widthOf(vectors[i]);
+        }
+
+        // 'f' order, so each scalar column is contiguous in result array
+        INDArray result = Nd4j.createUninitialized(new long[] {rows, width}, 'f');
+        int position = 0;
+        for (FieldVector vector : vectors) {
+            int w = widthOf(vector);
+            INDArray source = wrap(vector, rows);
+            if (source == null)
+                source = read(vector, rows);
+
+            result.get(NDArrayIndex.all(), NDArrayIndex.interval(position, position + w)).assign(source);
+            position += w;
+        }
+
+        return result;
+    }
+
+    private static FieldVector column(VectorSchemaRoot root, String name) {
+        FieldVector vector = root.getVector(name);
+        if (vector == null)
+            throw new IllegalArgumentException("Column [" + name + "] not found in Arrow schema: "
+                            + root.getSchema().getFields());
+
+        return vector;
+    }
+
+    private static int widthOf(FieldVector vector) {
+        if (vector instanceof FixedSizeListVector)
+            return ((FixedSizeListVector) vector).getListSize();
+
+        return 1;
+    }
+
+    /**
+     * This method creates INDArray view over Arrow buffer, if types match
+     *
+     * @return [rows, width] array sharing memory with Arrow vector, or null if vector can't be wrapped
+     */
+    protected INDArray wrap(FieldVector vector, int rows) {
+        int width = widthOf(vector);
+        FieldVector values = vector instanceof FixedSizeListVector
+                        ? (FieldVector) ((FixedSizeListVector) vector).getDataVector() : vector;
+
+        DataBuffer.Type type = Nd4j.dataType();
+        long length = (long) rows * width;
+        DataBuffer buffer;
+        if (values instanceof Float4Vector && type == DataBuffer.Type.FLOAT) {
+            ByteBuffer bb = values.getDataBuffer().nioBuffer(0, checkedSize(vector, length, 4));
+            FloatPointer pointer = new FloatPointer(bb.asFloatBuffer());
+            buffer = Nd4j.createBuffer(pointer, type, length, FloatIndexer.create(pointer));
+        } else if (values instanceof Float8Vector && type == DataBuffer.Type.DOUBLE) {
+            ByteBuffer bb = values.getDataBuffer().nioBuffer(0, checkedSize(vector, length, 8));
+            DoublePointer pointer = new DoublePointer(bb.asDoubleBuffer());
+            buffer = Nd4j.createBuffer(pointer, type, length, DoubleIndexer.create(pointer));
+        } else {
+            return null;
+        }
+
+        checkNoNulls(vector, values, rows, width);
+        return Nd4j.create(buffer, new long[] {rows, width});
+    }
+
+    /**
+     * This method reads vector with type conversion, using primitive access only
+     */
+    protected INDArray read(FieldVector vector, int rows) {
+        int width = widthOf(vector);
+        ValueVector values = vector instanceof FixedSizeListVector
+                        ? ((FixedSizeListVector) vector).getDataVector() : vector;
+
+        checkNoNulls(vector, values, rows, width);
+
+        // largest primitive type is 8 bytes wide: buffer offsets must fit into int
+        checkedSize(vector, (long) rows * width, 8);
+        int length = rows * width;
+        if (Nd4j.dataType() == DataBuffer.Type.DOUBLE) {
+            double[] data = new double[length];
+            for (int i = 0; i < length; i++)
+                data[i] = valueOf(values, i);
+            return Nd4j.create(data, new int[] {rows, width}, 'c');
+        } else {
+            float[] data = new float[length];
+            for (int i = 0; i < length; i++)
+                data[i] = (float) valueOf(values, i);
+            return Nd4j.create(data, new int[] {rows, width}, 'c');
+        }
+    }
+
+    /**
+     * This method returns size of the given number of elements in bytes, if it can be addressed within Arrow buffer
+     */
+    private static int checkedSize(FieldVector vector, long length, int elementSize) {
+        long bytes = length * elementSize;
+        if (bytes > Integer.MAX_VALUE)
+            throw new IllegalStateException("Column [" + vector.getField().getName() + "] is too large: " + bytes
+                            + " bytes in a single record batch, at most " + Integer.MAX_VALUE
+                            + " bytes are supported. Please write Arrow data with smaller record batches");
+
+        return (int) bytes;
+    }
+
+    /**
+     * This method rejects vectors with null values: Arrow buffers hold arbitrary data at positions of nulls
+     */
+    private static void checkNoNulls(FieldVector vector, ValueVector values, int rows, int width) {
+        if (vector.getNullCount() == 0 && (values == vector || values.getNullCount() == 0))
+            return;
+
+        int row = -1;
+        for (int i = 0; i < rows && row < 0; i++) {
+            if (vector.isNull(i))
+                row = i;
+        }
+        for (int i = 0; values != vector && i < rows * width && row < 0; i++) {
+            if (values.isNull(i))
+                row = i / width;
+        }
+
+        throw new IllegalStateException("Column [" + vector.getField().getName() + "] contains null value at row "
+                        + row + ": null values aren't supported");
+    }
+
+    private static double valueOf(ValueVector vector, int index) {
+        // reading Arrow buffer directly: null values are rejected before
+        if (vector instanceof Float4Vector)
+            return vector.getDataBuffer().getFloat(index * 4);
+        else if (vector instanceof Float8Vector)
+            return vector.getDataBuffer().getDouble(index * 8);
+        else if (vector instanceof IntVector)
+            return vector.getDataBuffer().getInt(index * 4);
+        else if (vector instanceof BigIntVector)
+            return vector.getDataBuffer().getLong(index * 8);
+        else if (vector instanceof SmallIntVector)
+            return vector.getDataBuffer().getShort(index * 2);
+        else if (vector instanceof TinyIntVector)
+            return vector.getDataBuffer().getByte(index);
+        else
+            throw new UnsupportedOperationException("Unsupported Arrow vector type: "
+                            + vector.getClass().getSimpleName());
+    }
+
+    protected INDArray toOneHot(FieldVector vector, int rows) {
+        if (vector == null)
+            throw new IllegalArgumentException("Label column [" + labelColumns.get(0) + "] not found in Arrow schema");
+
+        checkNoNulls(vector, vector, rows, 1);
+        INDArray labels = Nd4j.create(rows, numClasses);
+        for (int i = 0; i < rows; i++) {
+            int cls = (int) valueOf(vector, i);
+            if (cls < 0 || cls >= numClasses)
+                throw new IllegalStateException("Invalid class index " + cls + " at row " + i + ": expected value in range 0 to "
+                                + (numClasses - 1));
+
+            labels.putScalar(i, cls, 1.0);
+        }
+        return labels;
+    }
+
+    @Override
+    public DataSet next(int num) {
+        throw new UnsupportedOperationException("Batch size is defined by Arrow record batches");
+    }
+
+    @Override
+    public int inputColumns() {
+        return -1;
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return numClasses > 0 ? numClasses : -1;
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return stream == null;
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        return !zeroCopy;
+    }
+
+    @Override
+    public void reset() {
+        if (stream != null)
+            throw new UnsupportedOperationException("Reset isn't supported for Arrow streams");
+
+        closeReader();
+        fileIndex = 0;
+        batchLoaded = false;
+    }
+
+    /**
+     * @return number of rows in the last record batch
+     */
+    @Override
+    public int batch() {
+        return lastBatchSize;
+    }
+
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    /**
+     * @return class indices as labels for classification, or null for regression
+     */
+    @Override
+    public List<String> getLabels() {
+        if (numClasses <= 0)
+            return null;
+
+        List<String> labels = new ArrayList<>(numClasses);
+        for (int i = 0; i < numClasses; i++)
+            labels.add(String.valueOf(i));
+        return labels;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private void closeReader() {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                log.warn("Failed to close Arrow reader", e);
+            }
+            reader = null;
+        }
+    }
+
+    /**
+     * This method releases Arrow reader and all memory allocated by it
+     */
+    public void close() {
+        closeReader();
+        allocator.close();
+    }
+
+    public static class Builder {
+        private List<File> files = new ArrayList<>();
+        private InputStream stream;
+        private List<String> featureColumns;
+        private List<String> labelColumns;
+        private int numClasses = -1;
+        private boolean zeroCopy = false;
+
+        public Builder() {
+            //
+        }
+
+        /**
+         * Arrow files to read record batches from
+         */
+        public Builder files(@NonNull File... files) {
+            this.files.addAll(Arrays.asList(files));
+            return this;
+        }
+
+        public Builder files(@NonNull Collection<File> files) {
+            this.files.addAll(files);
+            return this;
+        }
+
+        /**
+         * Arrow IPC stream to read record batches from. Iterator built from stream can't be reset.
+         */
+        public Builder stream(@NonNull InputStream stream) {
+            this.stream = stream;
+            return this;
+        }
+
+        /**
+         * Columns used as features, in given order. By default all columns except labels are used.
+         */
+        public Builder featureColumns(@NonNull String... columns) {
+            this.featureColumns = Arrays.asList(columns);
+            return this;
+        }
+
+        /**
+         * Columns used as regression labels, in given order
+         */
+        public Builder regression(@NonNull String... labelColumns) {
+            this.labelColumns = Arrays.asList(labelColumns);
+            this.numClasses = -1;
+            return this;
+        }
+
+        /**
+         * Column with class indices, used as one-hot encoded classification labels
+         */
+        public Builder classification(@NonNull String labelColumn, int numClasses) {
+            this.labelColumns = Collections.singletonList(labelColumn);
+            this.numClasses = numClasses;
+            return this;
+        }
+
+        /**
+         * If true, features/labels will share memory with Arrow buffers where possible.
+         * Such arrays are only valid until next call to next(). Default value: false
+         */
+        public Builder zeroCopy(boolean zeroCopy) {
+            this.zeroCopy = zeroCopy;
+            return this;
+        }
+
+        public ArrowDataSetIterator build() {
+            if (stream == null && files.isEmpty())
+                throw new IllegalStateException("Either Arrow files or Arrow stream should be specified");
+
+            if (stream != null && !files.isEmpty())
+                throw new IllegalStateException("Arrow files and Arrow stream can't be used together");
+
+            if (labelColumns == null)
+                throw new IllegalStateException("Label column(s) should be specified, via classification() or regression()");
+
+            if (numClasses != -1 && numClasses < 1)
+                throw new IllegalStateException("Number of classes should be positive value");
+
+            return new ArrowDataSetIterator(files, stream, featureColumns, labelColumns, numClasses, zeroCopy);
+        }
+    }
+}
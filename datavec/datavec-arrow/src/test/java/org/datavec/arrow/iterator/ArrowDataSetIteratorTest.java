@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.arrow.iterator;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.DoubleWritable;
+import org.datavec.api.writable.FloatWritable;
+import org.datavec.api.writable.IntWritable;
+import org.datavec.api.writable.Writable;
+import org.datavec.arrow.ArrowConverter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ArrowDataSetIteratorTest {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    private File writeFile(int rows, int offset) throws Exception {
+        Schema schema = new Schema.Builder().addColumnFloat("f0").addColumnDouble("f1").addColumnInteger("f2")
+                        .addColumnFloat("target").addColumnInteger("label").build();
+
+        List<List<Writable>> records = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            int v = offset + i;
+            records.add(Arrays.<Writable>asList(new FloatWritable(v), new DoubleWritable(v * 10), new IntWritable(v * 100),
+                            new FloatWritable(-v), new IntWritable(v % 3)));
+        }
+
+        File file = testDir.newFile();
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            ArrowConverter.writeRecordBatchTo(records, schema, fos);
+        }
+        return file;
+    }
+
+    @Test
+    public void testClassification() throws Exception {
+        ArrowDataSetIterator iterator = new ArrowDataSetIterator.Builder().files(writeFile(5, 0), writeFile(3, 5))
+                        .featureColumns("f0", "f1", "f2").classification("label", 3).build();
+
+        assertTrue(iterator.hasNext());
+        DataSet ds = iterator.next();
+        assertArrayEquals(new long[] {5, 3}, ds.getFeatures().shape());
+        assertArrayEquals(new long[] {5, 3}, ds.getLabels().shape());
+        assertEquals(5, iterator.batch());
+        assertEquals(Arrays.asList("0", "1", "2"), iterator.getLabels());
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Nd4j.create(new double[] {i, i * 10, i * 100}), ds.getFeatures().getRow(i));
+            assertEquals(1.0, ds.getLabels().getDouble(i, i % 3), 1e-5);
+            assertEquals(1.0, ds.getLabels().getRow(i).sumNumber().doubleValue(), 1e-5);
+        }
+
+        assertTrue(iterator.hasNext());
+        ds = iterator.next();
+        assertEquals(3, ds.numExamples());
+        assertEquals(Nd4j.create(new double[] {7, 70, 700}), ds.getFeatures().getRow(2));
+        assertFalse(iterator.hasNext());
+
+        iterator.reset();
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        assertEquals(2, count);
+
+        iterator.close();
+    }
+
+    @Test
+    public void testRegressionZeroCopy() throws Exception {
+        ArrowDataSetIterator iterator = new ArrowDataSetIterator.Builder().files(writeFile(4, 1)).featureColumns("f0")
+                        .regression("target").zeroCopy(true).build();
+
+        assertFalse(iterator.asyncSupported());
+
+        DataSet ds = iterator.next();
+        INDArray expFeatures = Nd4j.create(new double[] {1, 2, 3, 4}, new int[] {4, 1});
+        assertEquals(expFeatures, ds.getFeatures());
+        assertEquals(expFeatures.neg(), ds.getLabels());
+        assertFalse(iterator.hasNext());
+
+        iterator.close();
+    }
+
+    @Test
+    public void testDefaultFeatureColumns() throws Exception {
+        ArrowDataSetIterator iterator = new ArrowDataSetIterator.Builder().files(writeFile(4, 0))
+                        .regression("target", "label").build();
+
+        DataSet ds = iterator.next();
+
+        // f0, f1, f2 are used as features
+        assertArrayEquals(new long[] {4, 3}, ds.getFeatures().shape());
+        assertArrayEquals(new long[] {4, 2}, ds.getLabels().shape());
+        assertEquals(Nd4j.create(new double[] {-3, 0}), ds.getLabels().getRow(3));
+
+        iterator.close();
+    }
+
+    @Test
+    public void testNullValues() throws Exception {
+        File file = testDir.newFile();
+        try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+                        Float4Vector f0 = new Float4Vector("f0", allocator);
+                        Float4Vector target = new Float4Vector("target", allocator)) {
+            f0.allocateNew(3);
+            target.allocateNew(3);
+            for (int i = 0; i < 3; i++)
+                target.set(i, i);
+            f0.set(0, 1.0f);
+            f0.setNull(1);
+            f0.set(2, 3.0f);
+            f0.setValueCount(3);
+            target.setValueCount(3);
+
+            VectorSchemaRoot root = new VectorSchemaRoot(Arrays.<FieldVector>asList(f0, target));
+            root.setRowCount(3);
+            try (FileOutputStream fos = new FileOutputStream(file);
+                            ArrowFileWriter writer = new ArrowFileWriter(root, null, fos.getChannel())) {
+                writer.start();
+                writer.writeBatch();
+                writer.end();
+            }
+        }
+
+        ArrowDataSetIterator iterator = new ArrowDataSetIterator.Builder().files(file).featureColumns("f0")
+                        .regression("target").build();
+        try {
+            iterator.next();
+            fail("Expected exception for null value");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("row 1"));
+        } finally {
+            iterator.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoLabels() throws Exception {
+        new ArrowDataSetIterator.Builder().files(writeFile(4, 0)).build();
+    }
+}
@@ -24,6 +24,7 @@ import org.bytedeco.javacv.OpenCVFrameConverter;
 import org.datavec.image.data.Image;
 import org.datavec.image.data.ImageWritable;
 import org.datavec.image.transform.ImageTransform;
+import org.datavec.image.transform.PipelineImageTransform;
 import org.nd4j.linalg.api.concurrency.AffinityManager;
 import org.nd4j.linalg.api.memory.pointers.PagedPointer;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -50,6 +51,9 @@ public class NativeImageLoader extends BaseImageLoader {
     private static final int MIN_BUFFER_STEP_SIZE = 64 * 1024;
     private byte[] buffer = null;
     private Mat bufferMat = null;
+    // reused as output of compiled PipelineImageTransform and channel conversion
+    private Mat warpMat = null;
+    private Mat colorMat = null;
 
     public static final String[] ALLOWED_FORMATS = {"bmp", "gif", "jpg", "jpeg", "jp2", "pbm", "pgm", "ppm", "pnm",
                     "png", "tif", "tiff", "exr", "webp", "BMP", "GIF", "JPG", "JPEG", "JP2", "PBM", "PGM", "PPM", "PNM",
@@ -360,6 +364,57 @@ public class NativeImageLoader extends BaseImageLoader {
     }
 
 
+    /**
+     * Same as {@link #fillNDArray(Mat, INDArray)}, but stores {@code value * scale + offset} instead of each
+     * pixel value, in the same pass when possible.
+     */
+    protected void fillNDArray(Mat image, INDArray ret, double scale, double offset) {
+        long rows = image.rows();
+        long cols = image.cols();
+        long channels = image.channels();
+        Pointer pointer = ret.data().pointer();
+        if (image.depth() != CV_8U || ret.rank() != 3 || ret.lengthLong() != rows * cols * channels
+                        || !(pointer instanceof FloatPointer || pointer instanceof DoublePointer)) {
+            fillNDArray(image, ret);
+            ret.muli(scale).addi(offset);
+            return;
+        }
+
+        UByteIndexer idx = image.createIndexer(direct);
+        long[] stride = ret.stride();
+        PagedPointer pagedPointer = new PagedPointer(pointer, rows * cols * channels,
+                        ret.data().offset() * Nd4j.sizeOfDataType(ret.data().dataType()));
+
+        if (pointer instanceof FloatPointer) {
+            FloatIndexer retidx = FloatIndexer.create((FloatPointer) pagedPointer.asFloatPointer(),
+                            new long[] {channels, rows, cols}, new long[] {stride[0], stride[1], stride[2]}, direct);
+            float s = (float) scale, o = (float) offset;
+            for (long k = 0; k < channels; k++) {
+                for (long i = 0; i < rows; i++) {
+                    for (long j = 0; j < cols; j++) {
+                        retidx.put(k, i, j, idx.get(i, j, k) * s + o);
+                    }
+                }
+            }
+            retidx.release();
+        } else {
+            DoubleIndexer retidx = DoubleIndexer.create((DoublePointer) pagedPointer.asDoublePointer(),
+                            new long[] {channels, rows, cols}, new long[] {stride[0], stride[1], stride[2]}, direct);
+            for (long k = 0; k < channels; k++) {
+                for (long i = 0; i < rows; i++) {
+                    for (long j = 0; j < cols; j++) {
+                        retidx.put(k, i, j, idx.get(i, j, k) * scale + offset);
+                    }
+                }
+            }
+            retidx.release();
+        }
+
+        idx.release();
+        image.data();
+        Nd4j.getAffinityManager().tagLocation(ret, AffinityManager.Location.HOST);
+    }
+
     protected void fillNDArray(Mat image, INDArray ret) {
         long rows = image.rows();
         long cols = image.cols();
@@ -546,7 +601,17 @@ public class NativeImageLoader extends BaseImageLoader {
     }
 
     protected INDArray transformImage(Mat image, INDArray ret) throws IOException {
-        if (imageTransform != null && converter != null) {
+        PipelineImageTransform compiled = null;
+        if (imageTransform instanceof PipelineImageTransform && ((PipelineImageTransform) imageTransform).isCompiled()) {
+            // fuse the transforms and our own scaling into a single warp, unless we need to crop before scaling
+            compiled = (PipelineImageTransform) imageTransform;
+            if (warpMat == null) {
+                warpMat = new Mat();
+            }
+            int w = centerCropIfNeeded ? 0 : (int) Math.min(width, Integer.MAX_VALUE);
+            int h = centerCropIfNeeded ? 0 : (int) Math.min(height, Integer.MAX_VALUE);
+            image = compiled.transform(image, compiled.getRandom(), w, h, warpMat);
+        } else if (imageTransform != null && converter != null) {
             ImageWritable writable = new ImageWritable(converter.convert(image));
             writable = imageTransform.transform(writable);
             image = converter.convert(writable.getFrame());
@@ -590,9 +655,17 @@ public class NativeImageLoader extends BaseImageLoader {
             if (code < 0) {
                 throw new IOException("Cannot convert from " + image.channels() + " to " + channels + " channels.");
             }
-            image2 = new Mat();
-            cvtColor(image, image2, code);
-            image = image2;
+            if (compiled != null) {
+                if (colorMat == null) {
+                    colorMat = new Mat();
+                }
+                cvtColor(image, colorMat, code);
+                image = colorMat;
+            } else {
+                image2 = new Mat();
+                cvtColor(image, image2, code);
+                image = image2;
+            }
         }
         if (centerCropIfNeeded) {
             image3 = centerCropIfNeeded(image);
@@ -615,7 +688,12 @@ public class NativeImageLoader extends BaseImageLoader {
             int channels = image.channels();
             ret = Nd4j.create(channels, rows, cols);
         }
-        fillNDArray(image, ret);
+        if (compiled != null && compiled.isNormalize()) {
+            double scale = (compiled.getMaxRange() - compiled.getMinRange()) / 255.0;
+            fillNDArray(image, ret, scale, compiled.getMinRange());
+        } else {
+            fillNDArray(image, ret);
+        }
 
         image.data(); // dummy call to make sure it does not get deallocated prematurely
         if (image2 != null) {
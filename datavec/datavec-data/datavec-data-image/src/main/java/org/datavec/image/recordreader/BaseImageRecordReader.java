@@ -77,12 +77,16 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
     protected int patternPosition = 0;
     @Getter @Setter
     protected boolean logLabelCountOnInit = true;
+    @Getter
+    protected int decodeThreads = 1;
+    protected transient ParallelImageDecoder parallelDecoder;
 
     public final static String HEIGHT = NAME_SPACE + ".height";
     public final static String WIDTH = NAME_SPACE + ".width";
     public final static String CHANNELS = NAME_SPACE + ".channels";
     public final static String CROP_IMAGE = NAME_SPACE + ".cropimage";
     public final static String IMAGE_LOADER = NAME_SPACE + ".imageloader";
+    public final static String DECODE_THREADS = NAME_SPACE + ".decodethreads";
 
     public BaseImageRecordReader() {}
 
@@ -120,6 +124,9 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
 
     @Override
     public void initialize(InputSplit split) throws IOException {
+        //Image transform might have changed
+        closeParallelDecoder();
+
         if (imageLoader == null) {
             imageLoader = new NativeImageLoader(height, width, channels, imageTransform);
         }
@@ -176,6 +183,7 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
         this.width = conf.getLong(WIDTH, width);
         this.channels = conf.getLong(CHANNELS, channels);
         this.cropImage = conf.getBoolean(CROP_IMAGE, cropImage);
+        this.decodeThreads = conf.getInt(DECODE_THREADS, decodeThreads);
         if ("imageio".equals(conf.get(IMAGE_LOADER))) {
             this.imageLoader = new ImageLoader(height, width, channels, cropImage);
         } else {
@@ -328,13 +336,18 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
 
         INDArray features = Nd4j.createUninitialized(new long[] {cnt, channels, height, width}, 'c');
         Nd4j.getAffinityManager().tagLocation(features, AffinityManager.Location.HOST);
-        for (int i = 0; i < cnt; i++) {
-            try {
-                ((NativeImageLoader) imageLoader).asMatrixView(currBatch.get(i),
-                        features.tensorAlongDimension(i, 1, 2, 3));
-            } catch (Exception e) {
-                System.out.println("Image file failed during load: " + currBatch.get(i).getAbsolutePath());
-                throw new RuntimeException(e);
+        ParallelImageDecoder decoder = getParallelDecoder();
+        if (decoder != null) {
+            decoder.decode(currBatch, features);
+        } else {
+            for (int i = 0; i < cnt; i++) {
+                try {
+                    ((NativeImageLoader) imageLoader).asMatrixView(currBatch.get(i),
+                            features.tensorAlongDimension(i, 1, 2, 3));
+                } catch (Exception e) {
+                    System.out.println("Image file failed during load: " + currBatch.get(i).getAbsolutePath());
+                    throw new RuntimeException(e);
+                }
             }
         }
         Nd4j.getAffinityManager().ensureLocation(features, AffinityManager.Location.DEVICE);
@@ -384,9 +397,52 @@ public abstract class BaseImageRecordReader extends BaseRecordReader {
         return new NDArrayRecordBatch(ret);
     }
 
+    /**
+     * Set the number of threads used by {@link #next(int)} to decode and transform images in parallel.
+     * With a value of 1 (the default), images are decoded on the calling thread.<br>
+     * See {@link ParallelImageDecoder} for details on how image transforms are applied in parallel.
+     *
+     * @param decodeThreads Number of decoding threads
+     */
+    public void setDecodeThreads(int decodeThreads) {
+        Preconditions.checkArgument(decodeThreads > 0, "Number of decoding threads must be > 0: got " + decodeThreads);
+        if (this.decodeThreads != decodeThreads) {
+            closeParallelDecoder();
+            this.decodeThreads = decodeThreads;
+        }
+    }
+
+    /**
+     * Get the parallel decoder to use for {@link #next(int)}, creating it if necessary
+     *
+     * @return Parallel decoder, or null if images should be decoded on the calling thread
+     */
+    protected ParallelImageDecoder getParallelDecoder() {
+        //Only the default loader can be replicated across threads
+        if (decodeThreads <= 1 || imageLoader == null || imageLoader.getClass() != NativeImageLoader.class)
+            return null;
+
+        if (parallelDecoder == null) {
+            try {
+                parallelDecoder = new ParallelImageDecoder(decodeThreads, height, width, channels, imageTransform);
+            } catch (IllegalArgumentException e) {
+                log.warn("Images will be decoded on the calling thread: {}", e.getMessage());
+                decodeThreads = 1;
+            }
+        }
+        return parallelDecoder;
+    }
+
+    protected void closeParallelDecoder() {
+        if (parallelDecoder != null) {
+            parallelDecoder.close();
+            parallelDecoder = null;
+        }
+    }
+
     @Override
     public void close() throws IOException {
-        //No op
+        closeParallelDecoder();
     }
 
     @Override
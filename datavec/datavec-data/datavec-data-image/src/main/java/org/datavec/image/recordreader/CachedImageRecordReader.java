@@ -0,0 +1,343 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.image.recordreader;
+
+import com.google.common.base.Preconditions;
+import lombok.Getter;
+import org.datavec.api.conf.Configuration;
+import org.datavec.api.records.Record;
+import org.datavec.api.records.metadata.RecordMetaData;
+import org.datavec.api.records.metadata.RecordMetaDataIndex;
+import org.datavec.api.records.reader.BaseRecordReader;
+import org.datavec.api.split.InputSplit;
+import org.datavec.api.writable.IntWritable;
+import org.datavec.api.writable.NDArrayWritable;
+import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.NDArrayRecordBatch;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Serves images from a cache file written by {@link ImageCacheWriter}, without decoding anything: the file gets
+ * memory-mapped, and the 8-bit pixels of each minibatch are converted to floating point on the fly, in NCHW format.
+ * Records are the same as the ones of {@link ImageRecordReader}: an image array and, for labeled datasets,
+ * an integer label (single records) or one-hot labels (minibatches).
+ * <p>
+ * Optionally, images can be randomly cropped to a smaller height and width, and randomly flipped horizontally,
+ * directly from the raw bytes. Without a {@link Random}, crops are taken from the center and images are not flipped,
+ * which is suitable for evaluation.
+ * <p>
+ * PLEASE NOTE: for best performance, the cache file should fit in memory or sit on local fast storage.
+ */
+public class CachedImageRecordReader extends BaseRecordReader {
+
+    @Getter
+    protected long height, width, channels;
+    protected long cropHeight, cropWidth;
+    protected boolean flip;
+    protected Random random;
+
+    protected Configuration conf;
+    protected URI location;
+    @Getter
+    protected long numExamples;
+    protected long srcHeight, srcWidth;
+    protected int exampleBytes;
+    protected int examplesPerBuffer;
+    protected MappedByteBuffer[] buffers;
+    protected int[] exampleLabels;
+    protected List<String> labels = new ArrayList<>();
+    protected long cursor;
+
+    // scratch space for conversion of rows of pixels
+    protected byte[] row;
+    protected float[] rowValues;
+
+    /** Reads the cached images as is. */
+    public CachedImageRecordReader() {
+        this(0, 0, false, null);
+    }
+
+    /**
+     * @param cropHeight height of the crops to take from the cached images, or 0 to keep their height
+     * @param cropWidth  width of the crops to take from the cached images, or 0 to keep their width
+     * @param flip       whether to randomly flip images horizontally
+     * @param random     to use for crop positions and flips, or null for center crops and no flips
+     */
+    public CachedImageRecordReader(long cropHeight, long cropWidth, boolean flip, Random random) {
+        Preconditions.checkArgument(cropHeight >= 0 && cropWidth >= 0,
+                        "Crop size must be >= 0: got " + cropHeight + "x" + cropWidth);
+        this.cropHeight = cropHeight;
+        this.cropWidth = cropWidth;
+        this.flip = flip;
+        this.random = random;
+    }
+
+    @Override
+    public void initialize(InputSplit split) throws IOException {
+        Iterator<URI> iter = split.locationsIterator();
+        if (!iter.hasNext()) {
+            throw new IllegalArgumentException("No cache file in split");
+        }
+        location = iter.next();
+        File file = new File(location);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            int magic = raf.readInt();
+            int version = raf.readInt();
+            if (magic != ImageCacheWriter.MAGIC || version != ImageCacheWriter.VERSION) {
+                throw new IllegalStateException("Not an image cache file, or unsupported version: " + file);
+            }
+            channels = raf.readInt();
+            srcHeight = raf.readInt();
+            srcWidth = raf.readInt();
+            numExamples = raf.readLong();
+            long indexOffset = raf.readLong();
+            if (numExamples > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Too many images in cache file: " + numExamples);
+            }
+
+            height = cropHeight > 0 ? cropHeight : srcHeight;
+            width = cropWidth > 0 ? cropWidth : srcWidth;
+            if (height > srcHeight || width > srcWidth) {
+                throw new IllegalStateException("Cannot crop " + height + "x" + width + " from images of size "
+                                + srcHeight + "x" + srcWidth + " in " + file);
+            }
+
+            exampleBytes = (int) (channels * srcHeight * srcWidth);
+            examplesPerBuffer = Math.max(1, Integer.MAX_VALUE / exampleBytes);
+            FileChannel channel = raf.getChannel();
+            buffers = new MappedByteBuffer[(int) ((numExamples + examplesPerBuffer - 1) / examplesPerBuffer)];
+            for (int i = 0; i < buffers.length; i++) {
+                long first = (long) i * examplesPerBuffer;
+                long count = Math.min(examplesPerBuffer, numExamples - first);
+                buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                ImageCacheWriter.HEADER_SIZE + first * exampleBytes, count * exampleBytes);
+            }
+
+            channel.position(indexOffset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            exampleLabels = new int[(int) numExamples];
+            for (int i = 0; i < numExamples; i++) {
+                exampleLabels[i] = in.readInt();
+            }
+            int numLabels = in.readInt();
+            labels = new ArrayList<>(numLabels);
+            for (int i = 0; i < numLabels; i++) {
+                labels.add(in.readUTF());
+            }
+        }
+
+        row = new byte[(int) srcWidth];
+        rowValues = new float[(int) width];
+        cursor = 0;
+    }
+
+    @Override
+    public void initialize(Configuration conf, InputSplit split) throws IOException {
+        this.conf = conf;
+        this.cropHeight = conf.getLong(BaseImageRecordReader.HEIGHT, cropHeight);
+        this.cropWidth = conf.getLong(BaseImageRecordReader.WIDTH, cropWidth);
+        initialize(split);
+    }
+
+    @Override
+    public boolean batchesSupported() {
+        return true;
+    }
+
+    @Override
+    public List<List<Writable>> next(int num) {
+        Preconditions.checkArgument(num > 0, "Number of examples must be > 0: got " + num);
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more elements");
+        }
+
+        int n = (int) Math.min(num, numExamples - cursor);
+        INDArray features = readImages(cursor, n);
+
+        List<INDArray> ret = new ArrayList<>();
+        ret.add(features);
+        if (!labels.isEmpty()) {
+            INDArray oneHot = Nd4j.create(n, labels.size());
+            for (int i = 0; i < n; i++) {
+                int label = exampleLabels[(int) cursor + i];
+                if (label >= 0) {
+                    oneHot.putScalar(i, label, 1.0);
+                }
+            }
+            ret.add(oneHot);
+        }
+        cursor += n;
+        return new NDArrayRecordBatch(ret);
+    }
+
+    @Override
+    public List<Writable> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more elements");
+        }
+        List<Writable> ret = record(cursor);
+        invokeListeners(ret);
+        cursor++;
+        return ret;
+    }
+
+    protected List<Writable> record(long index) {
+        List<Writable> ret = new ArrayList<>(2);
+        ret.add(new NDArrayWritable(readImages(index, 1)));
+        if (exampleLabels[(int) index] >= 0) {
+            ret.add(new IntWritable(exampleLabels[(int) index]));
+        }
+        return ret;
+    }
+
+    /**
+     * Converts the given range of cached images to an array of shape [count, channels, height, width],
+     * cropping and flipping them if configured.
+     */
+    protected INDArray readImages(long first, int count) {
+        long imageSize = channels * height * width;
+        int w = (int) width;
+        INDArray features = Nd4j.createUninitialized(new long[] {count, channels, height, width}, 'c');
+        DataBuffer data = features.data();
+        // rows of float arrays are copied in bulk to host memory, otherwise one value at a time
+        FloatBuffer floats = data.dataType() == DataBuffer.Type.FLOAT && features.length() <= Integer.MAX_VALUE
+                        ? data.asNioFloat() : null;
+        for (int e = 0; e < count; e++) {
+            long index = first + e;
+            ByteBuffer buffer = buffers[(int) (index / examplesPerBuffer)].duplicate();
+            int offset = (int) (index % examplesPerBuffer) * exampleBytes;
+
+            int y0, x0;
+            boolean flipped;
+            if (random != null) {
+                y0 = random.nextInt((int) (srcHeight - height + 1));
+                x0 = random.nextInt((int) (srcWidth - width + 1));
+                flipped = flip && random.nextBoolean();
+            } else {
+                y0 = (int) (srcHeight - height) / 2;
+                x0 = (int) (srcWidth - width) / 2;
+                flipped = false;
+            }
+
+            long k = e * imageSize;
+            for (int c = 0; c < channels; c++) {
+                for (int y = 0; y < height; y++) {
+                    buffer.position(offset + (int) ((c * srcHeight + y0 + y) * srcWidth) + x0);
+                    buffer.get(row, 0, w);
+                    for (int x = 0; x < w; x++) {
+                        rowValues[x] = row[flipped ? w - 1 - x : x] & 0xFF;
+                    }
+
+                    if (floats != null) {
+                        floats.position((int) k);
+                        floats.put(rowValues, 0, w);
+                    } else {
+                        for (int x = 0; x < w; x++) {
+                            data.put(k + x, rowValues[x]);
+                        }
+                    }
+                    k += w;
+                }
+            }
+        }
+        return features;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (buffers == null) {
+            throw new IllegalStateException("Cannot read before initialization");
+        }
+        return cursor < numExamples;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    @Override
+    public void reset() {
+        if (buffers == null) {
+            throw new UnsupportedOperationException("Cannot reset without first initializing");
+        }
+        cursor = 0;
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return buffers != null;
+    }
+
+    @Override
+    public List<Writable> record(URI uri, DataInputStream dataInputStream) throws IOException {
+        throw new UnsupportedOperationException("Reading from streams is not supported: images are read from the cache file");
+    }
+
+    @Override
+    public Record nextRecord() {
+        long index = cursor;
+        List<Writable> list = next();
+        return new org.datavec.api.records.impl.Record(list,
+                        new RecordMetaDataIndex(index, location, CachedImageRecordReader.class));
+    }
+
+    @Override
+    public Record loadFromMetaData(RecordMetaData recordMetaData) throws IOException {
+        return loadFromMetaData(Collections.singletonList(recordMetaData)).get(0);
+    }
+
+    @Override
+    public List<Record> loadFromMetaData(List<RecordMetaData> recordMetaDatas) throws IOException {
+        List<Record> out = new ArrayList<>();
+        for (RecordMetaData meta : recordMetaDatas) {
+            if (!(meta instanceof RecordMetaDataIndex)) {
+                throw new IllegalArgumentException("Expected RecordMetaDataIndex, got " + meta);
+            }
+            out.add(new org.datavec.api.records.impl.Record(record(((RecordMetaDataIndex) meta).getIndex()), meta));
+        }
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // mapped buffers get unmapped once garbage collected
+        buffers = null;
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.image.recordreader;
+
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.records.reader.RecordReader;
+import org.datavec.api.writable.NDArrayWritable;
+import org.datavec.api.writable.Writable;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Converts an image dataset, as read by an {@link ImageRecordReader} (typically with a
+ * {@link org.datavec.api.io.labels.ParentPathLabelGenerator}), into a single cache file of pre-decoded images
+ * that can be served by {@link CachedImageRecordReader}. This removes the cost of decoding images, which
+ * otherwise gets paid again at every epoch.
+ * <p>
+ * All images must have the same shape, so the reader needs to be configured to scale them to fixed height,
+ * width and number of channels. Pixel values get rounded and clamped to 8 bits.
+ * <p>
+ * File format, with all numbers big-endian:
+ * <pre>
+ * header, {@link #HEADER_SIZE} bytes: int magic, int version, int channels, int height, int width,
+ *                                     long number of examples, long offset of the index
+ * data:   one uint8 array per example, with shape [channels, height, width] in C order
+ * index:  int label per example (-1 if none), int number of labels, each label as modified UTF-8
+ * </pre>
+ */
+@Slf4j
+public class ImageCacheWriter {
+    public static final int MAGIC = 0x44564943; // "DVIC"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+
+    private ImageCacheWriter() {}
+
+    /**
+     * Writes all the remaining records of the given reader to the file.
+     *
+     * @param reader initialized reader, returning records of a [1, channels, height, width] array and optionally an integer label
+     * @param file   cache file to write
+     * @return       number of images written
+     */
+    public static long write(RecordReader reader, File file) throws IOException {
+        long[] shape = null;
+        byte[] bytes = null;
+        List<Integer> labels = new ArrayList<>();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.write(new byte[HEADER_SIZE]); // written at the end, once we know the size
+
+            while (reader.hasNext()) {
+                List<Writable> record = reader.next();
+                if (record.isEmpty() || !(record.get(0) instanceof NDArrayWritable) || record.size() > 2) {
+                    throw new IllegalStateException("Expected records of image and optional label, got " + record);
+                }
+                INDArray image = ((NDArrayWritable) record.get(0)).get();
+                if (shape == null) {
+                    shape = image.shape();
+                    if (shape.length != 4 || shape[0] != 1) {
+                        throw new IllegalStateException("Expected images of shape [1, channels, height, width], got "
+                                        + Arrays.toString(shape));
+                    }
+                    if (image.length() > Integer.MAX_VALUE) {
+                        throw new IllegalStateException("Images larger than " + Integer.MAX_VALUE
+                                        + " pixels aren't supported, got shape " + Arrays.toString(shape));
+                    }
+                    bytes = new byte[(int) image.length()];
+                } else if (!Arrays.equals(shape, image.shape())) {
+                    throw new IllegalStateException("All images must have the same shape: expected "
+                                    + Arrays.toString(shape) + ", got " + Arrays.toString(image.shape()));
+                }
+
+                float[] values = image.dup('c').data().asFloat();
+                for (int i = 0; i < values.length; i++) {
+                    bytes[i] = (byte) Math.max(0, Math.min(255, Math.round(values[i])));
+                }
+                out.write(bytes);
+                labels.add(record.size() > 1 ? record.get(1).toInt() : -1);
+            }
+
+            for (int label : labels) {
+                out.writeInt(label);
+            }
+            List<String> names = reader.getLabels();
+            out.writeInt(names != null ? names.size() : 0);
+            if (names != null) {
+                for (String name : names) {
+                    out.writeUTF(name);
+                }
+            }
+        }
+
+        if (shape == null) {
+            throw new IllegalStateException("No images to write: reader has no more records");
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeInt(MAGIC);
+            raf.writeInt(VERSION);
+            raf.writeInt((int) shape[1]);
+            raf.writeInt((int) shape[2]);
+            raf.writeInt((int) shape[3]);
+            raf.writeLong(labels.size());
+            raf.writeLong(HEADER_SIZE + (long) labels.size() * bytes.length);
+        }
+        log.info("Wrote {} images of shape {} to {}", labels.size(), Arrays.toString(shape), file);
+        return labels.size();
+    }
+}
@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.image.recordreader;
+
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.transform.serde.JsonMappers;
+import org.datavec.image.data.ImageWritable;
+import org.datavec.image.loader.NativeImageLoader;
+import org.datavec.image.transform.BaseImageTransform;
+import org.datavec.image.transform.ImageTransform;
+import org.datavec.image.transform.PipelineImageTransform;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.primitives.Pair;
+import org.nd4j.shade.jackson.annotation.JsonIgnoreType;
+import org.nd4j.shade.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+/**
+ * Decodes and transforms a minibatch of images in parallel, directly into the slices of a preallocated NCHW array.
+ * <p>
+ * Each decoding thread uses its own {@link NativeImageLoader} and its own copy of the {@link ImageTransform}
+ * (created via JSON serialization), so transforms are not shared between threads. Random transforms are applied with
+ * per-example seeds drawn on the calling thread in minibatch order, so the output doesn't depend on the number of
+ * threads or on scheduling. If the transform was created with a seeded {@link Random}, seeds are drawn from it,
+ * making results reproducible across runs.
+ * <p>
+ * PLEASE NOTE: randomness internal to a transform that doesn't come from the {@link Random} passed to
+ * {@link ImageTransform#transform(ImageWritable, Random)} (such as shuffling and probabilities in
+ * PipelineImageTransform) is not covered by per-example seeds.
+ */
+@Slf4j
+public class ParallelImageDecoder implements Closeable {
+    //Random objects can't be restored from JSON, and they're not needed anyway: Random is passed explicitly to the copies
+    private static final ObjectMapper MAPPER = JsonMappers.getMapper().copy().addMixIn(Random.class, IgnoredType.class);
+
+    private final ExecutorService executor;
+    private final ThreadLocal<Decoder> decoders;
+    private final Random seedSource;
+
+    /**
+     * @param numThreads     number of decoding threads
+     * @param height         height of the output images
+     * @param width          width of the output images
+     * @param channels       number of channels of the output images
+     * @param imageTransform transform to apply to the images, may be null
+     * @throws IllegalArgumentException if the transform can't be copied via JSON serialization
+     */
+    public ParallelImageDecoder(int numThreads, final long height, final long width, final long channels,
+                                ImageTransform imageTransform) {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Number of decoding threads must be > 0: got " + numThreads);
+
+        final String json = imageTransform == null ? null : toJson(imageTransform);
+        if (json != null)
+            fromJson(json);  //Fail early if the transform can't be restored
+
+        final boolean randomized = isRandomized(imageTransform);
+
+        if (imageTransform instanceof BaseImageTransform && ((BaseImageTransform) imageTransform).getRandom() != null)
+            seedSource = ((BaseImageTransform) imageTransform).getRandom();
+        else
+            seedSource = new Random();
+
+        decoders = new ThreadLocal<Decoder>() {
+            @Override
+            protected Decoder initialValue() {
+                ImageTransform transform = json == null ? null : fromJson(json);
+                Random random = randomized ? new Random() : null;
+                if (transform instanceof BaseImageTransform) {
+                    //Reseed the copy's own Random, so the loader still sees the actual transform (e.g. compiled pipelines)
+                    ((BaseImageTransform) transform).setRandom(random);
+                } else if (transform != null) {
+                    transform = new SeededImageTransform(transform, random);
+                }
+                return new Decoder(new NativeImageLoader(height, width, channels, transform), random);
+            }
+        };
+
+        executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ParallelImageDecoder worker");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Decode the given files into the consecutive examples of the features array, with shape [minibatch, channels, height, width]
+     *
+     * @param files    image files to decode
+     * @param features array to decode into
+     */
+    public void decode(final List<File> files, INDArray features) {
+        int n = files.size();
+        final INDArray[] views = new INDArray[n];
+        final long[] seeds = new long[n];
+        for (int i = 0; i < n; i++) {
+            views[i] = features.tensorAlongDimension(i, 1, 2, 3);
+            seeds[i] = seedSource.nextLong();
+        }
+
+        List<Future<Void>> futures = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            final int idx = i;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    decoders.get().decode(files.get(idx), views[idx], seeds[idx]);
+                    return null;
+                }
+            }));
+        }
+
+        for (int i = 0; i < n; i++) {
+            try {
+                futures.get(i).get();
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Image file failed during load: " + files.get(i).getAbsolutePath(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Pipelines are randomized when any of their transforms are: the copies of the transforms lose their own
+     * Random, so the pipeline needs to pass one to them.
+     */
+    private static boolean isRandomized(ImageTransform transform) {
+        if (!(transform instanceof BaseImageTransform))
+            return true;
+        if (((BaseImageTransform) transform).getRandom() != null)
+            return true;
+        if (transform instanceof PipelineImageTransform) {
+            for (Pair<ImageTransform, Double> p : ((PipelineImageTransform) transform).getImageTransforms()) {
+                if (isRandomized(p.getFirst()))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static String toJson(ImageTransform transform) {
+        try {
+            return MAPPER.writerFor(ImageTransform.class).writeValueAsString(transform);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Image transform " + transform.getClass().getSimpleName()
+                            + " can't be serialized to JSON", e);
+        }
+    }
+
+    private static ImageTransform fromJson(String json) {
+        try {
+            return MAPPER.readValue(json, ImageTransform.class);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Image transform can't be deserialized from JSON", e);
+        }
+    }
+
+    @JsonIgnoreType
+    private static abstract class IgnoredType {
+    }
+
+    private static class Decoder {
+        private final NativeImageLoader loader;
+        private final Random random;
+
+        private Decoder(NativeImageLoader loader, Random random) {
+            this.loader = loader;
+            this.random = random;
+        }
+
+        private void decode(File file, INDArray view, long seed) throws Exception {
+            if (random != null)
+                random.setSeed(seed);
+            loader.asMatrixView(file, view);
+        }
+    }
+
+    /**
+     * Applies the wrapped transform with the given Random, reseeded by the decoder for every example.
+     * Deterministic transforms (created without Random) stay deterministic.
+     */
+    private static class SeededImageTransform implements ImageTransform {
+        private final ImageTransform transform;
+        private final Random random;
+
+        private SeededImageTransform(ImageTransform transform, Random random) {
+            this.transform = transform;
+            this.random = random;
+        }
+
+        @Override
+        public ImageWritable transform(ImageWritable image) {
+            return transform.transform(image, random);
+        }
+
+        @Override
+        public ImageWritable transform(ImageWritable image, Random random) {
+            return transform.transform(image, random);
+        }
+
+        @Override
+        public float[] query(float... coordinates) {
+            return transform.query(coordinates);
+        }
+
+        @Override
+        public ImageWritable getCurrentImage() {
+            return transform.getCurrentImage();
+        }
+    }
+}
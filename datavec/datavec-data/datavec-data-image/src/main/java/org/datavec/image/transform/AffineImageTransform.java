@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.image.transform;
+
+import java.util.Random;
+
+/**
+ * An {@link ImageTransform} whose effect on the geometry of an image can be expressed as a single
+ * affine mapping. This lets {@link PipelineImageTransform} in compiled mode compose consecutive
+ * transforms and apply them with one call to warpAffine, instead of materializing every intermediate image.
+ *
+ * @see PipelineImageTransform.Builder#setCompiled(boolean)
+ */
+public interface AffineImageTransform extends ImageTransform {
+
+    /**
+     * Draws the parameters of this transform exactly like {@link #transform(org.datavec.image.data.ImageWritable, Random)}
+     * would for an image of the given size, and stores the resulting mapping of source to destination pixel
+     * coordinates in {@code matrix}, as a row-major 2x3 matrix {@code {a, b, c, d, e, f}} such that
+     * {@code x' = a*x + b*y + c} and {@code y' = d*x + e*y + f}. The image itself is not touched, but
+     * {@link #query(float...)} afterwards returns the same coordinates as it would after a regular transform.
+     *
+     * @param width  of the source image
+     * @param height of the source image
+     * @param random object to use (or null for deterministic)
+     * @param matrix array of length 6 to store the mapping into
+     * @return       size of the destination image as {@code {width, height}}
+     */
+    int[] affine(int width, int height, Random random, double[] matrix);
+}
@@ -34,7 +34,7 @@ import static org.bytedeco.javacpp.opencv_core.Rect;
  */
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Data
-public class CropImageTransform extends BaseImageTransform<Mat> {
+public class CropImageTransform extends BaseImageTransform<Mat> implements AffineImageTransform {
 
     private int cropTop;
     private int cropLeft;
@@ -106,6 +106,22 @@ public class CropImageTransform extends BaseImageTransform<Mat> {
         return new ImageWritable(converter.convert(result));
     }
 
+    @Override
+    public int[] affine(int width, int height, Random random, double[] matrix) {
+        int top = random != null ? random.nextInt(cropTop + 1) : cropTop;
+        int left = random != null ? random.nextInt(cropLeft + 1) : cropLeft;
+        int bottom = random != null ? random.nextInt(cropBottom + 1) : cropBottom;
+        int right = random != null ? random.nextInt(cropRight + 1) : cropRight;
+
+        y = Math.min(top, height - 1);
+        x = Math.min(left, width - 1);
+        int h = Math.max(1, height - bottom - y);
+        int w = Math.max(1, width - right - x);
+        matrix[0] = 1; matrix[1] = 0; matrix[2] = -x;
+        matrix[3] = 0; matrix[4] = 1; matrix[5] = -y;
+        return new int[] {w, h};
+    }
+
     @Override
     public float[] query(float... coordinates) {
         float[] transformed = new float[coordinates.length];
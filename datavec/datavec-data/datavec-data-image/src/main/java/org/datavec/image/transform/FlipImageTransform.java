@@ -33,7 +33,7 @@ import static org.bytedeco.javacpp.opencv_core.flip;
  */
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Data
-public class FlipImageTransform extends BaseImageTransform<Mat> {
+public class FlipImageTransform extends BaseImageTransform<Mat> implements AffineImageTransform {
 
     /**
      * the deterministic flip mode
@@ -105,6 +105,29 @@ public class FlipImageTransform extends BaseImageTransform<Mat> {
         return new ImageWritable(converter.convert(result));
     }
 
+    @Override
+    public int[] affine(int width, int height, Random random, double[] matrix) {
+        h = height;
+        w = width;
+
+        mode = random != null ? random.nextInt(4) - 2 : flipMode;
+
+        double sx = 1, tx = 0, sy = 1, ty = 0;
+        if (mode >= -1) {
+            if (mode <= 0) {
+                sy = -1;
+                ty = h - 1;
+            }
+            if (mode != 0) {
+                sx = -1;
+                tx = w - 1;
+            }
+        }
+        matrix[0] = sx; matrix[1] = 0;  matrix[2] = tx;
+        matrix[3] = 0;  matrix[4] = sy; matrix[5] = ty;
+        return new int[] {w, h};
+    }
+
     @Override
     public float[] query(float... coordinates) {
         float[] transformed = new float[coordinates.length];
@@ -19,13 +19,19 @@ package org.datavec.image.transform;
 import lombok.Data;
 import lombok.NonNull;
 
+import org.bytedeco.javacpp.indexer.DoubleIndexer;
+import org.bytedeco.javacv.OpenCVFrameConverter;
 import org.datavec.image.data.ImageWritable;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.primitives.Pair;
+import org.nd4j.shade.jackson.annotation.JsonCreator;
+import org.nd4j.shade.jackson.annotation.JsonIgnoreProperties;
+import org.nd4j.shade.jackson.annotation.JsonProperty;
 
 import java.util.*;
 
-import static org.bytedeco.javacpp.opencv_core.Mat;
+import static org.bytedeco.javacpp.opencv_core.*;
+import static org.bytedeco.javacpp.opencv_imgproc.*;
 
 /**
  * Allows creation of image transform pipelines, either sequentially or randomly.
@@ -39,9 +45,18 @@ import static org.bytedeco.javacpp.opencv_core.Mat;
  * The pipeline can also be randomly shuffled with each transform, further increasing
  * the available dataset.
  *
+ * In compiled mode, consecutive transforms implementing {@link AffineImageTransform} (flip, crop,
+ * resize, scale, rotate) are composed into a single matrix and applied with one call to warpAffine,
+ * so a chain like crop, flip, rotate, resize costs a single pass over the pixels and no intermediate
+ * images. {@link org.datavec.image.loader.NativeImageLoader} further folds its own resizing into that
+ * warp, reuses its output buffers, and writes pixels already normalized to the configured range
+ * straight into the target INDArray. Results differ slightly from the sequential mode, since
+ * pixels get interpolated only once.
+ *
  * @author saudet
  * @author crockpotveggies
  */
+@JsonIgnoreProperties({"converter", "currentImage", "rng", "currentTransforms", "warpMatrix", "affineStep"})
 @Data
 public class PipelineImageTransform extends BaseImageTransform<Mat> {
 
@@ -49,8 +64,17 @@ public class PipelineImageTransform extends BaseImageTransform<Mat> {
     protected boolean shuffle;
     protected org.nd4j.linalg.api.rng.Random rng;
 
+    protected boolean compiled;
+    protected boolean normalize;
+    protected double minRange = 0;
+    protected double maxRange = 1;
+
     protected List<ImageTransform> currentTransforms = new ArrayList<>();
 
+    // scratch space for compiled mode, see warp()
+    protected Mat warpMatrix;
+    protected double[] affineStep = new double[6];
+
     public PipelineImageTransform(ImageTransform... transforms) {
         this(1234, false, transforms);
     }
@@ -73,7 +97,9 @@ public class PipelineImageTransform extends BaseImageTransform<Mat> {
         this(1234, transforms, false);
     }
 
-    public PipelineImageTransform(List<Pair<ImageTransform, Double>> transforms, boolean shuffle) {
+    @JsonCreator
+    public PipelineImageTransform(@JsonProperty("imageTransforms") List<Pair<ImageTransform, Double>> transforms,
+                    @JsonProperty("shuffle") boolean shuffle) {
         this(1234, transforms, shuffle);
     }
 
@@ -103,6 +129,18 @@ public class PipelineImageTransform extends BaseImageTransform<Mat> {
      */
     @Override
     protected ImageWritable doTransform(ImageWritable image, Random random) {
+        if (compiled) {
+            if (image == null) {
+                return null;
+            }
+            if (converter == null) {
+                converter = new OpenCVFrameConverter.ToMat();
+            }
+            Mat mat = converter.convert(image.getFrame());
+            Mat result = transform(mat, random, 0, 0, null);
+            return result == mat ? image : new ImageWritable(converter.convert(result));
+        }
+
         if (shuffle) {
             Collections.shuffle(imageTransforms);
         }
@@ -121,6 +159,106 @@ public class PipelineImageTransform extends BaseImageTransform<Mat> {
         return image;
     }
 
+    /**
+     * Executes the pipeline in compiled mode on the given image, with consecutive {@link AffineImageTransform}
+     * fused into a single warp. Other transforms get applied as usual in between.
+     *
+     * @param image  to transform
+     * @param random object to use (or null for deterministic)
+     * @param width  to resize the output to as part of the last warp, or 0 to keep the size
+     * @param height to resize the output to as part of the last warp, or 0 to keep the size
+     * @param output Mat reused to store the result of the last warp, or null to allocate a new one
+     * @return       transformed image, which can be {@code image} itself if there was nothing to do
+     */
+    public Mat transform(Mat image, Random random, int width, int height, Mat output) {
+        if (shuffle) {
+            Collections.shuffle(imageTransforms);
+        }
+
+        currentTransforms.clear();
+
+        double[] matrix = {1, 0, 0, 0, 1, 0};
+        int w = image.cols(), h = image.rows();
+        boolean pending = false;
+        RotateImageTransform rotate = null;
+        for (Pair<ImageTransform, Double> tuple : imageTransforms) {
+            if (tuple.getSecond() == 1.0 || rng.nextDouble() < tuple.getSecond()) { // probability of execution
+                ImageTransform transform = tuple.getFirst();
+                currentTransforms.add(transform);
+                if (transform instanceof AffineImageTransform) {
+                    Random r = random != null || !(transform instanceof BaseImageTransform) ? random
+                                    : ((BaseImageTransform) transform).getRandom();
+                    int[] size = ((AffineImageTransform) transform).affine(w, h, r, affineStep);
+                    concat(affineStep, matrix);
+                    w = size[0];
+                    h = size[1];
+                    pending = true;
+                    if (transform instanceof RotateImageTransform) {
+                        rotate = (RotateImageTransform) transform;
+                    }
+                } else {
+                    if (pending) {
+                        image = warp(image, matrix, w, h, rotate, new Mat());
+                        matrix = new double[] {1, 0, 0, 0, 1, 0};
+                        pending = false;
+                        rotate = null;
+                    }
+                    if (converter == null) {
+                        converter = new OpenCVFrameConverter.ToMat();
+                    }
+                    ImageWritable writable = new ImageWritable(converter.convert(image));
+                    writable = random != null ? transform.transform(writable, random) : transform.transform(writable);
+                    image = converter.convert(writable.getFrame());
+                    w = image.cols();
+                    h = image.rows();
+                }
+            }
+        }
+
+        if (width > 0 && height > 0 && (width != w || height != h)) {
+            ResizeImageTransform.scaling(w, h, width, height, affineStep);
+            concat(affineStep, matrix);
+            w = width;
+            h = height;
+            pending = true;
+        }
+        return pending ? warp(image, matrix, w, h, rotate, output != null ? output : new Mat()) : image;
+    }
+
+    /** Composes the affine mappings such that {@code matrix = step * matrix}. */
+    protected static void concat(double[] step, double[] matrix) {
+        double m0 = matrix[0], m1 = matrix[1], m2 = matrix[2], m3 = matrix[3], m4 = matrix[4], m5 = matrix[5];
+        matrix[0] = step[0] * m0 + step[1] * m3;
+        matrix[1] = step[0] * m1 + step[1] * m4;
+        matrix[2] = step[0] * m2 + step[1] * m5 + step[2];
+        matrix[3] = step[3] * m0 + step[4] * m3;
+        matrix[4] = step[3] * m1 + step[4] * m4;
+        matrix[5] = step[3] * m2 + step[4] * m5 + step[5];
+    }
+
+    /**
+     * Applies the affine mapping to the image with bilinear interpolation, replicating border pixels outside
+     * the image. If a {@link RotateImageTransform} is part of the mapping, its interpolation, border mode and
+     * border value get used instead, as with rotation alone. When there are several, the last one wins.
+     */
+    protected Mat warp(Mat image, double[] matrix, int width, int height, RotateImageTransform rotate, Mat output) {
+        if (warpMatrix == null) {
+            warpMatrix = new Mat(2, 3, CV_64F);
+        }
+        DoubleIndexer idx = warpMatrix.createIndexer();
+        for (int i = 0; i < 6; i++) {
+            idx.put(i / 3, i % 3, matrix[i]);
+        }
+        idx.release();
+        if (rotate != null) {
+            warpAffine(image, output, warpMatrix, new Size(width, height), rotate.interMode(), rotate.borderMode(),
+                            rotate.borderValue());
+        } else {
+            warpAffine(image, output, warpMatrix, new Size(width, height), INTER_LINEAR, BORDER_REPLICATE, Scalar.ZERO);
+        }
+        return output;
+    }
+
     @Override
     public float[] query(float... coordinates) {
         for (ImageTransform transform : currentTransforms) {
@@ -136,6 +274,10 @@ public class PipelineImageTransform extends BaseImageTransform<Mat> {
 
         protected List<Pair<ImageTransform, Double>> imageTransforms = new ArrayList<>();
         protected Long seed = null;
+        protected boolean compiled = false;
+        protected boolean normalize = false;
+        protected double minRange = 0;
+        protected double maxRange = 1;
 
         /**
          * This method sets RNG seet for this pipeline
@@ -148,6 +290,35 @@ public class PipelineImageTransform extends BaseImageTransform<Mat> {
             return this;
         }
 
+        /**
+         * This method enables compiled mode, where consecutive {@link AffineImageTransform} get fused into
+         * a single warp, and where {@link org.datavec.image.loader.NativeImageLoader} writes the output
+         * directly into its INDArray without intermediate images
+         *
+         * @param compiled
+         * @return
+         */
+        public Builder setCompiled(boolean compiled) {
+            this.compiled = compiled;
+            return this;
+        }
+
+        /**
+         * This method makes {@link org.datavec.image.loader.NativeImageLoader} scale 8-bit pixel values
+         * to the given range while copying them to the INDArray, in compiled mode only. Equivalent to
+         * applying ImagePreProcessingScaler(minRange, maxRange) afterwards.
+         *
+         * @param minRange
+         * @param maxRange
+         * @return
+         */
+        public Builder setNormalization(double minRange, double maxRange) {
+            this.normalize = true;
+            this.minRange = minRange;
+            this.maxRange = maxRange;
+            return this;
+        }
+
         /**
          * This method adds given transform with 100% invocation probability to this pipelien
          *
@@ -183,11 +354,17 @@ public class PipelineImageTransform extends BaseImageTransform<Mat> {
          * @return
          */
         public PipelineImageTransform build() {
+            PipelineImageTransform pipeline;
             if (seed != null) {
-                return new PipelineImageTransform(seed, imageTransforms);
+                pipeline = new PipelineImageTransform(seed, imageTransforms);
             } else {
-                return new PipelineImageTransform(imageTransforms);
+                pipeline = new PipelineImageTransform(imageTransforms);
             }
+            pipeline.setCompiled(compiled);
+            pipeline.setNormalize(normalize);
+            pipeline.setMinRange(minRange);
+            pipeline.setMaxRange(maxRange);
+            return pipeline;
         }
     }
 }
@@ -38,7 +38,7 @@ import static org.bytedeco.javacpp.opencv_imgproc.*;
  */
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Data
-public class ResizeImageTransform extends BaseImageTransform<Mat> {
+public class ResizeImageTransform extends BaseImageTransform<Mat> implements AffineImageTransform {
 
     private int newHeight;
     private int newWidth;
@@ -92,6 +92,25 @@ public class ResizeImageTransform extends BaseImageTransform<Mat> {
         return new ImageWritable(converter.convert(result));
     }
 
+    @Override
+    public int[] affine(int width, int height, Random random, double[] matrix) {
+        srch = height;
+        srcw = width;
+        scaling(width, height, newWidth, newHeight, matrix);
+        return new int[] {newWidth, newHeight};
+    }
+
+    /**
+     * Stores into {@code matrix} the mapping used by resize() to scale an image from the source
+     * to the destination size, where the centers of the pixels, not their corners, stay aligned.
+     */
+    static void scaling(int srcWidth, int srcHeight, int dstWidth, int dstHeight, double[] matrix) {
+        double sx = (double) dstWidth / srcWidth;
+        double sy = (double) dstHeight / srcHeight;
+        matrix[0] = sx; matrix[1] = 0;  matrix[2] = 0.5 * (sx - 1);
+        matrix[3] = 0;  matrix[4] = sy; matrix[5] = 0.5 * (sy - 1);
+    }
+
     @Override
     public float[] query(float... coordinates) {
         float[] transformed = new float[coordinates.length];
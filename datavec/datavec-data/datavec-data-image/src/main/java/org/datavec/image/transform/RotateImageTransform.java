@@ -21,6 +21,7 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
 import org.bytedeco.javacpp.FloatPointer;
+import org.bytedeco.javacpp.indexer.DoubleIndexer;
 import org.bytedeco.javacpp.opencv_core;
 import org.bytedeco.javacv.OpenCVFrameConverter;
 import org.datavec.image.data.ImageWritable;
@@ -45,7 +46,7 @@ import static org.bytedeco.javacpp.opencv_imgproc.*;
 @JsonIgnoreProperties({"interMode", "borderMode", "borderValue", "converter"})
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Data
-public class RotateImageTransform extends BaseImageTransform<Mat> {
+public class RotateImageTransform extends BaseImageTransform<Mat> implements AffineImageTransform {
 
     private float centerx;
     private float centery;
@@ -122,6 +123,22 @@ public class RotateImageTransform extends BaseImageTransform<Mat> {
         return new ImageWritable(converter.convert(result));
     }
 
+    @Override
+    public int[] affine(int width, int height, Random random, double[] matrix) {
+        float cy = height / 2 + centery * (random != null ? 2 * random.nextFloat() - 1 : 1);
+        float cx = width / 2 + centerx * (random != null ? 2 * random.nextFloat() - 1 : 1);
+        float a = angle * (random != null ? 2 * random.nextFloat() - 1 : 1);
+        float s = 1 + scale * (random != null ? 2 * random.nextFloat() - 1 : 1);
+
+        M = getRotationMatrix2D(new Point2f(cx, cy), a, s);
+        DoubleIndexer idx = M.createIndexer();
+        for (int i = 0; i < 6; i++) {
+            matrix[i] = idx.get(i / 3, i % 3);
+        }
+        idx.release();
+        return new int[] {width, height};
+    }
+
     @Override
     public float[] query(float... coordinates) {
         Mat src = new Mat(1, coordinates.length / 2, CV_32FC2, new FloatPointer(coordinates));
@@ -36,7 +36,7 @@ import static org.bytedeco.javacpp.opencv_imgproc.resize;
  */
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Data
-public class ScaleImageTransform extends BaseImageTransform<Mat> {
+public class ScaleImageTransform extends BaseImageTransform<Mat> implements AffineImageTransform {
 
     private float dx;
     private float dy;
@@ -89,6 +89,16 @@ public class ScaleImageTransform extends BaseImageTransform<Mat> {
         return new ImageWritable(converter.convert(result));
     }
 
+    @Override
+    public int[] affine(int width, int height, Random random, double[] matrix) {
+        srch = height;
+        srcw = width;
+        h = Math.round(height + dy * (random != null ? 2 * random.nextFloat() - 1 : 1));
+        w = Math.round(width + dx * (random != null ? 2 * random.nextFloat() - 1 : 1));
+        ResizeImageTransform.scaling(width, height, w, h, matrix);
+        return new int[] {w, h};
+    }
+
     @Override
     public float[] query(float... coordinates) {
         float[] transformed = new float[coordinates.length];
@@ -23,8 +23,14 @@ import org.bytedeco.javacv.Frame;
 import org.bytedeco.javacv.Java2DFrameConverter;
 import org.bytedeco.javacv.OpenCVFrameConverter;
 import org.datavec.image.data.ImageWritable;
+import org.datavec.image.transform.CropImageTransform;
+import org.datavec.image.transform.FlipImageTransform;
+import org.datavec.image.transform.PipelineImageTransform;
 import org.junit.Test;
+import org.nd4j.linalg.api.buffer.DataBuffer;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.preprocessor.ImagePreProcessingScaler;
+import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.io.ClassPathResource;
 
 import java.awt.image.BufferedImage;
@@ -275,6 +281,46 @@ public class TestNativeImageLoader {
         assertNotEquals(0.0, array7.sum().getDouble(0), 0.0);
     }
 
+    @Test
+    public void testAsMatrixViewCompiledPipeline() throws Exception {
+        Mat img = makeRandomImage(60, 80, 3);
+        Mat img16 = new Mat();
+        img.convertTo(img16, CV_16U);
+
+        DataBuffer.Type dtype = Nd4j.dataType();
+        try {
+            for (DataBuffer.Type type : new DataBuffer.Type[] {DataBuffer.Type.FLOAT, DataBuffer.Type.DOUBLE}) {
+                Nd4j.setDataType(type);
+
+                // 8-bit pixels get normalized while being copied, other depths are scaled afterwards
+                for (Mat image : new Mat[] {img, img16}) {
+                    PipelineImageTransform sequential = new PipelineImageTransform.Builder()
+                                    .addImageTransform(new CropImageTransform(5, 10, 15, 20))
+                                    .addImageTransform(new FlipImageTransform(1)).build();
+                    PipelineImageTransform compiled = new PipelineImageTransform.Builder()
+                                    .addImageTransform(new CropImageTransform(5, 10, 15, 20))
+                                    .addImageTransform(new FlipImageTransform(1))
+                                    .setCompiled(true).setNormalization(-1, 1).build();
+                    NativeImageLoader loader1 = new NativeImageLoader(40, 50, 3, sequential);
+                    NativeImageLoader loader2 = new NativeImageLoader(40, 50, 3, compiled);
+
+                    INDArray expected = Nd4j.create(2, 3, 40, 50);
+                    INDArray result = Nd4j.create(2, 3, 40, 50);
+                    for (int i = 0; i < 2; i++) {
+                        loader1.asMatrixView(image, expected.tensorAlongDimension(i, 1, 2, 3));
+                        loader2.asMatrixView(image, result.tensorAlongDimension(i, 1, 2, 3));
+                    }
+                    new ImagePreProcessingScaler(-1, 1).transform(expected);
+
+                    assertEquals(type, result.data().dataType());
+                    assertTrue(type + ", depth " + image.depth(), expected.equalsWithEps(result, 1e-5));
+                }
+            }
+        } finally {
+            Nd4j.setDataType(dtype);
+        }
+    }
+
     @Test
     public void testScalingIfNeed() throws Exception {
         Mat img1 = makeRandomImage(0, 0, 1);
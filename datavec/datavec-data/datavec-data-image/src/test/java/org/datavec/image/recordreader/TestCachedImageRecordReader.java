@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.image.recordreader;
+
+import org.datavec.api.io.labels.ParentPathLabelGenerator;
+import org.datavec.api.records.Record;
+import org.datavec.api.records.metadata.RecordMetaData;
+import org.datavec.api.split.FileSplit;
+import org.datavec.api.writable.NDArrayWritable;
+import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.batch.NDArrayRecordBatch;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.io.ClassPathResource;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TestCachedImageRecordReader {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    private File writeCache() throws Exception {
+        File parentDir = testDir.newFolder();
+        new ClassPathResource("datavec-data-image/testimages/").copyDirectory(parentDir);
+        ImageRecordReader rr = new ImageRecordReader(32, 32, 3, new ParentPathLabelGenerator());
+        rr.initialize(new FileSplit(parentDir));
+
+        File cache = testDir.newFile();
+        assertEquals(6, ImageCacheWriter.write(rr, cache));
+        return cache;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        File parentDir = testDir.newFolder();
+        new ClassPathResource("datavec-data-image/testimages/").copyDirectory(parentDir);
+        ImageRecordReader rr = new ImageRecordReader(32, 32, 3, new ParentPathLabelGenerator());
+        rr.initialize(new FileSplit(parentDir));
+
+        File cache = testDir.newFile();
+        assertEquals(6, ImageCacheWriter.write(rr, cache));
+        assertFalse(rr.hasNext());
+
+        CachedImageRecordReader cached = new CachedImageRecordReader();
+        cached.initialize(new FileSplit(cache));
+        assertEquals(rr.getLabels(), cached.getLabels());
+        assertEquals(6, cached.getNumExamples());
+
+        rr.reset();
+        List<Record> records = new ArrayList<>();
+        while (rr.hasNext()) {
+            List<Writable> expected = rr.next();
+            Record r = cached.nextRecord();
+            assertEquals(expected, r.getRecord());
+            records.add(r);
+        }
+        assertFalse(cached.hasNext());
+
+        List<RecordMetaData> meta = new ArrayList<>();
+        for (Record r : records) {
+            meta.add(r.getMetaData());
+        }
+        assertEquals(records, cached.loadFromMetaData(meta));
+
+        cached.reset();
+        List<INDArray> batch = ((NDArrayRecordBatch) cached.next(4)).getArrays();
+        INDArray features = batch.get(0);
+        assertArrayEquals(new long[] {4, 3, 32, 32}, features.shape());
+        for (int i = 0; i < 4; i++) {
+            INDArray expected = ((NDArrayWritable) records.get(i).getRecord().get(0)).get();
+            assertEquals(expected, features.get(NDArrayIndex.interval(i, i + 1), NDArrayIndex.all(),
+                            NDArrayIndex.all(), NDArrayIndex.all()));
+            assertEquals(records.get(i).getRecord().get(1).toInt(), Nd4j.argMax(batch.get(1), 1).getInt(i));
+        }
+        assertEquals(2, cached.next(4).size());
+        assertFalse(cached.hasNext());
+        cached.close();
+    }
+
+    @Test
+    public void testCropAndFlip() throws Exception {
+        File cache = writeCache();
+
+        CachedImageRecordReader full = new CachedImageRecordReader();
+        full.initialize(new FileSplit(cache));
+        INDArray images = ((NDArrayRecordBatch) full.next(6)).getArrays().get(0);
+
+        CachedImageRecordReader center = new CachedImageRecordReader(16, 16, true, null);
+        center.initialize(new FileSplit(cache));
+        INDArray centered = ((NDArrayRecordBatch) center.next(6)).getArrays().get(0);
+        assertArrayEquals(new long[] {6, 3, 16, 16}, centered.shape());
+        assertEquals(images.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.interval(8, 24),
+                        NDArrayIndex.interval(8, 24)), centered);
+
+        CachedImageRecordReader flipped = new CachedImageRecordReader(0, 0, true, new Random(12345));
+        flipped.initialize(new FileSplit(cache));
+        int numFlipped = 0;
+        for (int n = 0; n < 5; n++) {
+            flipped.reset();
+            INDArray out = ((NDArrayRecordBatch) flipped.next(6)).getArrays().get(0);
+            for (int i = 0; i < 6; i++) {
+                boolean same = true, mirrored = true;
+                for (int c = 0; c < 3; c++) {
+                    for (int y = 0; y < 32; y++) {
+                        for (int x = 0; x < 32; x++) {
+                            double v = out.getDouble(i, c, y, x);
+                            same &= v == images.getDouble(i, c, y, x);
+                            mirrored &= v == images.getDouble(i, c, y, 31 - x);
+                        }
+                    }
+                }
+                assertTrue(same || mirrored);
+                if (!same) {
+                    numFlipped++;
+                }
+            }
+        }
+        assertTrue(numFlipped > 0 && numFlipped < 30);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCropTooLarge() throws Exception {
+        File cache = writeCache();
+        new CachedImageRecordReader(64, 64, false, null).initialize(new FileSplit(cache));
+    }
+}
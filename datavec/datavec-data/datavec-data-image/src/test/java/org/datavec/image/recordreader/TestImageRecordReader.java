@@ -32,6 +32,7 @@ import org.datavec.api.writable.DoubleWritable;
 import org.datavec.api.writable.NDArrayWritable;
 import org.datavec.api.writable.Writable;
 import org.datavec.api.writable.batch.NDArrayRecordBatch;
+import org.datavec.image.transform.FlipImageTransform;
 import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
@@ -243,6 +244,48 @@ public class TestImageRecordReader {
         assertEquals(l2.get(), act2);
     }
 
+    @Test
+    public void testParallelDecode() throws Exception {
+        File f = testDir.newFolder();
+        new ClassPathResource("datavec-data-image/testimages/").copyDirectory(f);
+
+        //No transform: parallel decoding should give exactly the same batches as sequential decoding
+        ImageRecordReader rr1 = new ImageRecordReader(32, 32, 3, new ParentPathLabelGenerator());
+        rr1.initialize(new FileSplit(f, new Random(12345)));
+        ImageRecordReader rr2 = new ImageRecordReader(32, 32, 3, new ParentPathLabelGenerator());
+        rr2.setDecodeThreads(4);
+        rr2.initialize(new FileSplit(f, new Random(12345)));
+
+        int count = 0;
+        while (rr1.hasNext()) {
+            NDArrayRecordBatch b1 = (NDArrayRecordBatch) rr1.next(4);
+            NDArrayRecordBatch b2 = (NDArrayRecordBatch) rr2.next(4);
+            assertEquals(b1.getArrays(), b2.getArrays());
+            count += b1.size();
+        }
+        assertFalse(rr2.hasNext());
+        assertEquals(6, count);
+
+        //Random transform: output should depend on the transform seed only, not on the number of threads
+        List<INDArray> out2 = new ArrayList<>();
+        List<INDArray> out4 = new ArrayList<>();
+        for (int threads : new int[] {2, 4}) {
+            ImageRecordReader rr = new ImageRecordReader(32, 32, 3, new ParentPathLabelGenerator(),
+                            new FlipImageTransform(new Random(42)));
+            rr.setDecodeThreads(threads);
+            rr.initialize(new FileSplit(f, new Random(12345)));
+            while (rr.hasNext()) {
+                (threads == 2 ? out2 : out4).add(((NDArrayRecordBatch) rr.next(3)).getArrays().get(0));
+            }
+            rr.close();
+        }
+        assertEquals(2, out2.size());
+        assertEquals(out2, out4);
+
+        rr1.close();
+        rr2.close();
+    }
+
     @Test
     public void testListenerInvocationBatch() throws IOException {
         ParentPathLabelGenerator labelMaker = new ParentPathLabelGenerator();
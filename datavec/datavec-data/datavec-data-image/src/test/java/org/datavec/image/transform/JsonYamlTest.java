@@ -16,6 +16,7 @@
 
 package org.datavec.image.transform;
 
+import org.datavec.api.transform.serde.JsonMappers;
 import org.datavec.image.data.ImageWritable;
 import org.junit.Test;
 
@@ -118,4 +119,36 @@ public class JsonYamlTest {
 
         assertEquals(imgAll, img);
     }
+
+    @Test
+    public void testJsonPipelineImageTransform() throws IOException {
+        PipelineImageTransform pipeline = new PipelineImageTransform.Builder()
+                        .addImageTransform(new CropImageTransform(10, 20, 30, 40))
+                        .addImageTransform(new FlipImageTransform(1))
+                        .addImageTransform(new RotateImageTransform(30))
+                        .setCompiled(true).setNormalization(-1, 1).build();
+
+        String asJson = JsonMappers.getMapper().writeValueAsString(pipeline);
+        ImageTransform fromJson = JsonMappers.getMapper().readValue(asJson, ImageTransform.class);
+
+        assertTrue(fromJson instanceof PipelineImageTransform);
+        PipelineImageTransform pipelineJson = (PipelineImageTransform) fromJson;
+        assertEquals(pipeline.isShuffle(), pipelineJson.isShuffle());
+        assertEquals(pipeline.isCompiled(), pipelineJson.isCompiled());
+        assertEquals(pipeline.isNormalize(), pipelineJson.isNormalize());
+        assertEquals(pipeline.getMinRange(), pipelineJson.getMinRange(), 0.0);
+        assertEquals(pipeline.getMaxRange(), pipelineJson.getMaxRange(), 0.0);
+
+        assertEquals(pipeline.getImageTransforms().size(), pipelineJson.getImageTransforms().size());
+        for (int i = 0; i < pipeline.getImageTransforms().size(); i++) {
+            assertEquals(pipeline.getImageTransforms().get(i).getFirst().getClass(),
+                            pipelineJson.getImageTransforms().get(i).getFirst().getClass());
+            assertEquals(pipeline.getImageTransforms().get(i).getSecond(),
+                            pipelineJson.getImageTransforms().get(i).getSecond());
+        }
+
+        ImageWritable img = TestImageTransform.makeRandomImage(0, 0, 3);
+        ImageWritable imgJson = new ImageWritable(img.getFrame().clone());
+        assertEquals(pipeline.transform(img), pipelineJson.transform(imgJson));
+    }
 }
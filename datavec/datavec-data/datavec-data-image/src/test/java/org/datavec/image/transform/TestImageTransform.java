@@ -16,6 +16,7 @@
 
 package org.datavec.image.transform;
 
+import org.bytedeco.javacpp.DoublePointer;
 import org.bytedeco.javacpp.indexer.UByteIndexer;
 import org.bytedeco.javacv.CanvasFrame;
 import org.bytedeco.javacv.Frame;
@@ -390,6 +391,90 @@ public class TestImageTransform {
         assertEquals(99, transformed[1], 0);
     }
 
+    @Test
+    public void testAffineImageTransforms() throws Exception {
+        ImageWritable writable = makeRandomImage(0, 0, 3);
+        Frame frame = writable.getFrame();
+        Mat mat = converter.convert(frame);
+
+        AffineImageTransform[] transforms = {new FlipImageTransform(new Random(seed)),
+                        new CropImageTransform(new Random(seed), 50),
+                        new RotateImageTransform(new Random(seed), 30, 30, 45, 0.5f),
+                        new ResizeImageTransform(frame.imageWidth / 2, frame.imageHeight / 2),
+                        new ScaleImageTransform(new Random(seed), 50)};
+        // warpAffine interpolates at 1/32 of a pixel, so it differs slightly from resize() on noisy images
+        int[] tolerances = {0, 0, 0, 8, 8};
+
+        for (int t = 0; t < transforms.length; t++) {
+            for (int i = 0; i < 10; i++) {
+                long s = rng.nextLong();
+                Mat expected = converter.convert(transforms[t].transform(writable, new Random(s)).getFrame());
+                float[] expectedCoordinates = transforms[t].query(5, 7, 11, 13);
+
+                double[] matrix = new double[6];
+                int[] size = transforms[t].affine(frame.imageWidth, frame.imageHeight, new Random(s), matrix);
+                assertArrayEquals(expectedCoordinates, transforms[t].query(5, 7, 11, 13), 1e-3f);
+                assertEquals(expected.cols(), size[0]);
+                assertEquals(expected.rows(), size[1]);
+
+                Mat m = new Mat(2, 3, CV_64F, new DoublePointer(matrix));
+                Mat result = new Mat();
+                warpAffine(mat, result, m, new Size(size[0], size[1]), INTER_LINEAR,
+                                t == 2 ? BORDER_CONSTANT : BORDER_REPLICATE, Scalar.ZERO);
+
+                Mat diff = new Mat();
+                absdiff(expected, result, diff);
+                double[] max = new double[1];
+                minMaxLoc(diff.reshape(1), null, max, null, null, null);
+                assertTrue(transforms[t] + ": " + max[0], max[0] <= tolerances[t]);
+            }
+        }
+    }
+
+    @Test
+    public void testCompiledPipelineTransform() throws Exception {
+        ImageWritable writable = makeRandomImage(0, 0, 3);
+        Frame frame = writable.getFrame();
+
+        PipelineImageTransform sequential = new PipelineImageTransform.Builder()
+                        .addImageTransform(new CropImageTransform(10, 20, 30, 40))
+                        .addImageTransform(new FlipImageTransform(1))
+                        .addImageTransform(new EqualizeHistTransform())
+                        .addImageTransform(new FlipImageTransform(-1)).build();
+        PipelineImageTransform compiled = new PipelineImageTransform.Builder()
+                        .addImageTransform(new CropImageTransform(10, 20, 30, 40))
+                        .addImageTransform(new FlipImageTransform(1))
+                        .addImageTransform(new EqualizeHistTransform())
+                        .addImageTransform(new FlipImageTransform(-1)).setCompiled(true).build();
+        assertTrue(compiled.isCompiled());
+
+        Mat expected = converter.convert(sequential.transform(writable).getFrame());
+        Mat result = converter.convert(compiled.transform(writable).getFrame());
+        assertEquals(frame.imageWidth - 60, result.cols());
+        assertEquals(frame.imageHeight - 40, result.rows());
+        Mat diff = new Mat();
+        absdiff(expected, result, diff);
+        assertEquals(0, countNonZero(diff.reshape(1)));
+        assertArrayEquals(sequential.query(88, 99), compiled.query(88, 99), 0);
+
+        // resizing to a given size as part of the warp
+        Mat output = new Mat();
+        result = compiled.transform(converter.convert(frame), null, 64, 48, output);
+        assertTrue(result == output);
+        assertEquals(64, result.cols());
+        assertEquals(48, result.rows());
+
+        // settings of rotation apply to the whole warp
+        RotateImageTransform rotate = new RotateImageTransform(30);
+        rotate.interMode(INTER_NEAREST).borderMode(BORDER_CONSTANT).borderValue(new Scalar(255, 0, 0, 0));
+        PipelineImageTransform rotating = new PipelineImageTransform.Builder().addImageTransform(rotate)
+                        .setCompiled(true).build();
+        expected = converter.convert(rotate.transform(writable).getFrame());
+        result = rotating.transform(converter.convert(frame), null, 0, 0, null);
+        absdiff(expected, result, diff);
+        assertEquals(0, countNonZero(diff.reshape(1)));
+    }
+
     /**
      * This test code is kind of a manual test using specific image(largestblobtest.jpg)
      * with particular thresholds(blur size, thresholds for edge detector)
@@ -570,7 +570,8 @@ public class LocalTransformExecutor {
         }
         ExtractKeysFunction extractKeysFunction1 = new ExtractKeysFunction(leftColumnIndexes);
 
-        List<Pair<List<Writable>, List<Writable>>> leftJV = left.stream()
+        //Key extraction and join are stateless: use parallel streams. Encounter order is preserved by collect
+        List<Pair<List<Writable>, List<Writable>>> leftJV = left.parallelStream()
                 .filter(input -> input.size() != leftColumnNames.length).map(input ->
                 extractKeysFunction1.apply(input)).collect(toList());
 
@@ -582,13 +583,13 @@ public class LocalTransformExecutor {
 
         ExtractKeysFunction extractKeysFunction = new ExtractKeysFunction(rightColumnIndexes);
         List<Pair<List<Writable>, List<Writable>>> rightJV =
-                right.stream().filter(input -> input.size() != rightColumnNames.length)
+                right.parallelStream().filter(input -> input.size() != rightColumnNames.length)
                         .map(input -> extractKeysFunction.apply(input))
                         .collect(toList());
 
         Map<List<Writable>, Pair<List<List<Writable>>, List<List<Writable>>>> cogroupedJV = FunctionalUtils.cogroup(leftJV, rightJV);
         ExecuteJoinFromCoGroupFlatMapFunction executeJoinFromCoGroupFlatMapFunction = new ExecuteJoinFromCoGroupFlatMapFunction(join);
-        List<List<Writable>> ret =  cogroupedJV.entrySet().stream()
+        List<List<Writable>> ret =  cogroupedJV.entrySet().parallelStream()
                 .flatMap(input ->
                         executeJoinFromCoGroupFlatMapFunction.call(Pair.of(input.getKey(),input.getValue())).stream())
                 .collect(toList());
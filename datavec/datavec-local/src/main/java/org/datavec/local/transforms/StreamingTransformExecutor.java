@@ -0,0 +1,411 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.local.transforms;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.records.reader.RecordReader;
+import org.datavec.api.records.writer.RecordWriter;
+import org.datavec.api.transform.DataAction;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.ops.IAggregableReduceOp;
+import org.datavec.api.transform.reduce.IAssociativeReducer;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.schema.SequenceSchema;
+import org.datavec.api.writable.Writable;
+import org.datavec.local.transforms.reduce.MapToPairForReducerFunction;
+import org.datavec.local.transforms.transform.LocalTransformFunction;
+import org.datavec.local.transforms.transform.filter.LocalFilterFunction;
+import org.nd4j.linalg.function.Function;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Streaming, multi-threaded executor for non-sequence TransformProcesses.
+ *
+ * Unlike {@link LocalTransformExecutor}, which materializes full intermediate list after each step, this executor
+ * reads input in chunks (from a RecordReader, or any iterator), and runs all leading Transform and Filter steps
+ * fused into a single pass per record, on a pool of worker threads. Output order matches input order.
+ * If these steps are followed by a reduction, it is computed incrementally: each chunk is reduced on worker thread,
+ * and partial results are combined, so raw records are never held in memory.
+ *
+ * Steps after the first step that needs all of the data (sorting, conversion to sequence etc.) are executed by
+ * {@link LocalTransformExecutor} over the materialized output of the streamed steps.
+ *
+ * PLEASE NOTE: Transforms and filters must be thread-safe, as for Spark execution.
+ */
+@Slf4j
+public class StreamingTransformExecutor {
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    private final TransformProcess transformProcess;
+    private final int workers;
+    private final int chunkSize;
+
+    // fused Transform/Filter steps, executed per record
+    private final List<Object> rowSteps = new ArrayList<>();
+    // optional reduction, executed right after row steps
+    private final IAssociativeReducer reducer;
+    // everything else, executed over materialized data
+    private final TransformProcess remainder;
+
+    protected StreamingTransformExecutor(@NonNull TransformProcess transformProcess, int workers, int chunkSize) {
+        if (transformProcess.getInitialSchema() instanceof SequenceSchema)
+            throw new IllegalStateException("Sequence input isn't supported: use LocalTransformExecutor instead");
+
+        if (transformProcess.getFinalSchema() instanceof SequenceSchema)
+            throw new IllegalStateException("Cannot return sequence data with this executor: use LocalTransformExecutor.executeToSequence instead");
+
+        this.transformProcess = transformProcess;
+        this.workers = workers;
+        this.chunkSize = chunkSize;
+
+        List<DataAction> actions = transformProcess.getActionList();
+        Schema schema = transformProcess.getInitialSchema();
+        int i = 0;
+        for (; i < actions.size(); i++) {
+            DataAction d = actions.get(i);
+            if (d.getTransform() != null) {
+                rowSteps.add(new LocalTransformFunction(d.getTransform()));
+                schema = d.getTransform().transform(schema);
+            } else if (d.getFilter() != null) {
+                rowSteps.add(new LocalFilterFunction(d.getFilter()));
+            } else {
+                break;
+            }
+        }
+
+        if (i < actions.size() && actions.get(i).getReducer() != null) {
+            reducer = actions.get(i).getReducer();
+            schema = reducer.transform(schema);
+            i++;
+        } else {
+            reducer = null;
+        }
+
+        if (i < actions.size())
+            remainder = new TransformProcess(schema, new ArrayList<>(actions.subList(i, actions.size())));
+        else
+            remainder = null;
+    }
+
+    /**
+     * Execute TransformProcess over all records of the given RecordReader
+     *
+     * @param reader input data
+     * @return processed data
+     */
+    public List<List<Writable>> execute(@NonNull RecordReader reader) {
+        final List<List<Writable>> result = new ArrayList<>();
+        execute(reader, new Consumer<List<Writable>>() {
+            @Override
+            public void accept(List<Writable> record) {
+                result.add(record);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Execute TransformProcess over all records of the given RecordReader, and write results with given RecordWriter
+     *
+     * @param reader input data
+     * @param writer output writer
+     * @return number of records written
+     */
+    public long execute(@NonNull RecordReader reader, @NonNull final RecordWriter writer) {
+        return execute(reader, new Consumer<List<Writable>>() {
+            @Override
+            public void accept(List<Writable> record) {
+                try {
+                    writer.write(record);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Execute TransformProcess over all records of the given RecordReader, passing results to the consumer.
+     * Consumer is always called from the calling thread.
+     *
+     * @param reader input data
+     * @param consumer output consumer
+     * @return number of records passed to consumer
+     */
+    public long execute(@NonNull final RecordReader reader, @NonNull Consumer<List<Writable>> consumer) {
+        return execute(new Iterator<List<Writable>>() {
+            @Override
+            public boolean hasNext() {
+                return reader.hasNext();
+            }
+
+            @Override
+            public List<Writable> next() {
+                return reader.next();
+            }
+        }, consumer);
+    }
+
+    /**
+     * Execute TransformProcess over in-memory data
+     *
+     * @param input input data
+     * @return processed data
+     */
+    public List<List<Writable>> execute(@NonNull List<List<Writable>> input) {
+        final List<List<Writable>> result = new ArrayList<>();
+        execute(input.iterator(), new Consumer<List<Writable>>() {
+            @Override
+            public void accept(List<Writable> record) {
+                result.add(record);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Execute TransformProcess over records of the given iterator, passing results to the consumer.
+     * Consumer is always called from the calling thread.
+     *
+     * @param input input data
+     * @param consumer output consumer
+     * @return number of records passed to consumer
+     */
+    public long execute(@NonNull Iterator<List<Writable>> input, @NonNull Consumer<List<Writable>> consumer) {
+        final AtomicLong skipped = new AtomicLong(0);
+        final Map<String, IAggregableReduceOp<List<Writable>, List<Writable>>> reduced = new LinkedHashMap<>();
+        final List<List<Writable>> collected = new ArrayList<>();
+
+        // if there's something left after streamed steps, output has to be materialized first
+        Consumer<List<Writable>> sink = remainder == null ? consumer : new Consumer<List<Writable>>() {
+            @Override
+            public void accept(List<Writable> record) {
+                collected.add(record);
+            }
+        };
+
+        ExecutorService executor = workers > 1 ? Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "StreamingTransformExecutor worker");
+                t.setDaemon(true);
+                return t;
+            }
+        }) : null;
+
+        long count = 0;
+        try {
+            // bounded number of chunks in flight keeps memory use bounded and preserves output order
+            Deque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+            List<List<Writable>> chunk = new ArrayList<>(chunkSize);
+            while (input.hasNext()) {
+                chunk.add(input.next());
+                if (chunk.size() == chunkSize) {
+                    inFlight.add(submit(executor, chunk, skipped));
+                    chunk = new ArrayList<>(chunkSize);
+
+                    while (inFlight.size() >= 2 * workers)
+                        count += drain(inFlight.poll(), sink, reduced);
+                }
+            }
+
+            if (!chunk.isEmpty())
+                inFlight.add(submit(executor, chunk, skipped));
+
+            while (!inFlight.isEmpty())
+                count += drain(inFlight.poll(), sink, reduced);
+        } finally {
+            if (executor != null)
+                executor.shutdownNow();
+        }
+
+        if (skipped.get() > 0)
+            log.warn("Filtered out " + skipped.get() + " values");
+
+        if (reducer != null) {
+            List<List<Writable>> records = new ArrayList<>(reduced.size());
+            for (IAggregableReduceOp<List<Writable>, List<Writable>> op : reduced.values())
+                records.add(op.get());
+
+            if (remainder == null) {
+                for (List<Writable> record : records)
+                    consumer.accept(record);
+                return records.size();
+            }
+
+            collected.addAll(records);
+        }
+
+        if (remainder == null)
+            return count;
+
+        if (collected.isEmpty())
+            return 0;
+
+        List<List<Writable>> result = LocalTransformExecutor.execute(collected, remainder);
+        for (List<Writable> record : result)
+            consumer.accept(record);
+
+        return result.size();
+    }
+
+    private Future<ChunkResult> submit(ExecutorService executor, final List<List<Writable>> chunk,
+                    final AtomicLong skipped) {
+        Callable<ChunkResult> task = new Callable<ChunkResult>() {
+            @Override
+            public ChunkResult call() throws Exception {
+                return processChunk(chunk, skipped);
+            }
+        };
+
+        if (executor != null)
+            return executor.submit(task);
+
+        FutureTask<ChunkResult> future = new FutureTask<>(task);
+        future.run();
+        return future;
+    }
+
+    private long drain(Future<ChunkResult> future, Consumer<List<Writable>> sink,
+                    Map<String, IAggregableReduceOp<List<Writable>, List<Writable>>> reduced) {
+        ChunkResult result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+
+        if (result.partials != null) {
+            // chunks are drained in input order, so order-dependent reductions (first, last) are preserved
+            for (Map.Entry<String, IAggregableReduceOp<List<Writable>, List<Writable>>> e : result.partials.entrySet()) {
+                IAggregableReduceOp<List<Writable>, List<Writable>> op = reduced.get(e.getKey());
+                if (op == null)
+                    reduced.put(e.getKey(), e.getValue());
+                else
+                    op.combine(e.getValue());
+            }
+            return 0;
+        }
+
+        for (List<Writable> record : result.records)
+            sink.accept(record);
+
+        return result.records.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    protected ChunkResult processChunk(List<List<Writable>> chunk, AtomicLong skipped) {
+        int numColumns = transformProcess.getInitialSchema().numColumns();
+        boolean tryCatch = LocalTransformExecutor.isTryCatch();
+
+        List<List<Writable>> records = new ArrayList<>(chunk.size());
+        Map<String, IAggregableReduceOp<List<Writable>, List<Writable>>> partials =
+                        reducer == null ? null : new LinkedHashMap<String, IAggregableReduceOp<List<Writable>, List<Writable>>>();
+        MapToPairForReducerFunction keyFunction = reducer == null ? null : new MapToPairForReducerFunction(reducer);
+
+        records:
+        for (List<Writable> record : chunk) {
+            if (record.size() != numColumns) {
+                skipped.incrementAndGet();
+                continue;
+            }
+
+            List<Writable> current = record;
+            for (Object step : rowSteps) {
+                if (step instanceof LocalFilterFunction) {
+                    if (!((LocalFilterFunction) step).apply(current))
+                        continue records;
+                } else {
+                    current = ((Function<List<Writable>, List<Writable>>) step).apply(current);
+                    // in try-catch mode failed records are returned as empty lists
+                    if (tryCatch && current.isEmpty())
+                        continue records;
+                }
+            }
+
+            if (partials != null) {
+                String key = keyFunction.apply(current).getFirst();
+                IAggregableReduceOp<List<Writable>, List<Writable>> op = partials.get(key);
+                if (op == null) {
+                    op = reducer.aggregableReducer();
+                    partials.put(key, op);
+                }
+                op.accept(current);
+            } else {
+                records.add(current);
+            }
+        }
+
+        ChunkResult result = new ChunkResult();
+        result.records = records;
+        result.partials = partials;
+        return result;
+    }
+
+    protected static class ChunkResult {
+        private List<List<Writable>> records;
+        private Map<String, IAggregableReduceOp<List<Writable>, List<Writable>>> partials;
+    }
+
+    public static class Builder {
+        private TransformProcess transformProcess;
+        private int workers = Runtime.getRuntime().availableProcessors();
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+        public Builder(@NonNull TransformProcess transformProcess) {
+            this.transformProcess = transformProcess;
+        }
+
+        /**
+         * Number of worker threads. 1 means records are processed in calling thread. Default value: number of cores
+         */
+        public Builder workers(int workers) {
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * Number of records processed by worker as a single task. Default value: 4096
+         */
+        public Builder chunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        public StreamingTransformExecutor build() {
+            if (workers < 1)
+                throw new IllegalStateException("Number of workers should be positive value");
+
+            if (chunkSize < 1)
+                throw new IllegalStateException("Chunk size should be positive value");
+
+            return new StreamingTransformExecutor(transformProcess, workers, chunkSize);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.datavec.local.transforms.transform;
+
+import org.datavec.api.transform.MathOp;
+import org.datavec.api.transform.ReduceOp;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.condition.ConditionOp;
+import org.datavec.api.transform.condition.column.DoubleColumnCondition;
+import org.datavec.api.transform.reduce.Reducer;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.sequence.comparator.NumericalColumnComparator;
+import org.datavec.api.writable.*;
+import org.datavec.api.writable.comparator.DoubleWritableComparator;
+import org.datavec.local.transforms.LocalTransformExecutor;
+import org.datavec.local.transforms.StreamingTransformExecutor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class StreamingExecutionTest {
+
+    private static Schema schema() {
+        return new Schema.Builder().addColumnInteger("intCol")
+                .addColumnCategorical("catCol", "state0", "state1", "state2")
+                .addColumnDouble("doubleCol").build();
+    }
+
+    private static List<List<Writable>> data(int numRecords) {
+        List<List<Writable>> ret = new ArrayList<>();
+        for (int i = 0; i < numRecords; i++) {
+            ret.add(Arrays.<Writable>asList(new IntWritable(i % 7), new Text("state" + (i % 3)),
+                    new DoubleWritable(i * 0.5)));
+        }
+        return ret;
+    }
+
+    private static void check(TransformProcess tp, List<List<Writable>> input) {
+        List<List<Writable>> expected = LocalTransformExecutor.execute(input, tp);
+
+        for (int workers : new int[]{1, 4}) {
+            for (int chunkSize : new int[]{1, 13, 4096}) {
+                StreamingTransformExecutor executor = new StreamingTransformExecutor.Builder(tp)
+                        .workers(workers).chunkSize(chunkSize).build();
+
+                assertEquals("workers=" + workers + ", chunkSize=" + chunkSize, expected, executor.execute(input));
+            }
+        }
+    }
+
+    @Test
+    public void testTransforms() {
+        TransformProcess tp = new TransformProcess.Builder(schema())
+                .categoricalToInteger("catCol")
+                .doubleMathOp("doubleCol", MathOp.Add, 10.0)
+                .integerMathOp("intCol", MathOp.Multiply, 2)
+                .build();
+
+        check(tp, data(1000));
+    }
+
+    @Test
+    public void testFilter() {
+        TransformProcess tp = new TransformProcess.Builder(schema())
+                .doubleMathOp("doubleCol", MathOp.Add, 10.0)
+                .filter(new DoubleColumnCondition("doubleCol", ConditionOp.LessThan, 100))
+                .categoricalToInteger("catCol")
+                .build();
+
+        check(tp, data(1000));
+    }
+
+    @Test
+    public void testReduce() {
+        TransformProcess tp = new TransformProcess.Builder(schema())
+                .removeColumns("catCol")
+                .reduce(new Reducer.Builder(ReduceOp.TakeFirst)
+                        .keyColumns("intCol")
+                        .takeFirstColumns("doubleCol").build())
+                .build();
+
+        check(tp, data(1000));
+
+        tp = new TransformProcess.Builder(schema())
+                .removeColumns("catCol")
+                .reduce(new Reducer.Builder(ReduceOp.Sum)
+                        .keyColumns("intCol").build())
+                .build();
+
+        check(tp, data(1000));
+    }
+
+    @Test
+    public void testRemainder() {
+        TransformProcess tp = new TransformProcess.Builder(schema())
+                .doubleMathOp("doubleCol", MathOp.Multiply, -1.0)
+                .calculateSortedRank("rank", "doubleCol", new DoubleWritableComparator())
+                .categoricalToInteger("catCol")
+                .build();
+
+        check(tp, data(1000));
+
+        tp = new TransformProcess.Builder(schema())
+                .removeColumns("catCol")
+                .reduce(new Reducer.Builder(ReduceOp.Max)
+                        .keyColumns("intCol").build())
+                .doubleMathOp("max(doubleCol)", MathOp.Add, 1.0)
+                .build();
+
+        check(tp, data(1000));
+    }
+
+    @Test
+    public void testRecordsCount() {
+        TransformProcess tp = new TransformProcess.Builder(schema())
+                .filter(new DoubleColumnCondition("doubleCol", ConditionOp.LessThan, 50))
+                .build();
+
+        final List<List<Writable>> out = new ArrayList<>();
+        long count = new StreamingTransformExecutor.Builder(tp).workers(2).chunkSize(10).build()
+                .execute(data(1000).iterator(), out::add);
+
+        assertEquals(900, count);
+        assertEquals(900, out.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSequenceNotSupported() {
+        TransformProcess tp = new TransformProcess.Builder(schema())
+                .convertToSequence("intCol", new NumericalColumnComparator("doubleCol"))
+                .build();
+
+        new StreamingTransformExecutor.Builder(tp).build();
+    }
+}
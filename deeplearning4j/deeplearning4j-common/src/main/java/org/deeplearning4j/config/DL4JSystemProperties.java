@@ -82,6 +82,14 @@ public class DL4JSystemProperties {
      */
     public static final String CRASH_DUMP_OUTPUT_DIRECTORY_PROPERTY = "org.deeplearning4j.crash.reporting.directory";
 
+    /**
+     * Applicability: deeplearning4j-nlp - SkipGram and CBOW elements learning algorithms<br>
+     * Description: If set to true, SkipGram and CBOW are trained through per-thread primitive batches executed
+     * directly on the host weights, instead of Aggregate ops. This is used only on CPU backends with float weights.
+     * Default: false
+     */
+    public static final String NLP_BATCHED_TRAINING_PROPERTY = "org.deeplearning4j.nlp.batchedtraining";
+
     /**
      * Applicability: deeplearning4j-ui_2.xx<br>
      * Description: The DL4J training UI (StatsListener + UIServer.getInstance().attach(ss)) will subsample the number
@@ -28,6 +28,7 @@ import org.nd4j.linalg.factory.Nd4j;
 
 import java.io.*;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
 
@@ -156,4 +157,42 @@ public class TestUtils {
             os.write(b);
         }
     }
+
+    /**
+     * Run the given task in the specified number of threads concurrently. The first failure (exception or assertion
+     * error) of any thread is rethrown in the calling thread, once all threads have finished
+     *
+     * @param numThreads Number of threads
+     * @param task       Task to run, called with the index of the thread
+     */
+    public static void runConcurrently(int numThreads, final ConcurrentTask task) throws Exception {
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            final int idx = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run(idx);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads)
+            t.join();
+
+        Throwable t = failure.get();
+        if (t instanceof Error)
+            throw (Error) t;
+        if (t instanceof Exception)
+            throw (Exception) t;
+    }
+
+    public interface ConcurrentTask {
+        void run(int threadIdx) throws Exception;
+    }
 }
@@ -1874,4 +1874,41 @@ public class TestComputationGraphNetwork extends BaseDL4JTest {
         assertEquals(outMap.get("1"), outSpecific[0]);
         assertEquals(outMap.get("3"), outSpecific[1]);
     }
+
+    @Test
+    public void testConcurrentOutput() throws Exception {
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("0", new DenseLayer.Builder().nIn(4).nOut(8).activation(Activation.TANH).build(), "in")
+                .addLayer("1", new DenseLayer.Builder().nIn(4).nOut(8).activation(Activation.SIGMOID).build(), "in")
+                .addLayer("out", new OutputLayer.Builder().nIn(16).nOut(3).activation(Activation.SOFTMAX).build(), "0", "1")
+                .setOutputs("out")
+                .build();
+
+        final ComputationGraph net = new ComputationGraph(conf);
+        net.init();
+
+        int numThreads = 4;
+        final INDArray[] in = new INDArray[numThreads];
+        final INDArray[] exp = new INDArray[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            in[i] = Nd4j.rand(i + 1, 4);
+            exp[i] = net.outputSingle(in[i]);
+        }
+
+        //Copies used for output calls share the parameters
+        ComputationGraph replica = net.borrowOutputReplica();
+        assertSame(net.params(), replica.params());
+        net.returnOutputReplica(replica);
+
+        TestUtils.runConcurrently(numThreads, new TestUtils.ConcurrentTask() {
+            @Override
+            public void run(int idx) {
+                for (int j = 0; j < 50; j++)
+                    assertEquals(exp[idx], net.outputSingle(in[idx]));
+            }
+        });
+    }
 }
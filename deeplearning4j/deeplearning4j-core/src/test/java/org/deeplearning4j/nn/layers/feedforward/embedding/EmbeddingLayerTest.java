@@ -32,7 +32,10 @@ import org.deeplearning4j.nn.weights.WeightInit;
 import org.junit.Test;
 import org.nd4j.linalg.activations.Activation;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.learning.config.IUpdater;
 import org.nd4j.linalg.learning.config.Sgd;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 
@@ -43,6 +46,7 @@ import java.util.Random;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
 public class EmbeddingLayerTest extends BaseDL4JTest {
 
@@ -516,4 +520,120 @@ public class EmbeddingLayerTest extends BaseDL4JTest {
         }
     }
 
+    @Test
+    public void testEmbeddingSparseGradientsSgd() {
+        //Without regularization, lazy update with SGD is exactly equivalent to the standard (dense) update
+        for (boolean sequence : new boolean[]{false, true}) {
+            MultiLayerNetwork dense = sparseTestNet(sequence, false, new Sgd(0.1), 0.0);
+            MultiLayerNetwork sparse = sparseTestNet(sequence, true, new Sgd(0.1), 0.0);
+            sparse.setParams(dense.params().dup());
+
+            for (int i = 0; i < 5; i++) {
+                DataSet ds = sparseTestData(sequence, new int[]{i, i + 1, 2 * i});
+                dense.fit(ds);
+                sparse.fit(ds);
+                assertEquals(dense.params(), sparse.params());
+            }
+        }
+    }
+
+    @Test
+    public void testEmbeddingSparseGradientsSgdL2() {
+        //With l2, lazy update regularizes only rows used in the minibatch, while dense update decays all rows
+        for (boolean sequence : new boolean[]{false, true}) {
+            MultiLayerNetwork dense = sparseTestNet(sequence, false, new Sgd(0.1), 1e-2);
+            MultiLayerNetwork sparse = sparseTestNet(sequence, true, new Sgd(0.1), 1e-2);
+            sparse.setParams(dense.params().dup());
+            INDArray before = sparse.getParam("0_W").dup();
+
+            for (int i = 0; i < 3; i++) {
+                DataSet ds = sparseTestData(sequence, new int[]{0, 1, 1});
+                dense.fit(ds);
+                sparse.fit(ds);
+            }
+
+            INDArray denseW = dense.getParam("0_W");
+            INDArray sparseW = sparse.getParam("0_W");
+            for (int row : new int[]{0, 1}) {
+                assertEquals(denseW.getRow(row), sparseW.getRow(row));
+            }
+            for (int row = 2; row < 10; row++) {
+                assertEquals(before.getRow(row), sparseW.getRow(row));
+                assertNotEquals(before.getRow(row), denseW.getRow(row));
+            }
+            assertEquals(dense.getParam("1_W"), sparse.getParam("1_W"));
+        }
+    }
+
+    @Test
+    public void testEmbeddingSparseGradientsAdam() {
+        for (boolean sequence : new boolean[]{false, true}) {
+            MultiLayerNetwork dense = sparseTestNet(sequence, false, new Adam(0.1), 0.0);
+            MultiLayerNetwork sparse = sparseTestNet(sequence, true, new Adam(0.1), 0.0);
+            sparse.setParams(dense.params().dup());
+
+            //First iteration: no state yet, hence identical results
+            DataSet ds = sparseTestData(sequence, new int[]{0, 1, 1});
+            dense.fit(ds);
+            sparse.fit(ds);
+            assertEquals(dense.params(), sparse.params());
+
+            INDArray before = sparse.getParam("0_W").dup();
+            INDArray denseBefore = dense.getParam("0_W").dup();
+
+            ds = sparseTestData(sequence, new int[]{2, 3, 3});
+            dense.fit(ds);
+            sparse.fit(ds);
+
+            INDArray denseW = dense.getParam("0_W");
+            INDArray sparseW = sparse.getParam("0_W");
+            //Rows 0 and 1: updated by dense Adam (momentum), not updated by lazy Adam
+            for (int row : new int[]{0, 1}) {
+                assertEquals(before.getRow(row), sparseW.getRow(row));
+                assertNotEquals(denseBefore.getRow(row), denseW.getRow(row));
+            }
+            //Rows 2 and 3: no state for these rows, same update for dense and lazy Adam
+            for (int row : new int[]{2, 3}) {
+                assertNotEquals(before.getRow(row), sparseW.getRow(row));
+                assertEquals(denseW.getRow(row), sparseW.getRow(row));
+            }
+            //Rows never used: not updated
+            for (int row = 4; row < 10; row++) {
+                assertEquals(before.getRow(row), sparseW.getRow(row));
+            }
+            assertEquals(dense.getParam("1_W"), sparse.getParam("1_W"));
+        }
+    }
+
+    private static MultiLayerNetwork sparseTestNet(boolean sequence, boolean sparseGradients, IUpdater updater, double l2) {
+        FeedForwardLayer embedding = sequence
+                ? new EmbeddingSequenceLayer.Builder().inputLength(1).sparseGradients(sparseGradients).nIn(10).nOut(5).build()
+                : new EmbeddingLayer.Builder().sparseGradients(sparseGradients).nIn(10).nOut(5).build();
+        FeedForwardLayer output = sequence
+                ? new RnnOutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(5).nOut(4).activation(Activation.SOFTMAX).build()
+                : new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(5).nOut(4).activation(Activation.SOFTMAX).build();
+
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().activation(Activation.TANH)
+                .seed(12345).updater(updater).l2(l2).list()
+                .layer(0, embedding)
+                .layer(1, output)
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        return net;
+    }
+
+    private static DataSet sparseTestData(boolean sequence, int[] indices) {
+        INDArray in = Nd4j.create(indices.length, 1);
+        INDArray labels = Nd4j.create(indices.length, 4);
+        for (int i = 0; i < indices.length; i++) {
+            in.putScalar(i, indices[i]);
+            labels.putScalar(i, indices[i] % 4, 1.0);
+        }
+        if (sequence)
+            labels = labels.reshape(indices.length, 4, 1);
+        return new DataSet(in, labels);
+    }
+
 }
@@ -1430,6 +1430,44 @@ public class MultiLayerTest extends BaseDL4JTest {
         assertEquals(bb1, bb2);
     }
 
+    @Test
+    public void testConcurrentOutput() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .list()
+                .layer(new DenseLayer.Builder().nIn(4).nOut(8).activation(Activation.TANH).build())
+                .layer(new OutputLayer.Builder().nIn(8).nOut(3).activation(Activation.SOFTMAX).build())
+                .build();
+
+        final MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        int numThreads = 4;
+        final INDArray[] in = new INDArray[numThreads];
+        final INDArray[] exp = new INDArray[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            in[i] = Nd4j.rand(i + 1, 4);
+            exp[i] = net.output(in[i]);
+        }
+
+        //Copies used for output calls share the parameters
+        MultiLayerNetwork replica = net.borrowOutputReplica();
+        assertSame(net.params(), replica.params());
+        net.returnOutputReplica(replica);
+
+        TestUtils.runConcurrently(numThreads, new TestUtils.ConcurrentTask() {
+            @Override
+            public void run(int idx) {
+                for (int j = 0; j < 50; j++)
+                    assertEquals(exp[idx], net.output(in[idx]));
+            }
+        });
+
+        //Parameter changes are visible to subsequent output calls
+        net.params().muli(2.0);
+        assertNotEquals(exp[0], net.output(in[0]));
+    }
+
     @Data
     public static class CheckModelsListener extends BaseTrainingListener {
 
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.nn.rnn;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.TestUtils;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.LSTM;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.conf.layers.recurrent.SimpleRnn;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RnnSessionManagerTest extends BaseDL4JTest {
+
+    private static MultiLayerNetwork getNetwork() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .list()
+                .layer(new LSTM.Builder().nIn(3).nOut(5).activation(Activation.TANH).build())
+                .layer(new SimpleRnn.Builder().nIn(5).nOut(4).activation(Activation.TANH).build())
+                .layer(new RnnOutputLayer.Builder().nIn(4).nOut(2).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        return net;
+    }
+
+    @Test
+    public void testStateStore() {
+        RnnStateStore store = new RnnStateStore(3, 2);
+        assertEquals(0, store.size());
+
+        store.put(new String[]{"a", "b", "c"}, Nd4j.linspace(1, 9, 9).reshape(3, 3));
+        assertEquals(3, store.size());
+        assertTrue(store.capacity() >= 3);
+
+        INDArray states = store.get("c", "x", "a");
+        assertEquals(Nd4j.create(new double[]{7, 8, 9}), states.getRow(0));
+        assertEquals(Nd4j.zeros(1, 3), states.getRow(1));
+        assertEquals(Nd4j.create(new double[]{1, 2, 3}), states.getRow(2));
+
+        assertTrue(store.remove("b"));
+        assertFalse(store.remove("b"));
+        assertFalse(store.contains("b"));
+        store.put(new String[]{"d"}, Nd4j.ones(1, 3));
+        assertEquals(Nd4j.ones(1, 3), store.get("d"));
+        assertEquals(Nd4j.create(new double[]{1, 2, 3}), store.get("a"));
+    }
+
+    @Test
+    public void testSessionsMatchRnnTimeStep() {
+        MultiLayerNetwork net = getNetwork();
+        int numSessions = 5;
+        int tsLength = 6;
+
+        INDArray[] in = new INDArray[numSessions];
+        INDArray[] exp = new INDArray[numSessions];
+        for (int i = 0; i < numSessions; i++) {
+            in[i] = Nd4j.rand(new int[]{1, 3, tsLength});
+            exp[i] = net.output(in[i]);
+        }
+
+        //Interleave single steps of all sessions, batched together
+        RnnSessionManager manager = new RnnSessionManager(net);
+        for (int t = 0; t < tsLength; t++) {
+            Map<String, INDArray> step = new HashMap<>();
+            for (int i = 0; i < numSessions; i++)
+                step.put("s" + i, in[i].get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(t)));
+
+            Map<String, INDArray> out = manager.rnnTimeStep(step);
+            assertEquals(numSessions, out.size());
+            for (int i = 0; i < numSessions; i++) {
+                INDArray expStep = exp[i].get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(t));
+                assertTrue(expStep.equalsWithEps(out.get("s" + i), 1e-5));
+            }
+        }
+        assertEquals(numSessions, manager.numSessions());
+
+        //Removed session starts from the initial state again
+        assertTrue(manager.removeSession("s0"));
+        INDArray out = manager.rnnTimeStep("s0", in[0].get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(0)));
+        INDArray expStep = exp[0].get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(0));
+        assertTrue(expStep.equalsWithEps(out, 1e-5));
+    }
+
+    @Test
+    public void testConcurrentSessions() throws Exception {
+        MultiLayerNetwork net = getNetwork();
+        final int numThreads = 4;
+        final int tsLength = 10;
+
+        final INDArray[] in = new INDArray[numThreads];
+        final INDArray[] exp = new INDArray[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            in[i] = Nd4j.rand(new int[]{1, 3, tsLength});
+            exp[i] = net.output(in[i]);
+        }
+
+        final RnnSessionManager manager = new RnnSessionManager(net);
+        TestUtils.runConcurrently(numThreads, new TestUtils.ConcurrentTask() {
+            @Override
+            public void run(int idx) {
+                for (int t = 0; t < tsLength; t++) {
+                    INDArray out = manager.rnnTimeStep("session" + idx,
+                            in[idx].get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(t)));
+                    INDArray expStep = exp[idx].get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(t));
+                    assertTrue("Session " + idx + ", step " + t, expStep.equalsWithEps(out, 1e-5));
+                }
+            }
+        });
+        assertEquals(numThreads, manager.numSessions());
+    }
+}
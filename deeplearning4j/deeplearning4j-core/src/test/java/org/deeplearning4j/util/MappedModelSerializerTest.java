@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.util;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.nn.api.OptimizationAlgorithm;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.preprocessor.NormalizerStandardize;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.learning.config.Sgd;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class MappedModelSerializerTest extends BaseDL4JTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void testWriteMLNModel() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).updater(new Adam(0.01))
+                        .activation(Activation.TANH).weightInit(WeightInit.XAVIER).list()
+                        .layer(0, new DenseLayer.Builder().nIn(4).nOut(20).build())
+                        .layer(1, new OutputLayer.Builder().lossFunction(LossFunctions.LossFunction.MCXENT)
+                                        .activation(Activation.SOFTMAX).nIn(20).nOut(3).build())
+                        .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        net.fit(new IrisDataSetIterator(150, 150).next());
+
+        File tempFile = tempDir.newFile();
+        MappedModelSerializer.writeModel(net, tempFile, true);
+        assertTrue(MappedModelSerializer.isMappedModel(tempFile));
+        assertEquals(0, tempFile.length() % MappedModelSerializer.ALIGNMENT);
+
+        MultiLayerNetwork network = MappedModelSerializer.restoreMultiLayerNetwork(tempFile);
+        assertEquals(net.getLayerWiseConfigurations().toJson(), network.getLayerWiseConfigurations().toJson());
+        assertEquals(net.params(), network.params());
+
+        // updater state is loaded on demand only
+        assertNotEquals(net.getUpdater().getStateViewArray(), network.getUpdater().getStateViewArray());
+        assertTrue(MappedModelSerializer.restoreUpdaterState(network, tempFile));
+        assertEquals(net.getUpdater().getStateViewArray(), network.getUpdater().getStateViewArray());
+
+        DataSet ds = new IrisDataSetIterator(150, 150).next();
+        assertEquals(net.output(ds.getFeatures()), network.output(ds.getFeatures()));
+
+        // training restored model must not modify the file
+        network.fit(ds);
+        MultiLayerNetwork again = MappedModelSerializer.restoreMultiLayerNetwork(tempFile, true);
+        assertEquals(net.params(), again.params());
+        assertEquals(net.getUpdater().getStateViewArray(), again.getUpdater().getStateViewArray());
+    }
+
+    @Test
+    public void testWriteCGModel() throws Exception {
+        ComputationGraphConfiguration config = new NeuralNetConfiguration.Builder()
+                        .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT).updater(new Sgd(0.1))
+                        .graphBuilder().addInputs("in")
+                        .addLayer("dense", new DenseLayer.Builder().nIn(4).nOut(2).build(), "in").addLayer("out",
+                                        new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(2).nOut(3)
+                                                        .activation(Activation.SOFTMAX).build(),
+                                        "dense")
+                        .setOutputs("out").build();
+
+        ComputationGraph cg = new ComputationGraph(config);
+        cg.init();
+
+        File tempFile = tempDir.newFile();
+        MappedModelSerializer.writeModel(cg, tempFile, true);
+
+        ComputationGraph network = MappedModelSerializer.restoreComputationGraph(tempFile, true);
+        assertEquals(cg.getConfiguration().toJson(), network.getConfiguration().toJson());
+        assertEquals(cg.params(), network.params());
+        assertEquals(cg.getUpdater().getStateViewArray(), network.getUpdater().getStateViewArray());
+    }
+
+    @Test
+    public void testNormalizer() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).list()
+                        .layer(0, new OutputLayer.Builder().lossFunction(LossFunctions.LossFunction.MSE).nIn(4)
+                                        .nOut(3).build())
+                        .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        NormalizerStandardize normalizer = new NormalizerStandardize();
+        normalizer.fit(new IrisDataSetIterator(150, 150));
+
+        File tempFile = tempDir.newFile();
+        MappedModelSerializer.writeModel(net, tempFile, false, normalizer);
+
+        NormalizerStandardize restored = MappedModelSerializer.restoreNormalizer(tempFile);
+        assertEquals(normalizer.getMean(), restored.getMean());
+        assertEquals(normalizer.getStd(), restored.getStd());
+
+        MultiLayerNetwork network = MappedModelSerializer.restoreMultiLayerNetwork(tempFile);
+        assertEquals(net.params(), network.params());
+        assertFalse(MappedModelSerializer.restoreUpdaterState(network, tempFile));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWrongModelType() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().list()
+                        .layer(0, new OutputLayer.Builder().nIn(4).nOut(3).build()).build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        File tempFile = tempDir.newFile();
+        MappedModelSerializer.writeModel(net, tempFile, false);
+        MappedModelSerializer.restoreComputationGraph(tempFile);
+    }
+
+    @Test
+    public void testNotMappedModel() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().list()
+                        .layer(0, new OutputLayer.Builder().nIn(4).nOut(3).build()).build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        File tempFile = tempDir.newFile();
+        ModelSerializer.writeModel(net, tempFile, false);
+        assertFalse(MappedModelSerializer.isMappedModel(tempFile));
+    }
+}
@@ -22,6 +22,7 @@ import org.deeplearning4j.clustering.sptree.DataPoint;
 import org.deeplearning4j.clustering.vptree.VPTree;
 import org.deeplearning4j.nearestneighbor.model.NearestNeighborRequest;
 import org.deeplearning4j.nearestneighbor.model.NearestNeighborsResult;
+import org.deeplearning4j.nearestneighbor.model.NearestNeighborsResults;
 import org.nd4j.linalg.api.ndarray.INDArray;
 
 import java.util.ArrayList;
@@ -62,5 +63,49 @@ public class NearestNeighbor {
 
     }
 
+    /**
+     * This method does batched search for all points listed in {@link NearestNeighborRequest#getInputIndices()}.
+     * Queries are processed in parallel.
+     *
+     * @return one result list per input index, in the same order
+     */
+    public List<NearestNeighborsResults> searchBatch() {
+        int[] indices = record.getInputIndices();
+        if (indices == null || indices.length == 0)
+            return new ArrayList<>();
+
+        INDArray queries = points.getRows(indices);
+        return toResults(tree.search(queries, record.getK()), null);
+    }
+
+    /**
+     * This method converts indices/distances matrices produced by batched search into results
+     *
+     * @param batch array of 2 matrices: indices and distances
+     * @param labels optional labels, may be null or empty
+     * @return
+     */
+    public static List<NearestNeighborsResults> toResults(INDArray[] batch, List<String> labels) {
+        INDArray indices = batch[0];
+        INDArray distances = batch[1];
+        List<NearestNeighborsResults> ret = new ArrayList<>(indices.rows());
+        for (int q = 0; q < indices.rows(); q++) {
+            List<NearestNeighborsResult> results = new ArrayList<>(indices.columns());
+            for (int i = 0; i < indices.columns(); i++) {
+                int index = indices.getInt(q, i);
+                if (index < 0)
+                    break;
+
+                double distance = distances.getDouble(q, i);
+                if (labels != null && !labels.isEmpty())
+                    results.add(new NearestNeighborsResult(index, distance, labels.get(index)));
+                else
+                    results.add(new NearestNeighborsResult(index, distance));
+            }
+            ret.add(NearestNeighborsResults.builder().results(results).build());
+        }
+        return ret;
+    }
+
 
 }
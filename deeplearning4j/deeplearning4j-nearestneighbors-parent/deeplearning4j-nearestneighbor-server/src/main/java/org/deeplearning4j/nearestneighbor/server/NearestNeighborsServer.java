@@ -218,6 +218,47 @@ public class NearestNeighborsServer {
             }
         })));
 
+        // batched search for points within existing dataset, queries are processed in parallel
+        routingDsl.POST("/knnbatch").routeTo(FunctionUtil.function0((() -> {
+            try {
+                NearestNeighborRequest record = Json.fromJson(request().body().asJson(), NearestNeighborRequest.class);
+                if (record == null || record.getInputIndices() == null)
+                    return badRequest(Json.toJson(Collections.singletonMap("status", "invalid json passed.")));
+
+                NearestNeighbor nearestNeighbor =
+                                NearestNeighbor.builder().points(points).record(record).tree(tree).build();
+
+                NearestNeighborsBatchResults results =
+                                NearestNeighborsBatchResults.builder().results(nearestNeighbor.searchBatch()).build();
+
+                return ok(Json.toJson(results));
+            } catch (Throwable e) {
+                log.error("Error in POST /knnbatch",e);
+                return internalServerError(e.getMessage());
+            }
+        })));
+
+        // batched search for new points: every row of passed matrix is a separate query
+        routingDsl.POST("/knnnewbatch").routeTo(FunctionUtil.function0((() -> {
+            try {
+                Base64NDArrayBody record = Json.fromJson(request().body().asJson(), Base64NDArrayBody.class);
+                if (record == null)
+                    return badRequest(Json.toJson(Collections.singletonMap("status", "invalid json passed.")));
+
+                INDArray arr = Nd4jBase64.fromBase64(record.getNdarray());
+                if (arr.isVector())
+                    arr = arr.reshape(1, arr.length());
+
+                NearestNeighborsBatchResults results = NearestNeighborsBatchResults.builder()
+                                .results(NearestNeighbor.toResults(tree.search(arr, record.getK()), labels)).build();
+
+                return ok(Json.toJson(results));
+            } catch (Throwable e) {
+                log.error("Error in POST /knnnewbatch",e);
+                return internalServerError(e.getMessage());
+            }
+        })));
+
         //Set play secret key, if required
         //http://www.playframework.com/documentation/latest/ApplicationSecret
         String crypto = System.getProperty("play.crypto.secret");
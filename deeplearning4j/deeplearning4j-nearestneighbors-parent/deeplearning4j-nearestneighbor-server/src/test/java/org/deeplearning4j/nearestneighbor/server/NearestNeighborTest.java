@@ -21,6 +21,7 @@ import org.deeplearning4j.clustering.vptree.VPTree;
 import org.deeplearning4j.clustering.vptree.VPTreeFillSearch;
 import org.deeplearning4j.nearestneighbor.client.NearestNeighborsClient;
 import org.deeplearning4j.nearestneighbor.model.NearestNeighborRequest;
+import org.deeplearning4j.nearestneighbor.model.NearestNeighborsBatchResults;
 import org.deeplearning4j.nearestneighbor.model.NearestNeighborsResults;
 import org.junit.Rule;
 import org.junit.Test;
@@ -59,6 +60,24 @@ public class NearestNeighborTest {
         assertEquals(1, nearestNeighbor.search().get(0).getIndex());
     }
 
+    @Test
+    public void testNearestNeighborBatch() {
+        INDArray arr = Nd4j.create(new double[][] {{1, 2, 3, 4}, {1, 2, 3, 5}, {3, 4, 5, 6}});
+
+        VPTree vpTree = new VPTree(arr, false);
+        NearestNeighborRequest request = new NearestNeighborRequest();
+        request.setK(2);
+        request.setInputIndices(new int[] {0, 2});
+        NearestNeighbor nearestNeighbor = NearestNeighbor.builder().tree(vpTree).points(arr).record(request).build();
+
+        List<NearestNeighborsResults> results = nearestNeighbor.searchBatch();
+        assertEquals(2, results.size());
+        assertEquals(0, results.get(0).getResults().get(0).getIndex());
+        assertEquals(1, results.get(0).getResults().get(1).getIndex());
+        assertEquals(2, results.get(1).getResults().get(0).getIndex());
+        assertEquals(1, results.get(1).getResults().get(1).getIndex());
+    }
+
     @Test
     public void vpTreeTest() throws Exception {
         INDArray matrix = Nd4j.rand(new int[] {400,10});
@@ -99,6 +118,15 @@ public class NearestNeighborTest {
         NearestNeighborsClient client = new NearestNeighborsClient("http://localhost:" + localPort);
         NearestNeighborsResults result = client.knnNew(5, rand.getRow(0));
         assertEquals(5, result.getResults().size());
+
+        NearestNeighborsBatchResults batch = client.knnNewBatch(3, rand);
+        assertEquals(10, batch.getResults().size());
+        assertEquals(3, batch.getResults().get(4).getResults().size());
+        assertEquals(4, batch.getResults().get(4).getResults().get(0).getIndex());
+
+        batch = client.knnBatch(new int[] {1, 2}, 3);
+        assertEquals(2, batch.getResults().size());
+        assertEquals(2, batch.getResults().get(1).getResults().get(0).getIndex());
         server.stop();
     }
 
@@ -122,6 +122,49 @@ public class NearestNeighborsClient {
         return ret;
     }
 
+    /**
+     * Runs batched knn for the given indices
+     * of points within the existing dataset.
+     * Queries are processed in parallel on the server side
+     * @param indices the indices of the
+     *                EXISTING ndarray rows
+     *                to run a search on
+     * @param k the number of results per query
+     * @return results, one per index
+     * @throws Exception
+     */
+    public NearestNeighborsBatchResults knnBatch(int[] indices, int k) throws Exception {
+        NearestNeighborRequest request = new NearestNeighborRequest();
+        request.setInputIndices(indices);
+        request.setK(k);
+        HttpRequestWithBody req = Unirest.post(url + "/knnbatch");
+        req.header("accept", "application/json")
+                .header("Content-Type", "application/json").body(request);
+        addAuthHeader(req);
+
+        return req.asObject(NearestNeighborsBatchResults.class).getBody();
+    }
+
+    /**
+     * Runs batched knn for NEW data points.
+     * Queries are processed in parallel on the server side
+     * @param k the number of results per query
+     * @param arr the matrix of queries, one query per row
+     * @return results, one per row
+     * @throws Exception
+     */
+    public NearestNeighborsBatchResults knnNewBatch(int k, INDArray arr) throws Exception {
+        Base64NDArrayBody base64NDArrayBody =
+                        Base64NDArrayBody.builder().k(k).ndarray(Nd4jBase64.base64String(arr)).build();
+
+        HttpRequestWithBody req = Unirest.post(url + "/knnnewbatch");
+        req.header("accept", "application/json")
+                .header("Content-Type", "application/json").body(base64NDArrayBody);
+        addAuthHeader(req);
+
+        return req.asObject(NearestNeighborsBatchResults.class).getBody();
+    }
+
 
     /**
      * Add the specified authentication header to the specified HttpRequest
@@ -27,5 +27,7 @@ import java.io.Serializable;
 public class NearestNeighborRequest implements Serializable {
     private int k;
     private int inputIndex;
+    // used by batched search only
+    private int[] inputIndices;
 
 }
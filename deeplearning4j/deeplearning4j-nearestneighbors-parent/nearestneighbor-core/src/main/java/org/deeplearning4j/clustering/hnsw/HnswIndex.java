@@ -0,0 +1,670 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.clustering.hnsw;
+
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hierarchical Navigable Small World (HNSW) graph index for approximate nearest neighbour search, using cosine distance.
+ *
+ * Elements are added one by one and get sequential ids, starting from 0, so index can be built incrementally,
+ * i.e. for rows of a growing lookup table. Search returns ids ordered by descending cosine similarity.
+ * Recall vs speed trade-off is controlled by efSearch, which can be changed at any time.
+ *
+ * PLEASE NOTE: index keeps its own normalized float copy of every vector, so it takes roughly as much memory
+ * as the float lookup table it was built from.
+ * PLEASE NOTE: add() is exclusive, concurrent search() calls are allowed.
+ */
+public class HnswIndex {
+    private static final int MAGIC = 0x484E5357;
+    private static final int VERSION = 1;
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final long seed;
+    private final Random random;
+    private volatile int efSearch;
+
+    private float[][] vectors = new float[16][];
+    private int[][][] links = new int[16][][];
+    private int size = 0;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<VisitedSet> visitedSets = new ThreadLocal<>();
+
+    protected HnswIndex(int dimension, int m, int efConstruction, int efSearch, long seed) {
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.seed = seed;
+        this.random = new Random(seed);
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int getM() {
+        return m;
+    }
+
+    public int getEfConstruction() {
+        return efConstruction;
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    /**
+     * This method sets default size of dynamic candidate list used by search. Higher values mean better recall and slower queries.
+     *
+     * @param efSearch
+     */
+    public void setEfSearch(int efSearch) {
+        if (efSearch < 1)
+            throw new IllegalArgumentException("efSearch should be positive, got " + efSearch);
+
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * @return number of elements in this index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method adds vector to the index
+     *
+     * @param vector row vector of length equal to index dimension
+     * @return id assigned to this vector
+     */
+    public int add(@NonNull INDArray vector) {
+        return add(vector.toFloatVector());
+    }
+
+    /**
+     * This method adds vector to the index
+     *
+     * @param vector vector of length equal to index dimension
+     * @return id assigned to this vector
+     */
+    public int add(@NonNull float[] vector) {
+        float[] v = normalize(vector);
+
+        lock.writeLock().lock();
+        try {
+            int id = size;
+            ensureCapacity(id + 1);
+
+            int level = randomLevel();
+            vectors[id] = v;
+            links[id] = new int[level + 1][];
+            for (int l = 0; l <= level; l++)
+                links[id][l] = new int[(l == 0 ? maxM0 : m) + 1];
+
+            size++;
+
+            if (entryPoint < 0) {
+                entryPoint = id;
+                maxLevel = level;
+                return id;
+            }
+
+            VisitedSet visited = visitedSet();
+            int ep = entryPoint;
+            float epDistance = distance(v, vectors[ep]);
+            for (int l = maxLevel; l > level; l--) {
+                ep = greedyClosest(v, ep, epDistance, l);
+                epDistance = distance(v, vectors[ep]);
+            }
+
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                NodeHeap candidates = searchLayer(v, ep, epDistance, efConstruction, l, visited);
+
+                // closest candidate becomes entry point for the next layer
+                int[] sorted = drainSorted(candidates, null);
+                ep = sorted[0];
+                epDistance = distance(v, vectors[ep]);
+
+                int[] selected = selectNeighbors(v, sorted, m);
+                int[] own = links[id][l];
+                for (int i = 0; i < selected.length; i++)
+                    own[i + 1] = selected[i];
+                own[0] = selected.length;
+
+                for (int n : selected)
+                    connect(n, id, l);
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = id;
+            }
+
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method returns ids of k approximate nearest neighbours of given vector, using default efSearch
+     *
+     * @param query query vector
+     * @param k number of neighbours to return
+     * @return ids, ordered by descending similarity
+     */
+    public int[] search(@NonNull INDArray query, int k) {
+        return search(query.toFloatVector(), k, efSearch);
+    }
+
+    /**
+     * This method returns ids of k approximate nearest neighbours of given vector, using default efSearch
+     *
+     * @param query query vector
+     * @param k number of neighbours to return
+     * @return ids, ordered by descending similarity
+     */
+    public int[] search(@NonNull float[] query, int k) {
+        return search(query, k, efSearch);
+    }
+
+    /**
+     * This method returns ids of k approximate nearest neighbours of given vector
+     *
+     * @param query query vector
+     * @param k number of neighbours to return
+     * @param ef size of dynamic candidate list, values below k are treated as k
+     * @return ids, ordered by descending similarity
+     */
+    public int[] search(@NonNull float[] query, int k, int ef) {
+        return search(query, k, ef, null);
+    }
+
+    /**
+     * This method returns ids of k approximate nearest neighbours of given vector
+     *
+     * @param query query vector
+     * @param k number of neighbours to return
+     * @param ef size of dynamic candidate list, values below k are treated as k
+     * @param similarities optional array of length >= k, will be filled with cosine similarities of returned elements
+     * @return ids, ordered by descending similarity
+     */
+    public int[] search(@NonNull float[] query, int k, int ef, float[] similarities) {
+        if (k < 1)
+            return new int[0];
+
+        float[] q = normalize(query);
+
+        lock.readLock().lock();
+        try {
+            if (size == 0)
+                return new int[0];
+
+            int ep = entryPoint;
+            float epDistance = distance(q, vectors[ep]);
+            for (int l = maxLevel; l > 0; l--) {
+                ep = greedyClosest(q, ep, epDistance, l);
+                epDistance = distance(q, vectors[ep]);
+            }
+
+            NodeHeap results = searchLayer(q, ep, epDistance, Math.max(ef, k), 0, visitedSet());
+            while (results.size() > k)
+                results.pop();
+
+            float[] distances = similarities == null ? null : new float[results.size()];
+            int[] ids = drainSorted(results, distances);
+            if (similarities != null) {
+                for (int i = 0; i < ids.length; i++)
+                    similarities[i] = 1.0f - distances[i];
+            }
+
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method writes this index, including vectors, to the given stream
+     *
+     * @param stream
+     * @throws IOException
+     */
+    public void write(@NonNull OutputStream stream) throws IOException {
+        lock.readLock().lock();
+        try {
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(stream));
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeInt(dimension);
+            dos.writeInt(m);
+            dos.writeInt(efConstruction);
+            dos.writeInt(efSearch);
+            dos.writeLong(seed);
+            dos.writeInt(size);
+            dos.writeInt(entryPoint);
+            dos.writeInt(maxLevel);
+
+            for (int i = 0; i < size; i++) {
+                for (float f : vectors[i])
+                    dos.writeFloat(f);
+
+                int[][] nodeLinks = links[i];
+                dos.writeInt(nodeLinks.length);
+                for (int[] level : nodeLinks) {
+                    dos.writeInt(level[0]);
+                    for (int j = 1; j <= level[0]; j++)
+                        dos.writeInt(level[j]);
+                }
+            }
+            dos.flush();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method writes this index to the given file
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void write(@NonNull File file) throws IOException {
+        try (OutputStream os = new FileOutputStream(file)) {
+            write(os);
+        }
+    }
+
+    /**
+     * This method restores index previously saved with {@link #write(OutputStream)}
+     *
+     * @param stream
+     * @return
+     * @throws IOException
+     */
+    public static HnswIndex read(@NonNull InputStream stream) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(stream));
+        if (dis.readInt() != MAGIC)
+            throw new IOException("Stream doesn't contain HNSW index");
+
+        int version = dis.readInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported HNSW index version: " + version);
+
+        int dimension = dis.readInt();
+        int m = dis.readInt();
+        int efConstruction = dis.readInt();
+        int efSearch = dis.readInt();
+        long seed = dis.readLong();
+        int size = dis.readInt();
+
+        // we shift seed, so levels for newly added elements don't repeat levels of already stored ones
+        HnswIndex index = new HnswIndex(dimension, m, efConstruction, efSearch, seed + size);
+        index.entryPoint = dis.readInt();
+        index.maxLevel = dis.readInt();
+        index.ensureCapacity(size);
+
+        for (int i = 0; i < size; i++) {
+            float[] v = new float[dimension];
+            for (int j = 0; j < dimension; j++)
+                v[j] = dis.readFloat();
+            index.vectors[i] = v;
+
+            int numLevels = dis.readInt();
+            int[][] nodeLinks = new int[numLevels][];
+            for (int l = 0; l < numLevels; l++) {
+                int[] level = new int[(l == 0 ? index.maxM0 : m) + 1];
+                level[0] = dis.readInt();
+                for (int j = 1; j <= level[0]; j++)
+                    level[j] = dis.readInt();
+                nodeLinks[l] = level;
+            }
+            index.links[i] = nodeLinks;
+        }
+        index.size = size;
+
+        return index;
+    }
+
+    /**
+     * This method restores index previously saved with {@link #write(File)}
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static HnswIndex read(@NonNull File file) throws IOException {
+        try (InputStream is = new FileInputStream(file)) {
+            return read(is);
+        }
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > vectors.length) {
+            int newCapacity = Math.max(capacity, vectors.length + (vectors.length >> 1));
+            vectors = Arrays.copyOf(vectors, newCapacity);
+            links = Arrays.copyOf(links, newCapacity);
+        }
+    }
+
+    private VisitedSet visitedSet() {
+        VisitedSet set = visitedSets.get();
+        if (set == null) {
+            set = new VisitedSet();
+            visitedSets.set(set);
+        }
+        set.reset(size);
+        return set;
+    }
+
+    /**
+     * Greedy search with ef = 1, used on upper layers
+     */
+    private int greedyClosest(float[] q, int ep, float epDistance, int level) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbours = links[ep][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int n = neighbours[i];
+                float d = distance(q, vectors[n]);
+                if (d < epDistance) {
+                    epDistance = d;
+                    ep = n;
+                    changed = true;
+                }
+            }
+        }
+        return ep;
+    }
+
+    /**
+     * Best-first search within single layer
+     *
+     * @return max-heap with up to ef closest elements found
+     */
+    private NodeHeap searchLayer(float[] q, int ep, float epDistance, int ef, int level, VisitedSet visited) {
+        NodeHeap candidates = new NodeHeap(ef * 2, false);
+        NodeHeap results = new NodeHeap(ef + 1, true);
+
+        visited.reset(size);
+        visited.visit(ep);
+        candidates.push(epDistance, ep);
+        results.push(epDistance, ep);
+
+        while (!candidates.isEmpty()) {
+            float d = candidates.peekDistance();
+            if (d > results.peekDistance() && results.size() >= ef)
+                break;
+
+            int c = candidates.pop();
+            int[] neighbours = links[c][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int n = neighbours[i];
+                if (!visited.visit(n))
+                    continue;
+
+                float dn = distance(q, vectors[n]);
+                if (results.size() < ef || dn < results.peekDistance()) {
+                    candidates.push(dn, n);
+                    results.push(dn, n);
+                    if (results.size() > ef)
+                        results.pop();
+                }
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Drains max-heap into array ordered by ascending distance
+     */
+    private static int[] drainSorted(NodeHeap heap, float[] distances) {
+        int[] ids = new int[heap.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            if (distances != null)
+                distances[i] = heap.peekDistance();
+            ids[i] = heap.pop();
+        }
+        return ids;
+    }
+
+    /**
+     * Neighbour selection heuristic: candidate is kept only if it's closer to the base element than to any
+     * of already selected neighbours. This keeps graph navigable for clustered data.
+     *
+     * @param base base vector
+     * @param sorted candidates, ordered by ascending distance to base
+     * @param max max number of neighbours to select
+     */
+    private int[] selectNeighbors(float[] base, int[] sorted, int max) {
+        if (sorted.length <= max)
+            return sorted;
+
+        int[] selected = new int[max];
+        int count = 0;
+        for (int c : sorted) {
+            float dc = distance(base, vectors[c]);
+            boolean good = true;
+            for (int s = 0; s < count; s++) {
+                if (distance(vectors[c], vectors[selected[s]]) < dc) {
+                    good = false;
+                    break;
+                }
+            }
+
+            if (good) {
+                selected[count++] = c;
+                if (count == max)
+                    break;
+            }
+        }
+
+        return count == max ? selected : Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * Adds link from node to newNode at given level, pruning node's links if they exceed their limit
+     */
+    private void connect(int node, int newNode, int level) {
+        int[] nodeLinks = links[node][level];
+        int max = nodeLinks.length - 1;
+        int count = nodeLinks[0];
+        if (count < max) {
+            nodeLinks[count + 1] = newNode;
+            nodeLinks[0] = count + 1;
+            return;
+        }
+
+        float[] base = vectors[node];
+        NodeHeap heap = new NodeHeap(max + 1, true);
+        for (int i = 1; i <= count; i++)
+            heap.push(distance(base, vectors[nodeLinks[i]]), nodeLinks[i]);
+        heap.push(distance(base, vectors[newNode]), newNode);
+
+        int[] selected = selectNeighbors(base, drainSorted(heap, null), max);
+        for (int i = 0; i < selected.length; i++)
+            nodeLinks[i + 1] = selected[i];
+        nodeLinks[0] = selected.length;
+    }
+
+    private float[] normalize(float[] vector) {
+        if (vector.length != dimension)
+            throw new IllegalArgumentException("Vector length [" + vector.length + "] doesn't match index dimension ["
+                            + dimension + "]");
+
+        double norm = 0.0;
+        for (float f : vector)
+            norm += f * f;
+        norm = Math.sqrt(norm);
+
+        float[] result = new float[dimension];
+        if (norm > 0.0) {
+            for (int i = 0; i < dimension; i++)
+                result[i] = (float) (vector[i] / norm);
+        }
+        return result;
+    }
+
+    /**
+     * Cosine distance for normalized vectors
+     */
+    private static float distance(float[] a, float[] b) {
+        float dot = 0.0f;
+        for (int i = 0; i < a.length; i++)
+            dot += a[i] * b[i];
+        return 1.0f - dot;
+    }
+
+    /**
+     * Generation-stamped visited set, reused between searches within the same thread
+     */
+    private static class VisitedSet {
+        private int[] marks = new int[0];
+        private int generation = 0;
+
+        private void reset(int size) {
+            if (marks.length < size)
+                marks = new int[Math.max(size, marks.length + (marks.length >> 1))];
+
+            generation++;
+            if (generation == 0) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        /**
+         * @return true if element wasn't visited before
+         */
+        private boolean visit(int id) {
+            if (marks[id] == generation)
+                return false;
+
+            marks[id] = generation;
+            return true;
+        }
+    }
+
+    public static class Builder {
+        private final int dimension;
+        private int m = 16;
+        private int efConstruction = 200;
+        private int efSearch = 64;
+        private long seed = 119;
+
+        /**
+         * @param dimension length of indexed vectors
+         */
+        public Builder(int dimension) {
+            this.dimension = dimension;
+        }
+
+        /**
+         * This method sets max number of links per element on upper layers. Layer 0 uses 2 * M links.
+         *
+         * Default value: 16
+         *
+         * @param m
+         * @return
+         */
+        public Builder m(int m) {
+            this.m = m;
+            return this;
+        }
+
+        /**
+         * This method sets size of dynamic candidate list used during construction.
+         * Higher values mean better graph quality and slower construction.
+         *
+         * Default value: 200
+         *
+         * @param efConstruction
+         * @return
+         */
+        public Builder efConstruction(int efConstruction) {
+            this.efConstruction = efConstruction;
+            return this;
+        }
+
+        /**
+         * This method sets default size of dynamic candidate list used during search.
+         *
+         * Default value: 64
+         *
+         * @param efSearch
+         * @return
+         */
+        public Builder efSearch(int efSearch) {
+            this.efSearch = efSearch;
+            return this;
+        }
+
+        /**
+         * This method sets seed used for level generation
+         *
+         * @param seed
+         * @return
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public HnswIndex build() {
+            if (dimension < 1)
+                throw new IllegalStateException("Dimension should be positive");
+
+            if (m < 2)
+                throw new IllegalStateException("M should be >= 2");
+
+            if (efConstruction < 1 || efSearch < 1)
+                throw new IllegalStateException("efConstruction and efSearch should be positive");
+
+            return new HnswIndex(dimension, m, efConstruction, efSearch, seed);
+        }
+    }
+}
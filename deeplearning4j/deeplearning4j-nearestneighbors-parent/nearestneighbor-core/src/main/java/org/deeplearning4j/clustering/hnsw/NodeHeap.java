@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.clustering.hnsw;
+
+import java.util.Arrays;
+
+/**
+ * Simple binary heap over (distance, id) pairs, backed by primitive arrays to avoid boxing on hot search paths.
+ *
+ * Depending on the flag, either the smallest or the largest distance is kept on top.
+ */
+class NodeHeap {
+    private final boolean maxHeap;
+    private float[] distances;
+    private int[] ids;
+    private int size;
+
+    NodeHeap(int capacity, boolean maxHeap) {
+        this.maxHeap = maxHeap;
+        this.distances = new float[Math.max(capacity, 4)];
+        this.ids = new int[distances.length];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    float peekDistance() {
+        return distances[0];
+    }
+
+    int peekId() {
+        return ids[0];
+    }
+
+    void push(float distance, int id) {
+        if (size == distances.length) {
+            distances = Arrays.copyOf(distances, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!above(distance, distances[parent]))
+                break;
+
+            distances[i] = distances[parent];
+            ids[i] = ids[parent];
+            i = parent;
+        }
+        distances[i] = distance;
+        ids[i] = id;
+    }
+
+    /**
+     * Removes top element
+     *
+     * @return id of removed element
+     */
+    int pop() {
+        int top = ids[0];
+        size--;
+        if (size > 0) {
+            float distance = distances[size];
+            int id = ids[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size)
+                    break;
+
+                if (child + 1 < size && above(distances[child + 1], distances[child]))
+                    child++;
+
+                if (!above(distances[child], distance))
+                    break;
+
+                distances[i] = distances[child];
+                ids[i] = ids[child];
+                i = child;
+            }
+            distances[i] = distance;
+            ids[i] = id;
+        }
+        return top;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    private boolean above(float a, float b) {
+        return maxHeap ? a > b : a < b;
+    }
+}
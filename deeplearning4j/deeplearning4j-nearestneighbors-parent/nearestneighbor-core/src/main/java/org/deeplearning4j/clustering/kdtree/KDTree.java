@@ -16,9 +16,13 @@
 
 package org.deeplearning4j.clustering.kdtree;
 
+import org.deeplearning4j.clustering.util.BatchKnnSearch;
+import org.deeplearning4j.clustering.util.DistanceUtils;
+import org.deeplearning4j.clustering.util.KnnHeap;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.api.ops.impl.accum.distances.EuclideanDistance;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
 import org.nd4j.linalg.primitives.Pair;
 
 import java.io.Serializable;
@@ -39,6 +43,7 @@ public class KDTree implements Serializable {
     public final static int GREATER = 1;
     public final static int LESS = 0;
     private int size = 0;
+    private int inserted = 0;
     private HyperRect rect;
 
     public KDTree(int dims) {
@@ -54,12 +59,12 @@ public class KDTree implements Serializable {
             throw new IllegalArgumentException("Point must be a vector of length " + dims);
 
         if (root == null) {
-            root = new KDNode(point);
+            root = new KDNode(point, inserted);
             rect = new HyperRect(HyperRect.point(point));
         } else {
             int disc = 0;
             KDNode node = root;
-            KDNode insert = new KDNode(point);
+            KDNode insert = new KDNode(point, inserted);
             int successor;
             while (true) {
                 //exactly equal
@@ -89,6 +94,7 @@ public class KDTree implements Serializable {
             insert.setParent(node);
         }
         size++;
+        inserted++;
 
     }
 
@@ -201,6 +207,60 @@ public class KDTree implements Serializable {
 
     }
 
+    /**
+     * This method does euclidean kNN search for every row of queries matrix, using all available processors.
+     *
+     * @param queries matrix of shape [numQueries, dims]
+     * @param k number of neighbours per query
+     * @return array of 2 matrices of shape [numQueries, k]: indices and distances, ordered by ascending distance.
+     *         Index of a point is its insertion order number.
+     */
+    public INDArray[] search(INDArray queries, int k) {
+        return search(queries, k, 0);
+    }
+
+    /**
+     * This method does euclidean kNN search for every row of queries matrix. Queries are processed in parallel,
+     * and distances are computed over primitive arrays, without creating INDArrays per tree node.
+     *
+     * PLEASE NOTE: tree shouldn't be modified while this method is running
+     *
+     * @param queries matrix of shape [numQueries, dims]
+     * @param k number of neighbours per query
+     * @param workers number of threads, values < 1 mean "number of available processors"
+     * @return array of 2 matrices of shape [numQueries, k]: indices and distances, ordered by ascending distance.
+     *         Index of a point is its insertion order number.
+     */
+    public INDArray[] search(INDArray queries, int k, int workers) {
+        INDArray[] result = BatchKnnSearch.search(queries, dims, Math.min(k, Math.max(size, 1)), workers,
+                        new BatchKnnSearch.Searcher() {
+                            @Override
+                            public void search(float[] query, KnnHeap heap) {
+                                KDTree.this.search(root, query, 0, heap);
+                            }
+                        });
+
+        // heap keeps squared distances
+        Transforms.sqrt(result[1], false);
+        return result;
+    }
+
+    private void search(KDNode node, float[] query, int disc, KnnHeap heap) {
+        if (node == null)
+            return;
+
+        heap.offer(DistanceUtils.squaredEuclidean(query, node.coords, 0), node.index);
+
+        int discNext = (disc + 1) % dims;
+        double diff = query[disc] - node.coords[disc];
+        KDNode near = diff < 0 ? node.getLeft() : node.getRight();
+        KDNode far = diff < 0 ? node.getRight() : node.getLeft();
+
+        search(near, query, discNext, heap);
+        if (diff * diff <= heap.threshold())
+            search(far, query, discNext, heap);
+    }
+
     private KDNode delete(KDNode delete, int _disc) {
         if (delete.getLeft() != null && delete.getRight() != null) {
             if (delete.getParent() != null) {
@@ -221,6 +281,8 @@ public class KDTree implements Serializable {
         } else if (delete.getLeft() != null)
             qd = max(delete.getLeft(), disc, _disc);
         delete.point = qd.getKey().point;
+        delete.coords = qd.getKey().coords;
+        delete.index = qd.getKey().index;
         KDNode qFather = qd.getKey().getParent();
         if (qFather.getLeft() == qd.getKey()) {
             qFather.setLeft(delete(qd.getKey(), disc));
@@ -320,10 +382,22 @@ public class KDTree implements Serializable {
 
     public static class KDNode {
         private INDArray point;
+        private float[] coords;
+        private int index;
         private KDNode left, right, parent;
 
         public KDNode(INDArray point) {
+            this(point, 0);
+        }
+
+        public KDNode(INDArray point, int index) {
             this.point = point;
+            this.coords = point.toFloatVector();
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
         }
 
         public INDArray getPoint() {
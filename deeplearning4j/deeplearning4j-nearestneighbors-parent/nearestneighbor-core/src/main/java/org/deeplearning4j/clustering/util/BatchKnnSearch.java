@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.clustering.util;
+
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Helper for batched kNN search: splits query matrix into chunks, and processes them in parallel,
+ * with one reusable heap and query buffer per thread.
+ *
+ * Results are returned as two matrices of shape [numQueries, k]: indices and distances, ordered by ascending distance.
+ * Rows are padded with index -1 and distance NaN if fewer than k elements were found.
+ */
+public class BatchKnnSearch {
+    private static final int CHUNK_SIZE = 64;
+
+    /**
+     * Search implementation for a single query. Implementations must be safe for concurrent use.
+     */
+    public interface Searcher {
+        void search(float[] query, KnnHeap heap);
+    }
+
+    private BatchKnnSearch() {}
+
+    /**
+     * This method runs search for every row of queries matrix
+     *
+     * @param queries matrix of shape [numQueries, dimension]
+     * @param dimension expected number of columns
+     * @param k number of neighbours per query
+     * @param workers number of threads to use, values < 1 mean "number of available processors"
+     * @param searcher search implementation
+     * @return array of 2 matrices: indices and distances, both of shape [numQueries, k]
+     */
+    public static INDArray[] search(@NonNull INDArray queries, final int dimension, final int k, int workers,
+                    @NonNull final Searcher searcher) {
+        if (queries.rank() != 2 || queries.columns() != dimension)
+            throw new ND4JIllegalStateException("Queries should have shape of [numQueries, " + dimension + "], but got "
+                            + Arrays.toString(queries.shape()) + " instead");
+
+        final int numQueries = queries.rows();
+        final float[] data = queries.dup('c').data().asFloat();
+        final double[] indices = new double[numQueries * k];
+        final double[] distances = new double[numQueries * k];
+
+        if (workers < 1)
+            workers = Runtime.getRuntime().availableProcessors();
+        workers = Math.max(1, Math.min(workers, (numQueries + CHUNK_SIZE - 1) / CHUNK_SIZE));
+
+        final AtomicInteger position = new AtomicInteger(0);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    KnnHeap heap = new KnnHeap(k);
+                    float[] query = new float[dimension];
+                    int start;
+                    while (error.get() == null && (start = position.getAndAdd(CHUNK_SIZE)) < numQueries) {
+                        int end = Math.min(start + CHUNK_SIZE, numQueries);
+                        for (int q = start; q < end; q++) {
+                            System.arraycopy(data, q * dimension, query, 0, dimension);
+                            heap.reset(k);
+                            searcher.search(query, heap);
+
+                            int found = heap.drain(indices, distances, q * k);
+                            for (int i = found; i < k; i++) {
+                                indices[q * k + i] = -1;
+                                distances[q * k + i] = Double.NaN;
+                            }
+                        }
+                    }
+                } catch (Throwable t) {
+                    error.compareAndSet(null, t);
+                }
+            }
+        };
+
+        if (workers == 1) {
+            task.run();
+        } else {
+            List<Thread> threads = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                Thread t = new Thread(task, "BatchKnnSearch thread " + i);
+                t.setDaemon(true);
+                t.start();
+                threads.add(t);
+            }
+
+            try {
+                for (Thread t : threads)
+                    t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        if (error.get() != null)
+            throw new RuntimeException(error.get());
+
+        int[] shape = new int[] {numQueries, k};
+        return new INDArray[] {Nd4j.create(indices, shape), Nd4j.create(distances, shape)};
+    }
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.clustering.util;
+
+/**
+ * Plain java implementations of distance functions supported by VPTree, working over primitive arrays.
+ * Used on batched search paths, where launching an op per tree node costs more than the distance itself.
+ */
+public class DistanceUtils {
+
+    private DistanceUtils() {}
+
+    /**
+     * This method returns distance between query and vector stored in flat items array
+     *
+     * @param function similarity function name, as used by VPTree. Unknown names are treated as "euclidean"
+     * @param query query vector
+     * @param items flat array of vectors, each of query.length elements
+     * @param offset offset of target vector within items array
+     * @return
+     */
+    public static double distance(String function, float[] query, float[] items, int offset) {
+        int length = query.length;
+        switch (function) {
+            case "manhattan": {
+                double sum = 0.0;
+                for (int i = 0; i < length; i++)
+                    sum += Math.abs(query[i] - items[offset + i]);
+                return sum;
+            }
+            case "dot": {
+                double dot = 0.0;
+                for (int i = 0; i < length; i++)
+                    dot += query[i] * items[offset + i];
+                return dot;
+            }
+            case "cosinesimilarity":
+                return cosineSimilarity(query, items, offset);
+            case "cosinedistance":
+                return 1.0 - cosineSimilarity(query, items, offset);
+            case "jaccard": {
+                double min = 0.0;
+                double max = 0.0;
+                for (int i = 0; i < length; i++) {
+                    min += Math.min(query[i], items[offset + i]);
+                    max += Math.max(query[i], items[offset + i]);
+                }
+                return 1.0 - min / max;
+            }
+            case "hamming": {
+                int diff = 0;
+                for (int i = 0; i < length; i++)
+                    if (query[i] != items[offset + i])
+                        diff++;
+                return diff / (double) length;
+            }
+            case "euclidean":
+            default:
+                return Math.sqrt(squaredEuclidean(query, items, offset));
+        }
+    }
+
+    /**
+     * This method returns squared euclidean distance between query and vector stored in flat items array
+     */
+    public static double squaredEuclidean(float[] query, float[] items, int offset) {
+        double sum = 0.0;
+        for (int i = 0; i < query.length; i++) {
+            double d = query[i] - items[offset + i];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    private static double cosineSimilarity(float[] query, float[] items, int offset) {
+        double dot = 0.0;
+        double n1 = 0.0;
+        double n2 = 0.0;
+        for (int i = 0; i < query.length; i++) {
+            double a = query[i];
+            double b = items[offset + i];
+            dot += a * b;
+            n1 += a * a;
+            n2 += b * b;
+        }
+        return dot / (Math.sqrt(n1) * Math.sqrt(n2));
+    }
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.clustering.util;
+
+/**
+ * Bounded max-heap of (distance, index) pairs, used to collect k nearest neighbours without boxing.
+ * Instances are meant to be reused for many queries within a single thread.
+ */
+public class KnnHeap {
+    private double[] distances;
+    private int[] indices;
+    private int capacity;
+    private int size;
+
+    public KnnHeap(int capacity) {
+        reset(capacity);
+    }
+
+    /**
+     * This method clears the heap, and sets its capacity
+     *
+     * @param capacity max number of elements to keep
+     */
+    public void reset(int capacity) {
+        if (distances == null || distances.length < capacity) {
+            distances = new double[capacity];
+            indices = new int[capacity];
+        }
+        this.capacity = capacity;
+        this.size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * @return largest distance within the heap, or +Infinity if heap isn't full yet
+     */
+    public double threshold() {
+        return size < capacity ? Double.POSITIVE_INFINITY : distances[0];
+    }
+
+    /**
+     * This method adds element to the heap, if it's closer than current worst element, or heap isn't full yet
+     *
+     * @return true if element was added
+     */
+    public boolean offer(double distance, int index) {
+        if (capacity == 0)
+            return false;
+
+        if (size < capacity) {
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (distances[parent] >= distance)
+                    break;
+                distances[i] = distances[parent];
+                indices[i] = indices[parent];
+                i = parent;
+            }
+            distances[i] = distance;
+            indices[i] = index;
+            return true;
+        }
+
+        if (distance >= distances[0])
+            return false;
+
+        // replace root and sift down
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && distances[child + 1] > distances[child])
+                child++;
+            if (distances[child] <= distance)
+                break;
+            distances[i] = distances[child];
+            indices[i] = indices[child];
+            i = child;
+        }
+        distances[i] = distance;
+        indices[i] = index;
+        return true;
+    }
+
+    /**
+     * This method empties the heap into given arrays, ordered by ascending distance
+     *
+     * @param outIndices
+     * @param outDistances
+     * @param offset position in output arrays to start from
+     * @return number of elements written
+     */
+    public int drain(double[] outIndices, double[] outDistances, int offset) {
+        int count = size;
+        for (int i = count - 1; i >= 0; i--) {
+            outIndices[offset + i] = indices[0];
+            outDistances[offset + i] = distances[0];
+            pollRoot();
+        }
+        return count;
+    }
+
+    private void pollRoot() {
+        size--;
+        if (size == 0)
+            return;
+
+        double distance = distances[size];
+        int index = indices[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && distances[child + 1] > distances[child])
+                child++;
+            if (distances[child] <= distance)
+                break;
+            distances[i] = distances[child];
+            indices[i] = indices[child];
+            i = child;
+        }
+        distances[i] = distance;
+        indices[i] = index;
+    }
+}
@@ -20,6 +20,9 @@ import lombok.*;
 import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.clustering.sptree.DataPoint;
 import org.deeplearning4j.clustering.sptree.HeapObject;
+import org.deeplearning4j.clustering.util.BatchKnnSearch;
+import org.deeplearning4j.clustering.util.DistanceUtils;
+import org.deeplearning4j.clustering.util.KnnHeap;
 import org.deeplearning4j.clustering.util.MathUtils;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
@@ -64,6 +67,9 @@ public class VPTree implements Serializable {
 
     private transient ThreadLocal<INDArray> scalars = new ThreadLocal<>();
 
+    // flat float copy of items, used by batched search
+    private transient volatile float[] itemsData;
+
     private WorkspaceConfiguration workspaceConfiguration;
 
     protected VPTree() {
@@ -558,6 +564,85 @@ public class VPTree implements Serializable {
     }
 
 
+    /**
+     * This method does kNN search for every row of queries matrix, using all available processors.
+     *
+     * @param queries matrix of shape [numQueries, numColumns]
+     * @param k number of neighbours per query
+     * @return array of 2 matrices of shape [numQueries, k]: item indices and distances, ordered by ascending distance
+     */
+    public INDArray[] search(@NonNull INDArray queries, int k) {
+        return search(queries, k, 0);
+    }
+
+    /**
+     * This method does kNN search for every row of queries matrix. Queries are processed in parallel,
+     * and distances are computed over primitive arrays, without creating INDArrays per tree node.
+     *
+     * PLEASE NOTE: if invert is set, returned distances are inverted as well, same as for single search
+     * PLEASE NOTE: this method keeps float copy of items in memory after first call
+     *
+     * @param queries matrix of shape [numQueries, numColumns]
+     * @param k number of neighbours per query
+     * @param workers number of threads, values < 1 mean "number of available processors"
+     * @return array of 2 matrices of shape [numQueries, k]: item indices and distances, ordered by ascending distance
+     */
+    public INDArray[] search(@NonNull INDArray queries, int k, int workers) {
+        final float[] data = itemsData();
+        final int dimension = (int) (items.length() / items.size(0));
+        final String function = similarityFunction == null ? EUCLIDEAN : similarityFunction;
+
+        return BatchKnnSearch.search(queries, dimension, Math.min(k, (int) items.size(0)), workers,
+                        new BatchKnnSearch.Searcher() {
+                            @Override
+                            public void search(float[] query, KnnHeap heap) {
+                                VPTree.this.search(root, query, data, dimension, function, heap);
+                            }
+                        });
+    }
+
+    private float[] itemsData() {
+        if (itemsData == null) {
+            synchronized (this) {
+                if (itemsData == null)
+                    itemsData = items.dup('c').data().asFloat();
+            }
+        }
+        return itemsData;
+    }
+
+    private void search(Node node, float[] target, float[] data, int dimension, String function, KnnHeap heap) {
+        if (node == null)
+            return;
+
+        double distance = DistanceUtils.distance(function, target, data, node.getIndex() * dimension);
+        if (invert)
+            distance = -distance;
+
+        heap.offer(distance, node.getIndex());
+
+        Node left = node.getLeft();
+        Node right = node.getRight();
+        if (left == null && right == null)
+            return;
+
+        double threshold = node.getThreshold();
+        if (distance < threshold) {
+            if (distance - heap.threshold() < threshold)
+                search(left, target, data, dimension, function, heap);
+
+            if (distance + heap.threshold() >= threshold)
+                search(right, target, data, dimension, function, heap);
+        } else {
+            if (distance + heap.threshold() >= threshold)
+                search(right, target, data, dimension, function, heap);
+
+            if (distance - heap.threshold() < threshold)
+                search(left, target, data, dimension, function, heap);
+        }
+    }
+
+
     protected class HeapObjectComparator implements Comparator<HeapObject> {
 
         @Override
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.clustering.hnsw;
+
+import lombok.val;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class HnswIndexTest {
+
+    private static float[][] randomVectors(int n, int dimension, long seed) {
+        Random random = new Random(seed);
+        float[][] result = new float[n][dimension];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < dimension; j++)
+                result[i][j] = (float) random.nextGaussian();
+        return result;
+    }
+
+    private static int[] bruteForce(float[][] data, float[] query, final int k) {
+        final double[] sims = new double[data.length];
+        Integer[] ids = new Integer[data.length];
+        double qn = 0;
+        for (float f : query)
+            qn += f * f;
+
+        for (int i = 0; i < data.length; i++) {
+            double dot = 0, n = 0;
+            for (int j = 0; j < query.length; j++) {
+                dot += data[i][j] * query[j];
+                n += data[i][j] * data[i][j];
+            }
+            sims[i] = dot / Math.sqrt(n * qn);
+            ids[i] = i;
+        }
+
+        Arrays.sort(ids, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(sims[o2], sims[o1]);
+            }
+        });
+
+        int[] result = new int[k];
+        for (int i = 0; i < k; i++)
+            result[i] = ids[i];
+        return result;
+    }
+
+    private static double recall(HnswIndex index, float[][] data, float[][] queries, int k, int ef) {
+        int found = 0;
+        for (float[] q : queries) {
+            Set<Integer> expected = new HashSet<>();
+            for (int id : bruteForce(data, q, k))
+                expected.add(id);
+
+            for (int id : index.search(q, k, ef))
+                if (expected.contains(id))
+                    found++;
+        }
+        return found / (double) (queries.length * k);
+    }
+
+    @Test(timeout = 60000L)
+    public void testRecall() {
+        val data = randomVectors(3000, 24, 12345);
+        val queries = randomVectors(50, 24, 119);
+
+        HnswIndex index = new HnswIndex.Builder(24).m(16).efConstruction(100).build();
+        for (int i = 0; i < data.length; i++)
+            assertEquals(i, index.add(data[i]));
+
+        assertEquals(data.length, index.size());
+
+        double low = recall(index, data, queries, 10, 10);
+        double high = recall(index, data, queries, 10, 200);
+        assertTrue("Recall was " + high, high > 0.95);
+        assertTrue(high >= low);
+    }
+
+    @Test
+    public void testSelfIsNearestAndOrdering() {
+        val data = randomVectors(500, 16, 42);
+        HnswIndex index = new HnswIndex.Builder(16).m(8).build();
+        for (float[] v : data)
+            index.add(v);
+
+        float[] similarities = new float[5];
+        for (int i = 0; i < data.length; i += 50) {
+            int[] result = index.search(data[i], 5, 64, similarities);
+            assertEquals(5, result.length);
+            assertEquals(i, result[0]);
+            assertEquals(1.0f, similarities[0], 1e-5f);
+            for (int j = 1; j < result.length; j++)
+                assertTrue(similarities[j - 1] >= similarities[j]);
+        }
+    }
+
+    @Test
+    public void testSmallAndEmpty() {
+        HnswIndex index = new HnswIndex.Builder(4).build();
+        assertEquals(0, index.search(new float[] {1, 0, 0, 0}, 3).length);
+
+        index.add(new float[] {1, 0, 0, 0});
+        index.add(new float[] {0, 1, 0, 0});
+        index.add(new float[] {0.9f, 0.1f, 0, 0});
+
+        assertArrayEquals(new int[] {0, 2, 1}, index.search(new float[] {1, 0, 0, 0}, 10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongDimension() {
+        HnswIndex index = new HnswIndex.Builder(4).build();
+        index.add(new float[] {1, 2, 3});
+    }
+
+    @Test
+    public void testSerializationAndIncrementalAdd() throws Exception {
+        val data = randomVectors(1000, 16, 7);
+        HnswIndex indexA = new HnswIndex.Builder(16).m(8).efSearch(32).build();
+        for (int i = 0; i < 800; i++)
+            indexA.add(data[i]);
+
+        val bos = new ByteArrayOutputStream();
+        indexA.write(bos);
+        HnswIndex indexB = HnswIndex.read(new ByteArrayInputStream(bos.toByteArray()));
+
+        assertEquals(indexA.size(), indexB.size());
+        assertEquals(indexA.getDimension(), indexB.getDimension());
+        assertEquals(32, indexB.getEfSearch());
+        for (int i = 0; i < 800; i += 37)
+            assertArrayEquals(indexA.search(data[i], 10), indexB.search(data[i], 10));
+
+        // restored index should keep growing
+        for (int i = 800; i < data.length; i++)
+            assertEquals(i, indexB.add(data[i]));
+
+        for (int i = 800; i < data.length; i += 20)
+            assertEquals(i, indexB.search(data[i], 1, 64)[0]);
+    }
+}
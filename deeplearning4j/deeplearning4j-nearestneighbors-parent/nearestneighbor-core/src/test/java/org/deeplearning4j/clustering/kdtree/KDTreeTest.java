@@ -97,4 +97,35 @@ public class KDTreeTest {
 
     }
 
+    @Test
+    public void testBatchedSearch() {
+        Nd4j.getRandom().setSeed(12345);
+        INDArray points = Nd4j.rand(300, 3);
+        INDArray queries = Nd4j.rand(50, 3);
+
+        KDTree tree = new KDTree(3);
+        for (int i = 0; i < points.rows(); i++)
+            tree.insert(points.getRow(i).dup());
+
+        int k = 5;
+        INDArray[] batched = tree.search(queries, k, 2);
+        assertEquals(50, batched[0].rows());
+        assertEquals(k, batched[0].columns());
+
+        for (int q = 0; q < queries.rows(); q++) {
+            INDArray query = queries.getRow(q);
+            double[] dist = new double[points.rows()];
+            for (int i = 0; i < points.rows(); i++)
+                dist[i] = points.getRow(i).distance2(query);
+
+            double[] sorted = dist.clone();
+            Arrays.sort(sorted);
+            for (int j = 0; j < k; j++) {
+                int idx = batched[0].getInt(q, j);
+                assertEquals(sorted[j], batched[1].getDouble(q, j), 1e-4);
+                assertEquals(dist[idx], batched[1].getDouble(q, j), 1e-4);
+            }
+        }
+    }
+
 }
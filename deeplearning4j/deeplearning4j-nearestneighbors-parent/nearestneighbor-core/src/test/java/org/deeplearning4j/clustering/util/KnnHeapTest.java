@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.clustering.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class KnnHeapTest {
+
+    @Test
+    public void testKeepsSmallest() {
+        Random random = new Random(119);
+        double[] values = new double[1000];
+        KnnHeap heap = new KnnHeap(10);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble();
+            heap.offer(values[i], i);
+        }
+
+        assertTrue(heap.isFull());
+
+        double[] indices = new double[12];
+        double[] distances = new double[12];
+        assertEquals(10, heap.drain(indices, distances, 2));
+        assertEquals(0, heap.size());
+
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(sorted[i], distances[i + 2], 0.0);
+            assertEquals(sorted[i], values[(int) indices[i + 2]], 0.0);
+        }
+    }
+
+    @Test
+    public void testThresholdAndReset() {
+        KnnHeap heap = new KnnHeap(2);
+        assertEquals(Double.POSITIVE_INFINITY, heap.threshold(), 0.0);
+        heap.offer(3.0, 0);
+        assertEquals(Double.POSITIVE_INFINITY, heap.threshold(), 0.0);
+        heap.offer(1.0, 1);
+        assertEquals(3.0, heap.threshold(), 0.0);
+        assertFalse(heap.offer(5.0, 2));
+        assertTrue(heap.offer(2.0, 3));
+        assertEquals(2.0, heap.threshold(), 0.0);
+
+        heap.reset(4);
+        assertEquals(0, heap.size());
+        assertFalse(heap.isFull());
+
+        heap.reset(0);
+        assertFalse(heap.offer(1.0, 1));
+    }
+
+    @Test
+    public void testDistances() {
+        float[] query = {1, 2, 3};
+        float[] items = {0, 0, 0, 1, 2, 3, -1, -2, -3};
+        assertEquals(0.0, DistanceUtils.distance("euclidean", query, items, 3), 1e-6);
+        assertEquals(Math.sqrt(14), DistanceUtils.distance("euclidean", query, items, 0), 1e-6);
+        assertEquals(12.0, DistanceUtils.distance("manhattan", query, items, 6), 1e-6);
+        assertEquals(14.0, DistanceUtils.distance("dot", query, items, 3), 1e-6);
+        assertEquals(-1.0, DistanceUtils.distance("cosinesimilarity", query, items, 6), 1e-6);
+        assertEquals(2.0, DistanceUtils.distance("cosinedistance", query, items, 6), 1e-6);
+        assertEquals(1.0, DistanceUtils.distance("hamming", query, items, 0), 1e-6);
+    }
+}
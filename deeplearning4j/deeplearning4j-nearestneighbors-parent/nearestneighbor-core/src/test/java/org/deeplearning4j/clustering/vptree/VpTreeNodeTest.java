@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.PriorityQueue;
 import java.util.TreeSet;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -264,4 +265,35 @@ public class VpTreeNodeTest {
         assertEquals(trueResults.sumNumber().doubleValue(), sortedResults.sumNumber().doubleValue(), 1e-12);
     }
 
+    @Test
+    public void testBatchedSearch() {
+        Nd4j.getRandom().setSeed(12345);
+        INDArray points = Nd4j.rand(500, 8);
+        INDArray queries = Nd4j.rand(100, 8);
+        VPTree tree = new VPTree(points, "euclidean", false);
+
+        int k = 7;
+        INDArray[] batched = tree.search(queries, k, 3);
+        assertArrayEquals(new long[] {100, k}, batched[0].shape());
+        assertArrayEquals(new long[] {100, k}, batched[1].shape());
+
+        for (int q = 0; q < queries.rows(); q++) {
+            // brute force reference
+            INDArray query = queries.getRow(q);
+            PriorityQueue<DistIndex> pq = new PriorityQueue<>();
+            for (int i = 0; i < points.rows(); i++) {
+                DistIndex di = new DistIndex();
+                di.dist = points.getRow(i).distance2(query);
+                di.index = i;
+                pq.add(di);
+            }
+
+            for (int j = 0; j < k; j++) {
+                DistIndex expected = pq.poll();
+                assertEquals(expected.index, batched[0].getInt(q, j));
+                assertEquals(expected.dist, batched[1].getDouble(q, j), 1e-4);
+            }
+        }
+    }
+
 }
@@ -65,6 +65,9 @@ public class CBOW<T extends SequenceElement> implements ElementsLearningAlgorith
 
     protected ThreadLocal<List<Aggregate>> batches = new ThreadLocal<>();
 
+    protected boolean batchedTraining;
+    protected ThreadLocal<ElementsTrainingBatch<T>> trainingBatches = new ThreadLocal<>();
+
     public List<Aggregate> getBatch() {
         return batches.get();
     }
@@ -102,6 +105,21 @@ public class CBOW<T extends SequenceElement> implements ElementsLearningAlgorith
         this.expTable = new DeviceLocalNDArray(Nd4j.create(((InMemoryLookupTable<T>) lookupTable).getExpTable()));
         this.table = new DeviceLocalNDArray(((InMemoryLookupTable<T>) lookupTable).getTable());
         this.variableWindows = configuration.getVariableWindows();
+
+        this.batchedTraining = ElementsTrainingBatch.isEnabled((InMemoryLookupTable<T>) lookupTable);
+    }
+
+    /**
+     * Returns the training batch of the current thread, used instead of Aggregate ops when weights are in host memory
+     */
+    protected ElementsTrainingBatch<T> getTrainingBatch() {
+        ElementsTrainingBatch<T> batch = trainingBatches.get();
+        if (batch == null) {
+            batch = new ElementsTrainingBatch<>((InMemoryLookupTable<T>) lookupTable, vocabCache.numWords(),
+                            (int) negative, configuration.isUseHierarchicSoftmax());
+            trainingBatches.set(batch);
+        }
+        return batch;
     }
 
     /**
@@ -120,6 +138,10 @@ public class CBOW<T extends SequenceElement> implements ElementsLearningAlgorith
             Nd4j.getExecutioner().exec(batches.get());
             batches.get().clear();
         }
+
+        if (trainingBatches.get() != null) {
+            trainingBatches.get().exec();
+        }
     }
 
     @Override
@@ -201,6 +223,25 @@ public class CBOW<T extends SequenceElement> implements ElementsLearningAlgorith
 
         T currentWord = sentence.get(i);
 
+        if (batchedTraining) {
+            ElementsTrainingBatch<T> batch = getTrainingBatch();
+            for (int a = b; a < end; a++) {
+                if (a != currentWindow) {
+                    int c = i - currentWindow + a;
+                    if (c >= 0 && c < sentence.size()) {
+                        batch.addContext(sentence.get(c).getIndex());
+                    }
+                }
+            }
+            batch.addRound(currentWord, alpha, nextRandom.get());
+            nextRandom.set(Math.abs(nextRandom.get() * 25214903917L + 11));
+
+            if (batch.size() >= configuration.getBatchSize()) {
+                batch.exec();
+            }
+            return;
+        }
+
         List<Integer> intsList = new ArrayList<>();
         for (int a = b; a < end; a++) {
             if (a != currentWindow) {
@@ -0,0 +1,308 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.models.embeddings.learning.impl.elements;
+
+import lombok.NonNull;
+import org.deeplearning4j.config.DL4JSystemProperties;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.executioner.OpExecutioner;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Per-thread batch of SkipGram/CBOW training rounds, stored in primitive arrays and executed with a single call
+ * directly on the weights of the lookup table, without creating an Aggregate op per round.
+ *
+ * A round averages the syn0 rows of its context elements (a single one for SkipGram), runs hierarchic softmax
+ * and negative sampling against the target element, and adds the resulting error to the context rows,
+ * exactly like AggregateSkipGram and AggregateCBOW do. As in the original word2vec implementation, threads
+ * update the shared weights without any locking (Hogwild!).
+ *
+ * PLEASE NOTE: weights are accessed through host memory, so this is only available for float weights on CPU backends,
+ * see {@link #isSupported(InMemoryLookupTable)}. Inference still goes through Aggregate ops.
+ *
+ * PLEASE NOTE: batches are disabled by default, and have to be enabled via
+ * {@link DL4JSystemProperties#NLP_BATCHED_TRAINING_PROPERTY} system property.
+ */
+public class ElementsTrainingBatch<T extends SequenceElement> {
+    protected static final float MAX_EXP = 6.0f;
+
+    protected final InMemoryLookupTable<T> lookupTable;
+    protected final int vectorLength;
+    protected final int vocabSize;
+    protected final int negative;
+    protected final boolean useHS;
+    protected final float[] expTable;
+
+    // rounds, with their contexts and hierarchic softmax points stored in flat arrays
+    protected int size;
+    protected int[] contextStarts = new int[64];
+    protected int[] pointStarts = new int[64];
+    protected int[] targets = new int[64];
+    protected float[] alphas = new float[64];
+    protected long[] randoms = new long[64];
+    protected int numContexts;
+    protected int[] contexts = new int[256];
+    protected int numPoints;
+    protected int[] points = new int[256];
+    protected int[] codes = new int[256];
+
+    protected final float[] neu1;
+    protected final float[] neu1e;
+
+    public ElementsTrainingBatch(@NonNull InMemoryLookupTable<T> lookupTable, int vocabSize, int negative,
+                    boolean useHS) {
+        this.lookupTable = lookupTable;
+        this.vectorLength = lookupTable.layerSize();
+        this.vocabSize = vocabSize;
+        this.negative = negative;
+        this.useHS = useHS;
+
+        double[] exp = lookupTable.getExpTable();
+        this.expTable = new float[exp.length];
+        for (int i = 0; i < exp.length; i++) {
+            expTable[i] = (float) exp[i];
+        }
+        this.neu1 = new float[vectorLength];
+        this.neu1e = new float[vectorLength];
+    }
+
+    /**
+     * Returns true if batches are enabled via {@link DL4JSystemProperties#NLP_BATCHED_TRAINING_PROPERTY},
+     * and can be used with the given lookup table
+     */
+    public static boolean isEnabled(InMemoryLookupTable<?> lookupTable) {
+        return Boolean.parseBoolean(System.getProperty(DL4JSystemProperties.NLP_BATCHED_TRAINING_PROPERTY, "false"))
+                        && isSupported(lookupTable);
+    }
+
+    /**
+     * Returns true if batches can be used with the given lookup table: weights need to be float arrays in host memory.
+     */
+    public static boolean isSupported(InMemoryLookupTable<?> lookupTable) {
+        if (Nd4j.getExecutioner().type() != OpExecutioner.ExecutionerType.NATIVE_CPU)
+            return false;
+
+        INDArray[] arrays = {lookupTable.getSyn0(), lookupTable.getSyn1(), lookupTable.getSyn1Neg(), lookupTable.getTable()};
+        for (INDArray array : arrays) {
+            if (array != null && (array.data().dataType() != DataBuffer.Type.FLOAT || array.isView()
+                            || array.ordering() != 'c' || array.length() > Integer.MAX_VALUE))
+                return false;
+        }
+        return lookupTable.getSyn0() != null;
+    }
+
+    /**
+     * Adds a SkipGram round, training the context element against the target element.
+     */
+    public void addSkipGram(T target, int context, double alpha, long nextRandom) {
+        addContext(context);
+        addRound(target, alpha, nextRandom);
+    }
+
+    /**
+     * Adds an element to the context of the next round, see {@link #addRound(SequenceElement, double, long)}
+     */
+    public void addContext(int index) {
+        ensureContexts(1);
+        contexts[numContexts++] = index;
+    }
+
+    /**
+     * Adds a round training the average of the context elements added since the previous round (CBOW, or SkipGram
+     * with a single context element) against the target element. Rounds without context are ignored.
+     */
+    public void addRound(T target, double alpha, long nextRandom) {
+        if (numContexts == contextStarts[size])
+            return;
+
+        if (size + 1 >= targets.length) {
+            int length = targets.length * 2;
+            contextStarts = Arrays.copyOf(contextStarts, length);
+            pointStarts = Arrays.copyOf(pointStarts, length);
+            targets = Arrays.copyOf(targets, length);
+            alphas = Arrays.copyOf(alphas, length);
+            randoms = Arrays.copyOf(randoms, length);
+        }
+
+        if (useHS) {
+            int codeLength = target.getCodeLength();
+            if (numPoints + codeLength > points.length) {
+                int length = Math.max(points.length * 2, numPoints + codeLength);
+                points = Arrays.copyOf(points, length);
+                codes = Arrays.copyOf(codes, length);
+            }
+            for (int i = 0; i < codeLength; i++) {
+                int point = target.getPoints().get(i);
+                if (point < 0 || point >= vocabSize)
+                    continue;
+                points[numPoints] = point;
+                codes[numPoints++] = target.getCodes().get(i);
+            }
+        }
+
+        targets[size] = target.getIndex();
+        alphas[size] = (float) alpha;
+        randoms[size] = nextRandom;
+        size++;
+        contextStarts[size] = numContexts;
+        pointStarts[size] = numPoints;
+    }
+
+    protected void ensureContexts(int count) {
+        if (numContexts + count > contexts.length)
+            contexts = Arrays.copyOf(contexts, Math.max(contexts.length * 2, numContexts + count));
+    }
+
+    /**
+     * Returns the number of rounds in this batch
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Executes all the rounds of this batch in order, and clears it.
+     */
+    public void exec() {
+        if (size == 0)
+            return;
+
+        FloatBuffer syn0 = buffer(lookupTable.getSyn0());
+        FloatBuffer syn1 = useHS ? buffer(lookupTable.getSyn1()) : null;
+        FloatBuffer syn1Neg = negative > 0 ? buffer(lookupTable.getSyn1Neg()) : null;
+        FloatBuffer table = negative > 0 ? buffer(lookupTable.getTable()) : null;
+        int expLength = expTable.length;
+
+        for (int r = 0; r < size; r++) {
+            int from = contextStarts[r], to = contextStarts[r + 1];
+            float alpha = alphas[r];
+
+            // average of the context rows
+            Arrays.fill(neu1, 0.0f);
+            Arrays.fill(neu1e, 0.0f);
+            for (int c = from; c < to; c++) {
+                int row = contexts[c] * vectorLength;
+                for (int x = 0; x < vectorLength; x++) {
+                    neu1[x] += syn0.get(row + x);
+                }
+            }
+            if (to - from > 1) {
+                float scale = 1.0f / (to - from);
+                for (int x = 0; x < vectorLength; x++) {
+                    neu1[x] *= scale;
+                }
+            }
+
+            // hierarchic softmax
+            for (int p = pointStarts[r]; p < pointStarts[r + 1]; p++) {
+                int row = points[p] * vectorLength;
+                float dot = dot(syn1, row);
+                if (dot < -MAX_EXP || dot >= MAX_EXP)
+                    continue;
+
+                int idx = (int) ((dot + MAX_EXP) * (expLength / MAX_EXP / 2.0f));
+                if (idx >= expLength || idx < 0)
+                    continue;
+
+                float g = (1.0f - codes[p] - expTable[idx]) * alpha;
+                update(syn1, row, g);
+            }
+
+            // negative sampling
+            if (negative > 0) {
+                int starter = targets[r];
+                int tableLength = table.capacity();
+                long nextRandom = randoms[r];
+                for (int n = 0; n < negative + 1; n++) {
+                    int target = starter;
+                    int label = 1;
+                    if (n > 0) {
+                        nextRandom = nextRandom * 25214903917L + 11;
+                        target = (int) table.get((int) Long.remainderUnsigned(nextRandom >>> 16, tableLength));
+                        if (target <= 0 || target >= vocabSize)
+                            target = (int) Long.remainderUnsigned(nextRandom, vocabSize - 1) + 1;
+                        if (target == starter)
+                            continue;
+                        label = 0;
+                    }
+
+                    int row = target * vectorLength;
+                    float dot = dot(syn1Neg, row);
+                    float g;
+                    if (dot > MAX_EXP) {
+                        g = (label - 1) * alpha;
+                    } else if (dot < -MAX_EXP) {
+                        g = label * alpha;
+                    } else {
+                        int idx = (int) ((dot + MAX_EXP) * (expLength / MAX_EXP / 2.0f));
+                        if (idx >= expLength || idx < 0)
+                            continue;
+                        g = (label - expTable[idx]) * alpha;
+                    }
+                    update(syn1Neg, row, g);
+                }
+            }
+
+            // propagate the error back to the context rows
+            for (int c = from; c < to; c++) {
+                int row = contexts[c] * vectorLength;
+                for (int x = 0; x < vectorLength; x++) {
+                    syn0.put(row + x, syn0.get(row + x) + neu1e[x]);
+                }
+            }
+        }
+
+        clear();
+    }
+
+    public void clear() {
+        size = 0;
+        numContexts = 0;
+        numPoints = 0;
+    }
+
+    protected float dot(FloatBuffer weights, int row) {
+        float dot = 0.0f;
+        for (int x = 0; x < vectorLength; x++) {
+            dot += neu1[x] * weights.get(row + x);
+        }
+        return dot;
+    }
+
+    /** Accumulates the error for syn0, and updates the given row of syn1 or syn1Neg */
+    protected void update(FloatBuffer weights, int row, float g) {
+        for (int x = 0; x < vectorLength; x++) {
+            float w = weights.get(row + x);
+            neu1e[x] += g * w;
+            weights.put(row + x, w + g * neu1[x]);
+        }
+    }
+
+    protected static FloatBuffer buffer(INDArray array) {
+        return array.data().asNioFloat().slice();
+    }
+}
@@ -62,6 +62,9 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
 
     protected ThreadLocal<List<Aggregate>> batches = new ThreadLocal<>();
 
+    protected boolean batchedTraining;
+    protected ThreadLocal<ElementsTrainingBatch<T>> trainingBatches = new ThreadLocal<>();
+
     /**
      * Dummy construction is required for reflection
      */
@@ -121,6 +124,21 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
         this.variableWindows = configuration.getVariableWindows();
 
         this.vectorLength = configuration.getLayersSize();
+
+        this.batchedTraining = ElementsTrainingBatch.isEnabled((InMemoryLookupTable<T>) lookupTable);
+    }
+
+    /**
+     * Returns the training batch of the current thread, used instead of Aggregate ops when weights are in host memory
+     */
+    protected ElementsTrainingBatch<T> getTrainingBatch() {
+        ElementsTrainingBatch<T> batch = trainingBatches.get();
+        if (batch == null) {
+            batch = new ElementsTrainingBatch<>((InMemoryLookupTable<T>) lookupTable, vocabCache.numWords(),
+                            (int) negative, configuration.isUseHierarchicSoftmax());
+            trainingBatches.set(batch);
+        }
+        return batch;
     }
 
     /**
@@ -193,6 +211,10 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
             batches.get().clear();
         }
 
+        if (trainingBatches.get() != null && trainingBatches.get().size() >= configuration.getBatchSize()) {
+            trainingBatches.get().exec();
+        }
+
         return score;
     }
 
@@ -202,6 +224,10 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
             Nd4j.getExecutioner().exec(batches.get());
             batches.get().clear();
         }
+
+        if (trainingBatches.get() != null) {
+            trainingBatches.get().exec();
+        }
     }
 
     /**
@@ -228,7 +254,11 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
                 int c = i - currentWindow + a;
                 if (c >= 0 && c < sentence.size()) {
                     T lastWord = sentence.get(c);
-                    score = iterateSample(word, lastWord, nextRandom, alpha, false, null);
+                    if (batchedTraining) {
+                        addSample(word, lastWord, nextRandom, alpha);
+                    } else {
+                        score = iterateSample(word, lastWord, nextRandom, alpha, false, null);
+                    }
 
                 }
             }
@@ -237,12 +267,34 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
         return score;
     }
 
-    public double iterateSample(T w1, T lastWord, AtomicLong nextRandom, double alpha, boolean isInference,
-                    INDArray inferenceVector) {
-        if (w1 == null || lastWord == null || (lastWord.getIndex() < 0 && !isInference)
+    protected boolean isSkipped(T w1, T lastWord, boolean isInference) {
+        return w1 == null || lastWord == null || (lastWord.getIndex() < 0 && !isInference)
                         || w1.getIndex() == lastWord.getIndex() || w1.getLabel().equals("STOP")
                         || lastWord.getLabel().equals("STOP") || w1.getLabel().equals("UNK")
-                        || lastWord.getLabel().equals("UNK")) {
+                        || lastWord.getLabel().equals("UNK");
+    }
+
+    /**
+     * Same as {@link #iterateSample(SequenceElement, SequenceElement, AtomicLong, double, boolean, INDArray)} for training,
+     * but adds the round to the training batch of the current thread instead of creating an Aggregate op
+     */
+    protected void addSample(T w1, T lastWord, AtomicLong nextRandom, double alpha) {
+        if (isSkipped(w1, lastWord, false)) {
+            return;
+        }
+
+        ElementsTrainingBatch<T> batch = getTrainingBatch();
+        batch.addSkipGram(w1, lastWord.getIndex(), alpha, nextRandom.get());
+        nextRandom.set(Math.abs(nextRandom.get() * 25214903917L + 11));
+
+        if (batch.size() >= configuration.getBatchSize()) {
+            batch.exec();
+        }
+    }
+
+    public double iterateSample(T w1, T lastWord, AtomicLong nextRandom, double alpha, boolean isInference,
+                    INDArray inferenceVector) {
+        if (isSkipped(w1, lastWord, isInference)) {
             return 0.0;
         }
 
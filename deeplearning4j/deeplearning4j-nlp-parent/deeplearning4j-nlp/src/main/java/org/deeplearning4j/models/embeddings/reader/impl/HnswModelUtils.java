@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.models.embeddings.reader.impl;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.clustering.hnsw.HnswIndex;
+import org.deeplearning4j.models.embeddings.WeightLookupTable;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * This is HNSW-based implementation for wordsNearest methods: approximate nearest neighbours search over
+ * navigable small world graph, suited for large vocabularies and many consequent calls.
+ *
+ * Index is built upon first call to wordsNearest, or explicitly via {@link #buildIndex()}. It's built incrementally,
+ * so words added to the vocabulary after that are indexed on the next {@link #buildIndex()} call.
+ * Index can be saved alongside the model with {@link #saveIndex(File)}, and restored with {@link #loadIndex(File)}.
+ *
+ * PLEASE NOTE: Results are approximate, recall is controlled by efSearch parameter.
+ * PLEASE NOTE: Index keeps its own normalized copy of lookup table, so memory use is roughly doubled.
+ * This reader does NOT normalize underlying weights, they stay intact.
+ */
+@Slf4j
+public class HnswModelUtils<T extends SequenceElement> extends BasicModelUtils<T> {
+    protected volatile HnswIndex index;
+    protected int m;
+    protected int efConstruction;
+    protected volatile int efSearch;
+
+    public HnswModelUtils() {
+        this(16, 200, 64);
+    }
+
+    /**
+     * @param m max number of links per element on upper layers of the graph, layer 0 uses 2 * m
+     * @param efConstruction size of dynamic candidate list during index construction
+     * @param efSearch size of dynamic candidate list during search
+     */
+    public HnswModelUtils(int m, int efConstruction, int efSearch) {
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+    }
+
+    @Override
+    public void init(@NonNull WeightLookupTable<T> lookupTable) {
+        super.init(lookupTable);
+        index = null;
+    }
+
+    /**
+     * This method sets size of dynamic candidate list used for queries. Higher values mean better recall and slower queries.
+     *
+     * @param efSearch
+     */
+    public void setEfSearch(int efSearch) {
+        this.efSearch = efSearch;
+        HnswIndex idx = index;
+        if (idx != null)
+            idx.setEfSearch(efSearch);
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    /**
+     * This method builds index if it wasn't built yet, and adds all words that weren't indexed yet
+     *
+     * @return
+     */
+    public synchronized HnswIndex buildIndex() {
+        if (index == null)
+            index = new HnswIndex.Builder(lookupTable.layerSize()).m(m).efConstruction(efConstruction)
+                            .efSearch(efSearch).build();
+
+        int numWords = vocabCache.numWords();
+        int start = index.size();
+        if (start < numWords) {
+            INDArray syn0 = lookupTable instanceof InMemoryLookupTable ? ((InMemoryLookupTable) lookupTable).getSyn0()
+                            : null;
+
+            for (int i = start; i < numWords; i++) {
+                INDArray vector = syn0 != null ? syn0.getRow(i) : lookupTable.vector(vocabCache.wordAtIndex(i));
+                index.add(vector);
+
+                if (i > start && (i - start) % 100000 == 0)
+                    log.info("HNSW index: {} words added...", i - start);
+            }
+            log.info("HNSW index: {} words indexed", numWords);
+        }
+
+        return index;
+    }
+
+    /**
+     * This method saves index to the given file
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void saveIndex(@NonNull File file) throws IOException {
+        buildIndex().write(file);
+    }
+
+    /**
+     * This method restores index previously saved with {@link #saveIndex(File)} for the same model.
+     * Words added to the vocabulary after index was saved will be indexed on the next query.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public synchronized void loadIndex(@NonNull File file) throws IOException {
+        HnswIndex restored = HnswIndex.read(file);
+        if (restored.getDimension() != lookupTable.layerSize())
+            throw new IllegalStateException("Index dimension [" + restored.getDimension()
+                            + "] doesn't match model layer size [" + lookupTable.layerSize() + "]");
+
+        if (restored.size() > vocabCache.numWords())
+            throw new IllegalStateException("Index contains [" + restored.size() + "] elements, but vocabulary has only ["
+                            + vocabCache.numWords() + "] words");
+
+        restored.setEfSearch(efSearch);
+        index = restored;
+    }
+
+    protected HnswIndex checkIndex() {
+        HnswIndex idx = index;
+        if (idx == null || idx.size() < vocabCache.numWords())
+            idx = buildIndex();
+
+        return idx;
+    }
+
+    /**
+     * This method returns approximate nearest words for given vector, based on HNSW index
+     *
+     * @param words
+     * @param top
+     * @return the words nearest the mean of the words
+     */
+    @Override
+    public Collection<String> wordsNearest(INDArray words, int top) {
+        HnswIndex idx = checkIndex();
+
+        // few extra elements, to address UNK/STOP removal
+        int[] ids = idx.search(words.toFloatVector(), top + 2, efSearch);
+
+        List<String> result = new ArrayList<>(top);
+        for (int id : ids) {
+            String word = vocabCache.wordAtIndex(id);
+            if (word != null && !word.equals("UNK") && !word.equals("STOP")) {
+                result.add(word);
+                if (result.size() >= top)
+                    break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * This method returns approximate nearest words for given vector, based on HNSW index.
+     *
+     * PLEASE NOTE: This is cosine-similarity approximation. BasicModelUtils weights every dimension by inverse norm
+     * of the corresponding syn0 column, and that ranking isn't reproduced here. Use BasicModelUtils if exact ranking is required.
+     *
+     * @param words
+     * @param top
+     * @return
+     */
+    @Override
+    public Collection<String> wordsNearestSum(INDArray words, int top) {
+        return wordsNearest(words, top);
+    }
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.models.word2vec.wordstore;
+
+import lombok.NonNull;
+
+/**
+ * Count-Min sketch over String labels, used by VocabConstructor to count elements without keeping
+ * a full SequenceElement for every distinct token seen in the corpus.
+ *
+ * Estimates never undercount: estimate(label) is always &gt;= the real number of add() calls for that label.
+ * Conservative update is used, so only counters that define the current estimate are increased.
+ *
+ * PLEASE NOTE: This class isn't thread-safe, each thread is expected to use its own sketch.
+ */
+public class CountMinSketch {
+    private final int depth;
+    private final int mask;
+    private final long[] counts;
+    private final int[] positions;
+    private long totalCount;
+
+    /**
+     * @param depth number of hash rows
+     * @param width number of counters per row, rounded up to the nearest power of 2
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1)
+            throw new IllegalArgumentException("Depth and width should be positive values: [" + depth + ", " + width + "]");
+
+        int w = Integer.highestOneBit(width);
+        if (w < width)
+            w <<= 1;
+
+        this.depth = depth;
+        this.mask = w - 1;
+        this.counts = new long[depth * w];
+        this.positions = new int[depth];
+    }
+
+    /**
+     * This method adds specified count for the given label, and returns updated estimate for it
+     *
+     * @param label
+     * @param count
+     * @return
+     */
+    public long add(@NonNull String label, long count) {
+        long estimate = Long.MAX_VALUE;
+        hash(label);
+        for (int i = 0; i < depth; i++)
+            estimate = Math.min(estimate, counts[positions[i]]);
+
+        long updated = estimate + count;
+        for (int i = 0; i < depth; i++) {
+            if (counts[positions[i]] < updated)
+                counts[positions[i]] = updated;
+        }
+
+        totalCount += count;
+        return updated;
+    }
+
+    /**
+     * This method returns estimated number of occurrences for the given label
+     *
+     * @param label
+     * @return
+     */
+    public long estimate(@NonNull String label) {
+        long estimate = Long.MAX_VALUE;
+        hash(label);
+        for (int i = 0; i < depth; i++)
+            estimate = Math.min(estimate, counts[positions[i]]);
+
+        return estimate;
+    }
+
+    /**
+     * This method returns total number of occurrences added to this sketch
+     *
+     * @return
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    private void hash(String label) {
+        // 64-bit FNV-1a, split into two halves for double hashing
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < label.length(); i++) {
+            h ^= label.charAt(i);
+            h *= 0x100000001b3L;
+        }
+
+        // final avalanche, so close labels don't end up in neighbouring counters
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        int width = mask + 1;
+        for (int i = 0; i < depth; i++)
+            positions[i] = i * width + ((h1 + i * h2) & mask);
+    }
+}
@@ -35,6 +35,7 @@ import org.threadly.concurrent.PriorityScheduler;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  *
@@ -58,6 +59,11 @@ public class VocabConstructor<T extends SequenceElement> {
     private boolean enableScavenger = false;
     private T unk;
     private boolean allowParallelBuilder = true;
+    private int streamingCapacity = 0;
+    private int sketchWidth = DEFAULT_SKETCH_WIDTH;
+
+    protected static final int DEFAULT_SKETCH_WIDTH = 1 << 20;
+    protected static final int SKETCH_DEPTH = 4;
 
     protected static final Logger log = LoggerFactory.getLogger(VocabConstructor.class);
 
@@ -242,84 +248,90 @@ public class VocabConstructor<T extends SequenceElement> {
             List<Long> timesNext = new ArrayList<>();
             int sequences = 0;
             long time3 = 0;
-            while (iterator.hasMoreSequences()) {
-                Sequence<T> document = iterator.nextSequence();
+            if (streamingCapacity > 0) {
+                // streaming counter consumes the whole source with its own shards
+                countStreaming(iterator, source.getMinWordFrequency(), tempHolder, executorService, numThreads,
+                                parsedCount);
+            } else {
+                while (iterator.hasMoreSequences()) {
+                    Sequence<T> document = iterator.nextSequence();
 
-                seqCount.incrementAndGet();
-                parsedCount.addAndGet(document.size());
-                tempHolder.incrementTotalDocCount();
-                execCounter.incrementAndGet();
-                VocabRunnable runnable = new VocabRunnable(tempHolder, document, finCounter, loopCounter);
-
-                executorService.execute(runnable);
-
-                // if we're not in parallel mode - wait till this runnable finishes
-                if (!allowParallelBuilder) {
-                    try {
-                        runnable.awaitDone();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new RuntimeException(e);
+                    seqCount.incrementAndGet();
+                    parsedCount.addAndGet(document.size());
+                    tempHolder.incrementTotalDocCount();
+                    execCounter.incrementAndGet();
+                    VocabRunnable runnable = new VocabRunnable(tempHolder, document, finCounter, loopCounter);
+
+                    executorService.execute(runnable);
+
+                    // if we're not in parallel mode - wait till this runnable finishes
+                    if (!allowParallelBuilder) {
+                        try {
+                            runnable.awaitDone();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RuntimeException(e);
+                        }
                     }
-                }
-
-                // as we see in profiler, this lock isn't really happen too often
-                // we don't want too much left in tail
 
-                while (execCounter.get() - finCounter.get() > numProc) {
-                    ThreadUtils.uncheckedSleep(1);
-                }
+                    // as we see in profiler, this lock isn't really happen too often
+                    // we don't want too much left in tail
 
+                    while (execCounter.get() - finCounter.get() > numProc) {
+                        ThreadUtils.uncheckedSleep(1);
+                    }
 
 
-                sequences++;
-                if (seqCount.get() % 100000 == 0) {
-                    long currentTime = System.currentTimeMillis();
-                    long currentSequences = seqCount.get();
-                    long currentElements = parsedCount.get();
 
-                    double seconds = (currentTime - lastTime) / (double) 1000;
+                    sequences++;
+                    if (seqCount.get() % 100000 == 0) {
+                        long currentTime = System.currentTimeMillis();
+                        long currentSequences = seqCount.get();
+                        long currentElements = parsedCount.get();
 
-                    //                    Collections.sort(timesHasNext);
-                    //                    Collections.sort(timesNext);
+                        double seconds = (currentTime - lastTime) / (double) 1000;
 
-                    double seqPerSec = (currentSequences - lastSequences) / seconds;
-                    double elPerSec = (currentElements - lastElements) / seconds;
-                    //                    log.info("Document time: {} us; hasNext time: {} us", timesNext.get(timesNext.size() / 2), timesHasNext.get(timesHasNext.size() / 2));
-                    log.info("Sequences checked: [{}]; Current vocabulary size: [{}]; Sequences/sec: {}; Words/sec: {};",
-                                    seqCount.get(), tempHolder.numWords(), String.format("%.2f", seqPerSec),
-                                    String.format("%.2f", elPerSec));
-                    lastTime = currentTime;
-                    lastElements = currentElements;
-                    lastSequences = currentSequences;
+                        //                    Collections.sort(timesHasNext);
+                        //                    Collections.sort(timesNext);
 
-                    //                    timesHasNext.clear();
-                    //                    timesNext.clear();
-                }
+                        double seqPerSec = (currentSequences - lastSequences) / seconds;
+                        double elPerSec = (currentElements - lastElements) / seconds;
+                        //                    log.info("Document time: {} us; hasNext time: {} us", timesNext.get(timesNext.size() / 2), timesHasNext.get(timesHasNext.size() / 2));
+                        log.info("Sequences checked: [{}]; Current vocabulary size: [{}]; Sequences/sec: {}; Words/sec: {};",
+                                        seqCount.get(), tempHolder.numWords(), String.format("%.2f", seqPerSec),
+                                        String.format("%.2f", elPerSec));
+                        lastTime = currentTime;
+                        lastElements = currentElements;
+                        lastSequences = currentSequences;
 
-                /**
-                 * Firing scavenger loop
-                 */
-                if (enableScavenger && loopCounter.get() >= 2000000 && tempHolder.numWords() > 10000000) {
-                    log.info("Starting scavenger...");
-                    while (execCounter.get() != finCounter.get()) {
-                        ThreadUtils.uncheckedSleep(1);
+                        //                    timesHasNext.clear();
+                        //                    timesNext.clear();
                     }
 
-                    filterVocab(tempHolder, Math.max(1, source.getMinWordFrequency() / 2));
-                    loopCounter.set(0);
-                }
+                    /**
+                     * Firing scavenger loop
+                     */
+                    if (enableScavenger && loopCounter.get() >= 2000000 && tempHolder.numWords() > 10000000) {
+                        log.info("Starting scavenger...");
+                        while (execCounter.get() != finCounter.get()) {
+                            ThreadUtils.uncheckedSleep(1);
+                        }
 
-                //                timesNext.add((time2 - time1) / 1000L);
-                //                timesHasNext.add((time1 - time3) / 1000L);
+                        filterVocab(tempHolder, Math.max(1, source.getMinWordFrequency() / 2));
+                        loopCounter.set(0);
+                    }
 
-                //                time3 = System.nanoTime();
-            }
+                    //                timesNext.add((time2 - time1) / 1000L);
+                    //                timesHasNext.add((time1 - time3) / 1000L);
+
+                    //                time3 = System.nanoTime();
+                }
 
-            // block untill all threads are finished
-            log.debug("Waiting till all processes stop...");
-            while (execCounter.get() != finCounter.get()) {
-                ThreadUtils.uncheckedSleep(1);
+                // block untill all threads are finished
+                log.debug("Waiting till all processes stop...");
+                while (execCounter.get() != finCounter.get()) {
+                    ThreadUtils.uncheckedSleep(1);
+                }
             }
 
 
@@ -394,6 +406,98 @@ public class VocabConstructor<T extends SequenceElement> {
         return cache;
     }
 
+    /**
+     * This method counts elements of the given source using per-thread shards, without shared map of all elements.
+     * Each shard keeps Count-Min sketch of everything it has seen, plus bounded table of frequent elements.
+     * Once source is exhausted, shards are merged into targetVocab.
+     */
+    protected void countStreaming(SequenceIterator<T> iterator, int minWordFrequency, AbstractCache<T> targetVocab,
+                    PriorityScheduler executorService, int numThreads, AtomicLong parsedCount) {
+        int numShards = allowParallelBuilder ? numThreads : 1;
+
+        // element with total count >= minWordFrequency has at least this count within one of shards
+        long admission = Math.max(1, (minWordFrequency + numShards - 1) / numShards);
+
+        BlockingQueue<Sequence<T>> queue = new ArrayBlockingQueue<>(numShards * 128);
+        Sequence<T> poison = new Sequence<>();
+        CountDownLatch latch = new CountDownLatch(numShards);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        List<VocabShard> shards = new ArrayList<>();
+        for (int i = 0; i < numShards; i++) {
+            VocabShard shard = new VocabShard(queue, poison, admission, latch, failure);
+            shards.add(shard);
+            executorService.execute(shard);
+        }
+
+        try {
+            while (iterator.hasMoreSequences() && failure.get() == null) {
+                Sequence<T> document = iterator.nextSequence();
+
+                seqCount.incrementAndGet();
+                parsedCount.addAndGet(document.size());
+                targetVocab.incrementTotalDocCount();
+
+                while (!queue.offer(document, 10, TimeUnit.MILLISECONDS) && failure.get() == null);
+
+                if (seqCount.get() % 100000 == 0)
+                    log.info("Sequences checked: [{}]; Elements parsed: [{}];", seqCount.get(), parsedCount.get());
+            }
+
+            for (int i = 0; i < numShards; i++) {
+                while (!queue.offer(poison, 10, TimeUnit.MILLISECONDS) && failure.get() == null);
+            }
+
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        if (failure.get() != null)
+            throw new RuntimeException(failure.get());
+
+        // merging shards: exact counters from shards tracking given element, sketch estimates from shards that
+        // might have seen it. PLEASE NOTE: shards whose estimate is below their admission threshold are assumed to
+        // have never seen given element, so merged frequency may be undercounted by up to (admission - 1) per shard
+        Map<String, T> merged = new HashMap<>();
+        for (VocabShard shard : shards) {
+            for (T element : shard.elements.values()) {
+                String label = element.getLabel();
+                if (merged.containsKey(label))
+                    continue;
+
+                if (!element.isLabel()) {
+                    long frequency = 0;
+                    long sequences = 0;
+                    for (VocabShard other : shards) {
+                        T tracked = other.elements.get(label);
+                        if (tracked != null) {
+                            frequency += (long) tracked.getElementFrequency();
+                            sequences += tracked.getSequencesCount();
+                        } else {
+                            // below admission threshold, this shard has seen the element only a few times or not
+                            // at all (and the estimate comes from colliding elements), so it isn't counted
+                            long estimate = other.sketch.estimate(label);
+                            if (estimate >= other.admission)
+                                frequency += estimate;
+                        }
+                    }
+
+                    element.setElementFrequency(frequency);
+                    element.setSequencesCount(sequences);
+                }
+
+                merged.put(label, element);
+            }
+        }
+
+        for (T element : merged.values())
+            targetVocab.addToken(element);
+
+        log.debug("Streaming counter: shards: [{}], elements merged: [{}]", numShards, merged.size());
+    }
+
     protected void filterVocab(AbstractCache<T> cache, int minWordFrequency) {
         int numWords = cache.numWords();
         LinkedBlockingQueue<String> labelsToRemove = new LinkedBlockingQueue<>();
@@ -420,6 +524,8 @@ public class VocabConstructor<T extends SequenceElement> {
         private boolean enableScavenger = false;
         private T unk;
         private boolean allowParallelBuilder = true;
+        private int streamingCapacity = 0;
+        private int sketchWidth = DEFAULT_SKETCH_WIDTH;
 
         public Builder() {
 
@@ -527,6 +633,39 @@ public class VocabConstructor<T extends SequenceElement> {
             return this;
         }
 
+        /**
+         * This method enables streaming counting: instead of single shared map holding every distinct element,
+         * each thread counts elements with its own Count-Min sketch, and keeps full elements only for the most
+         * frequent ones. Per-thread shards are merged once source is exhausted.
+         *
+         * PLEASE NOTE: Elements evicted from shard and admitted later get their counters from sketch,
+         * so their frequencies might be slightly overestimated, and sequence counters slightly underestimated.
+         * Rare elements that don't fit into shards are dropped, even if they pass minElementFrequency.
+         *
+         * @param maxElementsPerShard max number of elements kept by each thread
+         * @return
+         */
+        public Builder<T> useStreamingCounter(int maxElementsPerShard) {
+            return useStreamingCounter(maxElementsPerShard, DEFAULT_SKETCH_WIDTH);
+        }
+
+        /**
+         * This method enables streaming counting, with explicit sketch width. Wider sketch gives more precise counters,
+         * at cost of SKETCH_DEPTH * sketchWidth longs per thread.
+         *
+         * @param maxElementsPerShard max number of elements kept by each thread
+         * @param sketchWidth number of counters per sketch row
+         * @return
+         */
+        public Builder<T> useStreamingCounter(int maxElementsPerShard, int sketchWidth) {
+            if (maxElementsPerShard < 1 || sketchWidth < 1)
+                throw new IllegalArgumentException("maxElementsPerShard and sketchWidth should be positive values");
+
+            this.streamingCapacity = maxElementsPerShard;
+            this.sketchWidth = sketchWidth;
+            return this;
+        }
+
         public VocabConstructor<T> build() {
             VocabConstructor<T> constructor = new VocabConstructor<>();
             constructor.sources = this.sources;
@@ -539,6 +678,8 @@ public class VocabConstructor<T extends SequenceElement> {
             constructor.enableScavenger = this.enableScavenger;
             constructor.unk = this.unk;
             constructor.allowParallelBuilder = this.allowParallelBuilder;
+            constructor.streamingCapacity = this.streamingCapacity;
+            constructor.sketchWidth = this.sketchWidth;
 
             return constructor;
         }
@@ -640,4 +781,135 @@ public class VocabConstructor<T extends SequenceElement> {
             }
         }
     }
+
+    protected class VocabShard implements Runnable {
+        private final BlockingQueue<Sequence<T>> queue;
+        private final Sequence<T> poison;
+        private final CountDownLatch latch;
+        private final AtomicReference<Throwable> failure;
+        private final CountMinSketch sketch = new CountMinSketch(SKETCH_DEPTH, sketchWidth);
+        private final Map<String, T> elements = new HashMap<>();
+        private long admission;
+
+        public VocabShard(@NonNull BlockingQueue<Sequence<T>> queue, @NonNull Sequence<T> poison, long admission,
+                        @NonNull CountDownLatch latch, @NonNull AtomicReference<Throwable> failure) {
+            this.queue = queue;
+            this.poison = poison;
+            this.admission = admission;
+            this.latch = latch;
+            this.failure = failure;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Sequence<T> document = queue.poll(10, TimeUnit.MILLISECONDS);
+                    if (document == null) {
+                        if (failure.get() != null)
+                            return;
+
+                        continue;
+                    }
+
+                    if (document == poison)
+                        return;
+
+                    process(document);
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                latch.countDown();
+            }
+        }
+
+        protected void process(Sequence<T> document) {
+            if (fetchLabels && document.getSequenceLabels() != null) {
+                for (T labelWord : document.getSequenceLabels()) {
+                    if (!elements.containsKey(labelWord.getLabel())) {
+                        labelWord.setSpecial(true);
+                        labelWord.markAsLabel(true);
+                        labelWord.setElementFrequency(1);
+
+                        elements.put(labelWord.getLabel(), labelWord);
+                    }
+                }
+            }
+
+            Set<String> seen = new HashSet<>();
+            for (String token : document.asLabels()) {
+                if (stopWords != null && stopWords.contains(token))
+                    continue;
+                if (token == null || token.isEmpty())
+                    continue;
+
+                long estimate = sketch.add(token, 1);
+
+                T element = elements.get(token);
+                if (element != null) {
+                    element.incrementElementFrequency();
+
+                    // sequences counter is updated only once per sequence
+                    if (seen.add(token))
+                        element.incrementSequencesCount();
+                } else if (estimate >= admission) {
+                    element = document.getElementByLabel(token);
+                    element.setElementFrequency(estimate);
+                    element.setSequencesCount(1);
+                    elements.put(token, element);
+                    seen.add(token);
+                }
+            }
+
+            if (index != null) {
+                if (document.getSequenceLabel() != null) {
+                    index.addWordsToDoc(index.numDocuments(), document.getElements(), document.getSequenceLabel());
+                } else {
+                    index.addWordsToDoc(index.numDocuments(), document.getElements());
+                }
+            }
+
+            if (elements.size() > streamingCapacity)
+                prune();
+        }
+
+        /**
+         * This method evicts least frequent elements. Sketch still holds their counters,
+         * so they'll be admitted back with estimated frequency once they reach new admission threshold.
+         */
+        protected void prune() {
+            long[] frequencies = new long[elements.size()];
+            int cnt = 0;
+            for (T element : elements.values()) {
+                if (!element.isSpecial() && !element.isLabel())
+                    frequencies[cnt++] = (long) element.getElementFrequency();
+            }
+
+            int toRemove = Math.min(cnt, elements.size() - streamingCapacity * 3 / 4);
+            if (toRemove <= 0)
+                return;
+
+            Arrays.sort(frequencies, 0, cnt);
+            long threshold = frequencies[toRemove - 1];
+
+            // elements below threshold are all removed, ties at threshold only until toRemove elements are evicted
+            int ties = toRemove;
+            for (int e = 0; e < toRemove && frequencies[e] < threshold; e++)
+                ties--;
+
+            Iterator<T> iterator = elements.values().iterator();
+            while (iterator.hasNext()) {
+                T element = iterator.next();
+                if (element.isSpecial() || element.isLabel())
+                    continue;
+
+                long frequency = (long) element.getElementFrequency();
+                if (frequency < threshold || (frequency == threshold && ties-- > 0))
+                    iterator.remove();
+            }
+
+            admission = Math.max(admission, threshold + 1);
+        }
+    }
 }
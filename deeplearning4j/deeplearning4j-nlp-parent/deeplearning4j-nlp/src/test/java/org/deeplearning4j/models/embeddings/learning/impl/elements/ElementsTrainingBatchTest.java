@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.models.embeddings.learning.impl.elements;
+
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.sequencevectors.iterators.AbstractSequenceIterator;
+import org.deeplearning4j.models.sequencevectors.transformers.impl.SentenceTransformer;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.VocabConstructor;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.deeplearning4j.text.sentenceiterator.BasicLineIterator;
+import org.deeplearning4j.text.tokenization.tokenizer.preprocessor.CommonPreprocessor;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.aggregates.Aggregate;
+import org.nd4j.linalg.api.ops.aggregates.impl.AggregateCBOW;
+import org.nd4j.linalg.api.ops.aggregates.impl.AggregateSkipGram;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.io.ClassPathResource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ElementsTrainingBatchTest {
+
+    private AbstractCache<VocabWord> vocab;
+
+    @Before
+    public void setUp() throws Exception {
+        TokenizerFactory t = new DefaultTokenizerFactory();
+        t.setTokenPreProcessor(new CommonPreprocessor());
+        vocab = new AbstractCache.Builder<VocabWord>().build();
+
+        BasicLineIterator underlyingIterator = new BasicLineIterator(new ClassPathResource("big/raw_sentences.txt").getFile());
+        SentenceTransformer transformer =
+                        new SentenceTransformer.Builder().iterator(underlyingIterator).tokenizerFactory(t).build();
+        AbstractSequenceIterator<VocabWord> sequenceIterator =
+                        new AbstractSequenceIterator.Builder<>(transformer).build();
+        new VocabConstructor.Builder<VocabWord>().addSource(sequenceIterator, 1).setTargetVocabCache(vocab).build()
+                        .buildJointVocabulary(false, true);
+    }
+
+    private InMemoryLookupTable<VocabWord> lookupTable(double negative) {
+        InMemoryLookupTable<VocabWord> table = (InMemoryLookupTable<VocabWord>) new InMemoryLookupTable.Builder<VocabWord>()
+                        .vectorLength(50).useHierarchicSoftmax(true).negative(negative).cache(vocab).seed(17).build();
+        table.resetWeights(true);
+        return table;
+    }
+
+    private static int[] points(VocabWord word) {
+        int[] points = new int[word.getCodeLength()];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = word.getPoints().get(i);
+        }
+        return points;
+    }
+
+    private static int[] codes(VocabWord word) {
+        int[] codes = new int[word.getCodeLength()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = word.getCodes().get(i);
+        }
+        return codes;
+    }
+
+    @Test
+    public void testSameAsAggregates() {
+        InMemoryLookupTable<VocabWord> expected = lookupTable(0);
+        InMemoryLookupTable<VocabWord> actual = lookupTable(0);
+        assertTrue(ElementsTrainingBatch.isSupported(actual));
+        assertEquals(expected.getSyn0(), actual.getSyn0());
+
+        INDArray expTable = Nd4j.create(expected.getExpTable());
+        ElementsTrainingBatch<VocabWord> batch = new ElementsTrainingBatch<>(actual, vocab.numWords(), 0, true);
+        List<Aggregate> aggregates = new ArrayList<>();
+        int numWords = vocab.numWords();
+        for (int i = 0; i < 100; i++) {
+            VocabWord target = vocab.elementAtIndex(i % numWords);
+            int context = (i * 7 + 3) % numWords;
+            if (context == target.getIndex()) {
+                continue;
+            }
+            aggregates.add(new AggregateSkipGram(expected.getSyn0(), expected.getSyn1(), null, expTable, null,
+                            context, points(target), codes(target), 0, target.getIndex(), 50, 0.025, i, numWords, null));
+            batch.addSkipGram(target, context, 0.025, i);
+
+            int[] window = {(i * 11 + 1) % numWords, (i * 13 + 2) % numWords, (i * 17 + 5) % numWords};
+            aggregates.add(new AggregateCBOW(expected.getSyn0(), expected.getSyn1(), null, expTable, null,
+                            target.getIndex(), window, points(target), codes(target), 0, target.getIndex(), 50, 0.025, i,
+                            numWords, 0, true, null));
+            for (int w : window) {
+                batch.addContext(w);
+            }
+            batch.addRound(target, 0.025, i);
+        }
+        assertEquals(aggregates.size(), batch.size());
+
+        // one at a time, since batches of aggregates run in parallel
+        for (Aggregate aggregate : aggregates) {
+            Nd4j.getExecutioner().exec(aggregate);
+        }
+        batch.exec();
+        assertTrue(batch.isEmpty());
+
+        assertNotEquals(lookupTable(0).getSyn0(), actual.getSyn0());
+        assertTrue(expected.getSyn0().equalsWithEps(actual.getSyn0(), 1e-5));
+        assertTrue(expected.getSyn1().equalsWithEps(actual.getSyn1(), 1e-5));
+    }
+
+    @Test
+    public void testNegativeSamplingSameAsAggregates() {
+        InMemoryLookupTable<VocabWord> expected = lookupTable(5);
+        InMemoryLookupTable<VocabWord> actual = lookupTable(5);
+        assertTrue(ElementsTrainingBatch.isSupported(actual));
+        assertEquals(expected.getSyn1Neg(), actual.getSyn1Neg());
+        assertEquals(expected.getTable(), actual.getTable());
+
+        INDArray expTable = Nd4j.create(expected.getExpTable());
+        ElementsTrainingBatch<VocabWord> batch = new ElementsTrainingBatch<>(actual, vocab.numWords(), 5, false);
+        List<Aggregate> aggregates = new ArrayList<>();
+        int numWords = vocab.numWords();
+        long nextRandom = 119;
+        for (int i = 0; i < 100; i++) {
+            VocabWord target = vocab.elementAtIndex(i % numWords);
+            int context = (i * 7 + 3) % numWords;
+            if (context == target.getIndex()) {
+                continue;
+            }
+            // same random seeds for both, so negative samples are the same
+            aggregates.add(new AggregateSkipGram(expected.getSyn0(), expected.getSyn1(), expected.getSyn1Neg(),
+                            expTable, expected.getTable(), context, new int[0], new int[0], 5, target.getIndex(), 50,
+                            0.025, nextRandom, numWords, null));
+            batch.addSkipGram(target, context, 0.025, nextRandom);
+            nextRandom = Math.abs(nextRandom * 25214903917L + 11);
+
+            int[] window = {(i * 11 + 1) % numWords, (i * 13 + 2) % numWords, (i * 17 + 5) % numWords};
+            aggregates.add(new AggregateCBOW(expected.getSyn0(), expected.getSyn1(), expected.getSyn1Neg(), expTable,
+                            expected.getTable(), target.getIndex(), window, new int[0], new int[0], 5,
+                            target.getIndex(), 50, 0.025, nextRandom, numWords, 0, true, null));
+            for (int w : window) {
+                batch.addContext(w);
+            }
+            batch.addRound(target, 0.025, nextRandom);
+            nextRandom = Math.abs(nextRandom * 25214903917L + 11);
+        }
+        assertEquals(aggregates.size(), batch.size());
+
+        for (Aggregate aggregate : aggregates) {
+            Nd4j.getExecutioner().exec(aggregate);
+        }
+        batch.exec();
+
+        assertNotEquals(lookupTable(5).getSyn0(), actual.getSyn0());
+        assertTrue(expected.getSyn0().equalsWithEps(actual.getSyn0(), 1e-5));
+        assertTrue(expected.getSyn1Neg().equalsWithEps(actual.getSyn1Neg(), 1e-5));
+        // hierarchic softmax is disabled, syn1 isn't touched
+        assertEquals(lookupTable(5).getSyn1(), actual.getSyn1());
+    }
+
+    @Test
+    public void testNegativeSampling() {
+        InMemoryLookupTable<VocabWord> table = lookupTable(5);
+        INDArray syn0 = table.getSyn0().dup();
+        INDArray syn1Neg = table.getSyn1Neg().dup();
+
+        ElementsTrainingBatch<VocabWord> batch = new ElementsTrainingBatch<>(table, vocab.numWords(), 5, false);
+        VocabWord target = vocab.elementAtIndex(3);
+        // syn1Neg starts with zeros, so syn0 only changes from the second round on
+        batch.addSkipGram(target, 10, 0.025, 12345L);
+        batch.addSkipGram(target, 10, 0.025, 67890L);
+        batch.exec();
+
+        // only the context row of syn0 gets updated
+        for (int i = 0; i < vocab.numWords(); i++) {
+            assertEquals(i == 10, !syn0.getRow(i).equals(table.getSyn0().getRow(i)));
+        }
+        // the target row of syn1Neg gets updated as positive sample
+        assertNotEquals(syn1Neg.getRow(3), table.getSyn1Neg().getRow(3));
+    }
+}
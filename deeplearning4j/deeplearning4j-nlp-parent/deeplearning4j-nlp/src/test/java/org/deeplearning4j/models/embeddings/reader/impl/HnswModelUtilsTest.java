@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.models.embeddings.reader.impl;
+
+import lombok.val;
+import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.io.ClassPathResource;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HnswModelUtilsTest {
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    private Word2Vec vec;
+
+    @Before
+    public void setUp() throws Exception {
+        vec = WordVectorSerializer.readWord2VecModel(new ClassPathResource("word2vec/googleload/sample_vec.bin").getFile());
+    }
+
+    private List<String> sampleWords(int n) {
+        List<String> words = new ArrayList<>();
+        for (String w : vec.getVocab().words()) {
+            words.add(w);
+            if (words.size() >= n)
+                break;
+        }
+        return words;
+    }
+
+    @Test
+    public void testWordsNearestMatchesFlatScan() {
+        val words = sampleWords(10);
+
+        vec.setModelUtils(new FlatModelUtils<VocabWord>());
+        List<Collection<String>> expected = new ArrayList<>();
+        for (String w : words)
+            expected.add(vec.wordsNearest(w, 5));
+
+        val original = vec.getWordVectorMatrix(words.get(0)).dup();
+
+        // with ef well above vocabulary size search is exhaustive within the graph
+        HnswModelUtils<VocabWord> utils = new HnswModelUtils<>(8, 100, 500);
+        vec.setModelUtils(utils);
+        int matched = 0;
+        int total = 0;
+        for (int i = 0; i < words.size(); i++) {
+            val result = vec.wordsNearest(words.get(i), 5);
+            assertFalse(result.contains(words.get(i)));
+
+            val set = new HashSet<>(expected.get(i));
+            for (String r : result)
+                if (set.contains(r))
+                    matched++;
+            total += set.size();
+        }
+
+        assertTrue("Matched " + matched + " of " + total, matched >= 0.9 * total);
+
+        // HNSW reader doesn't touch model weights
+        assertEquals(original, vec.getWordVectorMatrix(words.get(0)));
+    }
+
+    @Test
+    public void testSaveAndLoadIndex() throws Exception {
+        val words = sampleWords(5);
+
+        HnswModelUtils<VocabWord> utilsA = new HnswModelUtils<>();
+        vec.setModelUtils(utilsA);
+        List<Collection<String>> expected = new ArrayList<>();
+        for (String w : words)
+            expected.add(vec.wordsNearest(w, 5));
+
+        File file = new File(testDir.newFolder(), "index.hnsw");
+        utilsA.saveIndex(file);
+
+        HnswModelUtils<VocabWord> utilsB = new HnswModelUtils<>();
+        vec.setModelUtils(utilsB);
+        utilsB.loadIndex(file);
+        for (int i = 0; i < words.size(); i++)
+            assertEquals(expected.get(i), vec.wordsNearest(words.get(i), 5));
+    }
+}
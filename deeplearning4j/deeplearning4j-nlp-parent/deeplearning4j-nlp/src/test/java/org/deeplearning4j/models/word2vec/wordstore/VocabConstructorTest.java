@@ -147,6 +147,85 @@ public class VocabConstructorTest {
         assertEquals(634303, cache.totalWordOccurrences());
     }
 
+    @Test
+    public void testBuildJointVocabularyStreaming1() throws Exception {
+        File inputFile = new ClassPathResource("big/raw_sentences.txt").getFile();
+        SentenceIterator iter = new BasicLineIterator(inputFile);
+
+        VocabCache<VocabWord> cache = new AbstractCache.Builder<VocabWord>().build();
+
+        SentenceTransformer transformer = new SentenceTransformer.Builder().iterator(iter).tokenizerFactory(t).build();
+
+
+        AbstractSequenceIterator<VocabWord> sequenceIterator =
+                        new AbstractSequenceIterator.Builder<>(transformer).build();
+
+        VocabConstructor<VocabWord> constructor = new VocabConstructor.Builder<VocabWord>()
+                        .addSource(sequenceIterator, 5).useStreamingCounter(1000, 1 << 16)
+                        .setTargetVocabCache(cache).build();
+
+        constructor.buildJointVocabulary(false, true);
+
+        // no evictions happen here, so results should be equal to regular counting
+        assertEquals(242, cache.numWords());
+
+        assertEquals("i", cache.wordAtIndex(1));
+        assertEquals("it", cache.wordAtIndex(0));
+
+        assertEquals(634303, cache.totalWordOccurrences());
+    }
+
+    @Test
+    public void testBuildJointVocabularyStreaming2() throws Exception {
+        File inputFile = new ClassPathResource("big/raw_sentences.txt").getFile();
+
+        VocabCache<VocabWord> exact = new AbstractCache.Builder<VocabWord>().build();
+        SentenceTransformer transformer = new SentenceTransformer.Builder().iterator(new BasicLineIterator(inputFile))
+                        .tokenizerFactory(t).build();
+        new VocabConstructor.Builder<VocabWord>()
+                        .addSource(new AbstractSequenceIterator.Builder<>(transformer).build(), 5)
+                        .setTargetVocabCache(exact).build().buildJointVocabulary(false, true);
+
+        VocabCache<VocabWord> streaming = new AbstractCache.Builder<VocabWord>().build();
+        transformer = new SentenceTransformer.Builder().iterator(new BasicLineIterator(inputFile))
+                        .tokenizerFactory(t).build();
+        new VocabConstructor.Builder<VocabWord>()
+                        .addSource(new AbstractSequenceIterator.Builder<>(transformer).build(), 5)
+                        .useStreamingCounter(64, 1 << 16).allowParallelTokenization(false)
+                        .setTargetVocabCache(streaming).build().buildJointVocabulary(false, true);
+
+        // shard holds 64 elements at most, but frequent elements should survive evictions with the same counters
+        for (int e = 0; e < 30; e++) {
+            String word = exact.wordAtIndex(e);
+            assertTrue(streaming.containsWord(word));
+            assertEquals(exact.wordFrequency(word), streaming.wordFrequency(word));
+        }
+    }
+
+    @Test
+    public void testBuildJointVocabularyStreaming3() throws Exception {
+        // every "rN" element occurs exactly twice, so all of them share the lowest counter when shard is pruned
+        List<Sequence<VocabWord>> sequences = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Sequence<VocabWord> sequence = new Sequence<>();
+            for (String label : new String[] {"a", "a", "b", "r" + i, "r" + i})
+                sequence.addElement(new VocabWord(1, label));
+            sequences.add(sequence);
+        }
+
+        VocabCache<VocabWord> cache = new AbstractCache.Builder<VocabWord>().build();
+        new VocabConstructor.Builder<VocabWord>()
+                        .addSource(new AbstractSequenceIterator.Builder<>(sequences).build(), 2)
+                        .useStreamingCounter(16, 1 << 16).allowParallelTokenization(false)
+                        .setTargetVocabCache(cache).build().buildJointVocabulary(false, true);
+
+        // first pruning happens at 17 elements and evicts exactly 5 of them, out of 15 tied "rN" elements.
+        // later "rN" elements never reach the raised admission threshold
+        assertEquals(12, cache.numWords());
+        assertEquals(200, cache.wordFrequency("a"));
+        assertEquals(100, cache.wordFrequency("b"));
+    }
+
     @Test
     public void testCounter1() throws Exception {
         VocabCache<VocabWord> vocabCache = new AbstractCache.Builder<VocabWord>().build();
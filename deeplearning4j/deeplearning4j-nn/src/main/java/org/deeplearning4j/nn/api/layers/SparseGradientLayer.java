@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.nn.api.layers;
+
+import org.deeplearning4j.nn.api.Layer;
+
+/**
+ * Interface for layers that can produce row-sparse gradients, such as embedding layers: for a weight matrix of shape
+ * [numRows, size] only the rows used in the current minibatch have non-zero gradients.<br>
+ * Updaters can use this information to apply lazy (per-row) updates: only the touched rows of the gradient and the
+ * updater state are processed, so the cost of an update scales with the minibatch size instead of the number of rows.
+ * Note that for updaters with state (momentum, Adam, etc) the state of rows not used in a minibatch is not decayed.
+ */
+public interface SparseGradientLayer extends Layer {
+
+    /**
+     * @param paramName Name of the parameter
+     * @return True if gradients for the specified parameter are row-sparse, and may be applied lazily
+     */
+    boolean hasSparseGradient(String paramName);
+
+    /**
+     * @param paramName Name of the parameter
+     * @return Sorted, unique indices of the rows of the gradient set during the last backprop, or null if the
+     * gradient for the specified parameter is dense
+     */
+    int[] getSparseGradientRows(String paramName);
+
+    /**
+     * Called by the updater after the gradient for the specified parameter was applied lazily, i.e., when only
+     * the rows returned by {@link #getSparseGradientRows(String)} were modified in the gradient view array.
+     * If this method is not called, the layer should assume the whole gradient view array was modified.
+     *
+     * @param paramName Name of the parameter
+     */
+    void sparseGradientApplied(String paramName);
+}
@@ -50,10 +50,12 @@ import java.util.Map;
 @EqualsAndHashCode(callSuper = true)
 public class EmbeddingLayer extends FeedForwardLayer {
     private boolean hasBias = true; //Default for pre-0.9.2 implementations
+    private boolean sparseGradients = false;
 
     private EmbeddingLayer(Builder builder) {
         super(builder);
         this.hasBias = builder.hasBias;
+        this.sparseGradients = builder.sparseGradients;
         initializeConstraints(builder);
     }
 
@@ -103,6 +105,7 @@ public class EmbeddingLayer extends FeedForwardLayer {
     public static class Builder extends FeedForwardLayer.Builder<Builder> {
 
         private boolean hasBias = false;
+        private boolean sparseGradients = false;
 
         /**
          * If true: include bias parameters in the layer. False (default): no bias.
@@ -114,6 +117,21 @@ public class EmbeddingLayer extends FeedForwardLayer {
             return this;
         }
 
+        /**
+         * If true: weight gradients are row-sparse - only the rows for the indices in the current minibatch are
+         * set during backprop, and the updater is applied lazily to these rows only. Thus the cost of the weight update
+         * scales with the minibatch size rather than nIn (the number of embeddings).<br>
+         * Note that for updaters with state (Adam, momentum, etc) this differs from the standard (dense) update: the
+         * state of rows not in the minibatch is not decayed, and these rows are not updated. L1/L2 regularization
+         * is also applied only to the rows in the minibatch. Default: false.
+         *
+         * @param sparseGradients If true: use sparse gradients and lazy updates for the weights
+         */
+        public Builder sparseGradients(boolean sparseGradients) {
+            this.sparseGradients = sparseGradients;
+            return this;
+        }
+
         @Override
         @SuppressWarnings("unchecked")
         public EmbeddingLayer build() {
@@ -52,12 +52,14 @@ public class EmbeddingSequenceLayer extends FeedForwardLayer {
     private int inputLength = 1; // By default only use one index to embed
     private boolean hasBias = false;
     private boolean inferInputLength = false; // use input length as provided by input data
+    private boolean sparseGradients = false;
 
     private EmbeddingSequenceLayer(Builder builder) {
         super(builder);
         this.hasBias = builder.hasBias;
         this.inputLength = builder.inputLength;
         this.inferInputLength = builder.inferInputLength;
+        this.sparseGradients = builder.sparseGradients;
         initializeConstraints(builder);
     }
 
@@ -115,6 +117,7 @@ public class EmbeddingSequenceLayer extends FeedForwardLayer {
         private boolean hasBias = false;
         private int inputLength = 1;
         private boolean inferInputLength = true;
+        private boolean sparseGradients = false;
 
         /**
          * If true: include bias parameters in the layer. False (default): no bias.
@@ -149,6 +152,21 @@ public class EmbeddingSequenceLayer extends FeedForwardLayer {
             return this;
         }
 
+        /**
+         * If true: weight gradients are row-sparse - only the rows for the indices in the current minibatch are
+         * set during backprop, and the updater is applied lazily to these rows only. Thus the cost of the weight update
+         * scales with the minibatch size rather than nIn (the number of embeddings).<br>
+         * Note that for updaters with state (Adam, momentum, etc) this differs from the standard (dense) update: the
+         * state of rows not in the minibatch is not decayed, and these rows are not updated. L1/L2 regularization
+         * is also applied only to the rows in the minibatch. Default: false.
+         *
+         * @param sparseGradients If true: use sparse gradients and lazy updates for the weights
+         */
+        public Builder sparseGradients(boolean sparseGradients) {
+            this.sparseGradients = sparseGradients;
+            return this;
+        }
+
         @Override
         @SuppressWarnings("unchecked")
         public EmbeddingSequenceLayer build() {
@@ -92,7 +92,10 @@ import org.nd4j.util.OneTimeLogger;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * A ComputationGraph network is a neural network with arbitrary (directed acyclic graph) connection structure.
@@ -161,6 +164,11 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
 
     protected transient ThreadLocal<Long> lastEtlTime = new ThreadLocal<>();
 
+    //Copies of this network sharing its parameters: used by output methods, so that these can run concurrently
+    protected transient Queue<ComputationGraph> outputReplicas;
+    //Held for reading by output methods and for writing while the parameters are updated (fit, setParams etc)
+    protected transient ReadWriteLock paramsLock = new ReentrantReadWriteLock();
+
     /**
      * All GraphVertex objects in the network.
      */
@@ -939,7 +947,12 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
 
                 Layer layer = toTrain.getLayer();
                 layer.getConfig().setPretrain(true);
-                layer.fit(layer.input(), workspaceMgr);
+                paramsLock.writeLock().lock();
+                try {
+                    layer.fit(layer.input(), workspaceMgr);
+                } finally {
+                    paramsLock.writeLock().unlock();
+                }
                 layer.getConfig().setPretrain(false);
             }
         }
@@ -1103,6 +1116,19 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
         }
     }
 
+    /**
+     * Perform a single optimization step, holding the parameters lock for writing so that concurrent
+     * output calls never see partially updated parameters
+     */
+    private void optimize(LayerWorkspaceMgr workspaceMgr) {
+        paramsLock.writeLock().lock();
+        try {
+            solver.optimize(workspaceMgr);
+        } finally {
+            paramsLock.writeLock().unlock();
+        }
+    }
+
     private synchronized void fitHelper(INDArray[] inputs, INDArray[] labels, INDArray[] featureMaskArrays, INDArray[] labelMaskArrays) {
         if (numParams() == 0) {
             return; //Edge case: net with no params: fitting is a no-op
@@ -1147,7 +1173,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                 }
 
                 //TODO: cache workspace
-                solver.optimize(workspaceMgr);
+                optimize(workspaceMgr);
 
             }
         } else {
@@ -1699,7 +1725,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
      * @param <T> T extends Object
      * @return T instance produced by OutputAdapter
      */
-    public synchronized <T> T output(@NonNull INDArray[] inputs, INDArray[] inputMasks, INDArray[] labelMasks, @NonNull OutputAdapter<T> outputAdapter) {
+    public <T> T output(@NonNull INDArray[] inputs, INDArray[] inputMasks, INDArray[] labelMasks, @NonNull OutputAdapter<T> outputAdapter) {
         try (val ws = Nd4j.getWorkspaceManager().getAndActivateWorkspace(WS_ALL_LAYERS_ACT_CONFIG, WS_OUTPUT_MEM)) {
             return outputAdapter.apply(output(false, inputs, inputMasks, labelMasks, ws));
         }
@@ -1719,22 +1745,97 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
      * @param input           Input arrays to the netwonk
      * @param inputMasks      Optional input mask arrays (may be null)
      * @param labelMasks      Optional label mask arrays (may be null
+     * <br>
+     * PLEASE NOTE: This method may be called concurrently from multiple threads. Each call runs on its own copy of
+     * the vertices and layers sharing the parameters of this network. Output calls run in parallel with each other,
+     * but not with parameter updates: an output call waits for an in-progress training step (fit, pretrainLayer) or
+     * parameter change (setParams, setParam) to complete, and blocks parameter updates while it runs.
+     *
      * @param outputWorkspace May be null. If not null: the workspace MUST be opened before calling this method.
      * @return Network output activations
      */
-    public synchronized INDArray[] output(boolean train, @NonNull INDArray[] input, INDArray[] inputMasks, INDArray[] labelMasks, MemoryWorkspace outputWorkspace){
+    public INDArray[] output(boolean train, @NonNull INDArray[] input, INDArray[] inputMasks, INDArray[] labelMasks, MemoryWorkspace outputWorkspace){
+        ComputationGraph replica = borrowOutputReplica();
+        //Only the forward pass holds the lock: borrowing/returning may synchronize on this network, as fit does
+        paramsLock.readLock().lock();
         try {
-            setLayerMaskArrays(inputMasks, labelMasks);
-            INDArray[] out = outputOfLayersDetached(train, FwdPassType.STANDARD, getOutputLayerIndices(), input, inputMasks, labelMasks, true, false, outputWorkspace);
-            clearLayerMaskArrays();
-            clearLayersStates();
-            return out;
+            replica.setLayerMaskArrays(inputMasks, labelMasks);
+            return replica.outputOfLayersDetached(train, FwdPassType.STANDARD, getOutputLayerIndices(), input, inputMasks, labelMasks, true, false, outputWorkspace);
         } catch (OutOfMemoryError e){
             CrashReportingUtil.writeMemoryCrashDump(this, e);
             throw e;
+        } finally {
+            paramsLock.readLock().unlock();
+            returnOutputReplica(replica);
         }
     }
 
+    /**
+     * Get a copy of this network for executing a single output call. The copy has its own vertices and layers (and
+     * hence its own per-call state: layer inputs, mask arrays, etc) but shares the parameters of this network, so that
+     * output methods can be called concurrently from multiple threads without copying the parameters.<br>
+     * Copies are reused between calls: only as many copies as there are concurrent output calls are created.
+     * Return the copy using {@link #returnOutputReplica(ComputationGraph)} once the call is done.
+     *
+     * @return Network copy for the current output call
+     */
+    protected ComputationGraph borrowOutputReplica() {
+        if (!initCalled)
+            init();
+
+        Queue<ComputationGraph> replicas = outputReplicas;
+        if (replicas == null) {
+            synchronized (this) {
+                if (outputReplicas == null)
+                    outputReplicas = new ConcurrentLinkedQueue<>();
+                replicas = outputReplicas;
+            }
+        }
+
+        ComputationGraph replica;
+        while ((replica = replicas.poll()) != null) {
+            //Copies created before the parameters array was replaced are stale
+            if (replica.flattenedParams == flattenedParams)
+                break;
+        }
+        if (replica == null) {
+            replica = new ComputationGraph(configuration.clone());
+            replica.init(flattenedParams, false);
+            for (int i = 0; i < topologicalOrder.length; i++) {
+                if (!vertices[topologicalOrder[i]].hasLayer())
+                    continue;
+                String layerName = vertices[topologicalOrder[i]].getVertexName();
+                if (getLayer(layerName) instanceof FrozenLayer) {
+                    replica.getVertex(layerName).setLayerAsFrozen();
+                }
+            }
+        }
+
+        //Workspace and cache modes, and the iteration/epoch counts used by schedules (dropout etc), may have been
+        //changed since the copy was created
+        replica.configuration.setIterationCount(configuration.getIterationCount());
+        replica.configuration.setEpochCount(configuration.getEpochCount());
+        replica.synchronizeIterEpochCounts();
+        replica.configuration.setTrainingWorkspaceMode(configuration.getTrainingWorkspaceMode());
+        replica.configuration.setInferenceWorkspaceMode(configuration.getInferenceWorkspaceMode());
+        replica.configuration.setCacheMode(configuration.getCacheMode());
+        return replica;
+    }
+
+    /**
+     * Return a network copy obtained from {@link #borrowOutputReplica()}, for reuse by later output calls
+     *
+     * @param replica Network copy to return
+     */
+    protected void returnOutputReplica(ComputationGraph replica) {
+        //Don't keep references to the inputs of the last call
+        replica.clear();
+        replica.clearLayerMaskArrays();
+        replica.clearLayersStates();
+        if (replica.flattenedParams == flattenedParams)
+            outputReplicas.offer(replica);
+    }
+
     /**
      * A convenience method that returns a single INDArray, instead of an INDArray[].
      * Useful for ComputationGraphs that have only a single output.
@@ -1774,13 +1875,30 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
      * @param input       Input to the network
      * @return            Output from the network
      */
-    public synchronized INDArray[] output(boolean train, boolean clearInputs, INDArray... input){
-        boolean detachedInputs = !clearInputs;  //If !clearInputs, then inputs should be detached (otherwise: will be out of scope)
-        try {
-            return outputOfLayersDetached(train, FwdPassType.STANDARD, getOutputLayerIndices(), input, null, null, clearInputs, detachedInputs, null);
-        } catch (OutOfMemoryError e){
-            CrashReportingUtil.writeMemoryCrashDump(this, e);
-            throw e;
+    public INDArray[] output(boolean train, boolean clearInputs, INDArray... input){
+        if (clearInputs) {
+            //No state is kept after the call: can use a copy sharing the parameters
+            ComputationGraph replica = borrowOutputReplica();
+            paramsLock.readLock().lock();
+            try {
+                return replica.outputOfLayersDetached(train, FwdPassType.STANDARD, getOutputLayerIndices(), input, null, null, true, false, null);
+            } catch (OutOfMemoryError e){
+                CrashReportingUtil.writeMemoryCrashDump(this, e);
+                throw e;
+            } finally {
+                paramsLock.readLock().unlock();
+                returnOutputReplica(replica);
+            }
+        }
+
+        //Layer inputs are kept after the call: these have to be set on this instance
+        synchronized (this) {
+            try {
+                return outputOfLayersDetached(train, FwdPassType.STANDARD, getOutputLayerIndices(), input, null, null, false, true, null);
+            } catch (OutOfMemoryError e){
+                CrashReportingUtil.writeMemoryCrashDump(this, e);
+                throw e;
+            }
         }
     }
 
@@ -3599,7 +3717,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                             .build();
                 }
             }
-            solver.optimize(workspaceMgr);
+            optimize(workspaceMgr);
 
             //Finally, update the state of the RNN layers:
             rnnUpdateStateWithTBPTTState();
@@ -4716,6 +4834,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
 
         this.defaultConfiguration = cg.defaultConfiguration.clone();
         this.configuration = cg.configuration.clone();
+        this.paramsLock = new ReentrantReadWriteLock();
         this.init();
         this.flattenedParams.assign(cg.flattenedParams);
 
@@ -21,6 +21,7 @@ import lombok.val;
 import org.nd4j.linalg.api.ops.custom.ScatterUpdate;
 import org.nd4j.linalg.primitives.Pair;
 import org.deeplearning4j.exception.DL4JInvalidInputException;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
@@ -42,9 +43,12 @@ import org.deeplearning4j.nn.workspace.ArrayType;
  * @author Alex Black
  */
 @Slf4j
-public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.EmbeddingLayer> {
+public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.EmbeddingLayer>
+                implements SparseGradientLayer {
     private static final int[] DIM_1 = new int[]{1};
 
+    private final SparseRowGradient sparseGradient = new SparseRowGradient();
+
     public EmbeddingLayer(NeuralNetConfiguration conf) {
         super(conf);
     }
@@ -61,7 +65,7 @@ public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.
         }
 
         INDArray weightGradients = gradientViews.get(DefaultParamInitializer.WEIGHT_KEY);
-        weightGradients.assign(0);
+        sparseGradient.zero(weightGradients, layerConf().isSparseGradients());
 
         // FIXME: int cast
         int[] indexes = new int[(int) input.length()];
@@ -71,6 +75,7 @@ public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.
 
         ScatterUpdate op = new ScatterUpdate(weightGradients, delta, indexes, DIM_1, ScatterUpdate.UpdateOp.ADD);
         Nd4j.getExecutioner().exec(op);
+        sparseGradient.setRows(indexes);
 
         Gradient ret = new DefaultGradient();
         ret.gradientForVariable().put(DefaultParamInitializer.WEIGHT_KEY, weightGradients);
@@ -138,6 +143,28 @@ public class EmbeddingLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.
         return layerConf().hasBias();
     }
 
+    @Override
+    public void setBackpropGradientsViewArray(INDArray gradients) {
+        super.setBackpropGradientsViewArray(gradients);
+        sparseGradient.reset();
+    }
+
+    @Override
+    public boolean hasSparseGradient(String paramName) {
+        return layerConf().isSparseGradients() && DefaultParamInitializer.WEIGHT_KEY.equals(paramName);
+    }
+
+    @Override
+    public int[] getSparseGradientRows(String paramName) {
+        return hasSparseGradient(paramName) ? sparseGradient.getRows() : null;
+    }
+
+    @Override
+    public void sparseGradientApplied(String paramName) {
+        if (hasSparseGradient(paramName))
+            sparseGradient.applied();
+    }
+
     @Override
     public boolean isPretrainLayer() {
         return false;
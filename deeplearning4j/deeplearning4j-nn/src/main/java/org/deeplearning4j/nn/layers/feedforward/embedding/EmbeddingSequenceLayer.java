@@ -19,6 +19,7 @@ package org.deeplearning4j.nn.layers.feedforward.embedding;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.deeplearning4j.exception.DL4JInvalidInputException;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
@@ -48,7 +49,8 @@ import static org.nd4j.linalg.api.shape.Shape.hasDefaultStridesForShape;
  * @author Max Pumperla
  */
 @Slf4j
-public class EmbeddingSequenceLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.EmbeddingSequenceLayer> {
+public class EmbeddingSequenceLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.EmbeddingSequenceLayer>
+                implements SparseGradientLayer {
     private static final int[] WEIGHT_DIM = new int[]{1};
 
     public EmbeddingSequenceLayer(NeuralNetConfiguration conf) {
@@ -56,6 +58,7 @@ public class EmbeddingSequenceLayer extends BaseLayer<org.deeplearning4j.nn.conf
     }
 
     private int[] indexes;
+    private final SparseRowGradient sparseGradient = new SparseRowGradient();
 
     @Override
     public Pair<Gradient, INDArray> backpropGradient(INDArray epsilon, LayerWorkspaceMgr workspaceMgr) {
@@ -79,13 +82,14 @@ public class EmbeddingSequenceLayer extends BaseLayer<org.deeplearning4j.nn.conf
         delta = delta.reshape('c',inputLength * numSamples, nOut);
 
         INDArray weightGradients = gradientViews.get(DefaultParamInitializer.WEIGHT_KEY);
-        weightGradients.assign(0);
+        sparseGradient.zero(weightGradients, layerConf().isSparseGradients());
 
         if (!hasDefaultStridesForShape(input))
             input = workspaceMgr.dup(ArrayType.ACTIVATIONS, input, 'f');
 
         ScatterUpdate op = new ScatterUpdate(weightGradients, delta, indexes, WEIGHT_DIM, ScatterUpdate.UpdateOp.ADD);
         Nd4j.getExecutioner().exec(op);
+        sparseGradient.setRows(indexes);
 
         Gradient ret = new DefaultGradient();
         ret.gradientForVariable().put(DefaultParamInitializer.WEIGHT_KEY, weightGradients);
@@ -199,6 +203,28 @@ public class EmbeddingSequenceLayer extends BaseLayer<org.deeplearning4j.nn.conf
     }
 
 
+    @Override
+    public void setBackpropGradientsViewArray(INDArray gradients) {
+        super.setBackpropGradientsViewArray(gradients);
+        sparseGradient.reset();
+    }
+
+    @Override
+    public boolean hasSparseGradient(String paramName) {
+        return layerConf().isSparseGradients() && DefaultParamInitializer.WEIGHT_KEY.equals(paramName);
+    }
+
+    @Override
+    public int[] getSparseGradientRows(String paramName) {
+        return hasSparseGradient(paramName) ? sparseGradient.getRows() : null;
+    }
+
+    @Override
+    public void sparseGradientApplied(String paramName) {
+        if (hasSparseGradient(paramName))
+            sparseGradient.applied();
+    }
+
     @Override
     public Type type() {
         return Type.RECURRENT;
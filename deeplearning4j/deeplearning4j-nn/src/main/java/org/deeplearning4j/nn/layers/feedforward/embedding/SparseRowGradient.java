@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.nn.layers.feedforward.embedding;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.custom.ScatterUpdate;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Arrays;
+
+/**
+ * Row-sparse weight gradient state, shared by the embedding layers.<br>
+ * Keeps track of the rows set during the last backprop, so that the next backprop only has to zero these rows
+ * instead of the whole [nIn, nOut] gradient view - as long as the updater applied the gradient lazily.
+ */
+class SparseRowGradient {
+    private static final int[] DIM_1 = new int[]{1};
+
+    private int[] rows;
+    private boolean applied;
+
+    /**
+     * Zero the gradient view before the scatter-add of a new minibatch
+     *
+     * @param gradientView Weight gradient view, shape [nIn, nOut]
+     * @param sparse       If false: always zero the whole view
+     */
+    void zero(INDArray gradientView, boolean sparse) {
+        if (sparse && applied && rows != null) {
+            if (rows.length > 0) {
+                INDArray zeros = Nd4j.zeros(rows.length, gradientView.size(1));
+                Nd4j.getExecutioner().exec(new ScatterUpdate(gradientView, zeros, rows, DIM_1, ScatterUpdate.UpdateOp.ASSIGN));
+            }
+        } else {
+            gradientView.assign(0);
+        }
+        applied = false;
+        rows = null;
+    }
+
+    /**
+     * @param indexes Row indices used in current minibatch, possibly with duplicates
+     */
+    void setRows(int[] indexes) {
+        int[] sorted = Arrays.copyOf(indexes, indexes.length);
+        Arrays.sort(sorted);
+        int numUnique = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1])
+                sorted[numUnique++] = sorted[i];
+        }
+        rows = Arrays.copyOf(sorted, numUnique);
+    }
+
+    int[] getRows() {
+        return rows;
+    }
+
+    void applied() {
+        applied = true;
+    }
+
+    /**
+     * Gradient view array was replaced: nothing is known about its content
+     */
+    void reset() {
+        rows = null;
+        applied = false;
+    }
+}
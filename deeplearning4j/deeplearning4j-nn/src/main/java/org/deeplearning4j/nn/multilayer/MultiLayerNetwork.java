@@ -92,6 +92,9 @@ import org.nd4j.util.OneTimeLogger;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
 /**
@@ -129,6 +132,11 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
     protected transient ThreadLocal<Long> lastEtlTime = new ThreadLocal<>();
     protected INDArray mask;
 
+    //Copies of this network sharing its parameters: used by output methods, so that these can run concurrently
+    protected transient Queue<MultiLayerNetwork> outputReplicas;
+    //Held for reading by output methods and for writing while the parameters are updated (fit, setParams etc)
+    protected transient ReadWriteLock paramsLock = new ReentrantReadWriteLock();
+
     protected int layerIndex; //For Layer.get/setIndex()
 
     protected transient Solver solver; //Used to call optimizers during backprop
@@ -422,7 +430,12 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                         LayerWorkspaceMgr.noWorkspaces(helperWorkspaces));
             }
 
-            layer.fit(outputOfPrevLayer, workspaceMgr);
+            paramsLock.writeLock().lock();
+            try {
+                layer.fit(outputOfPrevLayer, workspaceMgr);
+            } finally {
+                paramsLock.writeLock().unlock();
+            }
         }
 
         // Turn off pretrain after it is complete
@@ -528,7 +541,12 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         int layerIdx = Integer.parseInt(key.substring(0, idx));
         String newKey = key.substring(idx + 1);
 
-        layers[layerIdx].setParam(newKey, val);
+        paramsLock.writeLock().lock();
+        try {
+            layers[layerIdx].setParam(newKey, val);
+        } finally {
+            paramsLock.writeLock().unlock();
+        }
     }
 
 
@@ -1409,23 +1427,28 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
             return; //No op
         }
 
-        if (flattenedParams != null && params.length() == flattenedParams.length()) {
-            if (params != flattenedParams) {
-                flattenedParams.assign(params);
-            }
-        } else {
-            if (flattenedParams == null)
-                flattenedParams = params.dup();
-            int idx = 0;
-            for (int i = 0; i < getLayers().length; i++) {
-                Layer layer = getLayer(i);
-                long range = layer.numParams();
-                if (range <= 0)
-                    continue; //Some layers: no parameters (subsampling, etc)
-                INDArray get = params.get(NDArrayIndex.point(0), NDArrayIndex.interval(idx, range + idx));
-                layer.setParams(get);
-                idx += range;
+        paramsLock.writeLock().lock();
+        try {
+            if (flattenedParams != null && params.length() == flattenedParams.length()) {
+                if (params != flattenedParams) {
+                    flattenedParams.assign(params);
+                }
+            } else {
+                if (flattenedParams == null)
+                    flattenedParams = params.dup();
+                int idx = 0;
+                for (int i = 0; i < getLayers().length; i++) {
+                    Layer layer = getLayer(i);
+                    long range = layer.numParams();
+                    if (range <= 0)
+                        continue; //Some layers: no parameters (subsampling, etc)
+                    INDArray get = params.get(NDArrayIndex.point(0), NDArrayIndex.interval(idx, range + idx));
+                    layer.setParams(get);
+                    idx += range;
+                }
             }
+        } finally {
+            paramsLock.writeLock().unlock();
         }
     }
 
@@ -1600,7 +1623,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                     }
 
                     //TODO CACHE
-                    solver.optimize(workspaceMgr);
+                    optimize(workspaceMgr);
                 }
 
                 if (hasMaskArrays)
@@ -1945,7 +1968,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                             .build();
                 }
             }
-            solver.optimize(workspaceMgr);
+            optimize(workspaceMgr);
 
             //Finally, update the state of the RNN layers:
             updateRnnStateWithTBPTTState();
@@ -2131,6 +2154,19 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         }
     }
 
+    /**
+     * Perform a single optimization step, holding the parameters lock for writing so that concurrent
+     * output calls never see partially updated parameters
+     */
+    private void optimize(LayerWorkspaceMgr workspaceMgr) {
+        paramsLock.writeLock().lock();
+        try {
+            solver.optimize(workspaceMgr);
+        } finally {
+            paramsLock.writeLock().unlock();
+        }
+    }
+
     private void fitHelper(INDArray features, INDArray labels, INDArray featuresMask, INDArray labelsMask){
         if(numParams() == 0){
             //No op: can't fit a network with 0 parameters
@@ -2167,7 +2203,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                     }
                 }
                 //TODO CACHE WORKSPACE, IF USED???
-                solver.optimize(workspaceMgr);
+                optimize(workspaceMgr);
             }
         } else {
             throw new IllegalStateException("Network configuration is set to backprop(false). Use the pretrain" +
@@ -2284,18 +2320,94 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
      * of scope (i.e., not used after closing the workspace to which it belongs - as this is likely to cause either
      * an exception when used, or a crash).
      *
+     * <br>
+     * PLEASE NOTE: This method may be called concurrently from multiple threads. Each call runs on its own copy of
+     * the layers sharing the parameters of this network. Output calls run in parallel with each other, but not with
+     * parameter updates: an output call waits for an in-progress training step (fit, pretrainLayer) or parameter
+     * change (setParams, setParam) to complete, and blocks parameter updates while it runs.
+     *
      * @param input           Input to the network
      * @param train           True for train, false otherwise
      * @param outputWorkspace May be null. If not null: the workspace MUST be opened before calling this method.
      * @return The output/activations from the network (either detached or in the specified workspace if provided)
      */
-    public synchronized INDArray output(INDArray input, boolean train, INDArray featuresMask, INDArray labelsMask, MemoryWorkspace outputWorkspace) {
+    public INDArray output(INDArray input, boolean train, INDArray featuresMask, INDArray labelsMask, MemoryWorkspace outputWorkspace) {
+        MultiLayerNetwork replica = borrowOutputReplica();
+        //Only the forward pass holds the lock: borrowing/returning may synchronize on this network, as fit does
+        paramsLock.readLock().lock();
         try {
-            return outputOfLayerDetached(train, FwdPassType.STANDARD, layers.length - 1, input, featuresMask, labelsMask, outputWorkspace);
+            return replica.outputOfLayerDetached(train, FwdPassType.STANDARD, layers.length - 1, input, featuresMask, labelsMask, outputWorkspace);
         } catch (OutOfMemoryError e) {
             CrashReportingUtil.writeMemoryCrashDump(this, e);
             throw e;
+        } finally {
+            paramsLock.readLock().unlock();
+            returnOutputReplica(replica);
+        }
+    }
+
+    /**
+     * Get a copy of this network for executing a single output call. The copy has its own layers (and hence its own
+     * per-call state: layer inputs, mask arrays, etc) but shares the parameters of this network, so that output
+     * methods can be called concurrently from multiple threads without copying the parameters.<br>
+     * Copies are reused between calls: only as many copies as there are concurrent output calls are created.
+     * Return the copy using {@link #returnOutputReplica(MultiLayerNetwork)} once the call is done.
+     *
+     * @return Network copy for the current output call
+     */
+    protected MultiLayerNetwork borrowOutputReplica() {
+        if (!initCalled)
+            init();
+
+        Queue<MultiLayerNetwork> replicas = outputReplicas;
+        if (replicas == null) {
+            synchronized (this) {
+                if (outputReplicas == null)
+                    outputReplicas = new ConcurrentLinkedQueue<>();
+                replicas = outputReplicas;
+            }
         }
+
+        MultiLayerNetwork replica;
+        while ((replica = replicas.poll()) != null) {
+            //Copies created before the parameters array was replaced are stale
+            if (replica.flattenedParams == flattenedParams)
+                break;
+        }
+        if (replica == null) {
+            replica = new MultiLayerNetwork(layerWiseConfigurations.clone());
+            replica.init(flattenedParams, false);
+            if (hasAFrozenLayer()) {
+                for (int i = 0; i < layers.length; i++) {
+                    if (layers[i] instanceof FrozenLayer)
+                        replica.layers[i] = new FrozenLayer(replica.layers[i]);
+                }
+            }
+        }
+
+        //Workspace and cache modes, and the iteration/epoch counts used by schedules (dropout etc), may have been
+        //changed since the copy was created
+        replica.layerWiseConfigurations.setIterationCount(layerWiseConfigurations.getIterationCount());
+        replica.layerWiseConfigurations.setEpochCount(layerWiseConfigurations.getEpochCount());
+        replica.synchronizeIterEpochCounts();
+        replica.layerWiseConfigurations.setTrainingWorkspaceMode(layerWiseConfigurations.getTrainingWorkspaceMode());
+        replica.layerWiseConfigurations.setInferenceWorkspaceMode(layerWiseConfigurations.getInferenceWorkspaceMode());
+        replica.layerWiseConfigurations.setCacheMode(layerWiseConfigurations.getCacheMode());
+        return replica;
+    }
+
+    /**
+     * Return a network copy obtained from {@link #borrowOutputReplica()}, for reuse by later output calls
+     *
+     * @param replica Network copy to return
+     */
+    protected void returnOutputReplica(MultiLayerNetwork replica) {
+        //Don't keep references to the inputs of the last call
+        replica.input = null;
+        replica.clearLayerMaskArrays();
+        replica.clearLayersStates();
+        if (replica.flattenedParams == flattenedParams)
+            outputReplicas.offer(replica);
     }
 
     /**
@@ -2310,7 +2422,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
      * @param <T> T extends Object
      * @return T instance produced by OutputAdapter
      */
-    public synchronized <T> T output(@NonNull INDArray inputs, INDArray inputMasks, INDArray labelMasks, @NonNull OutputAdapter<T> outputAdapter) {
+    public <T> T output(@NonNull INDArray inputs, INDArray inputMasks, INDArray labelMasks, @NonNull OutputAdapter<T> outputAdapter) {
         try (val ws = Nd4j.getWorkspaceManager().getAndActivateWorkspace(WS_ALL_LAYERS_ACT_CONFIG, WS_OUTPUT_MEM)) {
             return outputAdapter.apply(output(inputs, false, inputMasks, labelMasks, ws));
         }
@@ -3904,6 +4016,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
 
         this.defaultConfiguration = mln.defaultConfiguration.clone();
         this.layerWiseConfigurations = mln.layerWiseConfigurations.clone();
+        this.paramsLock = new ReentrantReadWriteLock();
         this.init();
         this.flattenedParams.assign(mln.flattenedParams);
 
@@ -0,0 +1,330 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.nn.rnn;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.api.layers.RecurrentLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * RnnSessionManager: stateful RNN inference (as per {@link MultiLayerNetwork#rnnTimeStep(INDArray)}) for many
+ * independent sessions (streams) using a single network instance.<br>
+ * Callers pass a session id along with the input for each step. The RNN state of each session is kept in a compact
+ * off-heap {@link RnnStateStore} between steps, instead of in the layers. Steps for different sessions that are
+ * requested at the same time (concurrently from multiple threads, or together via {@link #rnnTimeStep(Map)}) are
+ * batched into a single forward pass: the states of the sessions are stacked into one minibatch, and split again
+ * afterwards. Steps are batched together only if their inputs have the same shape (apart from the minibatch
+ * dimension) - i.e., the same number of time steps.<br>
+ * ComputationGraphs must have exactly one input and one output.
+ * <br>
+ * PLEASE NOTE: The network must not be used for other rnnTimeStep calls while it is used by the session manager, as
+ * the manager overwrites the RNN state stored in the layers. Other output methods can be used concurrently.
+ */
+public class RnnSessionManager {
+    private final MultiLayerNetwork network;
+    private final ComputationGraph graph;
+
+    private final Queue<StepRequest> pending = new ConcurrentLinkedQueue<>();
+    private final Object lock = new Object();
+
+    //Layout of the state of one session in the state store; null until the first step
+    private List<StateSegment> layout;
+    private RnnStateStore store;
+
+    /**
+     * @param network Network to use for inference
+     */
+    public RnnSessionManager(@NonNull MultiLayerNetwork network) {
+        this.network = network;
+        this.graph = null;
+    }
+
+    /**
+     * @param graph Network to use for inference. Must have exactly one input and one output
+     */
+    public RnnSessionManager(@NonNull ComputationGraph graph) {
+        if (graph.getNumInputArrays() != 1 || graph.getNumOutputArrays() != 1) {
+            throw new IllegalArgumentException("Only ComputationGraphs with exactly one input and one output are " +
+                    "supported, got " + graph.getNumInputArrays() + " inputs and " + graph.getNumOutputArrays() + " outputs");
+        }
+        this.network = null;
+        this.graph = graph;
+    }
+
+    /**
+     * Do one inference step for the specified session, using (and updating) the stored RNN state of the session.
+     * New sessions start with the default (zero) state.<br>
+     * Concurrent calls for different sessions are batched into one forward pass.
+     *
+     * @param sessionId Id of the session
+     * @param input     Input for the session, with minibatch size 1: shape [1, inputSize] for a single time step,
+     *                  or [1, inputSize, timeSteps]
+     * @return Output for the session. See {@link MultiLayerNetwork#rnnTimeStep(INDArray)} for the output shape
+     */
+    public INDArray rnnTimeStep(@NonNull String sessionId, @NonNull INDArray input) {
+        StepRequest request = submit(sessionId, input);
+        synchronized (lock) {
+            if (!request.done)
+                processPending();
+        }
+        return request.getOutput();
+    }
+
+    /**
+     * Do one inference step for each of the specified sessions, in a single forward pass where possible.
+     * See {@link #rnnTimeStep(String, INDArray)}
+     *
+     * @param inputs Inputs, keyed by session id
+     * @return Outputs, keyed by session id
+     */
+    public Map<String, INDArray> rnnTimeStep(@NonNull Map<String, INDArray> inputs) {
+        List<StepRequest> requests = new ArrayList<>(inputs.size());
+        for (Map.Entry<String, INDArray> e : inputs.entrySet())
+            requests.add(submit(e.getKey(), e.getValue()));
+
+        synchronized (lock) {
+            processPending();
+        }
+
+        Map<String, INDArray> out = new LinkedHashMap<>();
+        for (StepRequest r : requests)
+            out.put(r.sessionId, r.getOutput());
+        return out;
+    }
+
+    /**
+     * Remove the stored state of the specified session. A subsequent step for the same session id starts with the
+     * default (zero) state
+     *
+     * @param sessionId Id of the session
+     * @return True if a state was stored for the session
+     */
+    public boolean removeSession(@NonNull String sessionId) {
+        synchronized (lock) {
+            return store != null && store.remove(sessionId);
+        }
+    }
+
+    /**
+     * @return Number of sessions with a stored state
+     */
+    public int numSessions() {
+        synchronized (lock) {
+            return store == null ? 0 : store.size();
+        }
+    }
+
+    private StepRequest submit(String sessionId, INDArray input) {
+        if (input.rank() < 2 || input.size(0) != 1) {
+            throw new IllegalArgumentException("Input for session \"" + sessionId + "\" must have minibatch size 1, got shape "
+                    + Arrays.toString(input.shape()));
+        }
+        StepRequest request = new StepRequest(sessionId, input);
+        pending.add(request);
+        return request;
+    }
+
+    private void processPending() {
+        List<StepRequest> requests = new ArrayList<>();
+        StepRequest r;
+        while ((r = pending.poll()) != null)
+            requests.add(r);
+
+        while (!requests.isEmpty()) {
+            //One step per session per forward pass; steps for the same session are executed in order
+            Set<String> inRound = new HashSet<>();
+            Map<String, List<StepRequest>> byShape = new LinkedHashMap<>();
+            List<StepRequest> nextRound = new ArrayList<>();
+            for (StepRequest request : requests) {
+                if (!inRound.add(request.sessionId)) {
+                    nextRound.add(request);
+                    continue;
+                }
+                long[] shape = request.input.shape();
+                String key = Arrays.toString(Arrays.copyOfRange(shape, 1, shape.length));
+                List<StepRequest> l = byShape.get(key);
+                if (l == null) {
+                    l = new ArrayList<>();
+                    byShape.put(key, l);
+                }
+                l.add(request);
+            }
+
+            for (List<StepRequest> batch : byShape.values()) {
+                try {
+                    execBatch(batch);
+                } catch (RuntimeException e) {
+                    for (StepRequest request : batch)
+                        request.error = e;
+                } finally {
+                    for (StepRequest request : batch)
+                        request.done = true;
+                }
+            }
+            requests = nextRound;
+        }
+    }
+
+    private void execBatch(List<StepRequest> batch) {
+        int n = batch.size();
+        String[] sessionIds = new String[n];
+        INDArray[] inputs = new INDArray[n];
+        for (int i = 0; i < n; i++) {
+            sessionIds[i] = batch.get(i).sessionId;
+            inputs[i] = batch.get(i).input;
+        }
+        INDArray input = (n == 1 ? inputs[0] : Nd4j.concat(0, inputs));
+
+        rnnClearPreviousState();
+        try {
+            if (layout != null)
+                setStates(store.get(sessionIds), n);
+
+            INDArray out = (network != null ? network.rnnTimeStep(input) : graph.rnnTimeStep(input)[0]);
+
+            Map<String, Map<String, INDArray>> states = getStates();
+            if (layout == null)
+                initLayout(states);
+            store.put(sessionIds, flattenStates(states, n));
+
+            INDArrayIndex[] idx = new INDArrayIndex[out.rank()];
+            for (int d = 1; d < idx.length; d++)
+                idx[d] = NDArrayIndex.all();
+            for (int i = 0; i < n; i++) {
+                idx[0] = NDArrayIndex.interval(i, i + 1);
+                batch.get(i).output = (n == 1 ? out : out.get(idx).dup());
+            }
+        } finally {
+            rnnClearPreviousState();
+        }
+    }
+
+    private void initLayout(Map<String, Map<String, INDArray>> states) {
+        List<StateSegment> segments = new ArrayList<>();
+        long offset = 0;
+        for (Map.Entry<String, Map<String, INDArray>> layer : states.entrySet()) {
+            //Sort state keys, for a deterministic layout
+            for (String key : new TreeSet<>(layer.getValue().keySet())) {
+                INDArray arr = layer.getValue().get(key);
+                long[] shape = arr.shape();
+                long length = arr.length() / shape[0];
+                segments.add(new StateSegment(layer.getKey(), key, shape, offset, length));
+                offset += length;
+            }
+        }
+        if (offset == 0)
+            throw new IllegalStateException("Network has no RNN layers with state: cannot be used for stateful inference");
+
+        layout = segments;
+        store = new RnnStateStore(offset);
+    }
+
+    private INDArray flattenStates(Map<String, Map<String, INDArray>> states, int n) {
+        INDArray flat = Nd4j.create(n, store.getStateSize());
+        for (StateSegment s : layout) {
+            INDArray arr = states.get(s.layer).get(s.key);
+            if (arr == null || arr.size(0) != n)
+                throw new IllegalStateException("Missing or invalid RNN state \"" + s.key + "\" for layer " + s.layer);
+            flat.get(NDArrayIndex.all(), NDArrayIndex.interval(s.offset, s.offset + s.length))
+                    .assign(arr.dup('c').reshape('c', n, s.length));
+        }
+        return flat;
+    }
+
+    private void setStates(INDArray flat, int n) {
+        Map<String, Map<String, INDArray>> states = new LinkedHashMap<>();
+        for (StateSegment s : layout) {
+            long[] shape = s.shape.clone();
+            shape[0] = n;
+            INDArray arr = flat.get(NDArrayIndex.all(), NDArrayIndex.interval(s.offset, s.offset + s.length))
+                    .dup('c').reshape('c', shape);
+            Map<String, INDArray> m = states.get(s.layer);
+            if (m == null) {
+                m = new HashMap<>();
+                states.put(s.layer, m);
+            }
+            m.put(s.key, arr);
+        }
+
+        for (Map.Entry<String, Map<String, INDArray>> e : states.entrySet()) {
+            if (network != null)
+                network.rnnSetPreviousState(Integer.parseInt(e.getKey()), e.getValue());
+            else
+                graph.rnnSetPreviousState(e.getKey(), e.getValue());
+        }
+    }
+
+    private Map<String, Map<String, INDArray>> getStates() {
+        Map<String, Map<String, INDArray>> states = new LinkedHashMap<>();
+        if (network != null) {
+            Layer[] layers = network.getLayers();
+            for (int i = 0; i < layers.length; i++) {
+                if (layers[i] instanceof RecurrentLayer)
+                    states.put(String.valueOf(i), network.rnnGetPreviousState(i));
+            }
+        } else {
+            states.putAll(new TreeMap<>(graph.rnnGetPreviousStates()));
+        }
+        return states;
+    }
+
+    private void rnnClearPreviousState() {
+        if (network != null)
+            network.rnnClearPreviousState();
+        else
+            graph.rnnClearPreviousState();
+    }
+
+    @AllArgsConstructor
+    private static class StateSegment {
+        private final String layer;
+        private final String key;
+        private final long[] shape;
+        private final long offset;
+        private final long length;
+    }
+
+    private static class StepRequest {
+        private final String sessionId;
+        private final INDArray input;
+        private INDArray output;
+        private RuntimeException error;
+        private boolean done;
+
+        private StepRequest(String sessionId, INDArray input) {
+            this.sessionId = sessionId;
+            this.input = input;
+        }
+
+        private INDArray getOutput() {
+            if (error != null)
+                throw error;
+            return output;
+        }
+    }
+}
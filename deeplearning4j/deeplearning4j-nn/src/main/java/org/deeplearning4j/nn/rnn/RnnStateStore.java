@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.nn.rnn;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * RnnStateStore: stores the RNN state of many independent sessions (streams) in a single off-heap array, with one
+ * row of fixed length per session.<br>
+ * The state of a session is the flattened concatenation of the states of all RNN layers of a network for a single
+ * example - see {@link RnnSessionManager}. Rows of removed sessions are reused for new sessions; the array grows
+ * (doubles) when all rows are in use.<br>
+ * Sessions without a stored state are treated as having a zero state, which is the default RNN state initialization.
+ * <br>
+ * PLEASE NOTE: This class is not thread safe.
+ */
+public class RnnStateStore {
+    public static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+    @Getter
+    private final long stateSize;
+    private INDArray states;
+    private final Map<String, Integer> rows = new HashMap<>();
+    private final Deque<Integer> freeRows = new ArrayDeque<>();
+    private int nextRow;
+
+    /**
+     * @param stateSize Length of the (flattened) state of one session
+     */
+    public RnnStateStore(long stateSize) {
+        this(stateSize, DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param stateSize       Length of the (flattened) state of one session
+     * @param initialCapacity Number of sessions to allocate space for initially
+     */
+    public RnnStateStore(long stateSize, int initialCapacity) {
+        if (stateSize <= 0)
+            throw new IllegalArgumentException("State size must be positive, got " + stateSize);
+        if (initialCapacity <= 0)
+            throw new IllegalArgumentException("Initial capacity must be positive, got " + initialCapacity);
+        this.stateSize = stateSize;
+        this.states = Nd4j.create(initialCapacity, stateSize);
+    }
+
+    /**
+     * @return Number of sessions with a stored state
+     */
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * @return Number of sessions that can be stored without growing the underlying array
+     */
+    public long capacity() {
+        return states.size(0);
+    }
+
+    /**
+     * @param sessionId Session id
+     * @return True if a state is stored for the specified session
+     */
+    public boolean contains(String sessionId) {
+        return rows.containsKey(sessionId);
+    }
+
+    /**
+     * Get the states of the specified sessions
+     *
+     * @param sessionIds Session ids
+     * @return States, with shape [numSessions, stateSize]. Rows for sessions without stored state are zero
+     */
+    public INDArray get(@NonNull String... sessionIds) {
+        INDArray out = Nd4j.zeros(sessionIds.length, stateSize);
+        for (int i = 0; i < sessionIds.length; i++) {
+            Integer row = rows.get(sessionIds[i]);
+            if (row != null)
+                out.putRow(i, states.getRow(row));
+        }
+        return out;
+    }
+
+    /**
+     * Store the states of the specified sessions, replacing any previously stored states
+     *
+     * @param sessionIds Session ids
+     * @param newStates  States, with shape [numSessions, stateSize]
+     */
+    public void put(@NonNull String[] sessionIds, @NonNull INDArray newStates) {
+        if (newStates.rank() != 2 || newStates.size(0) != sessionIds.length || newStates.size(1) != stateSize) {
+            throw new IllegalArgumentException("Expected states with shape [" + sessionIds.length + "," + stateSize
+                    + "], got " + Arrays.toString(newStates.shape()));
+        }
+        for (int i = 0; i < sessionIds.length; i++) {
+            Integer row = rows.get(sessionIds[i]);
+            if (row == null) {
+                row = allocateRow();
+                rows.put(sessionIds[i], row);
+            }
+            states.putRow(row, newStates.getRow(i));
+        }
+    }
+
+    /**
+     * Remove the state of the specified session
+     *
+     * @param sessionId Session id
+     * @return True if a state was stored for the session
+     */
+    public boolean remove(String sessionId) {
+        Integer row = rows.remove(sessionId);
+        if (row == null)
+            return false;
+        freeRows.addLast(row);
+        return true;
+    }
+
+    /**
+     * Remove the states of all sessions. The allocated memory is kept
+     */
+    public void clear() {
+        rows.clear();
+        freeRows.clear();
+        nextRow = 0;
+    }
+
+    private int allocateRow() {
+        if (!freeRows.isEmpty())
+            return freeRows.removeLast();
+
+        long capacity = states.size(0);
+        if (nextRow >= capacity) {
+            if (capacity >= Integer.MAX_VALUE)
+                throw new IllegalStateException("Cannot store more than " + Integer.MAX_VALUE + " sessions");
+            INDArray grown = Nd4j.create(Math.min(2 * capacity, Integer.MAX_VALUE), stateSize);
+            grown.get(NDArrayIndex.interval(0, capacity), NDArrayIndex.all()).assign(states);
+            states = grown;
+        }
+        return nextRow++;
+    }
+}
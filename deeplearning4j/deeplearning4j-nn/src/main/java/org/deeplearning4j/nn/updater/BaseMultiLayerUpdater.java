@@ -80,6 +80,7 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
         // (yet identical) ops.
         Trainable lastLayer = null;
         String lastVariable = null;
+        boolean lastSparse = false;
         UpdaterBlock currentBlock = null;
         updaterBlocks = new ArrayList<>();
 
@@ -108,9 +109,12 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
                                         .interval(paramsViewSoFar, paramsViewSoFar + paramSizeThisVariable));
                     }
 
+                    //Row-sparse gradients are updated lazily, hence need an updater block of their own
+                    boolean sparse = UpdaterBlock.sparseGradientLayer(layers[i], var) != null;
+
                     //First: decide whether to add to the existing updater block, or create a new one
-                    if (currentBlock == null || !UpdaterUtils.updaterConfigurationsEquals(lastLayer, lastVariable,
-                                    layers[i], var)) {
+                    if (currentBlock == null || sparse || lastSparse || !UpdaterUtils.updaterConfigurationsEquals(
+                                    lastLayer, lastVariable, layers[i], var)) {
 
                         // FIXME: int cast
                         //Create a new block
@@ -136,6 +140,7 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
 
                     lastLayer = layers[i];
                     lastVariable = variables.get(j);
+                    lastSparse = sparse;
                     updaterStateSize += updaterStateSizeThisVariable;
                     paramsViewSoFar += paramSizeThisVariable;
                     currentUpdaterOffset += updaterStateSizeThisVariable;
@@ -21,10 +21,14 @@ import lombok.Data;
 import lombok.val;
 import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.Trainable;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.layers.BaseLayer;
+import org.deeplearning4j.nn.graph.vertex.GraphVertex;
 import org.deeplearning4j.nn.layers.FrozenLayer;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.custom.ScatterUpdate;
+import org.nd4j.linalg.api.shape.Shape;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.linalg.learning.GradientUpdater;
@@ -41,6 +45,8 @@ import java.util.List;
  */
 @Data
 public class UpdaterBlock {
+    private static final int[] DIM_1 = new int[]{1};
+
     private int paramOffsetStart;
     private int paramOffsetEnd;
     private int updaterViewOffsetStart;
@@ -157,6 +163,20 @@ public class UpdaterBlock {
             return;
         }
 
+        //Row-sparse gradients (embedding layers): apply updater lazily, to the rows set in the last backprop only.
+        //Sparse parameters are always in an updater block of their own
+        if (!externalGradient && layersAndVariablesInBlock.size() == 1) {
+            ParamState p = layersAndVariablesInBlock.get(0);
+            SparseGradientLayer sparseLayer = sparseGradientLayer(p.getLayer(), p.getParamName());
+            if (sparseLayer != null) {
+                int[] rows = sparseLayer.getSparseGradientRows(p.getParamName());
+                if (rows != null && updateSparse(p, rows, iteration, epoch)) {
+                    sparseLayer.sparseGradientApplied(p.getParamName());
+                    return;
+                }
+            }
+        }
+
         //Apply the updater itself
         gradientUpdater.applyUpdater(blockGradViewArray, iteration, epoch);
 
@@ -178,6 +198,88 @@ public class UpdaterBlock {
         }
     }
 
+    /**
+     * Apply the updater, and L1/L2 regularization, to the specified rows of a 2d parameter only.
+     * This relies on all updaters being element-wise: the updater state for a parameter of length n consists of
+     * (stateSize / n) arrays, each with the same layout as the parameter. The specified rows of the gradient and of
+     * each state array are gathered, updated by a temporary updater instance and then scattered back.
+     *
+     * @param p         Parameter to update. Must be the only parameter in this block
+     * @param rows      Sorted, unique row indices to update
+     * @return False if the parameter layout is not supported - the standard (dense) update should be used instead
+     */
+    protected boolean updateSparse(ParamState p, int[] rows, int iteration, int epoch) {
+        INDArray params = p.getLayer().paramTable(false).get(p.getParamName());
+        if (params == null || params.rank() != 2)
+            return false;
+
+        long[] shape = params.shape();
+        long length = params.length();
+        INDArray gradient = Shape.newShapeNoCopy(p.getGradView(), shape, params.ordering() == 'f');
+        if (gradient == null)
+            return false;
+
+        int numStateArrays = updaterView == null ? 0 : (int) (updaterView.length() / length);
+        INDArray[] state = new INDArray[numStateArrays];
+        for (int i = 0; i < numStateArrays; i++) {
+            INDArray subset = updaterView.get(NDArrayIndex.point(0), NDArrayIndex.interval(i * length, (i + 1) * length));
+            state[i] = Shape.newShapeNoCopy(subset, shape, params.ordering() == 'f');
+            if (state[i] == null)
+                return false;
+        }
+
+        if (rows.length == 0)
+            return true;
+
+        long sparseLength = rows.length * shape[1];
+        INDArray sparseGradient = Nd4j.pullRows(gradient, 1, rows, 'c');
+        INDArray sparseState = null;
+        if (numStateArrays > 0) {
+            sparseState = Nd4j.createUninitialized(new long[] {1, numStateArrays * sparseLength}, 'c');
+            for (int i = 0; i < numStateArrays; i++) {
+                sparseState.get(NDArrayIndex.point(0), NDArrayIndex.interval(i * sparseLength, (i + 1) * sparseLength))
+                                .assign(Nd4j.pullRows(state[i], 1, rows, 'c').reshape('c', 1, sparseLength));
+            }
+        }
+
+        Trainable layer = p.getLayer();
+        GradientUpdater u = layer.getConfig().getUpdaterByParam(p.getParamName()).instantiate(sparseState, false);
+        u.applyUpdater(sparseGradient.reshape('c', 1, sparseLength), iteration, epoch);
+
+        double l2 = layer.getConfig().getL2ByParam(p.getParamName());
+        double l1 = layer.getConfig().getL1ByParam(p.getParamName());
+        if (l2 > 0 || l1 > 0) {
+            INDArray sparseParams = Nd4j.pullRows(params, 1, rows, 'c');
+            if (l2 > 0)
+                sparseGradient.addi(sparseParams.mul(l2));
+            if (l1 > 0)
+                sparseGradient.addi(Transforms.sign(sparseParams, true).muli(l1));
+        }
+
+        Nd4j.getExecutioner().exec(new ScatterUpdate(gradient, sparseGradient, rows, DIM_1, ScatterUpdate.UpdateOp.ASSIGN));
+        for (int i = 0; i < numStateArrays; i++) {
+            INDArray s = sparseState.get(NDArrayIndex.point(0), NDArrayIndex.interval(i * sparseLength, (i + 1) * sparseLength))
+                            .reshape('c', rows.length, shape[1]);
+            Nd4j.getExecutioner().exec(new ScatterUpdate(state[i], s, rows, DIM_1, ScatterUpdate.UpdateOp.ASSIGN));
+        }
+        return true;
+    }
+
+    /**
+     * @param layer     Layer or vertex
+     * @param paramName Name of the parameter
+     * @return The layer, if it produces row-sparse gradients for the specified parameter; null otherwise
+     */
+    public static SparseGradientLayer sparseGradientLayer(Trainable layer, String paramName) {
+        Object l = layer;
+        if (layer instanceof GraphVertex && ((GraphVertex) layer).hasLayer())
+            l = ((GraphVertex) layer).getLayer();
+
+        if (l instanceof SparseGradientLayer && ((SparseGradientLayer) l).hasSparseGradient(paramName))
+            return (SparseGradientLayer) l;
+        return null;
+    }
+
     /**
      * Apply L1 and L2 regularization, if necessary. Note that L1/L2 may differ for different layers in the same block
      *
@@ -108,6 +108,17 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
 
     protected EncodedGradientsAccumulator(int parties, @NonNull MessageHandler handler, long initialMemory,
                     int queueSize, Double boundary, boolean encodingDebugMode) {
+        this(parties, parties, queueSize, handler, initialMemory, queueSize, boundary, encodingDebugMode);
+    }
+
+    /**
+     * PLEASE NOTE: numQueues defines number of message queues (and corresponding workspaces) created,
+     * each of them able to hold up to queueCapacity messages. Default behavior is one queue per party.
+     * Each message may take up to initialMemory / queueSize bytes, so every queue workspace is sized to hold
+     * queueCapacity such messages.
+     */
+    protected EncodedGradientsAccumulator(int parties, int numQueues, int queueCapacity, @NonNull MessageHandler handler,
+                    long initialMemory, int queueSize, Double boundary, boolean encodingDebugMode) {
         this.parties = parties;
         this.handler = handler;
         this.initialMemory = initialMemory;
@@ -116,7 +127,9 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
         this.encodingDebugMode = encodingDebugMode;
 
         // maybe not the best idea in the world, but we'll use cyclic workspace of 25MB to receive updates
-        WorkspaceConfiguration configuration = WorkspaceConfiguration.builder().initialSize(initialMemory)
+        // (scaled up for queues holding more than queueSize messages)
+        long workspaceSize = queueCapacity > queueSize ? initialMemory / queueSize * queueCapacity : initialMemory;
+        WorkspaceConfiguration configuration = WorkspaceConfiguration.builder().initialSize(workspaceSize)
                         .policyReset(ResetPolicy.ENDOFBUFFER_REACHED).policyAllocation(AllocationPolicy.STRICT)
                         .policySpill(SpillPolicy.FAIL).policyLearning(LearningPolicy.NONE).build();
 
@@ -135,8 +148,8 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
         // pre-create Queues for local workers
         int curDev = Nd4j.getAffinityManager().getDeviceForCurrentThread();
 
-        for (int i = 0; i < parties; i++) {
-            messages.add(new LinkedBlockingQueue<INDArray>(queueSize));
+        for (int i = 0; i < numQueues; i++) {
+            messages.add(new LinkedBlockingQueue<INDArray>(queueCapacity));
 
             // we don't want device index to step out of boundaries here
             int cDevice = numDevices > 1 ? i % numDevices : 0;
@@ -276,6 +289,22 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
 
     }
 
+    /**
+     * This method decodes single threshold/bitmap encoded message into given array
+     *
+     * @param compressed
+     * @param updates
+     */
+    protected void decodeUpdate(INDArray compressed, INDArray updates) {
+        int encoding = compressed.data().getInt(3);
+        if (encoding == ThresholdCompression.FLEXIBLE_ENCODING)
+            Nd4j.getExecutioner().thresholdDecode(compressed, updates);
+        else if (encoding == ThresholdCompression.BITMAP_ENCODING)
+            Nd4j.getExecutioner().bitmapDecode(compressed, updates);
+        else
+            throw new DL4JInvalidConfigException("Unknown compression header received: " + encoding);
+    }
+
     /**
      * This method applies accumulated updates via given StepFunction
      *
@@ -295,13 +324,7 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
             while (!messages.get(index.get()).isEmpty()) {
                 INDArray compressed = messages.get(index.get()).poll();
 
-                int encoding = compressed.data().getInt(3);
-                if (encoding == ThresholdCompression.FLEXIBLE_ENCODING)
-                    Nd4j.getExecutioner().thresholdDecode(compressed, updates);
-                else if (encoding == ThresholdCompression.BITMAP_ENCODING)
-                    Nd4j.getExecutioner().bitmapDecode(compressed, updates);
-                else
-                    throw new DL4JInvalidConfigException("Unknown compression header received: " + encoding);
+                decodeUpdate(compressed, updates);
 
                 cnt++;
             }
@@ -360,13 +383,7 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
             while (!messages.get(index.get()).isEmpty()) {
                 INDArray compressed = messages.get(index.get()).poll();
 
-                int encoding = compressed.data().getInt(3);
-                if (encoding == ThresholdCompression.FLEXIBLE_ENCODING)
-                    Nd4j.getExecutioner().thresholdDecode(compressed, updates);
-                else if (encoding == ThresholdCompression.BITMAP_ENCODING)
-                    Nd4j.getExecutioner().bitmapDecode(compressed, updates);
-                else
-                    throw new DL4JInvalidConfigException("Unknown compression header received: " + encoding);
+                decodeUpdate(compressed, updates);
 
                 cnt++;
             }
@@ -486,41 +503,50 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
     public void receiveUpdate(INDArray array) {
         try {
             // we're replicating COMPRESSED MESSAGES, decompression will be thread-local
-            for (int i = 0; i < parties; i++) {
-                // we don't want to have same workspace to be accessible by 2 different threads for now
-                /*
-                    With synchronized external data, it's impossible to deadlock here.
-                    Each worker is guaranteed to have at least NUM_WORKERS slots in buffer.
-                    So we use this lock just to ensure thread-safety of corresponding workspaces
-                */
-                locks.get(i).lock();
-
-                try (MemoryWorkspace workspace = workspaces.get(i).notifyScopeEntered()) {
-                    // we might just scope out of workspace here, instead of throwing error out
-                    if (array.data().length() > (initialMemory / queueSize)
-                                    / Nd4j.sizeOfDataType(array.data().dataType()))
-                        throw new ND4JIllegalStateException("Not enough memory to handle update: ["
-                                        + array.data().length() * Nd4j.sizeOfDataType(array.data().dataType())
-                                        + " bytes required]. Please increase memory amount for GradientsAccumulator");
-
-                    INDArray compressed = array.unsafeDuplication();
-                    try {
-                        messages.get(i).put(compressed);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        log.warn("Something bad at index_{}", i);
-                        throw new RuntimeException(e);
-                    }
-                }
-
-                locks.get(i).unlock();
-            }
+            for (int i = 0; i < messages.size(); i++)
+                putMessage(i, array);
         } catch (Exception e) {
             throwable.setIfFirst(e);
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * This method puts copy of given compressed message to the queue with given index
+     *
+     * @param queueIndex
+     * @param array
+     */
+    protected void putMessage(int queueIndex, INDArray array) {
+        // we don't want to have same workspace to be accessible by 2 different threads for now
+        /*
+            With synchronized external data, it's impossible to deadlock here.
+            Each worker is guaranteed to have at least NUM_WORKERS slots in buffer.
+            So we use this lock just to ensure thread-safety of corresponding workspaces
+        */
+        locks.get(queueIndex).lock();
+
+        try (MemoryWorkspace workspace = workspaces.get(queueIndex).notifyScopeEntered()) {
+            // we might just scope out of workspace here, instead of throwing error out
+            if (array.data().length() > (initialMemory / queueSize)
+                            / Nd4j.sizeOfDataType(array.data().dataType()))
+                throw new ND4JIllegalStateException("Not enough memory to handle update: ["
+                                + array.data().length() * Nd4j.sizeOfDataType(array.data().dataType())
+                                + " bytes required]. Please increase memory amount for GradientsAccumulator");
+
+            INDArray compressed = array.unsafeDuplication();
+            try {
+                messages.get(queueIndex).put(compressed);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Something bad at index_{}", queueIndex);
+                throw new RuntimeException(e);
+            }
+        } finally {
+            locks.get(queueIndex).unlock();
+        }
+    }
+
     /**
      * This method resets all accumulated updates (if any)
      */
@@ -536,7 +562,7 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
         index = new ThreadLocal<>();
 
         // throw away message queues
-        for (int i = 0; i < parties; i++) {
+        for (int i = 0; i < messages.size(); i++) {
             messages.get(i).clear();
         }
     }
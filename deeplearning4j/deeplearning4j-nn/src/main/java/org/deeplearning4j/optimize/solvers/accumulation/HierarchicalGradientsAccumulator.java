@@ -0,0 +1,352 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.optimize.solvers.accumulation;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.exception.DL4JInvalidConfigException;
+import org.deeplearning4j.optimize.api.StepFunction;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.ResidualPostProcessor;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.ThresholdAlgorithm;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.residual.ResidualClippingPostProcessor;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.threshold.AdaptiveThresholdAlgorithm;
+import org.nd4j.base.Preconditions;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This GradientsAccumulator reduces encoded updates hierarchically, instead of replicating every message to every worker.
+ *
+ * Workers are split into groups (by default - one group per NUMA node), and each training step goes like this:
+ * 1) every worker puts its encoded update into the queue of its own group only
+ * 2) first worker of each group decodes all messages of this group into dense partial sum
+ * 3) the same worker sums up partials of all groups into aggregate, owned by its group
+ * 4) all workers of the group apply this aggregate to their params, without modifying it
+ *
+ * So every message is decoded exactly once, and number of dense aggregations depends on number of groups only,
+ * while EncodedGradientsAccumulator decodes each message once per worker.
+ *
+ * PLEASE NOTE: Workers are assigned to groups in contiguous blocks of indices, so worker threads are expected
+ * to be pinned to NUMA nodes in the same order.
+ * PLEASE NOTE: Messages passed to receiveUpdate() from threads that weren't registered via touch() (i.e. remote updates)
+ * are decoded once as well, by one of group leaders.
+ */
+@Slf4j
+public class HierarchicalGradientsAccumulator extends EncodedGradientsAccumulator {
+    @Getter
+    protected final int numGroups;
+
+    // index of the queue used for messages coming from threads outside of this accumulator
+    protected final int remoteQueue;
+
+    protected final AtomicBoolean[] groupLeaders;
+    protected final AtomicBoolean remoteLeader = new AtomicBoolean(false);
+    protected final AtomicIntegerArray groupMessages;
+    protected final AtomicIntegerArray aggregatedMessages;
+
+    protected final INDArray[] partials;
+    protected final INDArray[] aggregates;
+
+    public HierarchicalGradientsAccumulator(int parties, double threshold) {
+        this(parties, getNumberOfNumaNodes(), new AdaptiveThresholdAlgorithm(threshold),
+                        new ResidualClippingPostProcessor(5, 5), false);
+    }
+
+    public HierarchicalGradientsAccumulator(int parties, int numGroups, ThresholdAlgorithm thresholdAlgorithm,
+                    ResidualPostProcessor residualPostProcessor, boolean encodingDebugMode) {
+        this(parties, numGroups, new EncodingHandler(thresholdAlgorithm, residualPostProcessor, 1.0, encodingDebugMode),
+                        DEFAULT_INITIAL_MEMORY, 10, 1.0, encodingDebugMode);
+    }
+
+    protected HierarchicalGradientsAccumulator(int parties, int numGroups, @NonNull MessageHandler handler,
+                    long initialMemory, int queueSize, Double boundary, boolean encodingDebugMode) {
+        // one queue per group, plus one for remote messages. each group queue receives up to groupSize messages per
+        // iteration, so its workspace is groupSize times larger as well
+        super(parties, Math.min(numGroups, parties) + 1, queueSize * groupSize(parties, Math.min(numGroups, parties)),
+                        handler, initialMemory, queueSize, boundary, encodingDebugMode);
+
+        this.numGroups = Math.min(numGroups, parties);
+        this.remoteQueue = this.numGroups;
+
+        groupLeaders = new AtomicBoolean[this.numGroups];
+        for (int i = 0; i < this.numGroups; i++)
+            groupLeaders[i] = new AtomicBoolean(false);
+
+        groupMessages = new AtomicIntegerArray(this.numGroups);
+        aggregatedMessages = new AtomicIntegerArray(this.numGroups);
+
+        partials = new INDArray[this.numGroups];
+        aggregates = new INDArray[this.numGroups];
+    }
+
+    protected static int groupSize(int parties, int numGroups) {
+        Preconditions.checkArgument(numGroups > 0, "Number of groups should be positive value, got %s", numGroups);
+        return (parties + numGroups - 1) / numGroups;
+    }
+
+    /**
+     * This method returns number of NUMA nodes available in the system, or 1 if that information isn't available
+     *
+     * @return
+     */
+    public static int getNumberOfNumaNodes() {
+        File[] nodes = new File("/sys/devices/system/node").listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isDirectory() && file.getName().matches("node\\d+");
+            }
+        });
+
+        return nodes == null || nodes.length == 0 ? 1 : nodes.length;
+    }
+
+    /**
+     * This method returns group for worker with given index
+     *
+     * @param workerIndex
+     * @return
+     */
+    protected int getGroup(int workerIndex) {
+        return Math.min((int) ((long) workerIndex * numGroups / parties), numGroups - 1);
+    }
+
+    @Override
+    public void receiveUpdate(INDArray array) {
+        try {
+            // local updates go to the group of the worker, everything else is decoded separately
+            Integer workerIndex = index.get();
+            putMessage(workerIndex == null ? remoteQueue : getGroup(workerIndex), array);
+        } catch (Exception e) {
+            throwable.setIfFirst(e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void applyUpdate(StepFunction function, INDArray params, INDArray updates, boolean isFinalStep) {
+        if (updatesApplied.get() == null)
+            updatesApplied.set(new AtomicLong(0));
+
+        try {
+            int cnt;
+            if (isFinalStep)
+                cnt = reduceAndApply(function, params, updates, null);
+            else
+                cnt = applyExternalUpdates(function, params, updates, null);
+
+            if (cnt > 0) {
+                updatesApplied.get().addAndGet(cnt);
+                if (isDebug)
+                    log.info("Total updates applied so far for thread [{}]: [{}]", Thread.currentThread().getName(), updatesApplied.get());
+            }
+        } catch (Exception e) {
+            throwable.setIfFirst(e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void applyUpdate(StepFunction function, INDArray params, INDArray updates, double alpha) {
+        try {
+            reduceAndApply(function, params, updates, alpha);
+        } catch (Exception e) {
+            throwable.setIfFirst(e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * This method applies external updates only, without any synchronization between workers
+     */
+    protected int applyExternalUpdates(StepFunction function, INDArray params, INDArray updates, Double alpha) {
+        if (externalSource == null || !externalSource.hasAnything())
+            return 0;
+
+        Nd4j.getMemoryManager().memset(updates);
+        externalSource.drainTo(updates);
+
+        step(function, params, updates, alpha);
+        return 1;
+    }
+
+    /**
+     * This method does both reduction stages, and applies resulting aggregate of the current worker's group
+     *
+     * @return number of messages applied
+     */
+    protected int reduceAndApply(StepFunction function, INDArray params, INDArray updates, Double alpha) {
+        int consumers = currentConsumers.get();
+        int group = getGroup(index.get());
+
+        // first thread of each group becomes its leader for this iteration
+        boolean isLeader = groupLeaders[group].compareAndSet(false, true);
+        boolean isRemoteLeader = false;
+        if (isLeader) {
+            INDArray partial = getOrCreate(partials, group, updates);
+            Nd4j.getMemoryManager().memset(partial);
+
+            int cnt = drainQueue(group, partial);
+
+            isRemoteLeader = remoteLeader.compareAndSet(false, true);
+            if (isRemoteLeader)
+                cnt += drainQueue(remoteQueue, partial);
+
+            groupMessages.set(group, cnt);
+            Nd4j.getExecutioner().commit();
+        }
+
+        // all partials are ready at this point
+        synchronize(consumers);
+
+        if (isLeader) {
+            INDArray aggregate = getOrCreate(aggregates, group, updates);
+            Nd4j.getMemoryManager().memset(aggregate);
+
+            int cnt = 0;
+            for (int g = 0; g < numGroups; g++) {
+                // groups without workers in this iteration have no partials
+                if (!groupLeaders[g].get() || groupMessages.get(g) == 0)
+                    continue;
+
+                aggregate.addi(partials[g]);
+                cnt += groupMessages.get(g);
+            }
+
+            aggregatedMessages.set(group, cnt);
+            Nd4j.getExecutioner().commit();
+        }
+
+        // all aggregates are ready at this point
+        synchronize(consumers);
+
+        if (isLeader)
+            groupLeaders[group].set(false);
+
+        if (isRemoteLeader)
+            remoteLeader.set(false);
+
+        int cnt = aggregatedMessages.get(group);
+        INDArray result = aggregates[group];
+
+        if (isDebug && cnt > 0)
+            log.info("Local updates to be applied: {}", cnt);
+
+        // external updates are tracked per consumer, so they can't be merged into shared aggregate
+        if (externalSource != null && externalSource.hasAnything()) {
+            if (cnt > 0)
+                updates.assign(result);
+            else
+                Nd4j.getMemoryManager().memset(updates);
+
+            externalSource.drainTo(updates);
+            result = updates;
+            cnt++;
+        }
+
+        if (cnt > 0)
+            step(function, params, result, alpha);
+
+        // aggregates can't be touched until every worker applied them
+        synchronize(consumers, true);
+
+        return cnt;
+    }
+
+    protected void step(StepFunction function, INDArray params, INDArray updates, Double alpha) {
+        if (alpha == null)
+            function.step(params, updates);
+        else
+            function.step(params, updates, alpha);
+    }
+
+    protected int drainQueue(int queueIndex, INDArray target) {
+        int cnt = 0;
+        INDArray compressed;
+        while ((compressed = messages.get(queueIndex).poll()) != null) {
+            decodeUpdate(compressed, target);
+            cnt++;
+        }
+
+        return cnt;
+    }
+
+    protected INDArray getOrCreate(INDArray[] arrays, int group, INDArray updates) {
+        INDArray array = arrays[group];
+        if (array == null || array.length() != updates.length()) {
+            // arrays are allocated by the group leader, so they're first touched within its NUMA node
+            try (MemoryWorkspace workspace = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                array = Nd4j.create(updates.shape(), updates.ordering());
+            }
+            arrays[group] = array;
+        }
+
+        return array;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+
+        for (int i = 0; i < numGroups; i++)
+            groupLeaders[i].set(false);
+
+        remoteLeader.set(false);
+    }
+
+    public static class Builder extends EncodedGradientsAccumulator.Builder {
+        protected int numGroups = getNumberOfNumaNodes();
+
+        public Builder(int parties) {
+            super(parties);
+        }
+
+        /**
+         * This method allows to specify number of groups workers will be split into.
+         * Usually it should be equal to the number of NUMA nodes (or sockets) in the system.
+         *
+         * Default value: number of NUMA nodes
+         * @param numGroups
+         * @return
+         */
+        public Builder numGroups(int numGroups) {
+            if (numGroups < 1)
+                throw new DL4JInvalidConfigException("Number of groups should be positive value");
+
+            this.numGroups = numGroups;
+            return this;
+        }
+
+        @Override
+        public HierarchicalGradientsAccumulator build() {
+            if (handler == null) {
+                Preconditions.checkNotNull(thresholdAlgorithm, "Both threshold algorithm and handler are null - one or the other must be set");
+                handler = new EncodingHandler(thresholdAlgorithm, residualPostProcessor, boundary, encodingDebugMode);
+            }
+
+            return new HierarchicalGradientsAccumulator(parties, numGroups, handler, initialMemory, queueSize, boundary, encodingDebugMode);
+        }
+    }
+}
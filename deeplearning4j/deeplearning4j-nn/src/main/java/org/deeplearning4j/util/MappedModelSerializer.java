@@ -0,0 +1,516 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.util;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.bytedeco.javacpp.DoublePointer;
+import org.bytedeco.javacpp.FloatPointer;
+import org.bytedeco.javacpp.indexer.DoubleIndexer;
+import org.bytedeco.javacpp.indexer.FloatIndexer;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.preprocessor.DataNormalization;
+import org.nd4j.linalg.dataset.api.preprocessor.Normalizer;
+import org.nd4j.linalg.dataset.api.preprocessor.serializer.NormalizerSerializer;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Utility class suited to save/restore neural net models in uncompressed, memory-mappable format.
+ *
+ * Unlike {@link ModelSerializer}, which stores everything in a zip file, this format stores parameters and
+ * updater state as raw aligned sections, so on restore the flattened parameters array is backed directly
+ * by memory-mapped file pages: nothing is inflated or copied, and pages are loaded by the OS on first access.
+ * Updater state isn't touched on restore at all, and can be loaded on demand via {@link #restoreUpdaterState(Model, File)}.
+ *
+ * File layout: 8 bytes magic, int version, int header length, header (model type, data type, byte order and
+ * section table), then sections, each aligned to {@link #ALIGNMENT} bytes.
+ *
+ * PLEASE NOTE: Parameters are mapped in private (copy-on-write) mode, so modifying restored model never changes the file.
+ * PLEASE NOTE: Zero-copy mapping is used only if section is below 2GB, and data type and byte order of the file
+ * match current ones. Otherwise data is read from the mapped file in chunks, directly into the parameters array.
+ */
+@Slf4j
+public class MappedModelSerializer {
+    public static final int ALIGNMENT = 4096;
+    public static final int VERSION = 1;
+    public static final String MULTI_LAYER_NETWORK = "MultiLayerNetwork";
+    public static final String COMPUTATION_GRAPH = "ComputationGraph";
+
+    private static final byte[] MAGIC = "DL4JMMAP".getBytes(StandardCharsets.US_ASCII);
+    private static final int CHUNK_ELEMENTS = 1 << 22;
+
+    private MappedModelSerializer() {}
+
+    /**
+     * Write a model to a file in memory-mappable format
+     *
+     * @param model the model to write
+     * @param file the file to write to
+     * @param saveUpdater whether to save the updater state or not
+     * @throws IOException
+     */
+    public static void writeModel(@NonNull Model model, @NonNull File file, boolean saveUpdater) throws IOException {
+        writeModel(model, file, saveUpdater, null);
+    }
+
+    /**
+     * Write a model to a file in memory-mappable format
+     *
+     * @param model the model to write
+     * @param file the file to write to
+     * @param saveUpdater whether to save the updater state or not
+     * @param dataNormalization the normalizer to save (optional)
+     * @throws IOException
+     */
+    public static void writeModel(@NonNull Model model, @NonNull File file, boolean saveUpdater,
+                    DataNormalization dataNormalization) throws IOException {
+        String modelType;
+        String json;
+        INDArray updaterState = null;
+        if (model instanceof MultiLayerNetwork) {
+            MultiLayerNetwork network = (MultiLayerNetwork) model;
+            modelType = MULTI_LAYER_NETWORK;
+            json = network.getLayerWiseConfigurations().toJson();
+            if (saveUpdater && network.getUpdater() != null)
+                updaterState = network.getUpdater().getStateViewArray();
+        } else if (model instanceof ComputationGraph) {
+            ComputationGraph graph = (ComputationGraph) model;
+            modelType = COMPUTATION_GRAPH;
+            json = graph.getConfiguration().toJson();
+            if (saveUpdater && graph.getUpdater() != null)
+                updaterState = graph.getUpdater().getStateViewArray();
+        } else {
+            throw new IllegalArgumentException("Only MultiLayerNetwork and ComputationGraph are supported, got "
+                            + model.getClass().getSimpleName());
+        }
+
+        INDArray params = model.params();
+        DataBuffer.Type dataType = params != null ? params.data().dataType() : Nd4j.dataType();
+        if (dataType != DataBuffer.Type.FLOAT && dataType != DataBuffer.Type.DOUBLE)
+            throw new UnsupportedOperationException("Only FLOAT and DOUBLE data types are supported, got " + dataType);
+
+        Map<String, Object> sections = new LinkedHashMap<>();
+        sections.put(ModelSerializer.CONFIGURATION_JSON, json.getBytes(StandardCharsets.UTF_8));
+        if (params != null && params.length() > 0)
+            sections.put(ModelSerializer.COEFFICIENTS_BIN, params);
+        if (updaterState != null && updaterState.length() > 0)
+            sections.put(ModelSerializer.UPDATER_BIN, updaterState);
+        if (dataNormalization != null) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            NormalizerSerializer.getDefault().write(dataNormalization, bos);
+            sections.put(ModelSerializer.NORMALIZER_BIN, bos.toByteArray());
+        }
+
+        // header has fixed size for given sections, so we can lay out offsets before writing anything
+        int elementSize = dataType == DataBuffer.Type.FLOAT ? 4 : 8;
+        Map<String, long[]> table = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> e : sections.entrySet())
+            table.put(e.getKey(), new long[] {0, sizeOf(e.getValue(), elementSize)});
+
+        int headerLength = header(modelType, dataType, table).length;
+        long position = align(MAGIC.length + 8 + headerLength);
+        for (long[] entry : table.values()) {
+            entry[0] = position;
+            position = align(position + entry[1]);
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            raf.setLength(0);
+
+            ByteBuffer preamble = ByteBuffer.allocate(MAGIC.length + 8);
+            preamble.put(MAGIC).putInt(VERSION).putInt(headerLength).flip();
+            writeFully(channel, preamble, 0);
+            writeFully(channel, ByteBuffer.wrap(header(modelType, dataType, table)), MAGIC.length + 8);
+
+            for (Map.Entry<String, Object> e : sections.entrySet()) {
+                long offset = table.get(e.getKey())[0];
+                Object value = e.getValue();
+                if (value instanceof byte[])
+                    writeFully(channel, ByteBuffer.wrap((byte[]) value), offset);
+                else
+                    writeArray(channel, (INDArray) value, dataType, offset);
+            }
+
+            // trailing padding keeps the last section aligned for mapping
+            raf.setLength(position);
+        }
+    }
+
+    /**
+     * Load a multi layer network from a file written by {@link #writeModel(Model, File, boolean)}.
+     * Parameters are memory-mapped, updater state isn't loaded.
+     *
+     * @param file the file to load from
+     * @return the loaded multi layer network
+     * @throws IOException
+     */
+    public static MultiLayerNetwork restoreMultiLayerNetwork(@NonNull File file) throws IOException {
+        return restoreMultiLayerNetwork(file, false);
+    }
+
+    /**
+     * Load a multi layer network from a file written by {@link #writeModel(Model, File, boolean)}.
+     * Parameters are memory-mapped.
+     *
+     * @param file the file to load from
+     * @param loadUpdater if true, updater state will be loaded too
+     * @return the loaded multi layer network
+     * @throws IOException
+     */
+    public static MultiLayerNetwork restoreMultiLayerNetwork(@NonNull File file, boolean loadUpdater)
+                    throws IOException {
+        try (MappedModelFile mmf = new MappedModelFile(file)) {
+            if (!MULTI_LAYER_NETWORK.equals(mmf.modelType))
+                throw new IllegalStateException("File contains " + mmf.modelType
+                                + " - use MappedModelSerializer.restoreComputationGraph instead");
+
+            MultiLayerConfiguration conf = MultiLayerConfiguration.fromJson(mmf.readString(ModelSerializer.CONFIGURATION_JSON));
+            MultiLayerNetwork network = new MultiLayerNetwork(conf);
+            network.init(mmf.mapArray(ModelSerializer.COEFFICIENTS_BIN), false);
+
+            if (loadUpdater)
+                restoreUpdaterState(network, mmf);
+
+            return network;
+        }
+    }
+
+    /**
+     * Load a computation graph from a file written by {@link #writeModel(Model, File, boolean)}.
+     * Parameters are memory-mapped, updater state isn't loaded.
+     *
+     * @param file the file to load from
+     * @return the loaded computation graph
+     * @throws IOException
+     */
+    public static ComputationGraph restoreComputationGraph(@NonNull File file) throws IOException {
+        return restoreComputationGraph(file, false);
+    }
+
+    /**
+     * Load a computation graph from a file written by {@link #writeModel(Model, File, boolean)}.
+     * Parameters are memory-mapped.
+     *
+     * @param file the file to load from
+     * @param loadUpdater if true, updater state will be loaded too
+     * @return the loaded computation graph
+     * @throws IOException
+     */
+    public static ComputationGraph restoreComputationGraph(@NonNull File file, boolean loadUpdater)
+                    throws IOException {
+        try (MappedModelFile mmf = new MappedModelFile(file)) {
+            if (!COMPUTATION_GRAPH.equals(mmf.modelType))
+                throw new IllegalStateException("File contains " + mmf.modelType
+                                + " - use MappedModelSerializer.restoreMultiLayerNetwork instead");
+
+            ComputationGraphConfiguration conf =
+                            ComputationGraphConfiguration.fromJson(mmf.readString(ModelSerializer.CONFIGURATION_JSON));
+            ComputationGraph graph = new ComputationGraph(conf);
+            graph.init(mmf.mapArray(ModelSerializer.COEFFICIENTS_BIN), false);
+
+            if (loadUpdater)
+                restoreUpdaterState(graph, mmf);
+
+            return graph;
+        }
+    }
+
+    /**
+     * This method loads updater state from the given file into the model, i.e. before training restored model.
+     *
+     * @param model model previously restored from the same file
+     * @param file the file to load from
+     * @return true if updater state was found in the file
+     * @throws IOException
+     */
+    public static boolean restoreUpdaterState(@NonNull Model model, @NonNull File file) throws IOException {
+        try (MappedModelFile mmf = new MappedModelFile(file)) {
+            return restoreUpdaterState(model, mmf);
+        }
+    }
+
+    /**
+     * This method restores normalizer from the given file, if it was saved there
+     *
+     * @param file the file to load from
+     * @return normalizer, or null if file doesn't contain one
+     * @throws IOException
+     */
+    public static <T extends Normalizer> T restoreNormalizer(@NonNull File file) throws IOException {
+        try (MappedModelFile mmf = new MappedModelFile(file)) {
+            byte[] bytes = mmf.readBytes(ModelSerializer.NORMALIZER_BIN);
+            if (bytes == null)
+                return null;
+
+            try {
+                return NormalizerSerializer.getDefault().restore(new ByteArrayInputStream(bytes));
+            } catch (Exception e) {
+                throw new IOException("Failed to restore normalizer", e);
+            }
+        }
+    }
+
+    /**
+     * This method checks if given file is in memory-mappable model format
+     *
+     * @param file
+     * @return
+     */
+    public static boolean isMappedModel(@NonNull File file) {
+        if (!file.isFile() || file.length() < MAGIC.length)
+            return false;
+
+        byte[] magic = new byte[MAGIC.length];
+        try (DataInputStream dis = new DataInputStream(new FileInputStream(file))) {
+            dis.readFully(magic);
+        } catch (IOException e) {
+            return false;
+        }
+        return Arrays.equals(magic, MAGIC);
+    }
+
+    private static boolean restoreUpdaterState(Model model, MappedModelFile mmf) throws IOException {
+        INDArray state = mmf.mapArray(ModelSerializer.UPDATER_BIN);
+        if (state == null)
+            return false;
+
+        if (model instanceof MultiLayerNetwork) {
+            MultiLayerNetwork network = (MultiLayerNetwork) model;
+            network.getUpdater().setStateViewArray(network, state, false);
+        } else if (model instanceof ComputationGraph) {
+            ((ComputationGraph) model).getUpdater().setStateViewArray(state);
+        } else {
+            throw new IllegalArgumentException("Only MultiLayerNetwork and ComputationGraph are supported");
+        }
+        return true;
+    }
+
+    private static long sizeOf(Object value, int elementSize) {
+        if (value instanceof byte[])
+            return ((byte[]) value).length;
+
+        return ((INDArray) value).length() * elementSize;
+    }
+
+    private static long align(long position) {
+        return (position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static byte[] header(String modelType, DataBuffer.Type dataType, Map<String, long[]> table)
+                    throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(bos)) {
+            dos.writeUTF(modelType);
+            dos.writeUTF(dataType.name());
+            dos.writeUTF(ByteOrder.nativeOrder().toString());
+            dos.writeInt(table.size());
+            for (Map.Entry<String, long[]> e : table.entrySet()) {
+                dos.writeUTF(e.getKey());
+                dos.writeLong(e.getValue()[0]);
+                dos.writeLong(e.getValue()[1]);
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    /**
+     * Writes array contents in native byte order, in chunks, so no full-size heap copy is made
+     */
+    private static void writeArray(FileChannel channel, INDArray array, DataBuffer.Type dataType, long position)
+                    throws IOException {
+        INDArray source = array;
+        if (source.ordering() != 'c' || source.length() != source.data().length() || source.data().dataType() != dataType)
+            source = array.dup('c');
+
+        int elementSize = dataType == DataBuffer.Type.FLOAT ? 4 : 8;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_ELEMENTS * elementSize).order(ByteOrder.nativeOrder());
+        long length = source.length();
+        long offset = source.offset();
+        for (long i = 0; i < length; i += CHUNK_ELEMENTS) {
+            int count = (int) Math.min(CHUNK_ELEMENTS, length - i);
+            buffer.clear();
+            if (dataType == DataBuffer.Type.FLOAT)
+                buffer.asFloatBuffer().put(source.data().getFloatsAt(offset + i, count));
+            else
+                buffer.asDoubleBuffer().put(source.data().getDoublesAt(offset + i, count));
+            buffer.limit(count * elementSize);
+
+            writeFully(channel, buffer, position + i * elementSize);
+        }
+    }
+
+    /**
+     * Opened model file with parsed section table
+     */
+    private static class MappedModelFile implements Closeable {
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+        private final String modelType;
+        private final DataBuffer.Type dataType;
+        private final ByteOrder byteOrder;
+        private final Map<String, long[]> table = new LinkedHashMap<>();
+
+        private MappedModelFile(File file) throws IOException {
+            raf = new RandomAccessFile(file, "r");
+            try {
+                byte[] magic = new byte[MAGIC.length];
+                raf.readFully(magic);
+                if (!Arrays.equals(magic, MAGIC))
+                    throw new IOException("File " + file + " isn't a memory-mappable model file");
+
+                int version = raf.readInt();
+                if (version != VERSION)
+                    throw new IOException("Unsupported model file version: " + version);
+
+                byte[] header = new byte[raf.readInt()];
+                raf.readFully(header);
+
+                DataInputStream dis = new DataInputStream(new ByteArrayInputStream(header));
+                modelType = dis.readUTF();
+                dataType = DataBuffer.Type.valueOf(dis.readUTF());
+                byteOrder = ByteOrder.BIG_ENDIAN.toString().equals(dis.readUTF()) ? ByteOrder.BIG_ENDIAN
+                                : ByteOrder.LITTLE_ENDIAN;
+                int numSections = dis.readInt();
+                for (int i = 0; i < numSections; i++)
+                    table.put(dis.readUTF(), new long[] {dis.readLong(), dis.readLong()});
+
+                channel = raf.getChannel();
+            } catch (IOException | RuntimeException e) {
+                raf.close();
+                throw e;
+            }
+        }
+
+        private byte[] readBytes(String name) throws IOException {
+            long[] entry = table.get(name);
+            if (entry == null)
+                return null;
+
+            byte[] bytes = new byte[(int) entry[1]];
+            raf.seek(entry[0]);
+            raf.readFully(bytes);
+            return bytes;
+        }
+
+        private String readString(String name) throws IOException {
+            byte[] bytes = readBytes(name);
+            if (bytes == null)
+                throw new IllegalStateException("Model file doesn't contain " + name);
+
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return row vector backed by the mapped section, or null if there's no such section
+         */
+        private INDArray mapArray(String name) throws IOException {
+            long[] entry = table.get(name);
+            if (entry == null)
+                return null;
+
+            int elementSize = dataType == DataBuffer.Type.FLOAT ? 4 : 8;
+            long length = entry[1] / elementSize;
+
+            if (dataType == Nd4j.dataType() && byteOrder == ByteOrder.nativeOrder() && entry[1] <= Integer.MAX_VALUE) {
+                // mapping stays valid after channel is closed
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.PRIVATE, entry[0], entry[1]);
+                mapped.order(byteOrder);
+
+                DataBuffer buffer;
+                if (dataType == DataBuffer.Type.FLOAT) {
+                    MappedFloatPointer pointer = new MappedFloatPointer(mapped);
+                    buffer = Nd4j.createBuffer(pointer, dataType, length, FloatIndexer.create(pointer));
+                } else {
+                    MappedDoublePointer pointer = new MappedDoublePointer(mapped);
+                    buffer = Nd4j.createBuffer(pointer, dataType, length, DoubleIndexer.create(pointer));
+                }
+                return Nd4j.create(buffer, new long[] {1, length});
+            }
+
+            log.info("Section [{}] can't be mapped directly, reading it in chunks", name);
+            INDArray result = Nd4j.createUninitialized(new long[] {1, length}, 'c');
+            long chunkBytes = (long) CHUNK_ELEMENTS * elementSize;
+            for (long i = 0; i < length; i += CHUNK_ELEMENTS) {
+                int count = (int) Math.min(CHUNK_ELEMENTS, length - i);
+                ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, entry[0] + i * elementSize,
+                                Math.min(chunkBytes, entry[1] - i * elementSize)).order(byteOrder);
+
+                INDArray values;
+                if (dataType == DataBuffer.Type.FLOAT) {
+                    float[] tmp = new float[count];
+                    chunk.asFloatBuffer().get(tmp);
+                    values = Nd4j.create(tmp);
+                } else {
+                    double[] tmp = new double[count];
+                    chunk.asDoubleBuffer().get(tmp);
+                    values = Nd4j.create(tmp);
+                }
+                result.get(NDArrayIndex.point(0), NDArrayIndex.interval(i, i + count)).assign(values);
+            }
+            return result;
+        }
+
+        @Override
+        public void close() throws IOException {
+            raf.close();
+        }
+    }
+
+    /**
+     * Pointer that keeps strong reference to the mapped buffer, so mapping isn't released while pointer is in use
+     */
+    private static class MappedFloatPointer extends FloatPointer {
+        private final MappedByteBuffer mapped;
+
+        private MappedFloatPointer(MappedByteBuffer mapped) {
+            super(mapped.asFloatBuffer());
+            this.mapped = mapped;
+        }
+    }
+
+    private static class MappedDoublePointer extends DoublePointer {
+        private final MappedByteBuffer mapped;
+
+        private MappedDoublePointer(MappedByteBuffer mapped) {
+            super(mapped.asDoubleBuffer());
+            this.mapped = mapped;
+        }
+    }
+}
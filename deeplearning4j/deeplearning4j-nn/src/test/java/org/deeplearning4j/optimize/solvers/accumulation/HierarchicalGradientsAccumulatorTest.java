@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.optimize.solvers.accumulation;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.deeplearning4j.optimize.solvers.accumulation.encoding.threshold.FixedThresholdAlgorithm;
+import org.deeplearning4j.optimize.stepfunctions.NegativeGradientStepFunction;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class HierarchicalGradientsAccumulatorTest {
+
+    @Test
+    public void testGroups_1() {
+        val accumulator = new HierarchicalGradientsAccumulator.Builder(8).numGroups(3)
+                        .thresholdAlgorithm(new FixedThresholdAlgorithm(1e-3)).build();
+
+        assertEquals(3, ((HierarchicalGradientsAccumulator) accumulator).getNumGroups());
+
+        val groups = new int[8];
+        for (int i = 0; i < groups.length; i++)
+            groups[i] = ((HierarchicalGradientsAccumulator) accumulator).getGroup(i);
+
+        assertArrayEquals(new int[] {0, 0, 0, 1, 1, 1, 2, 2}, groups);
+
+        // we can't have more groups than workers
+        val small = new HierarchicalGradientsAccumulator.Builder(2).numGroups(4)
+                        .thresholdAlgorithm(new FixedThresholdAlgorithm(1e-3)).build();
+        assertEquals(2, ((HierarchicalGradientsAccumulator) small).getNumGroups());
+    }
+
+    /**
+     * This test checks that hierarchical reduction produces the same params as plain broadcast of updates
+     */
+    @Test
+    public void testSameUpdates_1() throws Exception {
+        int numWorkers = 6;
+        int numParams = 100;
+        int iterations = 5;
+
+        val expected = train(new EncodedGradientsAccumulator(numWorkers, new EncodingHandler(new FixedThresholdAlgorithm(1e-3), null, null, false),
+                        EncodedGradientsAccumulator.DEFAULT_INITIAL_MEMORY, numWorkers, null, false), numWorkers, numParams, iterations);
+
+        for (int numGroups : new int[] {1, 2, 3, numWorkers}) {
+            val accumulator = new HierarchicalGradientsAccumulator(numWorkers, numGroups, new EncodingHandler(new FixedThresholdAlgorithm(1e-3), null, null, false),
+                            EncodedGradientsAccumulator.DEFAULT_INITIAL_MEMORY, numWorkers, null, false);
+
+            val params = train(accumulator, numWorkers, numParams, iterations);
+
+            for (int i = 0; i < numWorkers; i++) {
+                assertEquals("Failed for groups: " + numGroups + "; worker: " + i, expected[i], params[i]);
+                assertEquals(params[0], params[i]);
+            }
+        }
+    }
+
+    protected INDArray[] train(final EncodedGradientsAccumulator accumulator, int numWorkers, final int numParams, final int iterations) throws Exception {
+        val params = new INDArray[numWorkers];
+        val threads = new Thread[numWorkers];
+        val exception = new AtomicReference<Throwable>();
+
+        for (int i = 0; i < numWorkers; i++) {
+            final int worker = i;
+            params[i] = Nd4j.create(1, numParams);
+
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        accumulator.touch();
+
+                        for (int e = 0; e < iterations; e++) {
+                            // each worker updates its own slice of params, plus one element shared by everyone
+                            val gradients = Nd4j.create(1, numParams);
+                            gradients.putScalar(worker, 1.5e-3 * (e + 1));
+                            gradients.putScalar(numParams - 1, 1.5e-3);
+
+                            accumulator.storeUpdate(gradients, e, 0);
+                            accumulator.applyUpdate(new NegativeGradientStepFunction(), params[worker], gradients, true);
+                        }
+                    } catch (Throwable t) {
+                        exception.compareAndSet(null, t);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        for (int e = 0; e < iterations; e++)
+            accumulator.registerConsumers(numWorkers);
+
+        for (val t : threads)
+            t.join();
+
+        if (exception.get() != null)
+            throw new RuntimeException(exception.get());
+
+        return params;
+    }
+}
@@ -92,7 +92,14 @@ public class InplaceParallelInference extends ParallelInference {
 
     @Override
     public INDArray[] output(INDArray[] input, INDArray[] inputMasks) {
-        return selector.output(input, inputMasks);
+        if (metrics == null)
+            return selector.output(input, inputMasks);
+
+        // there's no queue here, inference happens in the calling thread
+        long start = System.nanoTime();
+        val output = selector.output(input, inputMasks);
+        metrics.requestCompleted(0L, System.nanoTime() - start);
+        return output;
     }
 
 
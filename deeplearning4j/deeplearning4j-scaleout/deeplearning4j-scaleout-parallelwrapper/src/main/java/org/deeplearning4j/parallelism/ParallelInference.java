@@ -27,6 +27,10 @@ import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.parallelism.inference.InferenceMode;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
 import org.deeplearning4j.parallelism.inference.LoadBalanceMode;
+import org.deeplearning4j.parallelism.inference.adaptive.AdaptiveBatch;
+import org.deeplearning4j.parallelism.inference.adaptive.AdaptiveBatchController;
+import org.deeplearning4j.parallelism.inference.adaptive.AdaptiveInferenceRequest;
+import org.deeplearning4j.parallelism.inference.metrics.InferenceMetrics;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObservable;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObserver;
 import org.deeplearning4j.parallelism.inference.observers.BatchedInferenceObservable;
@@ -38,8 +42,12 @@ import org.nd4j.linalg.primitives.Pair;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Observer;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -60,13 +68,21 @@ public class ParallelInference {
     protected InferenceMode inferenceMode;
     protected int queueLimit;
     protected LoadBalanceMode loadBalanceMode = LoadBalanceMode.FIFO;
+    protected long latencyTargetNanos;
+    protected int[] preferredBatchSizes;
+    protected InferenceMetrics metrics;
 
     // this queue holds data for inference
     private BlockingQueue<InferenceObservable> observables;
 
+    // ADAPTIVE mode only: lock-free submission queue, and number of requests available in it
+    private Queue<AdaptiveInferenceRequest> adaptiveQueue;
+    private Semaphore adaptivePending;
+
     private final Object locker = new Object();
 
-    private InferenceWorker[] zoo;
+    // null once this instance is shut down
+    private volatile InferenceWorker[] zoo;
     private ObservablesProvider provider;
 
 
@@ -75,6 +91,7 @@ public class ParallelInference {
     public final static int DEFAULT_BATCH_LIMIT = 32;
     public final static InferenceMode DEFAULT_INFERENCE_MODE = InferenceMode.BATCHED;
     public final static int DEFAULT_QUEUE_LIMIT = 64;
+    public final static long DEFAULT_LATENCY_TARGET_MS = 50;
 
 
 
@@ -119,15 +136,22 @@ public class ParallelInference {
     protected void init() {
         observables = new LinkedBlockingQueue<>(queueLimit);
 
+        if (inferenceMode == InferenceMode.ADAPTIVE) {
+            adaptiveQueue = new ConcurrentLinkedQueue<>();
+            adaptivePending = new Semaphore(0);
+
+            if (preferredBatchSizes == null)
+                preferredBatchSizes = defaultPreferredBatchSizes(batchLimit);
+        }
+
         int numDevices = Nd4j.getAffinityManager().getNumberOfDevices();
         int currentDevice = Nd4j.getAffinityManager().getDeviceForCurrentThread();
-        AtomicBoolean assignedRoot = new AtomicBoolean(false);
 
         zoo = new InferenceWorker[workers];
         for (int i = 0; i < workers; i++) {
             int cDevice = i % numDevices;
-            boolean cRoot = !assignedRoot.get() && cDevice == currentDevice;
-            assignedRoot.compareAndSet(false, cRoot);
+            //Output methods can be called concurrently: all workers on the model's device share it, without copies
+            boolean cRoot = cDevice == currentDevice;
 
             zoo[i] = new InferenceWorker(i, model, observables, cRoot);
 
@@ -147,6 +171,44 @@ public class ParallelInference {
         return zoo[workerIdx].getCounterValue();
     }
 
+    /**
+     * This method returns metrics sink used by this ParallelInference instance, or null if metrics are disabled
+     *
+     * @return
+     */
+    public InferenceMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * This method returns number of requests waiting for processing at this moment.
+     * PLEASE NOTE: For BATCHED mode this is number of pending batches, not individual requests
+     *
+     * @return
+     */
+    public int getQueueDepth() {
+        if (inferenceMode == InferenceMode.ADAPTIVE)
+            return adaptivePending.availablePermits();
+
+        return observables == null ? 0 : observables.size();
+    }
+
+    /**
+     * This method returns powers of 2 up to batch limit, and batch limit itself
+     */
+    protected static int[] defaultPreferredBatchSizes(int batchLimit) {
+        List<Integer> sizes = new ArrayList<>();
+        for (int s = 1; s < batchLimit; s *= 2)
+            sizes.add(s);
+        sizes.add(batchLimit);
+
+        int[] result = new int[sizes.size()];
+        for (int e = 0; e < result.length; e++)
+            result[e] = sizes.get(e);
+
+        return result;
+    }
+
     /**
      * This method gracefully shuts down ParallelInference instance
      */
@@ -164,9 +226,33 @@ public class ParallelInference {
         }
         zoo = null;
 
+        failPendingRequests();
+
         System.gc();
     }
 
+    /**
+     * This method fails all requests that are still waiting in the queues: workers are stopped, so these would never
+     * be processed otherwise
+     */
+    protected void failPendingRequests() {
+        if (adaptiveQueue != null) {
+            AdaptiveInferenceRequest request;
+            while ((request = adaptiveQueue.poll()) != null)
+                request.setOutputException(shutdownException());
+        }
+
+        if (observables != null) {
+            InferenceObservable observable;
+            while ((observable = observables.poll()) != null)
+                observable.setOutputException(shutdownException());
+        }
+    }
+
+    private static IllegalStateException shutdownException() {
+        return new IllegalStateException("ParallelInference instance was shut down before request was processed");
+    }
+
     /**
      *
      * @param input
@@ -228,8 +314,14 @@ public class ParallelInference {
      * @return Output from the network
      */
     public INDArray[] output(INDArray[] input, INDArray[] inputMasks){
+        if (zoo == null)
+            throw new IllegalStateException("ParallelInference instance was shut down");
+
         Nd4j.getExecutioner().commit(); //Commit before passing input to other thread
 
+        // we don't even touch timer if metrics are disabled
+        long submitTime = metrics == null ? 0L : System.nanoTime();
+
         // basically, depending on model type we either throw stuff to specific model, or wait for batch
         BasicInferenceObserver observer = new BasicInferenceObserver();
         InferenceObservable observable;
@@ -238,23 +330,41 @@ public class ParallelInference {
             observable = new BasicInferenceObservable(input, inputMasks);
             observable.addObserver(observer);
             try {
-                observables.put(observable);
+                // queue might be full: don't wait for workers that were stopped in the meantime
+                while (!observables.offer(observable, 100, TimeUnit.MILLISECONDS)) {
+                    if (zoo == null)
+                        throw shutdownException();
+                }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 throw new RuntimeException(e);
             }
+        } else if (inferenceMode == InferenceMode.ADAPTIVE) {
+            val request = new AdaptiveInferenceRequest(input, inputMasks);
+            request.addObserver(observer);
+            observable = request;
+
+            // lock-free submission: workers will pick this request up within their batch windows
+            adaptiveQueue.offer(request);
+            adaptivePending.release();
         } else {
             observable = provider.setInput(observer, input, inputMasks);
         }
 
-        try {
-            // submit query to processing
-            // and block until Observable returns
-            //observer.wait();
+        // block until Observable returns. Workers are stopped before shutdown completes, so once this instance is
+        // shut down nobody is going to process requests that are still waiting
+        while (!observer.waitTillDone(100, TimeUnit.MILLISECONDS)) {
+            if (zoo == null) {
+                failPendingRequests();
+                if (!observer.waitTillDone(0, TimeUnit.MILLISECONDS))
+                    throw shutdownException();
+            }
+        }
 
-            observer.waitTillDone();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        if (metrics != null) {
+            long now = System.nanoTime();
+            long startTime = observable.getProcessingStartTime();
+            metrics.requestCompleted(startTime > 0 ? startTime - submitTime : 0L, now - submitTime);
         }
 
         return observable.getOutput();
@@ -268,6 +378,9 @@ public class ParallelInference {
         private InferenceMode inferenceMode = DEFAULT_INFERENCE_MODE;
         private int queueLimit = DEFAULT_QUEUE_LIMIT;
         protected LoadBalanceMode loadBalanceMode = LoadBalanceMode.FIFO;
+        private long latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_LATENCY_TARGET_MS);
+        private int[] preferredBatchSizes;
+        private InferenceMetrics metrics;
 
         public Builder(@NonNull Model model) {
             this.model = model;
@@ -280,6 +393,8 @@ public class ParallelInference {
          * SEQUENTIAL: Input will be sent to last-used worker unmodified.
          * BATCHED: Multiple inputs will be packed into single batch, and
          * sent to last-used device.
+         * ADAPTIVE: Multiple inputs will be packed into single batch, padded to one of preferred batch sizes.
+         * Batch window is adjusted per worker to meet latency target.
          *
          * @param inferenceMode
          * @return
@@ -340,6 +455,9 @@ public class ParallelInference {
         /**
          * This method defines buffer queue size.
          *
+         * PLEASE NOTE: This value has no effect in
+         * ADAPTIVE inference mode, submission queue is unbounded there
+         *
          * Default value: 64
          *
          * @param limit
@@ -353,6 +471,63 @@ public class ParallelInference {
             return this;
         }
 
+        /**
+         * This method defines target (p99) latency for single request, including time spent in queue.
+         * Batch window and batch size will be adjusted in runtime to meet this target.
+         *
+         * PLEASE NOTE: This value has effect only in ADAPTIVE inference mode
+         *
+         * Default value: 50 ms
+         *
+         * @param latency
+         * @param timeUnit
+         * @return
+         */
+        public Builder latencyTarget(long latency, @NonNull TimeUnit timeUnit) {
+            if (latency < 1)
+                throw new IllegalStateException("Latency target should be positive value");
+
+            this.latencyTargetNanos = timeUnit.toNanos(latency);
+            return this;
+        }
+
+        /**
+         * This method defines batch sizes input batches will be padded to, so model sees limited number of distinct shapes,
+         * and workspaces can be reused. Largest preferred size also limits number of examples within single batch.
+         *
+         * PLEASE NOTE: This value has effect only in ADAPTIVE inference mode
+         *
+         * Default value: powers of 2 up to batchLimit, and batchLimit itself
+         *
+         * @param sizes
+         * @return
+         */
+        public Builder preferredBatchSizes(@NonNull int... sizes) {
+            if (sizes.length == 0)
+                throw new IllegalStateException("At least one preferred batch size should be specified");
+
+            for (int s : sizes)
+                if (s < 1)
+                    throw new IllegalStateException("Preferred batch sizes should be positive values");
+
+            this.preferredBatchSizes = sizes;
+            return this;
+        }
+
+        /**
+         * This method sets metrics sink, which will receive request latencies and per-worker batch statistics.
+         * See {@link org.deeplearning4j.parallelism.inference.metrics.HistogramInferenceMetrics} for default implementation.
+         *
+         * Default value: null, metrics are disabled
+         *
+         * @param metrics
+         * @return
+         */
+        public Builder metrics(InferenceMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
         /**
          * This method builds new ParallelInference instance
          *
@@ -365,6 +540,7 @@ public class ParallelInference {
                 inf.model = this.model;
                 inf.workers = this.workers;
                 inf.loadBalanceMode = this.loadBalanceMode;
+                inf.metrics = this.metrics;
 
                 inf.init();
 
@@ -377,6 +553,9 @@ public class ParallelInference {
                 inference.model = this.model;
                 inference.workers = this.workers;
                 inference.loadBalanceMode = this.loadBalanceMode;
+                inference.latencyTargetNanos = this.latencyTargetNanos;
+                inference.preferredBatchSizes = this.preferredBatchSizes;
+                inference.metrics = this.metrics;
 
                 inference.init();
 
@@ -398,6 +577,7 @@ public class ParallelInference {
         private Model replicatedModel;
         private AtomicLong counter = new AtomicLong(0);
         private boolean rootDevice;
+        private final int workerId;
 
         private ReentrantReadWriteLock modelLock = new ReentrantReadWriteLock();
 
@@ -405,6 +585,7 @@ public class ParallelInference {
             this.inputQueue = inputQueue;
             this.protoModel = model;
             this.rootDevice = rootDevice;
+            this.workerId = id;
 
             this.setDaemon(true);
             this.setName("InferenceThread-" + id);
@@ -468,8 +649,10 @@ public class ParallelInference {
                 // model should be replicated & initialized here
                 initializeReplicaModel();
 
-                boolean isCG = replicatedModel instanceof  ComputationGraph;
-                boolean isMLN = replicatedModel instanceof  MultiLayerNetwork;
+                if (inferenceMode == InferenceMode.ADAPTIVE) {
+                    runAdaptive();
+                    return;
+                }
 
                 while (shouldWork.get()) {
                     InferenceObservable request = inputQueue.take();
@@ -477,51 +660,26 @@ public class ParallelInference {
                     if (request != null) {
                         counter.incrementAndGet();
 
-                        // FIXME: get rid of instanceof here, model won't change during runtime anyway
-                        if (isCG) {
-                            List<Pair<INDArray[],INDArray[]>> batches = request.getInputBatches();
-                            List<INDArray[]> out = new ArrayList<>(batches.size());
-                            try {
-                                for (Pair<INDArray[],INDArray[]> inBatch : batches) {
-                                    try {
-                                        modelLock.readLock().lock();
-
-                                        INDArray[] output = ((ComputationGraph) replicatedModel).output(false, inBatch.getFirst(), inBatch.getSecond());
-                                        out.add(output);
-                                    } finally {
-                                        Nd4j.getExecutioner().commit();
-                                        modelLock.readLock().unlock();
-                                    }
-
-                                }
-                                request.setOutputBatches(out);
-                            } catch (Exception e){
-                                request.setOutputException(e);
-                            }
-                        } else if (isMLN) {
-                            List<Pair<INDArray[],INDArray[]>> batches = request.getInputBatches();
-                            List<INDArray[]> out = new ArrayList<>(batches.size());
-                            try {
-                                for (Pair<INDArray[],INDArray[]> inBatch : batches) {
-                                    INDArray f = inBatch.getFirst()[0];
-                                    INDArray fm = (inBatch.getSecond() == null ? null : inBatch.getSecond()[0]);
-                                    try {
-                                        modelLock.readLock().lock();
-
-                                        INDArray output = ((MultiLayerNetwork) replicatedModel).output(f, false, fm, null);
-                                        out.add(new INDArray[]{output});
-                                    } finally {
-                                        Nd4j.getExecutioner().commit();
-                                        modelLock.readLock().unlock();
-                                    }
-                                }
-                                request.setOutputBatches(out);
-                            } catch (Exception e){
-                                request.setOutputException(e);
-                            }
+                        long startTime = 0L;
+                        if (metrics != null) {
+                            startTime = System.nanoTime();
+                            request.setProcessingStartTime(startTime);
                         }
 
+                        List<Pair<INDArray[],INDArray[]>> batches = request.getInputBatches();
+                        List<INDArray[]> out = new ArrayList<>(batches.size());
+                        try {
+                            for (Pair<INDArray[],INDArray[]> inBatch : batches) {
+                                out.add(output(inBatch));
+                            }
+
+                            if (metrics != null)
+                                reportBatch(request, batches, System.nanoTime() - startTime);
 
+                            request.setOutputBatches(out);
+                        } catch (Exception e){
+                            request.setOutputException(e);
+                        }
                     } else {
                         // just do nothing, i guess and hope for next round?
                     }
@@ -536,6 +694,102 @@ public class ParallelInference {
             }
         }
 
+        private void reportBatch(InferenceObservable request, List<Pair<INDArray[],INDArray[]>> batches, long nanos) {
+            long numExamples = 0;
+            for (Pair<INDArray[],INDArray[]> b : batches)
+                numExamples += b.getFirst()[0].size(0);
+
+            int numRequests = request instanceof BatchedInferenceObservable ? ((BatchedInferenceObservable) request).getCounter() : 1;
+            metrics.batchCompleted(workerId, numRequests, numExamples, nanos);
+        }
+
+        /**
+         * This method does inference for single input batch
+         */
+        private INDArray[] output(Pair<INDArray[],INDArray[]> inBatch) {
+            try {
+                modelLock.readLock().lock();
+
+                if (replicatedModel instanceof ComputationGraph) {
+                    return ((ComputationGraph) replicatedModel).output(false, inBatch.getFirst(), inBatch.getSecond());
+                } else if (replicatedModel instanceof MultiLayerNetwork) {
+                    INDArray f = inBatch.getFirst()[0];
+                    INDArray fm = (inBatch.getSecond() == null ? null : inBatch.getSecond()[0]);
+                    return new INDArray[]{((MultiLayerNetwork) replicatedModel).output(f, false, fm, null)};
+                } else {
+                    throw new IllegalStateException("Unsupported model type: " + replicatedModel.getClass().getSimpleName());
+                }
+            } finally {
+                Nd4j.getExecutioner().commit();
+                modelLock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Main loop for ADAPTIVE inference mode: after first request arrives, worker waits for more requests within
+         * current batch window, or until max batch size is reached. Window and max batch size are updated after each batch.
+         */
+        private void runAdaptive() throws InterruptedException {
+            AdaptiveBatchController controller = new AdaptiveBatchController(latencyTargetNanos, preferredBatchSizes);
+
+            while (shouldWork.get()) {
+                if (!adaptivePending.tryAcquire(100, TimeUnit.MILLISECONDS))
+                    continue;
+
+                long windowStart = System.nanoTime();
+                AdaptiveBatch batch = new AdaptiveBatch(controller);
+                batch.addRequest(adaptiveQueue.poll());
+
+                int maxBatchSize = controller.getMaxBatchSize();
+                long deadline = windowStart + controller.getWindowNanos();
+                try {
+                    while (batch.getNumExamples() < maxBatchSize) {
+                        long remaining = deadline - System.nanoTime();
+                        boolean acquired = remaining > 0 ? adaptivePending.tryAcquire(remaining, TimeUnit.NANOSECONDS)
+                                        : adaptivePending.tryAcquire();
+                        if (!acquired)
+                            break;
+
+                        batch.addRequest(adaptiveQueue.poll());
+                    }
+                } catch (InterruptedException e) {
+                    // requests already taken from the queue won't be processed by anyone else
+                    batch.setOutputException(shutdownException());
+                    throw e;
+                }
+
+                counter.incrementAndGet();
+
+                long modelStart = System.nanoTime();
+                if (metrics != null)
+                    batch.setProcessingStartTime(modelStart);
+
+                long paddedSize = 0;
+                try {
+                    List<Pair<INDArray[],INDArray[]>> batches = batch.getInputBatches();
+                    for (int e = 0; e < batches.size(); e++) {
+                        paddedSize += batch.getPaddedSize(e);
+                        try {
+                            batch.setOutput(e, output(batches.get(e)));
+                        } catch (Exception ex) {
+                            batch.setOutputException(e, ex);
+                        }
+                    }
+                } catch (Exception e) {
+                    // something went wrong during batch assembly, so nothing was processed
+                    batch.setOutputException(e);
+                    continue;
+                }
+                long modelEnd = System.nanoTime();
+
+                controller.update(paddedSize, modelEnd - modelStart, modelEnd - batch.getOldestSubmitTime(),
+                                adaptivePending.availablePermits());
+
+                if (metrics != null)
+                    metrics.batchCompleted(workerId, batch.getNumRequests(), batch.getNumExamples(), modelEnd - modelStart);
+            }
+        }
+
         protected void shutdown() {
             shouldWork.set(false);
             while (!isStopped.get()) {
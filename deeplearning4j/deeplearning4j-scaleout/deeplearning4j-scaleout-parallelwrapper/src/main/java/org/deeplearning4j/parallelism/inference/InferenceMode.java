@@ -36,4 +36,10 @@ public enum InferenceMode {
      * Inference will applied in the calling thread instead of workers. Worker models will be using shared parameters on per-device basis.
      */
     INPLACE,
+
+    /**
+     * input will be included into the batch, with batch window and batch size adjusted in runtime to meet latency target.
+     * Batches are padded to preferred batch sizes, so model workspaces can be reused.
+     */
+    ADAPTIVE,
 }
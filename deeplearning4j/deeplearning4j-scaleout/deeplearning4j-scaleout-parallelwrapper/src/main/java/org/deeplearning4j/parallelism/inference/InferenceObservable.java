@@ -48,4 +48,16 @@ public interface InferenceObservable {
     void addObserver(Observer observer);
 
     INDArray[] getOutput();
+
+    /**
+     * This method is called by worker once it starts processing this observable. Used for metrics only.
+     *
+     * @param nanos value of System.nanoTime() at processing start
+     */
+    void setProcessingStartTime(long nanos);
+
+    /**
+     * @return value of System.nanoTime() at processing start, or 0 if it wasn't set
+     */
+    long getProcessingStartTime();
 }
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference.adaptive;
+
+import lombok.NonNull;
+import lombok.val;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.DataSetUtil;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.primitives.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class holds requests collected by single worker within one batch window.
+ *
+ * Requests with equal input shapes are merged into single batch, which is then padded with zeros
+ * up to the preferred batch size, so the model sees only a small set of distinct batch shapes.
+ * Requests which can't be merged (i.e. variable-length time series) will form separate batches.
+ */
+public class AdaptiveBatch {
+    private final AdaptiveBatchController controller;
+    private final List<AdaptiveInferenceRequest> requests = new ArrayList<>();
+
+    // [first, last] request indices for each input batch
+    private final List<int[]> batchRequests = new ArrayList<>();
+    private final List<long[]> batchSizes = new ArrayList<>();
+
+    private long numExamples;
+
+    public AdaptiveBatch(@NonNull AdaptiveBatchController controller) {
+        this.controller = controller;
+    }
+
+    public void addRequest(@NonNull AdaptiveInferenceRequest request) {
+        requests.add(request);
+        numExamples += request.getNumExamples();
+    }
+
+    /**
+     * @return number of examples in all requests collected so far, excluding padding
+     */
+    public long getNumExamples() {
+        return numExamples;
+    }
+
+    public int getNumRequests() {
+        return requests.size();
+    }
+
+    /**
+     * @return submission time of the oldest request in this batch
+     */
+    public long getOldestSubmitTime() {
+        long oldest = Long.MAX_VALUE;
+        for (val r : requests)
+            oldest = Math.min(oldest, r.getSubmitTime());
+
+        return oldest;
+    }
+
+    /**
+     * This method sets processing start time for all requests within this batch
+     */
+    public void setProcessingStartTime(long nanos) {
+        for (val r : requests)
+            r.setProcessingStartTime(nanos);
+    }
+
+    /**
+     * This method merges collected requests into padded input batches
+     *
+     * @return List of pairs of input arrays and input mask arrays. Input mask arrays may be null.
+     */
+    public List<Pair<INDArray[], INDArray[]>> getInputBatches() {
+        batchRequests.clear();
+        batchSizes.clear();
+
+        List<Pair<INDArray[], INDArray[]>> out = new ArrayList<>();
+        int pos = 0;
+        while (pos < requests.size()) {
+            INDArray[] first = inputs(pos);
+            int lastPossible = pos;
+            for (int i = pos + 1; i < requests.size(); i++) {
+                if (canBatch(first, inputs(i)))
+                    lastPossible = i;
+                else
+                    break;
+            }
+
+            int countToMerge = lastPossible - pos + 1;
+            long examples = 0;
+            Pair<INDArray[], INDArray[]> merged;
+            if (countToMerge == 1) {
+                merged = new Pair<>(first, masks(pos));
+                examples = requests.get(pos).getNumExamples();
+            } else {
+                INDArray[][] featuresToMerge = new INDArray[countToMerge][0];
+                INDArray[][] fMasksToMerge = null;
+                for (int i = pos; i <= lastPossible; i++) {
+                    featuresToMerge[i - pos] = inputs(i);
+                    examples += requests.get(i).getNumExamples();
+
+                    if (masks(i) != null) {
+                        if (fMasksToMerge == null)
+                            fMasksToMerge = new INDArray[countToMerge][];
+                        fMasksToMerge[i - pos] = masks(i);
+                    }
+                }
+                merged = DataSetUtil.mergeFeatures(featuresToMerge, fMasksToMerge);
+            }
+
+            long padded = controller.getPaddedBatchSize(examples);
+            if (padded > examples)
+                merged = pad(merged, padded - examples);
+
+            out.add(merged);
+            batchRequests.add(new int[] {pos, lastPossible});
+            batchSizes.add(new long[] {examples, padded});
+            pos = lastPossible + 1;
+        }
+
+        return out;
+    }
+
+    /**
+     * @return number of examples passed to the model for each input batch, including padding
+     */
+    public long getPaddedSize(int batchIdx) {
+        return batchSizes.get(batchIdx)[1];
+    }
+
+    /**
+     * This method splits output of given input batch, and passes results back to the requests
+     *
+     * @param batchIdx index of input batch, as returned by {@link #getInputBatches()}
+     * @param output   model output for this batch
+     */
+    public void setOutput(int batchIdx, @NonNull INDArray[] output) {
+        int[] idxs = batchRequests.get(batchIdx);
+        long examples = batchSizes.get(batchIdx)[0];
+        long padded = batchSizes.get(batchIdx)[1];
+
+        // fast path: single request without padding gets output as is
+        if (idxs[0] == idxs[1] && examples == padded) {
+            requests.get(idxs[0]).setOutputBatches(Collections.singletonList(output));
+            return;
+        }
+
+        long examplesSoFar = 0;
+        for (int r = idxs[0]; r <= idxs[1]; r++) {
+            val request = requests.get(r);
+            INDArray[] split = new INDArray[output.length];
+            for (int o = 0; o < output.length; o++) {
+                INDArrayIndex[] indices = new INDArrayIndex[output[o].rank()];
+                indices[0] = NDArrayIndex.interval(examplesSoFar, examplesSoFar + request.getNumExamples());
+                for (int i = 1; i < indices.length; i++)
+                    indices[i] = NDArrayIndex.all();
+
+                split[o] = output[o].get(indices);
+            }
+            examplesSoFar += request.getNumExamples();
+            request.setOutputBatches(Collections.singletonList(split));
+        }
+    }
+
+    /**
+     * This method passes exception to all requests within given input batch
+     */
+    public void setOutputException(int batchIdx, @NonNull Exception exception) {
+        int[] idxs = batchRequests.get(batchIdx);
+        for (int r = idxs[0]; r <= idxs[1]; r++)
+            requests.get(r).setOutputException(exception);
+    }
+
+    /**
+     * This method passes exception to all requests within this batch
+     */
+    public void setOutputException(@NonNull Exception exception) {
+        for (val r : requests)
+            r.setOutputException(exception);
+    }
+
+    private INDArray[] inputs(int idx) {
+        return requests.get(idx).getInputBatches().get(0).getFirst();
+    }
+
+    private INDArray[] masks(int idx) {
+        return requests.get(idx).getInputBatches().get(0).getSecond();
+    }
+
+    private static Pair<INDArray[], INDArray[]> pad(Pair<INDArray[], INDArray[]> batch, long numPadding) {
+        INDArray[] features = batch.getFirst();
+        INDArray[] masks = batch.getSecond();
+
+        INDArray[] paddedFeatures = new INDArray[features.length];
+        for (int i = 0; i < features.length; i++)
+            paddedFeatures[i] = Nd4j.concat(0, features[i], Nd4j.zeros(paddingShape(features[i], numPadding)));
+
+        INDArray[] paddedMasks = null;
+        if (masks != null) {
+            paddedMasks = new INDArray[masks.length];
+            for (int i = 0; i < masks.length; i++) {
+                // padding is unmasked, so masked pooling won't divide by zero for padded rows
+                if (masks[i] != null)
+                    paddedMasks[i] = Nd4j.concat(0, masks[i], Nd4j.ones(paddingShape(masks[i], numPadding)));
+            }
+        }
+
+        return new Pair<>(paddedFeatures, paddedMasks);
+    }
+
+    private static long[] paddingShape(INDArray array, long numPadding) {
+        long[] shape = array.shape().clone();
+        shape[0] = numPadding;
+        return shape;
+    }
+
+    private static boolean canBatch(INDArray[] first, INDArray[] candidate) {
+        // same requirement as in BatchedInferenceObservable: all inputs should have equal shapes
+        for (int i = 0; i < first.length; i++) {
+            if (!Arrays.equals(first[i].shape(), candidate[i].shape()))
+                return false;
+        }
+        return true;
+    }
+}
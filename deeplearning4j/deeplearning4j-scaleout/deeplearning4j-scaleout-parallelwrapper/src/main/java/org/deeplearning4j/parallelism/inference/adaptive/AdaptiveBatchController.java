@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference.adaptive;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * This class drives batch window and batch size selection for {@link org.deeplearning4j.parallelism.inference.InferenceMode#ADAPTIVE}
+ * inference. Each worker owns its own controller instance, so no synchronization is needed here.
+ *
+ * Policy:
+ * - Window shrinks multiplicatively whenever the slowest request of a batch (queue wait + model latency) exceeds latency target
+ * - Window grows additively while batches are underfilled, there's no backlog, and there's latency headroom left
+ * - Batch size is capped at the largest preferred batch size whose estimated model latency still fits into the target
+ *
+ * Model latency is tracked as exponentially weighted moving average per preferred batch size.
+ */
+public class AdaptiveBatchController {
+    protected static final double EWMA_ALPHA = 0.2;
+
+    protected final long targetNanos;
+    protected final long maxWindowNanos;
+    protected final long windowStepNanos;
+    protected final int[] preferredBatchSizes;
+    protected final double[] latencyEstimates;
+
+    protected long windowNanos;
+
+    /**
+     * @param targetNanos         target (p99) latency per request, in nanoseconds
+     * @param preferredBatchSizes batch sizes inputs will be padded to, so model workspaces can be reused
+     */
+    public AdaptiveBatchController(long targetNanos, @NonNull int... preferredBatchSizes) {
+        if (targetNanos <= 0)
+            throw new IllegalArgumentException("Latency target should be positive value");
+
+        if (preferredBatchSizes.length == 0)
+            throw new IllegalArgumentException("At least one preferred batch size should be specified");
+
+        TreeSet<Integer> sizes = new TreeSet<>();
+        for (int s : preferredBatchSizes) {
+            if (s < 1)
+                throw new IllegalArgumentException("Preferred batch sizes should be positive values, got " + Arrays.toString(preferredBatchSizes));
+            sizes.add(s);
+        }
+
+        this.preferredBatchSizes = new int[sizes.size()];
+        int cnt = 0;
+        for (Integer s : sizes)
+            this.preferredBatchSizes[cnt++] = s;
+
+        this.latencyEstimates = new double[this.preferredBatchSizes.length];
+        this.targetNanos = targetNanos;
+        this.maxWindowNanos = targetNanos / 2;
+        this.windowStepNanos = Math.max(1, targetNanos / 32);
+        this.windowNanos = windowStepNanos;
+    }
+
+    /**
+     * This method returns time worker should wait for additional requests after the first request of a batch has arrived
+     *
+     * @return window length, in nanoseconds
+     */
+    public long getWindowNanos() {
+        return windowNanos;
+    }
+
+    /**
+     * This method returns target latency this controller was configured with
+     *
+     * @return latency target, in nanoseconds
+     */
+    public long getTargetNanos() {
+        return targetNanos;
+    }
+
+    /**
+     * This method returns sorted preferred batch sizes
+     *
+     * @return
+     */
+    public int[] getPreferredBatchSizes() {
+        return preferredBatchSizes;
+    }
+
+    /**
+     * This method returns max number of examples worker should collect into next batch.
+     * It's the largest preferred batch size which is expected to fit into latency target together with current window.
+     *
+     * @return
+     */
+    public int getMaxBatchSize() {
+        for (int e = preferredBatchSizes.length - 1; e > 0; e--) {
+            if (estimateLatency(e) + windowNanos <= targetNanos)
+                return preferredBatchSizes[e];
+        }
+
+        return preferredBatchSizes[0];
+    }
+
+    /**
+     * This method returns batch size for given number of examples after padding:
+     * smallest preferred batch size that can hold all examples, or number of examples itself if none fits
+     *
+     * @param numExamples
+     * @return
+     */
+    public long getPaddedBatchSize(long numExamples) {
+        int idx = bucketFor(numExamples);
+        return idx < 0 ? numExamples : preferredBatchSizes[idx];
+    }
+
+    /**
+     * This method updates controller state after batch was processed
+     *
+     * @param batchSize          number of examples passed to the model, including padding
+     * @param modelNanos         time spent in model
+     * @param worstLatencyNanos  max end-to-end latency of requests within this batch (time in queue + time in model)
+     * @param queueDepth         number of requests still waiting in queue
+     */
+    public void update(long batchSize, long modelNanos, long worstLatencyNanos, int queueDepth) {
+        int idx = bucketFor(batchSize);
+        if (idx >= 0) {
+            if (latencyEstimates[idx] == 0.0)
+                latencyEstimates[idx] = modelNanos;
+            else
+                latencyEstimates[idx] = EWMA_ALPHA * modelNanos + (1.0 - EWMA_ALPHA) * latencyEstimates[idx];
+        }
+
+        if (worstLatencyNanos > targetNanos) {
+            // latency target was violated: back off fast
+            windowNanos = windowNanos / 2;
+        } else if (queueDepth == 0 && batchSize < getMaxBatchSize()) {
+            // batch was underfilled and there's no backlog, so waiting a bit longer might give us bigger batches
+            long headroom = (targetNanos - worstLatencyNanos) / 2;
+            windowNanos = Math.min(maxWindowNanos, windowNanos + Math.min(windowStepNanos, headroom));
+        }
+
+        // with backlog in queue, batches are filled without waiting, so window is left intact
+    }
+
+    /**
+     * This method returns estimated model latency for preferred batch size with given index.
+     * If there were no observations for this size yet, estimate is extrapolated linearly from the largest smaller size observed.
+     * If there were no observations at all - 0 is returned, so batch sizes will be explored optimistically.
+     *
+     * @param idx index within preferred batch sizes
+     * @return estimated latency, in nanoseconds
+     */
+    protected double estimateLatency(int idx) {
+        if (latencyEstimates[idx] > 0.0)
+            return latencyEstimates[idx];
+
+        for (int e = idx - 1; e >= 0; e--) {
+            if (latencyEstimates[e] > 0.0)
+                return latencyEstimates[e] * preferredBatchSizes[idx] / preferredBatchSizes[e];
+        }
+
+        return 0.0;
+    }
+
+    /**
+     * This method returns index of smallest preferred batch size that's >= given number of examples, or -1 if there's no such size
+     */
+    protected int bucketFor(long numExamples) {
+        for (int e = 0; e < preferredBatchSizes.length; e++) {
+            if (preferredBatchSizes[e] >= numExamples)
+                return e;
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference.adaptive;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObservable;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * This class holds single inference request for ADAPTIVE inference, together with its submission time
+ */
+public class AdaptiveInferenceRequest extends BasicInferenceObservable {
+    @Getter
+    private final long submitTime;
+    @Getter
+    private final long numExamples;
+
+    public AdaptiveInferenceRequest(@NonNull INDArray[] inputs, INDArray[] inputMasks) {
+        super(inputs, inputMasks);
+        this.numExamples = inputs[0].size(0);
+        this.submitTime = System.nanoTime();
+    }
+}
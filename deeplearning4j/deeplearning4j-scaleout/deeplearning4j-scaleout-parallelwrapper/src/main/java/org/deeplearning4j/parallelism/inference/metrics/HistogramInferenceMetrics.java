@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference.metrics;
+
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default in-memory {@link InferenceMetrics} implementation.
+ * Keeps histograms for request latency, queue wait time, batch size and batch processing time,
+ * and counters for each worker.
+ */
+public class HistogramInferenceMetrics implements InferenceMetrics {
+    @Getter
+    protected final LongHistogram latency = new LongHistogram();
+    @Getter
+    protected final LongHistogram queueWait = new LongHistogram();
+    @Getter
+    protected final LongHistogram batchSize = new LongHistogram();
+    @Getter
+    protected final LongHistogram batchTime = new LongHistogram();
+
+    protected final Map<Integer, WorkerStats> workers = new ConcurrentHashMap<>();
+    protected volatile long startTime = System.nanoTime();
+
+    @Override
+    public void requestCompleted(long queueWaitNanos, long latencyNanos) {
+        queueWait.record(queueWaitNanos);
+        latency.record(latencyNanos);
+    }
+
+    @Override
+    public void batchCompleted(int workerId, int numRequests, long numExamples, long modelNanos) {
+        batchSize.record(numExamples);
+        batchTime.record(modelNanos);
+
+        WorkerStats stats = workers.get(workerId);
+        if (stats == null) {
+            workers.putIfAbsent(workerId, new WorkerStats());
+            stats = workers.get(workerId);
+        }
+
+        stats.batches.incrementAndGet();
+        stats.requests.addAndGet(numRequests);
+        stats.examples.addAndGet(numExamples);
+        stats.busyNanos.addAndGet(modelNanos);
+    }
+
+    /**
+     * This method returns stats for given worker, or null if this worker hasn't processed anything yet
+     *
+     * @param workerId
+     * @return
+     */
+    public WorkerStats getWorkerStats(int workerId) {
+        return workers.get(workerId);
+    }
+
+    /**
+     * This method returns fraction of time given worker spent processing batches, since creation or last reset
+     *
+     * @param workerId
+     * @return utilization, in range [0, 1]
+     */
+    public double getWorkerUtilization(int workerId) {
+        WorkerStats stats = workers.get(workerId);
+        if (stats == null)
+            return 0.0;
+
+        long elapsed = System.nanoTime() - startTime;
+        return elapsed <= 0 ? 0.0 : Math.min(1.0, (double) stats.busyNanos.get() / elapsed);
+    }
+
+    /**
+     * This method resets all histograms and counters
+     */
+    public void reset() {
+        latency.reset();
+        queueWait.reset();
+        batchSize.reset();
+        batchTime.reset();
+        workers.clear();
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * This method returns human-readable summary of collected metrics
+     *
+     * @return
+     */
+    public String stats() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Requests: ").append(latency.getCount()).append("\n");
+        appendLatency(sb, "Latency", latency);
+        appendLatency(sb, "Queue wait", queueWait);
+        appendLatency(sb, "Batch time", batchTime);
+        sb.append(String.format("Batch size: mean=%.2f, p50=%d, p99=%d, max=%d%n", batchSize.getMean(),
+                        batchSize.getPercentile(50), batchSize.getPercentile(99), batchSize.getMax()));
+
+        for (Map.Entry<Integer, WorkerStats> e : new TreeMap<>(workers).entrySet()) {
+            WorkerStats s = e.getValue();
+            sb.append(String.format("Worker %d: batches=%d, requests=%d, examples=%d, utilization=%.1f%%%n", e.getKey(),
+                            s.getBatches(), s.getRequests(), s.getExamples(), 100.0 * getWorkerUtilization(e.getKey())));
+        }
+
+        return sb.toString();
+    }
+
+    private static void appendLatency(StringBuilder sb, String name, LongHistogram histogram) {
+        sb.append(String.format("%s (ms): mean=%.3f, p50=%.3f, p90=%.3f, p99=%.3f, p99.9=%.3f, max=%.3f%n", name,
+                        histogram.getMean() / 1e6, toMillis(histogram.getPercentile(50)),
+                        toMillis(histogram.getPercentile(90)), toMillis(histogram.getPercentile(99)),
+                        toMillis(histogram.getPercentile(99.9)), toMillis(histogram.getMax())));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Counters for single inference worker
+     */
+    public static class WorkerStats {
+        protected final AtomicLong batches = new AtomicLong(0);
+        protected final AtomicLong requests = new AtomicLong(0);
+        protected final AtomicLong examples = new AtomicLong(0);
+        protected final AtomicLong busyNanos = new AtomicLong(0);
+
+        public long getBatches() {
+            return batches.get();
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public long getExamples() {
+            return examples.get();
+        }
+
+        public long getBusyNanos() {
+            return busyNanos.get();
+        }
+    }
+}
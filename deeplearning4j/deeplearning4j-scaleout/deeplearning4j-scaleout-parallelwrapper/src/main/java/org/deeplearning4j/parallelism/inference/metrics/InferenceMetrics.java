@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference.metrics;
+
+/**
+ * This interface describes metrics sink for ParallelInference.
+ *
+ * PLEASE NOTE: Implementations are called from both calling threads and worker threads, so they should be thread-safe,
+ * and should return fast, since they're invoked on inference hot path.
+ *
+ * If no metrics sink is set, ParallelInference doesn't even measure time, so disabled metrics cost nothing.
+ */
+public interface InferenceMetrics {
+
+    /**
+     * This method is called by the calling thread once output for its request is available
+     *
+     * @param queueWaitNanos time between request submission and start of its processing by worker
+     * @param latencyNanos   end-to-end latency of the request, including queue wait
+     */
+    void requestCompleted(long queueWaitNanos, long latencyNanos);
+
+    /**
+     * This method is called by the worker thread after each processed batch
+     *
+     * @param workerId    id of the worker
+     * @param numRequests number of requests within this batch
+     * @param numExamples number of examples within this batch
+     * @param modelNanos  time spent processing this batch
+     */
+    void batchCompleted(int workerId, int numRequests, long numExamples, long modelNanos);
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative long values, with log-linear buckets (similar to HdrHistogram):
+ * each power of 2 range is split into 32 equal sub-buckets, so values are tracked with ~3% relative precision,
+ * with fixed memory footprint regardless of value range.
+ */
+public class LongHistogram {
+    protected static final int SUB_BUCKET_BITS = 5;
+    protected static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    protected static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    protected final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    protected final AtomicLong totalCount = new AtomicLong(0);
+    protected final AtomicLong totalSum = new AtomicLong(0);
+    protected final AtomicLong maxValue = new AtomicLong(0);
+
+    /**
+     * This method records single value. Negative values are recorded as 0.
+     *
+     * @param value
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+
+        counts.incrementAndGet(indexFor(value));
+        totalCount.incrementAndGet();
+        totalSum.addAndGet(value);
+
+        long max;
+        while (value > (max = maxValue.get())) {
+            if (maxValue.compareAndSet(max, value))
+                break;
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    public double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0.0 : (double) totalSum.get() / count;
+    }
+
+    /**
+     * This method returns value at given percentile. Returned value is the upper bound of the bucket
+     * the percentile falls into, but never exceeds max recorded value.
+     *
+     * @param percentile percentile, in range [0, 100]
+     * @return value at given percentile, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0.0 || percentile > 100.0)
+            throw new IllegalArgumentException("Percentile should be in range [0, 100], got " + percentile);
+
+        long count = totalCount.get();
+        if (count == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long cumulative = 0;
+        for (int e = 0; e < NUM_BUCKETS; e++) {
+            cumulative += counts.get(e);
+            if (cumulative >= target)
+                return Math.min(highestEquivalentValue(e), maxValue.get());
+        }
+
+        return maxValue.get();
+    }
+
+    /**
+     * This method resets all counters
+     */
+    public void reset() {
+        for (int e = 0; e < NUM_BUCKETS; e++)
+            counts.set(e, 0);
+
+        totalCount.set(0);
+        totalSum.set(0);
+        maxValue.set(0);
+    }
+
+    protected static int indexFor(long value) {
+        if (value < SUB_BUCKET_COUNT)
+            return (int) value;
+
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    protected static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        long lowest = (SUB_BUCKET_COUNT + subBucket) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
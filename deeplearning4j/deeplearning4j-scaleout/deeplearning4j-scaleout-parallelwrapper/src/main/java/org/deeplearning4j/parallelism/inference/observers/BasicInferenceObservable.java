@@ -19,6 +19,7 @@ package org.deeplearning4j.parallelism.inference.observers;
 import com.google.common.base.Preconditions;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -39,6 +40,9 @@ public class BasicInferenceObservable extends Observable implements InferenceObs
     private long id;
     private INDArray[] output;
     protected Exception exception;
+    @Getter
+    @Setter
+    private volatile long processingStartTime;
 
 
     public BasicInferenceObservable(INDArray... inputs) {
@@ -20,6 +20,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.Observable;
 import java.util.Observer;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.LockSupport;
 
@@ -50,4 +51,20 @@ public class BasicInferenceObserver implements Observer {
             LockSupport.parkNanos(1000);
         }
     }
+
+    /**
+     * This method blocks until the observable is done, or until the given timeout is over
+     *
+     * @return true if the observable is done, false if timeout was reached
+     */
+    public boolean waitTillDone(long timeout, TimeUnit timeUnit) {
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        while (!finished.get()) {
+            if (System.nanoTime() - deadline >= 0)
+                return false;
+
+            LockSupport.parkNanos(1000);
+        }
+        return true;
+    }
 }
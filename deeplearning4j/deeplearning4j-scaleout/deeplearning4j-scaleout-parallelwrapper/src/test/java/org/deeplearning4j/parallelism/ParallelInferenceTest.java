@@ -33,6 +33,7 @@ import org.deeplearning4j.datasets.iterator.impl.MnistDataSetIterator;
 import org.deeplearning4j.eval.Evaluation;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.parallelism.inference.InferenceMode;
+import org.deeplearning4j.parallelism.inference.metrics.HistogramInferenceMetrics;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObserver;
 import org.deeplearning4j.parallelism.inference.observers.BatchedInferenceObservable;
@@ -50,6 +51,7 @@ import java.io.File;
 import java.lang.reflect.Field;
 import java.util.*;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
@@ -200,6 +202,101 @@ public class ParallelInferenceTest {
     }
 
 
+    @Test(timeout = 30000L)
+    public void testInferenceAdaptive1() throws Exception {
+        long count0 = 0;
+        long count1 = 0;
+
+        // same as testInferenceBatched1: we can't guarantee that both workers will get data on any particular run
+        for( int i=0; i<20 && (count0 == 0 || count1 == 0); i++ ) {
+            ParallelInference inf = new ParallelInference.Builder(model).inferenceMode(InferenceMode.ADAPTIVE)
+                    .latencyTarget(20, TimeUnit.MILLISECONDS)
+                    .preferredBatchSizes(1, 4, 8)
+                    .workers(2).build();
+
+            iterator = new MnistDataSetIterator(1, false, 12345);
+
+            INDArray array1 = inf.output(iterator.next().getFeatures());
+            INDArray array2 = inf.output(iterator.next().getFeatures());
+
+            assertFalse(array1.isAttached());
+            assertFalse(array2.isAttached());
+            assertArrayEquals(new long[]{1, 10}, array1.shape());
+
+            iterator.reset();
+
+            evalClassifcationMultipleThreads(inf, iterator, 20);
+
+            count0 = inf.getWorkerCounter(0);
+            count1 = inf.getWorkerCounter(1);
+
+            inf.shutdown();
+        }
+        assertTrue(count0 > 0L);
+        assertTrue(count1 > 0L);
+    }
+
+    @Test(timeout = 30000L)
+    public void testOutputAfterShutdown() throws Exception {
+        for (InferenceMode mode : new InferenceMode[]{InferenceMode.SEQUENTIAL, InferenceMode.BATCHED, InferenceMode.ADAPTIVE}) {
+            ParallelInference inf = new ParallelInference.Builder(model).inferenceMode(mode).workers(2).build();
+
+            iterator = new MnistDataSetIterator(1, false, 12345);
+            INDArray features = iterator.next().getFeatures();
+            assertArrayEquals(new long[]{1, 10}, inf.output(features).shape());
+
+            inf.shutdown();
+
+            try {
+                inf.output(features);
+                fail("Expected exception for " + mode);
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().contains("shut down"));
+            }
+        }
+    }
+
+    @Test(timeout = 30000L)
+    public void testInferenceMetrics1() throws Exception {
+        for (InferenceMode mode : InferenceMode.values()) {
+            HistogramInferenceMetrics metrics = new HistogramInferenceMetrics();
+            ParallelInference inf = new ParallelInference.Builder(model).inferenceMode(mode)
+                    .metrics(metrics).workers(2).build();
+
+            iterator = new MnistDataSetIterator(1, false, 12345);
+            for (int e = 0; e < 10; e++)
+                inf.output(iterator.next().getFeatures());
+
+            inf.shutdown();
+
+            assertEquals(10, metrics.getLatency().getCount());
+            assertEquals(10, metrics.getQueueWait().getCount());
+            assertTrue(metrics.getLatency().getMax() > 0);
+            assertTrue(metrics.getQueueWait().getMax() <= metrics.getLatency().getMax());
+
+            if (mode != InferenceMode.INPLACE) {
+                long requests = 0;
+                long examples = 0;
+                for (int w = 0; w < 2; w++) {
+                    HistogramInferenceMetrics.WorkerStats stats = metrics.getWorkerStats(w);
+                    if (stats != null) {
+                        requests += stats.getRequests();
+                        examples += stats.getExamples();
+                    }
+                }
+                assertEquals(10, requests);
+                assertEquals(10, examples);
+            }
+        }
+    }
+
+    @Test
+    public void testDefaultPreferredBatchSizes() {
+        assertArrayEquals(new int[]{1}, ParallelInference.defaultPreferredBatchSizes(1));
+        assertArrayEquals(new int[]{1, 2, 4, 8, 16, 32}, ParallelInference.defaultPreferredBatchSizes(32));
+        assertArrayEquals(new int[]{1, 2, 4, 8, 16, 20}, ParallelInference.defaultPreferredBatchSizes(20));
+    }
+
     @Test
     public void testProvider1() throws Exception {
         LinkedBlockingQueue queue = new LinkedBlockingQueue();
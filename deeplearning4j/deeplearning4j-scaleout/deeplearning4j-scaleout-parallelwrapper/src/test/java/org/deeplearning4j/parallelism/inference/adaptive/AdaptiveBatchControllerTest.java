@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference.adaptive;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveBatchControllerTest {
+    private static final long TARGET = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    public void testPreferredSizesSorted() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(TARGET, 8, 1, 4, 4, 2);
+        assertArrayEquals(new int[] {1, 2, 4, 8}, controller.getPreferredBatchSizes());
+    }
+
+    @Test
+    public void testPaddedBatchSize() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(TARGET, 1, 2, 4, 8);
+        assertEquals(1, controller.getPaddedBatchSize(1));
+        assertEquals(4, controller.getPaddedBatchSize(3));
+        assertEquals(8, controller.getPaddedBatchSize(8));
+
+        // nothing fits, so no padding
+        assertEquals(11, controller.getPaddedBatchSize(11));
+    }
+
+    @Test
+    public void testWindowShrinksOnViolation() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(TARGET, 1, 2, 4, 8);
+
+        // grow window first
+        for (int e = 0; e < 10; e++)
+            controller.update(1, 1000, 2000, 0);
+
+        long window = controller.getWindowNanos();
+        assertTrue(window > 0);
+
+        controller.update(1, 1000, TARGET + 1, 0);
+        assertEquals(window / 2, controller.getWindowNanos());
+    }
+
+    @Test
+    public void testWindowBounds() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(TARGET, 1, 2, 4, 8);
+
+        for (int e = 0; e < 1000; e++)
+            controller.update(1, 1000, 2000, 0);
+
+        assertTrue(controller.getWindowNanos() <= TARGET / 2);
+
+        for (int e = 0; e < 100; e++)
+            controller.update(1, 1000, TARGET * 2, 0);
+
+        assertEquals(0, controller.getWindowNanos());
+    }
+
+    @Test
+    public void testWindowKeptWithBacklog() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(TARGET, 1, 2, 4, 8);
+        long window = controller.getWindowNanos();
+
+        controller.update(1, 1000, 2000, 25);
+        assertEquals(window, controller.getWindowNanos());
+    }
+
+    @Test
+    public void testMaxBatchSizeRespectsLatency() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(TARGET, 1, 2, 4, 8);
+
+        // no observations yet: largest size is allowed
+        assertEquals(8, controller.getMaxBatchSize());
+
+        // batch of 2 takes 60% of target, so batch of 4 is expected to take 120% of target
+        controller.update(2, TARGET * 6 / 10, TARGET / 2, 1);
+        assertEquals(2, controller.getMaxBatchSize());
+
+        // batch of 4 turned out to be fast, so batch of 8 is expected to fit as well
+        controller.update(4, TARGET / 10, TARGET / 2, 1);
+        assertEquals(8, controller.getMaxBatchSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoPreferredSizes() {
+        new AdaptiveBatchController(TARGET);
+    }
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.parallelism.inference.metrics;
+
+import lombok.val;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LongHistogramTest {
+
+    @Test
+    public void testSmallValuesAreExact() {
+        val histogram = new LongHistogram();
+        for (int e = 1; e <= 20; e++)
+            histogram.record(e);
+
+        assertEquals(20, histogram.getCount());
+        assertEquals(20, histogram.getMax());
+        assertEquals(10.5, histogram.getMean(), 1e-9);
+        assertEquals(10, histogram.getPercentile(50));
+        assertEquals(20, histogram.getPercentile(100));
+        assertEquals(1, histogram.getPercentile(0));
+    }
+
+    @Test
+    public void testRelativeError() {
+        val histogram = new LongHistogram();
+        for (long e = 1; e <= 100_000; e++)
+            histogram.record(e * 1000);
+
+        // 32 sub-buckets per power of 2 give us ~3% relative error at most
+        long p50 = histogram.getPercentile(50);
+        long p99 = histogram.getPercentile(99);
+        assertEquals(50_000_000, p50, 50_000_000 * 0.035);
+        assertEquals(99_000_000, p99, 99_000_000 * 0.035);
+        assertEquals(100_000_000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testBucketBounds() {
+        for (long v : new long[] {0, 1, 31, 32, 33, 63, 64, 1000, 123_456_789L, Long.MAX_VALUE}) {
+            int idx = LongHistogram.indexFor(v);
+            assertTrue(idx >= 0 && idx < LongHistogram.NUM_BUCKETS);
+            assertTrue(LongHistogram.highestEquivalentValue(idx) >= v);
+            if (idx > 0)
+                assertTrue(LongHistogram.highestEquivalentValue(idx - 1) < v);
+        }
+    }
+
+    @Test
+    public void testNegativeAndReset() {
+        val histogram = new LongHistogram();
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0.0, histogram.getMean(), 0.0);
+    }
+
+    @Test(timeout = 30000L)
+    public void testConcurrentRecording() throws Exception {
+        final LongHistogram histogram = new LongHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int e = 0; e < 10_000; e++)
+                        histogram.record(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        for (Thread t : threads)
+            t.join();
+
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(9_999, histogram.getMax());
+    }
+
+    @Test
+    public void testWorkerStats() {
+        val metrics = new HistogramInferenceMetrics();
+        metrics.batchCompleted(0, 3, 12, 1000);
+        metrics.batchCompleted(0, 1, 4, 500);
+        metrics.batchCompleted(1, 2, 8, 700);
+        metrics.requestCompleted(100, 2000);
+
+        assertEquals(2, metrics.getWorkerStats(0).getBatches());
+        assertEquals(4, metrics.getWorkerStats(0).getRequests());
+        assertEquals(16, metrics.getWorkerStats(0).getExamples());
+        assertEquals(1500, metrics.getWorkerStats(0).getBusyNanos());
+        assertNull(metrics.getWorkerStats(2));
+        assertEquals(3, metrics.getBatchSize().getCount());
+        assertEquals(1, metrics.getLatency().getCount());
+        assertNotNull(metrics.stats());
+
+        metrics.reset();
+        assertNull(metrics.getWorkerStats(0));
+        assertEquals(0, metrics.getLatency().getCount());
+    }
+}
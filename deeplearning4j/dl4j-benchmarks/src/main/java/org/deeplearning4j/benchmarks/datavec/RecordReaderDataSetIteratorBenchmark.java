@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.benchmarks.datavec;
+
+import org.apache.commons.io.FileUtils;
+import org.datavec.api.io.labels.ParentPathLabelGenerator;
+import org.datavec.api.records.reader.RecordReader;
+import org.datavec.api.records.reader.impl.csv.CSVRecordReader;
+import org.datavec.api.split.FileSplit;
+import org.datavec.image.loader.NativeImageLoader;
+import org.datavec.image.recordreader.ImageRecordReader;
+import org.deeplearning4j.datasets.datavec.RecordReaderDataSetIterator;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for a full epoch of {@link RecordReaderDataSetIterator} over CSV and image data.
+ * The data is generated into a temporary directory once per trial, so the numbers reflect parsing, decoding
+ * and INDArray creation rather than the speed of the underlying storage.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordReaderDataSetIteratorBenchmark {
+
+    private static final int N_CLASSES = 10;
+
+    @Param({"32", "128"})
+    public int batchSize;
+
+    @Param({"10000"})
+    public int csvRows;
+
+    @Param({"100"})
+    public int csvColumns;
+
+    @Param({"500"})
+    public int numImages;
+
+    @Param({"64"})
+    public int imageSize;
+
+    private File baseDir;
+    private File csvFile;
+    private File imageDir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        baseDir = Files.createTempDirectory("dl4j-benchmarks").toFile();
+        Random r = new Random(12345);
+
+        csvFile = new File(baseDir, "data.csv");
+        try (BufferedWriter w = new BufferedWriter(new FileWriter(csvFile))) {
+            for (int i = 0; i < csvRows; i++) {
+                for (int j = 0; j < csvColumns; j++) {
+                    w.write(String.valueOf(r.nextFloat()));
+                    w.write(',');
+                }
+                w.write(String.valueOf(i % N_CLASSES));
+                w.newLine();
+            }
+        }
+
+        imageDir = new File(baseDir, "images");
+        for (int i = 0; i < numImages; i++) {
+            File labelDir = new File(imageDir, "class_" + (i % N_CLASSES));
+            if (!labelDir.exists() && !labelDir.mkdirs()) {
+                throw new IOException("Could not create directory: " + labelDir);
+            }
+            BufferedImage img = new BufferedImage(imageSize, imageSize, BufferedImage.TYPE_INT_RGB);
+            for (int y = 0; y < imageSize; y++) {
+                for (int x = 0; x < imageSize; x++) {
+                    img.setRGB(x, y, r.nextInt(0xFFFFFF));
+                }
+            }
+            ImageIO.write(img, "jpg", new File(labelDir, i + ".jpg"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(baseDir);
+    }
+
+    @Benchmark
+    public long csvEpoch() throws Exception {
+        RecordReader rr = new CSVRecordReader();
+        rr.initialize(new FileSplit(csvFile));
+        return iterate(new RecordReaderDataSetIterator(rr, batchSize, csvColumns, N_CLASSES));
+    }
+
+    @Benchmark
+    public long imageEpoch() throws Exception {
+        ImageRecordReader rr = new ImageRecordReader(imageSize, imageSize, 3, new ParentPathLabelGenerator());
+        rr.initialize(new FileSplit(imageDir, NativeImageLoader.ALLOWED_FORMATS, new Random(12345)));
+        return iterate(new RecordReaderDataSetIterator(rr, batchSize, 1, N_CLASSES));
+    }
+
+    private static long iterate(RecordReaderDataSetIterator iter) {
+        long count = 0;
+        while (iter.hasNext()) {
+            count += iter.next().numExamples();
+        }
+        return count;
+    }
+}
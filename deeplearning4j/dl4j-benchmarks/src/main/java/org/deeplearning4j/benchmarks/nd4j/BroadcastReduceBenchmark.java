@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.benchmarks.nd4j;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.executioner.OpExecutioner;
+import org.nd4j.linalg.api.ops.impl.accum.Max;
+import org.nd4j.linalg.api.ops.impl.accum.Mean;
+import org.nd4j.linalg.api.ops.impl.accum.Norm2;
+import org.nd4j.linalg.api.ops.impl.accum.Sum;
+import org.nd4j.linalg.api.ops.impl.broadcast.BroadcastAddOp;
+import org.nd4j.linalg.api.ops.impl.broadcast.BroadcastMulOp;
+import org.nd4j.linalg.api.ops.impl.indexaccum.IMax;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for broadcast and reduction ops, executed directly through the backend's {@link OpExecutioner}
+ * (NativeOpExecutioner for nd4j-native), bypassing the INDArray convenience methods.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BroadcastReduceBenchmark {
+
+    @Param({"128", "1024"})
+    public int rows;
+
+    @Param({"128", "1024"})
+    public int columns;
+
+    private OpExecutioner executioner;
+    private INDArray x;
+    private INDArray rowVector;
+    private INDArray columnVector;
+    private INDArray z;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executioner = Nd4j.getExecutioner();
+        x = Nd4j.rand(rows, columns);
+        rowVector = Nd4j.rand(1, columns);
+        columnVector = Nd4j.rand(rows, 1);
+        z = Nd4j.createUninitialized(new long[] {rows, columns}, 'c');
+    }
+
+    @Benchmark
+    public INDArray broadcastAddRow() {
+        return executioner.exec(new BroadcastAddOp(x, rowVector, z, 1), 1);
+    }
+
+    @Benchmark
+    public INDArray broadcastMulColumn() {
+        return executioner.exec(new BroadcastMulOp(x, columnVector, z, 0), 0);
+    }
+
+    @Benchmark
+    public INDArray sumAlongRows() {
+        return executioner.exec(new Sum(x), 1);
+    }
+
+    @Benchmark
+    public INDArray sumAlongColumns() {
+        return executioner.exec(new Sum(x), 0);
+    }
+
+    @Benchmark
+    public INDArray meanAlongRows() {
+        return executioner.exec(new Mean(x), 1);
+    }
+
+    @Benchmark
+    public INDArray maxAlongRows() {
+        return executioner.exec(new Max(x), 1);
+    }
+
+    @Benchmark
+    public INDArray norm2AlongRows() {
+        return executioner.exec(new Norm2(x), 1);
+    }
+
+    @Benchmark
+    public INDArray argMaxAlongRows() {
+        return executioner.exec(new IMax(x), 1);
+    }
+
+    @Benchmark
+    public Number sumFull() {
+        return executioner.execAndReturn(new Sum(x)).getFinalResult();
+    }
+}
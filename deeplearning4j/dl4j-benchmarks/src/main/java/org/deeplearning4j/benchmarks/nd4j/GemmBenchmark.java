@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.benchmarks.nd4j;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for matrix multiplication via {@link Nd4j#gemm(INDArray, INDArray, INDArray, boolean, boolean, double, double)}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class GemmBenchmark {
+
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean transposeA;
+
+    private INDArray a;
+    private INDArray b;
+    private INDArray c;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        a = Nd4j.rand('f', size, size);
+        b = Nd4j.rand('f', size, size);
+        c = Nd4j.createUninitialized(new long[] {size, size}, 'f');
+    }
+
+    @Benchmark
+    public INDArray gemm() {
+        return Nd4j.gemm(a, b, transposeA, false);
+    }
+
+    @Benchmark
+    public INDArray gemmInPlace() {
+        return Nd4j.gemm(a, b, c, transposeA, false, 1.0, 0.0);
+    }
+
+    @Benchmark
+    public INDArray mmul() {
+        return a.mmul(b);
+    }
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.benchmarks.nd4j;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link INDArray} creation, view creation and duplication
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class INDArrayCreationBenchmark {
+
+    @Param({"32", "256", "1024"})
+    public int size;
+
+    private INDArray array;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        array = Nd4j.rand(new long[] {size, size});
+    }
+
+    @Benchmark
+    public INDArray create() {
+        return Nd4j.create(size, size);
+    }
+
+    @Benchmark
+    public INDArray createUninitialized() {
+        return Nd4j.createUninitialized(new long[] {size, size}, 'c');
+    }
+
+    @Benchmark
+    public INDArray rowView() {
+        return array.getRow(size / 2);
+    }
+
+    @Benchmark
+    public INDArray intervalView() {
+        return array.get(NDArrayIndex.interval(0, size / 2), NDArrayIndex.interval(size / 4, size));
+    }
+
+    @Benchmark
+    public INDArray tensorAlongDimension() {
+        return array.tensorAlongDimension(size / 2, 1);
+    }
+
+    @Benchmark
+    public INDArray dup() {
+        return array.dup();
+    }
+
+    @Benchmark
+    public INDArray dupFOrder() {
+        return array.dup('f');
+    }
+}
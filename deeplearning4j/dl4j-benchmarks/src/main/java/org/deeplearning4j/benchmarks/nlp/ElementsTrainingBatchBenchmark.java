@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.benchmarks.nlp;
+
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.embeddings.learning.impl.elements.ElementsTrainingBatch;
+import org.deeplearning4j.models.word2vec.Huffman;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.aggregates.Aggregate;
+import org.nd4j.linalg.api.ops.aggregates.impl.AggregateSkipGram;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares SkipGram training through {@link AggregateSkipGram} ops, as done by default, with training through
+ * {@link ElementsTrainingBatch}, for one batch of rounds over a synthetic Zipf-distributed vocabulary.
+ * Negative = 0 uses hierarchic softmax only.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class ElementsTrainingBatchBenchmark {
+
+    private static final int VOCAB_SIZE = 10000;
+    private static final int ROUNDS = 4096;
+    private static final double ALPHA = 0.025;
+
+    @Param({"100", "300"})
+    public int vectorLength;
+
+    @Param({"0", "5"})
+    public int negative;
+
+    private InMemoryLookupTable<VocabWord> lookupTable;
+    private INDArray expTable;
+    private ElementsTrainingBatch<VocabWord> batch;
+    private VocabWord[] targets;
+    private int[] contexts;
+    private long[] randoms;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        AbstractCache<VocabWord> vocab = new AbstractCache.Builder<VocabWord>().build();
+        for (int i = 0; i < VOCAB_SIZE; i++) {
+            vocab.addToken(new VocabWord(1000000.0 / (i + 1), "word" + i));
+        }
+        Huffman huffman = new Huffman(vocab.vocabWords());
+        huffman.build();
+        huffman.applyIndexes(vocab);
+
+        lookupTable = (InMemoryLookupTable<VocabWord>) new InMemoryLookupTable.Builder<VocabWord>()
+                        .vectorLength(vectorLength).useHierarchicSoftmax(negative == 0).negative(negative)
+                        .cache(vocab).seed(12345).build();
+        lookupTable.resetWeights(true);
+        expTable = Nd4j.create(lookupTable.getExpTable());
+        batch = new ElementsTrainingBatch<>(lookupTable, VOCAB_SIZE, negative, negative == 0);
+
+        Random random = new Random(12345);
+        targets = new VocabWord[ROUNDS];
+        contexts = new int[ROUNDS];
+        randoms = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            targets[i] = vocab.elementAtIndex(random.nextInt(VOCAB_SIZE));
+            contexts[i] = random.nextInt(VOCAB_SIZE);
+            randoms[i] = Math.abs(random.nextLong());
+        }
+    }
+
+    @Benchmark
+    public List<Aggregate> aggregates() {
+        List<Aggregate> aggregates = new ArrayList<>(ROUNDS);
+        for (int i = 0; i < ROUNDS; i++) {
+            VocabWord target = targets[i];
+            int[] points = new int[negative == 0 ? target.getCodeLength() : 0];
+            int[] codes = new int[points.length];
+            for (int p = 0; p < points.length; p++) {
+                points[p] = target.getPoints().get(p);
+                codes[p] = target.getCodes().get(p);
+            }
+            aggregates.add(new AggregateSkipGram(lookupTable.getSyn0(), lookupTable.getSyn1(),
+                            lookupTable.getSyn1Neg(), expTable, lookupTable.getTable(), contexts[i], points, codes,
+                            negative, target.getIndex(), vectorLength, ALPHA, randoms[i], VOCAB_SIZE, null));
+        }
+        Nd4j.getExecutioner().exec(aggregates);
+        return aggregates;
+    }
+
+    @Benchmark
+    public ElementsTrainingBatch<VocabWord> trainingBatch() {
+        for (int i = 0; i < ROUNDS; i++) {
+            batch.addSkipGram(targets[i], contexts[i], ALPHA, randoms[i]);
+        }
+        batch.exec();
+        return batch;
+    }
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.benchmarks.nn;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.*;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link MultiLayerNetwork#fit(INDArray, INDArray)} and {@link MultiLayerNetwork#output(INDArray)}
+ * on small dense, convolutional and LSTM networks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class MultiLayerNetworkBenchmark {
+
+    public enum NetworkType {DENSE, CONV, LSTM}
+
+    private static final int N_CLASSES = 10;
+
+    @Param({"DENSE", "CONV", "LSTM"})
+    public NetworkType networkType;
+
+    @Param({"32", "128"})
+    public int minibatch;
+
+    private MultiLayerNetwork net;
+    private INDArray features;
+    private INDArray labels;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Nd4j.getRandom().setSeed(12345);
+        net = new MultiLayerNetwork(getConfiguration(networkType));
+        net.init();
+
+        switch (networkType) {
+            case DENSE:
+                features = Nd4j.rand(minibatch, 784);
+                labels = oneHot(minibatch, N_CLASSES);
+                break;
+            case CONV:
+                features = Nd4j.rand(new int[] {minibatch, 1, 28, 28});
+                labels = oneHot(minibatch, N_CLASSES);
+                break;
+            case LSTM:
+                features = Nd4j.rand(new int[] {minibatch, 32, 50});
+                labels = Nd4j.zeros(minibatch, N_CLASSES, 50);
+                for (int i = 0; i < minibatch; i++) {
+                    for (int t = 0; t < 50; t++) {
+                        labels.putScalar(new int[] {i, i % N_CLASSES, t}, 1.0);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown network type: " + networkType);
+        }
+    }
+
+    @Benchmark
+    public MultiLayerNetwork fit() {
+        net.fit(features, labels);
+        return net;
+    }
+
+    @Benchmark
+    public INDArray output() {
+        return net.output(features);
+    }
+
+    private static INDArray oneHot(int minibatch, int nClasses) {
+        INDArray out = Nd4j.zeros(minibatch, nClasses);
+        for (int i = 0; i < minibatch; i++) {
+            out.putScalar(i, i % nClasses, 1.0);
+        }
+        return out;
+    }
+
+    private static MultiLayerConfiguration getConfiguration(NetworkType type) {
+        NeuralNetConfiguration.Builder builder = new NeuralNetConfiguration.Builder()
+                        .seed(12345)
+                        .updater(new Adam(1e-3))
+                        .weightInit(WeightInit.XAVIER);
+
+        switch (type) {
+            case DENSE:
+                return builder.list()
+                                .layer(new DenseLayer.Builder().nIn(784).nOut(512).activation(Activation.RELU).build())
+                                .layer(new DenseLayer.Builder().nIn(512).nOut(256).activation(Activation.RELU).build())
+                                .layer(new OutputLayer.Builder().nIn(256).nOut(N_CLASSES)
+                                                .lossFunction(LossFunctions.LossFunction.MCXENT)
+                                                .activation(Activation.SOFTMAX).build())
+                                .build();
+            case CONV:
+                return builder.list()
+                                .layer(new ConvolutionLayer.Builder().kernelSize(5, 5).stride(1, 1).nOut(20)
+                                                .activation(Activation.RELU).build())
+                                .layer(new SubsamplingLayer.Builder(SubsamplingLayer.PoolingType.MAX)
+                                                .kernelSize(2, 2).stride(2, 2).build())
+                                .layer(new ConvolutionLayer.Builder().kernelSize(5, 5).stride(1, 1).nOut(50)
+                                                .activation(Activation.RELU).build())
+                                .layer(new SubsamplingLayer.Builder(SubsamplingLayer.PoolingType.MAX)
+                                                .kernelSize(2, 2).stride(2, 2).build())
+                                .layer(new DenseLayer.Builder().nOut(500).activation(Activation.RELU).build())
+                                .layer(new OutputLayer.Builder().nOut(N_CLASSES)
+                                                .lossFunction(LossFunctions.LossFunction.MCXENT)
+                                                .activation(Activation.SOFTMAX).build())
+                                .setInputType(InputType.convolutional(28, 28, 1))
+                                .build();
+            case LSTM:
+                return builder.list()
+                                .layer(new LSTM.Builder().nIn(32).nOut(128).activation(Activation.TANH).build())
+                                .layer(new LSTM.Builder().nIn(128).nOut(128).activation(Activation.TANH).build())
+                                .layer(new RnnOutputLayer.Builder().nIn(128).nOut(N_CLASSES)
+                                                .lossFunction(LossFunctions.LossFunction.MCXENT)
+                                                .activation(Activation.SOFTMAX).build())
+                                .build();
+            default:
+                throw new IllegalStateException("Unknown network type: " + type);
+        }
+    }
+}
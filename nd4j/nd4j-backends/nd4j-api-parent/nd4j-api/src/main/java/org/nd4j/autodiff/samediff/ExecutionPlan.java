@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.nd4j.autodiff.samediff;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.nd4j.autodiff.functions.DifferentialFunction;
+
+import java.util.List;
+
+/**
+ * ExecutionPlan: the subset of the functions in a {@link SameDiff} instance that has to be executed to calculate
+ * a specific set of output variables, in execution order. Functions that the requested outputs don't depend on
+ * (for example, training-only branches of imported graphs) are not part of the plan.<br>
+ * Execution plans are created and cached by {@link SameDiff#getExecutionPlan(List)}.
+ */
+@AllArgsConstructor
+@Getter
+public class ExecutionPlan {
+    /**
+     * Requested output variables
+     */
+    private final List<String> outputs;
+
+    /**
+     * Functions to execute, in the same relative order as in the SameDiff instance
+     */
+    private final List<DifferentialFunction> functions;
+
+    /**
+     * Own names of the functions to execute
+     */
+    private final List<String> functionNames;
+
+    /**
+     * Functions of this plan that have properties to be resolved before execution
+     */
+    private final List<DifferentialFunction> propertyFunctions;
+
+    /**
+     * Number of graph modifications of the SameDiff instance when this plan was created. Used to detect graph changes
+     */
+    private final int graphModificationCount;
+
+    /**
+     * Lifetimes of the intermediate arrays of this plan. Null if the plan contains control flow ops (loops,
+     * conditions, tensor lists), for which array lifetimes can't be determined statically
+     */
+    private final MemoryPlan memoryPlan;
+
+    /**
+     * For each function, the indices of the functions of this plan that produce its inputs. Null if the functions
+     * of this plan can't be executed out of order (control flow ops, in-place ops)
+     */
+    private final int[][] dependencies;
+
+    /**
+     * Maximum number of functions with the same dependency depth: i.e., an upper bound on the number of functions
+     * that can be executed concurrently. 1 for sequential graphs, or if {@link #getDependencies()} is null
+     */
+    private final int maxParallelism;
+
+    /**
+     * @return Number of functions to execute
+     */
+    public int size() {
+        return functions.size();
+    }
+}
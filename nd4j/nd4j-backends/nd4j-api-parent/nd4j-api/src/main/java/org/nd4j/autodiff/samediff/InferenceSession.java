@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.nd4j.autodiff.samediff;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * InferenceSession: executes a SameDiff graph for inference, sharing the graph weights with all other sessions
+ * created from the same SameDiff instance.<br>
+ * Each session owns a private copy of the graph structure (ops and variables), and its own activation arrays.
+ * Weights (variables and constants that aren't outputs of any op) are NOT copied: they are shared, read-only,
+ * between the sessions and the original graph. Thus N threads can execute one graph concurrently, by using one
+ * session per thread - without locks and without duplicating the weights.<br>
+ * Activation arrays are allocated on first use, and reused by later executions with the same shapes.
+ * <br>
+ * PLEASE NOTE: A single session is not meant to be used by multiple threads concurrently: executions on the
+ * same session are serialized. Create sessions using {@link SameDiff#createInferenceSession()}.<br>
+ * PLEASE NOTE: Weights must not be modified (for example, by training the original graph) while sessions are used.
+ */
+public class InferenceSession {
+    @Getter(AccessLevel.PACKAGE)
+    private final SameDiff sameDiff;
+
+    protected InferenceSession(@NonNull SameDiff sameDiff) {
+        this.sameDiff = sameDiff;
+    }
+
+    /**
+     * Execute the graph, calculating the specified outputs only
+     *
+     * @param placeholders Placeholder arrays
+     * @param outputs      Names of the variables to calculate
+     * @return Arrays for the requested variables. These arrays are not used by the session after this method returns
+     */
+    public Map<String, INDArray> exec(Map<String, INDArray> placeholders, String... outputs) {
+        return exec(placeholders, Arrays.asList(outputs));
+    }
+
+    /**
+     * Execute the graph, calculating the specified outputs only
+     *
+     * @param placeholders Placeholder arrays
+     * @param outputs      Names of the variables to calculate
+     * @return Arrays for the requested variables. These arrays are not used by the session after this method returns
+     */
+    public synchronized Map<String, INDArray> exec(Map<String, INDArray> placeholders, @NonNull List<String> outputs) {
+        Map<String, INDArray> ret = sameDiff.exec(placeholders, outputs);
+
+        //Activation arrays are reused by the next execution: don't leak them
+        for (Map.Entry<String, INDArray> e : ret.entrySet()) {
+            if (e.getValue() != null)
+                e.setValue(e.getValue().dup());
+        }
+        return ret;
+    }
+}
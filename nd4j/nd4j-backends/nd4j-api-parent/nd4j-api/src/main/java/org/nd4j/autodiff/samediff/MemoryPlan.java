@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.nd4j.autodiff.samediff;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * MemoryPlan: lifetimes of the intermediate arrays of an {@link ExecutionPlan}.<br>
+ * For every function of the execution plan, the memory plan lists the intermediate variables whose last consumer is
+ * that function. Once the function has been executed, the arrays of these variables are no longer needed: they are
+ * detached from the graph, and their buffers are reused for the outputs of later functions with the same shape.
+ * Thus peak memory is bounded by the largest set of simultaneously live intermediates, instead of the sum of all of
+ * them, and repeated executions don't allocate new arrays once the reuse pool is warmed up.<br>
+ * Requested outputs, placeholders and weights are never released.<br>
+ * Memory plans are created with the execution plan, see {@link SameDiff#enableMemoryPlanning()}
+ */
+@AllArgsConstructor
+@Getter
+public class MemoryPlan {
+    /**
+     * Variables to release after executing each function of the execution plan. Same indexing as
+     * {@link ExecutionPlan#getFunctions()}
+     */
+    private final List<List<String>> releaseAfter;
+
+    /**
+     * Total number of intermediate variables released during one execution
+     */
+    private final int numReleased;
+
+    /**
+     * Maximum number of intermediate variables that are alive at the same time during one execution
+     */
+    private final int maxLive;
+}
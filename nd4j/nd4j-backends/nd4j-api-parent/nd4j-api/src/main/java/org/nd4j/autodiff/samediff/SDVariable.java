@@ -182,7 +182,10 @@ public class SDVariable extends DifferentialFunction implements Serializable {
             throw new ND4JIllegalStateException("Unable to allocate new array. No shape found for variable " + varName);
         }
 
-        val arr = getWeightInitScheme().create(shape);
+        //Buffers of released intermediates are reused if memory planning is enabled
+        INDArray arr = sameDiff.reuseArray(getVarName(), shape, getWeightInitScheme().order());
+        if(arr == null)
+            arr = getWeightInitScheme().create(shape);
         sameDiff.associateArrayWithVariable(arr, this);
         if(log.isTraceEnabled()){
             log.trace("Generated and stored new array for variable \"{}\": old shape: {}, new shape {}", getVarName(),
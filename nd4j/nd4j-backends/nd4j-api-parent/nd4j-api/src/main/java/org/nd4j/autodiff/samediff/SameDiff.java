@@ -37,11 +37,13 @@ import org.nd4j.autodiff.samediff.flow.FlowPath;
 import org.nd4j.autodiff.samediff.serde.FlatBuffersMapper;
 import org.nd4j.autodiff.util.cloner.DataBufferFastCloner;
 import org.nd4j.autodiff.util.cloner.INDArrayFastCloner;
+import org.nd4j.autodiff.util.cloner.SharedINDArrayFastCloner;
 import org.nd4j.base.Preconditions;
 import org.nd4j.evaluation.IEvaluation;
 import org.nd4j.graph.*;
 import org.nd4j.jackson.objectmapper.holder.ObjectMapperHolder;
 import org.nd4j.linalg.api.blas.params.MMulTranspose;
+import org.nd4j.linalg.api.buffer.DataBuffer;
 import org.nd4j.linalg.api.buffer.factory.DataBufferFactory;
 import org.nd4j.linalg.api.buffer.util.DataTypeUtil;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
@@ -105,6 +107,7 @@ import java.io.*;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -226,6 +229,18 @@ public class SameDiff {
     //debug mode variables
     @Getter
     private boolean debugMode;
+
+    //memory planning: release intermediate arrays after their last use, and reuse their buffers
+    @Getter
+    private boolean memoryPlanning;
+    // released arrays available for reuse, key: ordering and shape
+    private transient Map<String, Deque<INDArray>> reusableArrays;
+
+    //inter-op parallelism: max number of independent ops executed concurrently, values <= 1 mean sequential execution
+    @Getter
+    private int interOpParallelism;
+    // shared between all instances, key: number of threads
+    private static final Map<Integer, ExecutorService> interOpExecutors = new ConcurrentHashMap<>();
     private Map<int[], Op> opsForResult;
     private boolean resolvedVariables = false;
 
@@ -294,6 +309,7 @@ public class SameDiff {
      */
     public void updateVariableName(String varName, String withName) {
         SDVariable oldVarNameRef = getVariable(varName);
+        markGraphModified();
         variableMap.remove(oldVarNameRef.getVarName());
         val oldVarName = varName;
         oldVarNameRef.setVarName(withName);
@@ -414,6 +430,44 @@ public class SameDiff {
         return this;
     }
 
+    /**
+     * Enable memory planning for {@link #exec(Map, List)}: the arrays of intermediate variables are released as
+     * soon as their last consumer has been executed, and their buffers are reused for the outputs of later ops
+     * (in the same or in subsequent executions) with the same shape. See {@link MemoryPlan} for details.<br>
+     * PLEASE NOTE: With memory planning enabled, arrays for intermediate variables are not available after
+     * execution: only the arrays of the requested outputs (and of placeholders and weights) are.
+     */
+    public SameDiff enableMemoryPlanning() {
+        memoryPlanning = true;
+        return this;
+    }
+
+    /**
+     * Set the inter-op parallelism for {@link #exec(Map, List)}: independent ops (i.e., ops in different branches
+     * of the graph) are executed concurrently, using up to the specified number of threads. Each op is still
+     * parallelized internally by libnd4j (intra-op parallelism).<br>
+     * Graphs with control flow ops (loops, conditions) and graphs with in-place ops are always executed sequentially.
+     * <br>
+     * PLEASE NOTE: To avoid oversubscribing the CPU, the product of the inter-op parallelism and the number of
+     * threads used by libnd4j for a single op (OMP_NUM_THREADS) should not exceed the number of cores.
+     *
+     * @param numThreads Max number of ops to execute concurrently. 0 or 1 for sequential execution
+     */
+    public SameDiff setInterOpParallelism(int numThreads) {
+        Preconditions.checkArgument(numThreads >= 0, "Number of threads must be >= 0, got %s", numThreads);
+        interOpParallelism = numThreads;
+        return this;
+    }
+
+    /**
+     * Disable memory planning, and clear the arrays held for reuse. See {@link #enableMemoryPlanning()}
+     */
+    public SameDiff disableMemoryPlanning() {
+        memoryPlanning = false;
+        reusableArrays = null;
+        return this;
+    }
+
     /**
      * Returns this samediff instance's {@link DifferentialFunctionFactory}
      *
@@ -478,6 +532,7 @@ public class SameDiff {
                 output.setSameDiff(sameDiff);
             }
 
+            sameDiff.markGraphModified();
             sameDiff.functionInstancesById.put(function.getOwnName(), function);
         }
 
@@ -524,6 +579,7 @@ public class SameDiff {
             throw new ND4JIllegalStateException("Function must not be a variable!");
         }
 
+        markGraphModified();
         functionInstancesById.put(id, function);
     }
 
@@ -975,6 +1031,7 @@ public class SameDiff {
      * @param arrayName   the array name
      */
     public void addPropertyToResolve(DifferentialFunction forFunction, String arrayName) {
+        markGraphModified();
         if (!propertiesToResolve.containsKey(forFunction.getOwnName())) {
             List<String> newVal = new ArrayList<>();
             newVal.add(arrayName);
@@ -1218,6 +1275,7 @@ public class SameDiff {
                 throw new ND4JIllegalStateException("Variable name elements can not be null!");
         }
 
+        markGraphModified();
         outgoingArgsReverse.put(function.getOwnName(), varNames);
 
         for (val resultName : varNames) {
@@ -1248,6 +1306,7 @@ public class SameDiff {
             }
         }
 
+        markGraphModified();
         incomingArgsReverse.put(function.getOwnName(), variables);
         for (val variableName : variables) {
             List<DifferentialFunction> funcs = functionsArgsFor.get(variableName);
@@ -1442,6 +1501,52 @@ public class SameDiff {
     }
 
 
+    /**
+     * Create a new {@link InferenceSession} for this graph. The session gets its own copy of the graph structure and
+     * its own activation arrays, but shares the weights (arrays of variables that aren't op outputs) with this
+     * instance and all other sessions. Sessions can be used concurrently by different threads. Other arrays held by
+     * ops (that aren't arrays of graph variables) are copied for each session.<br>
+     * Note that graph changes made after the creation of a session aren't visible in that session.
+     *
+     * @return New inference session
+     */
+    public synchronized InferenceSession createInferenceSession() {
+        Set<Object> shared = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        Set<Object> discarded = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        for (Map.Entry<String, INDArray> e : variableNameToArr.entrySet()) {
+            if (e.getValue() == null)
+                continue;
+            if (getVariableOutputFunction(e.getKey()) == null && !isPlaceHolder(e.getKey()))
+                shared.add(e.getValue());
+            else
+                discarded.add(e.getValue());
+        }
+        //Weights might also be used as activations (identity ops etc): these are shared
+        discarded.removeAll(shared);
+
+        Cloner cloner = newCloner();
+        cloner.registerFastCloner(Nd4j.getBackend().getNDArrayClass(), new SharedINDArrayFastCloner(shared, discarded));
+        SameDiff sd;
+        try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+            //Arrays held internally by ops are copied: these copies must outlive any workspace that is currently open
+            sd = cloner.deepClone(this);
+        }
+
+        //Activations and placeholders were not copied - session allocates its own
+        Iterator<INDArray> iter = sd.variableNameToArr.values().iterator();
+        while (iter.hasNext()) {
+            if (iter.next() == null)
+                iter.remove();
+        }
+        sd.exec_cache = null;
+        sd.executionPlans = null;
+        sd.reusableArrays = null;
+        //Intermediate arrays are never exposed by sessions
+        sd.enableMemoryPlanning();
+
+        return new InferenceSession(sd);
+    }
+
     /**
      * Count the number of elements in all arrays, according to {@link SDVariable#getShape()}
      * @return Number of array elements for all variables
@@ -2258,6 +2363,7 @@ public class SameDiff {
                 .build();
 
 
+        markGraphModified();
         variableMap.put(arr.getVarName(), ret);
         return ret;
     }
@@ -2505,6 +2611,7 @@ public class SameDiff {
                  * the reverse and forward arguments.
                  */
                 val reverseArgs = incomingArgsReverse.get(function.getOwnName());
+                markGraphModified();
                 incomingArgsReverse.remove(function.getOwnName());
                 val newArgs = new ArrayList<String>(args.length - 1);
                 for (int arg = 0; arg < args.length; arg++) {
@@ -9139,6 +9246,7 @@ public class SameDiff {
         }
 
         Preconditions.checkState(variable.getSameDiff() == this, "Same diff instance for variable must be the same!");
+        markGraphModified();
         variableMap.put(variable.getVarName(), variable);
     }
 
@@ -10313,6 +10421,7 @@ public class SameDiff {
      * @param varName the vertex id to add
      */
     public void addAsPlaceHolder(String varName) {
+        markGraphModified();
         placeHolderVarNames.add(varName);
         if (getVariable(varName) != null && getVariable(varName).getShape() != null) {
             placeHolderOriginalShapes.put(varName, getVariable(varName).getShape());
@@ -10328,6 +10437,7 @@ public class SameDiff {
      * @param varName Variable name
      */
     public void removeAsPlaceholder(String varName) {
+        markGraphModified();
         placeHolderVarNames.remove(varName);
         placeHolderOriginalShapes.remove(varName);
     }
@@ -10566,7 +10676,15 @@ public class SameDiff {
         for(SDVariable var : variableMap.values()){
             var.setSameDiff(this);
         }
-        for(DifferentialFunction df : functionInstancesById.values()){
+        associateSameDiffWithFunctions(functionInstancesById.values());
+    }
+
+    /**
+     * Associate the current SameDiff instance with the specified ops, and their input and output variables only.
+     * See {@link #associateSameDiffWithOpsAndVariables()}
+     */
+    protected void associateSameDiffWithFunctions(Collection<DifferentialFunction> functions){
+        for(DifferentialFunction df : functions){
             df.setSameDiff(this);
 
             //TODO: This is ugly but seemingly necessary
@@ -10598,11 +10716,26 @@ public class SameDiff {
 
     private Pair<Map<SDVariable, DifferentialFunction>, List<DifferentialFunction>> exec_cache;
 
+    // cached execution plans, key: sorted names of the requested outputs
+    private transient Map<String, ExecutionPlan> executionPlans;
+    // incremented on every change of the graph structure: plans created before a change are stale
+    private transient int graphModificationCount;
+
+    /**
+     * Record a change of the graph structure (functions, their inputs/outputs, variables or placeholders), so that
+     * cached execution plans are recalculated
+     */
+    private void markGraphModified() {
+        graphModificationCount++;
+    }
+
     /**
      * Clear the execution cache, if it is present
      */
     public void clearExecutionCache(){
         exec_cache = null;
+        executionPlans = null;
+        reusableArrays = null;
     }
 
     /**
@@ -10627,6 +10760,558 @@ public class SameDiff {
         if (!resolvedVariables)
             resolveVariablesWith(new LinkedHashMap<String, INDArray>());
 
+        val funcs = new ArrayList<DifferentialFunction>(functionInstancesById.values());
+        List<String> funcNames = new ArrayList<>(functionInstancesById.keySet());       //LinkedHashMap, so order for both these vars should be identical
+
+        //Before execution: set the SameDiff instance
+        //This is necessary, because the one op could be shared by both forward and backward samediff instances
+        //If the SameDiff instance isn't set, they might use wrong shapes or arrays as part of their ops
+        //And, set the SameDiff instance on all variables, for exactly the same reason
+        associateSameDiffWithOpsAndVariables();
+
+        return execFunctions(funcs, funcNames);
+    }
+
+    /**
+     * Execute only the functions required to calculate the specified output variables, and return the arrays for
+     * these variables.<br>
+     * The set of functions to execute is calculated once per set of outputs, and cached: see
+     * {@link #getExecutionPlan(List)}
+     *
+     * @param placeholders Placeholder arrays. May be null or empty, if placeholders are already set
+     * @param outputs      Names of the variables to calculate
+     * @return Arrays for the requested variables
+     */
+    public Map<String, INDArray> exec(Map<String, INDArray> placeholders, String... outputs) {
+        return exec(placeholders, Arrays.asList(outputs));
+    }
+
+    /**
+     * Execute only the functions required to calculate the specified output variables, and return the arrays for
+     * these variables.<br>
+     * The set of functions to execute is calculated once per set of outputs, and cached: see
+     * {@link #getExecutionPlan(List)}
+     *
+     * @param placeholders Placeholder arrays. May be null or empty, if placeholders are already set
+     * @param outputs      Names of the variables to calculate
+     * @return Arrays for the requested variables
+     */
+    public Map<String, INDArray> exec(Map<String, INDArray> placeholders, List<String> outputs) {
+        ExecutionPlan plan = getExecutionPlan(outputs);
+
+        //Only resolve the properties of the functions we're going to execute
+        resolveVariablesWith(placeholders == null ? Collections.<String, INDArray>emptyMap() : placeholders, false);
+        for (DifferentialFunction df : plan.getPropertyFunctions()) {
+            ((CustomOp) df).populateInputsAndOutputsFromSameDiff();
+        }
+
+        associateSameDiffWithFunctions(plan.getFunctions());
+        MemoryPlan memoryPlan = memoryPlanning ? plan.getMemoryPlan() : null;
+        if (interOpParallelism > 1 && plan.getMaxParallelism() > 1)
+            execFunctionsParallel(plan, memoryPlan);
+        else
+            execFunctions(plan.getFunctions(), plan.getFunctionNames(), memoryPlan);
+
+        Map<String, INDArray> ret = new LinkedHashMap<>();
+        for (String output : outputs) {
+            ret.put(output, getArrForVarName(output));
+        }
+        return ret;
+    }
+
+    /**
+     * Get the execution plan for the specified outputs: i.e., the functions that have to be executed to calculate
+     * the output variables, in execution order. Functions the outputs don't depend on are excluded.<br>
+     * Plans are cached per set of outputs, and are recalculated if the graph is modified.
+     *
+     * @param outputs Names of the output variables
+     * @return Execution plan
+     */
+    public ExecutionPlan getExecutionPlan(@NonNull List<String> outputs) {
+        Preconditions.checkArgument(!outputs.isEmpty(), "No outputs were specified");
+
+        List<String> sorted = new ArrayList<>(outputs);
+        Collections.sort(sorted);
+        String key = String.join("\n", sorted);
+
+        if (executionPlans == null)
+            executionPlans = new ConcurrentHashMap<>();
+
+        ExecutionPlan plan = executionPlans.get(key);
+        if (plan != null && plan.getGraphModificationCount() == graphModificationCount)
+            return plan;
+
+        //Walk the graph backwards from the outputs, collecting the functions they depend on
+        Set<String> required = new HashSet<>();
+        Set<String> visited = new HashSet<>();
+        Deque<String> toVisit = new ArrayDeque<>();
+        for (String output : outputs) {
+            if (!variableMap.containsKey(output))
+                throw new ND4JIllegalStateException("No variable found with name \"" + output + "\"");
+            toVisit.add(output);
+        }
+
+        while (!toVisit.isEmpty()) {
+            String varName = toVisit.removeLast();
+            if (!visited.add(varName))
+                continue;
+
+            DifferentialFunction df = getVariableOutputFunction(varName);
+            if (df == null) {
+                //Variables like "switch:1", or names of TensorLists: function own name is the prefix
+                df = functionInstancesById.get(varName.replaceAll(":.*", ""));
+            }
+            if (df == null || df instanceof SDVariable || !required.add(df.getOwnName()))
+                continue;
+
+            String[] args = incomingArgsReverse.get(df.getOwnName());
+            if (args != null) {
+                for (String arg : args)
+                    toVisit.add(arg);
+            }
+        }
+
+        List<DifferentialFunction> functions = new ArrayList<>();
+        List<String> functionNames = new ArrayList<>();
+        List<DifferentialFunction> propertyFunctions = new ArrayList<>();
+        for (Map.Entry<String, DifferentialFunction> e : functionInstancesById.entrySet()) {
+            //Keep the backward marker, if any: it switches ops like If/While into the backward mode
+            if (required.contains(e.getKey()) || GradientBackwardsMarker.OP_NAME.equals(e.getKey())) {
+                functions.add(e.getValue());
+                functionNames.add(e.getKey());
+                if (propertiesToResolve.containsKey(e.getKey()) && e.getValue() instanceof CustomOp)
+                    propertyFunctions.add(e.getValue());
+            }
+        }
+
+        int[][] dependencies = createDependencies(functions);
+        int maxParallelism = 1;
+        if (dependencies != null) {
+            //Number of functions per dependency depth
+            int[] depth = new int[functions.size()];
+            int[] count = new int[functions.size() + 1];
+            for (int i = 0; i < functions.size(); i++) {
+                for (int d : dependencies[i])
+                    depth[i] = Math.max(depth[i], depth[d] + 1);
+                maxParallelism = Math.max(maxParallelism, ++count[depth[i]]);
+            }
+        }
+
+        plan = new ExecutionPlan(Collections.unmodifiableList(new ArrayList<>(outputs)), functions, functionNames,
+                propertyFunctions, graphModificationCount, createMemoryPlan(outputs, functions),
+                dependencies, maxParallelism);
+        executionPlans.put(key, plan);
+
+        if (log.isTraceEnabled()) {
+            log.trace("Execution plan for outputs {}: {} of {} functions", outputs, functions.size(), functionInstancesById.size());
+        }
+
+        return plan;
+    }
+
+    /**
+     * Calculate the lifetimes of the intermediate variables of an execution plan: i.e., after which function each
+     * of them can be released
+     *
+     * @param outputs   Requested outputs: these are never released
+     * @param functions Functions of the execution plan, in execution order
+     * @return Memory plan, or null if the functions include control flow ops
+     */
+    protected MemoryPlan createMemoryPlan(List<String> outputs, List<DifferentialFunction> functions) {
+        Map<String, Integer> lastUse = new HashMap<>();
+        Map<String, Integer> producedBy = new LinkedHashMap<>();
+        for (int i = 0; i < functions.size(); i++) {
+            DifferentialFunction df = functions.get(i);
+            //Loops and conditions can re-execute parts of the plan, or pass arrays between frames: no static lifetimes
+            if (df instanceof BaseCompatOp || df instanceof If || df instanceof While || df instanceof BaseTensorOp)
+                return null;
+            if (df instanceof SDVariable || df instanceof ExternalErrorsFunction || df instanceof GradientBackwardsMarker)
+                continue;
+
+            String[] args = incomingArgsReverse.get(df.getOwnName());
+            if (args != null) {
+                for (String arg : args)
+                    lastUse.put(arg, i);
+            }
+            String[] outs = outgoingArgsReverse.get(df.getOwnName());
+            if (outs != null) {
+                for (String out : outs)
+                    producedBy.put(out, i);
+            }
+        }
+
+        Set<String> keep = new HashSet<>(outputs);
+        List<List<String>> releaseAfter = new ArrayList<>(functions.size());
+        for (int i = 0; i < functions.size(); i++)
+            releaseAfter.add(new ArrayList<String>());
+
+        int[] liveDelta = new int[functions.size() + 1];
+        int numReleased = 0;
+        for (Map.Entry<String, Integer> e : producedBy.entrySet()) {
+            String varName = e.getKey();
+            if (keep.contains(varName) || isPlaceHolder(varName))
+                continue;
+            //Outputs nothing in this plan consumes (like unused outputs of multi-output ops) are released immediately
+            Integer last = lastUse.get(varName);
+            int releaseIdx = (last == null || last < e.getValue() ? e.getValue() : last);
+            releaseAfter.get(releaseIdx).add(varName);
+            liveDelta[e.getValue()]++;
+            liveDelta[releaseIdx + 1]--;
+            numReleased++;
+        }
+
+        int live = 0;
+        int maxLive = 0;
+        for (int delta : liveDelta) {
+            live += delta;
+            maxLive = Math.max(maxLive, live);
+        }
+
+        if (log.isTraceEnabled()) {
+            log.trace("Memory plan: {} intermediate variables, at most {} alive at the same time", numReleased, maxLive);
+        }
+
+        return new MemoryPlan(releaseAfter, numReleased, maxLive);
+    }
+
+    /**
+     * Release the arrays of the intermediate variables whose last consumer is the specified function, and keep them
+     * for reuse. Arrays that share their buffer with an array still in use (views, results of in-place ops) are
+     * released, but not reused.
+     *
+     * @param memoryPlan  Memory plan of the current execution
+     * @param functionIdx Index of the function in the execution plan
+     */
+    protected void releaseArrays(MemoryPlan memoryPlan, int functionIdx) {
+        releaseArrays(memoryPlan.getReleaseAfter().get(functionIdx));
+    }
+
+    /**
+     * Release the arrays of the specified intermediate variables, and keep them for reuse. See
+     * {@link #releaseArrays(MemoryPlan, int)}
+     *
+     * @param toRelease Names of the variables to release
+     */
+    protected void releaseArrays(List<String> toRelease) {
+        if (toRelease.isEmpty())
+            return;
+
+        Set<DataBuffer> inUse = null;
+        for (String varName : toRelease) {
+            INDArray arr = variableNameToArr.remove(varName);
+            if (arr == null || arr.isView())
+                continue;
+
+            if (inUse == null) {
+                inUse = Collections.newSetFromMap(new IdentityHashMap<DataBuffer, Boolean>());
+                for (INDArray a : variableNameToArr.values()) {
+                    if (a != null)
+                        inUse.add(a.data());
+                }
+            }
+            //add() also protects against two released variables sharing one buffer
+            if (!inUse.add(arr.data()))
+                continue;
+
+            if (reusableArrays == null)
+                reusableArrays = new HashMap<>();
+            String key = arr.ordering() + Arrays.toString(arr.shape());
+            Deque<INDArray> arrays = reusableArrays.get(key);
+            if (arrays == null) {
+                arrays = new ArrayDeque<>();
+                reusableArrays.put(key, arrays);
+            }
+            arrays.addLast(arr);
+        }
+    }
+
+    /**
+     * Get an array released by memory planning, to be used as the array for the specified op output variable.
+     * The content of the returned array is undefined.
+     *
+     * @param varName  Name of the variable
+     * @param shape    Required shape
+     * @param ordering Required ordering
+     * @return Array for reuse, or null if memory planning is disabled or no suitable array is available
+     */
+    protected INDArray reuseArray(String varName, long[] shape, char ordering) {
+        if (!memoryPlanning || reusableArrays == null || getVariableOutputFunction(varName) == null)
+            return null;
+
+        Deque<INDArray> arrays = reusableArrays.get(ordering + Arrays.toString(shape));
+        return arrays == null ? null : arrays.pollLast();
+    }
+
+    /**
+     * Calculate the dependencies between the functions of an execution plan: for each function, the functions that
+     * produce its inputs
+     *
+     * @param functions Functions of the execution plan, in execution order
+     * @return Indices of the dependencies of each function, or null if the functions can only be executed in order
+     */
+    protected int[][] createDependencies(List<DifferentialFunction> functions) {
+        Map<String, Integer> producedBy = new HashMap<>();
+        int[][] dependencies = new int[functions.size()][];
+        for (int i = 0; i < functions.size(); i++) {
+            DifferentialFunction df = functions.get(i);
+            //Control flow ops depend on execution order; in-place ops modify arrays other ops may be reading
+            if (df instanceof BaseCompatOp || df instanceof If || df instanceof While || df instanceof BaseTensorOp
+                    || df instanceof ExternalErrorsFunction || df.isInPlace())
+                return null;
+            if (df instanceof SDVariable || df instanceof GradientBackwardsMarker) {
+                dependencies[i] = new int[0];
+                continue;
+            }
+
+            Set<Integer> deps = new LinkedHashSet<>();
+            String[] args = incomingArgsReverse.get(df.getOwnName());
+            if (args != null) {
+                for (String arg : args) {
+                    Integer producer = producedBy.get(arg);
+                    if (producer != null)
+                        deps.add(producer);
+                }
+            }
+            dependencies[i] = Ints.toArray(deps);
+
+            String[] outs = outgoingArgsReverse.get(df.getOwnName());
+            if (outs != null) {
+                for (String out : outs)
+                    producedBy.put(out, i);
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * Execute the functions of an execution plan, running independent functions concurrently. See
+     * {@link #setInterOpParallelism(int)}.<br>
+     * All graph state (shapes, arrays, memory planning) is updated by the calling thread; only the op execution
+     * itself is performed by the inter-op threads. Ops are fully bound to their arrays before they are submitted,
+     * and legacy ops are detached from this SameDiff instance until they have completed, so the inter-op threads
+     * never access the graph. A function is executed once all the functions it depends on have completed.
+     *
+     * @param plan       Execution plan. Must have dependencies
+     * @param memoryPlan Lifetimes of the intermediate arrays. If null, no arrays are released
+     */
+    protected void execFunctionsParallel(ExecutionPlan plan, MemoryPlan memoryPlan) {
+        final List<DifferentialFunction> funcs = plan.getFunctions();
+        int[][] dependencies = plan.getDependencies();
+        Preconditions.checkState(dependencies != null, "Execution plan for outputs %s can't be executed in parallel", plan.getOutputs());
+
+        int n = funcs.size();
+        int[] remaining = new int[n];
+        List<List<Integer>> dependants = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            dependants.add(new ArrayList<Integer>());
+        for (int i = 0; i < n; i++) {
+            remaining[i] = dependencies[i].length;
+            for (int d : dependencies[i])
+                dependants.get(d).add(i);
+        }
+
+        //Without a fixed execution order, arrays are released once all of their consumers have completed
+        Map<String, Integer> remainingUses = null;
+        if (memoryPlan != null) {
+            remainingUses = new HashMap<>();
+            for (List<String> l : memoryPlan.getReleaseAfter()) {
+                for (String varName : l)
+                    remainingUses.put(varName, 0);
+            }
+            for (DifferentialFunction df : funcs) {
+                for (String arg : distinctArgs(df)) {
+                    Integer uses = remainingUses.get(arg);
+                    if (uses != null)
+                        remainingUses.put(arg, uses + 1);
+                }
+            }
+        }
+
+        ExecutorService executor = getInterOpExecutor(interOpParallelism);
+        CompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            if (remaining[i] == 0)
+                ready.add(i);
+        }
+
+        int running = 0;
+        int completed = 0;
+        Set<DifferentialFunction> detached = Collections.newSetFromMap(new IdentityHashMap<DifferentialFunction, Boolean>());
+        try {
+            while (completed < n) {
+                while (!ready.isEmpty() && running < interOpParallelism) {
+                    final int idx = ready.removeFirst();
+                    final DifferentialFunction df = funcs.get(idx);
+                    boolean executable = !(df instanceof SDVariable || df instanceof GradientBackwardsMarker);
+                    if (executable) {
+                        df.resolvePropertiesFromSameDiffBeforeExecution();
+                        if (df instanceof CustomOp) {
+                            DynamicCustomOp customOp = (DynamicCustomOp) df;
+                            customOp.populateInputsAndOutputsFromSameDiff();
+                            customOp.assertValidForExecution();
+                        } else if (df instanceof Op) {
+                            prepareLegacyOp(df, memoryPlan);
+                        } else {
+                            throw new IllegalStateException("Unknown function type: " + df.getClass().getName());
+                        }
+                    }
+
+                    //"Special" legacy ops execute themselves, and may access the graph: always execute them in this thread
+                    boolean special = df instanceof Op && !(df instanceof CustomOp) && ((Op) df).isExecSpecial();
+                    if (!executable || special || (ready.isEmpty() && running == 0)) {
+                        //Nothing else to do in the meantime: execute in this thread
+                        if (executable)
+                            execPrepared(df);
+                        completed++;
+                        onFunctionCompleted(idx, funcs, dependants, remaining, ready, remainingUses);
+                    } else {
+                        //Legacy op getters fall back to graph lookups: detach the op until it has completed
+                        final boolean legacy = !(df instanceof CustomOp);
+                        if (legacy) {
+                            df.setSameDiff(null);
+                            detached.add(df);
+                        }
+                        completionService.submit(new Callable<Integer>() {
+                            @Override
+                            public Integer call() {
+                                if (legacy)
+                                    execBoundLegacyOp(df);
+                                else
+                                    Nd4j.getExecutioner().exec((CustomOp) df);
+                                return idx;
+                            }
+                        });
+                        running++;
+                    }
+                }
+
+                if (running > 0) {
+                    int idx;
+                    try {
+                        Future<Integer> future = completionService.take();
+                        running--;
+                        idx = future.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Interrupted during parallel execution", e);
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof RuntimeException)
+                            throw (RuntimeException) e.getCause();
+                        throw new RuntimeException(e.getCause());
+                    }
+                    completed++;
+
+                    DifferentialFunction df = funcs.get(idx);
+                    if (detached.remove(df)) {
+                        df.setSameDiff(this);
+                        updateLegacyOpOutput(df);
+                    }
+                    onFunctionCompleted(idx, funcs, dependants, remaining, ready, remainingUses);
+                }
+            }
+        } finally {
+            //Failed execution: wait for the ops still running, before they are attached to the graph again
+            while (running > 0) {
+                try {
+                    completionService.take();
+                    running--;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            for (DifferentialFunction df : detached)
+                df.setSameDiff(this);
+        }
+    }
+
+    private void execPrepared(DifferentialFunction df) {
+        if (df instanceof CustomOp)
+            Nd4j.getExecutioner().exec((CustomOp) df);
+        else
+            execLegacyOp(df);
+    }
+
+    private void onFunctionCompleted(int idx, List<DifferentialFunction> funcs, List<List<Integer>> dependants,
+                                     int[] remaining, Deque<Integer> ready, Map<String, Integer> remainingUses) {
+        for (int d : dependants.get(idx)) {
+            if (--remaining[d] == 0)
+                ready.add(d);
+        }
+
+        if (remainingUses != null) {
+            DifferentialFunction df = funcs.get(idx);
+            List<String> toRelease = new ArrayList<>();
+            for (String arg : distinctArgs(df)) {
+                Integer uses = remainingUses.get(arg);
+                if (uses != null) {
+                    remainingUses.put(arg, uses - 1);
+                    if (uses == 1)
+                        toRelease.add(arg);
+                }
+            }
+            String[] outs = df instanceof SDVariable ? null : outgoingArgsReverse.get(df.getOwnName());
+            if (outs != null) {
+                for (String out : outs) {
+                    Integer uses = remainingUses.get(out);
+                    if (uses != null && uses == 0)
+                        toRelease.add(out);
+                }
+            }
+            releaseArrays(toRelease);
+        }
+    }
+
+    private Set<String> distinctArgs(DifferentialFunction df) {
+        String[] args = df instanceof SDVariable ? null : incomingArgsReverse.get(df.getOwnName());
+        return args == null ? Collections.<String>emptySet() : new LinkedHashSet<>(Arrays.asList(args));
+    }
+
+    private static ExecutorService getInterOpExecutor(int numThreads) {
+        ExecutorService executor = interOpExecutors.get(numThreads);
+        if (executor == null) {
+            synchronized (interOpExecutors) {
+                executor = interOpExecutors.get(numThreads);
+                if (executor == null) {
+                    executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = Executors.defaultThreadFactory().newThread(r);
+                            t.setName("SameDiff-InterOp-" + t.getName());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+                    interOpExecutors.put(numThreads, executor);
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Execute the specified functions, in order
+     *
+     * @param funcs     Functions to execute
+     * @param funcNames Own names of the functions to execute
+     * @return Execution results
+     */
+    protected Pair<Map<SDVariable, DifferentialFunction>, List<DifferentialFunction>> execFunctions(
+            List<DifferentialFunction> funcs, List<String> funcNames) {
+        return execFunctions(funcs, funcNames, null);
+    }
+
+    /**
+     * Execute the specified functions, in order
+     *
+     * @param funcs      Functions to execute
+     * @param funcNames  Own names of the functions to execute
+     * @param memoryPlan Lifetimes of the intermediate arrays. If null, no arrays are released
+     * @return Execution results
+     */
+    protected Pair<Map<SDVariable, DifferentialFunction>, List<DifferentialFunction>> execFunctions(
+            List<DifferentialFunction> funcs, List<String> funcNames, MemoryPlan memoryPlan) {
         List<DifferentialFunction> ops = new ArrayList<>();
 
         // we don't care if this thread had any other FlowPath objects attached. we'll just create new one
@@ -10635,8 +11320,6 @@ public class SameDiff {
         val flowPath = localFlowPath.get();
 
         Map<SDVariable, DifferentialFunction> opMap = new HashMap<>();
-        val funcs = new ArrayList<DifferentialFunction>(functionInstancesById.values());
-        List<String> funcNames = new ArrayList<>(functionInstancesById.keySet());       //LinkedHashMap, so order for both these vars should be identical
         boolean onBackward = false;
 
 
@@ -10652,12 +11335,6 @@ public class SameDiff {
         //If true: this execution includes gradient functions...
         boolean isExecBackwards = functionInstancesById.containsKey(GradientBackwardsMarker.OP_NAME);
 
-        //Before execution: set the SameDiff instance
-        //This is necessary, because the one op could be shared by both forward and backward samediff instances
-        //If the SameDiff instance isn't set, they might use wrong shapes or arrays as part of their ops
-        //And, set the SameDiff instance on all variables, for exactly the same reason
-        associateSameDiffWithOpsAndVariables();
-
 
 
         int i = 0;
@@ -10665,6 +11342,10 @@ public class SameDiff {
         for (; i < funcs.size(); i++) {
             ++exec_counter;
 
+            //Last consumers of some intermediates have been executed: release them
+            if (memoryPlan != null && i > 0)
+                releaseArrays(memoryPlan, i - 1);
+
             if (log.isTraceEnabled()) {
                 val f = funcs.get(i);
                 String[] argNames = f.argNames();
@@ -11182,76 +11863,8 @@ public class SameDiff {
                 if (log.isTraceEnabled())
                     log.trace("Starting execution of Op op");
 
-                val inputs = getInputVariablesForFunction(differentialFunction);
-
-                Op op = (Op) differentialFunction;
-                String outVarName = ((BaseOp) op).outputVariable().getVarName();
-
-                // ops in differential function might have stale NDArrays used. we should renew them
-                if(inputs != null && inputs.length > 0) {
-                    op.setX(inputs[0].getArr());
-                    if (inputs.length == 2)
-                        op.setY(inputs[1].getArr());
-                }
-
-                //Check output shape; allocate a new Z if required
-                //For example, if minibatch size has changed since last op execution
-                List<long[]> outputShape = ((BaseOp)op).calculateOutputShape();
-                Preconditions.checkState(outputShape != null && outputShape.size() == 1, "Could not calculate output shape for op: %s", op.getClass());
-                //Update shape. DynamicCustomOp does this in populateInputsAndOutputsFromSameDiff(); for legacy ops, we'll do it here
-                putOrUpdateShapeForVarName(outVarName, outputShape.get(0), true);
-                INDArray z = op.z();
-                Preconditions.checkNotNull(z, "Could not get output array for op: %s", op.getClass());
-                if(!Arrays.equals(outputShape.get(0), z.shape())){
-                    if(log.isTraceEnabled()){
-                        log.trace("Existing op result (z) array shape for op {} was {}, allocating new array of shape {}",
-                                op.getClass().getSimpleName(), Arrays.toString(z.shape()), Arrays.toString(outputShape.get(0)));
-                    }
-                    //Get output variable:
-                    String fnName = funcNames.get(i);
-                    String outputName = outgoingArgsReverse.get(fnName)[0];
-                    SDVariable outputVar = getVariable(outputName);
-
-                    putOrUpdateShapeForVarName(outputName, outputShape.get(0), true);
-                    z = outputVar.storeAndAllocateNewArray();
-                    op.setZ(z);
-                }
-                if(getArrForVarName(outVarName) != z){  //Also handles null case
-                    putOrUpdateArrayForVarName(outVarName, z);
-                }
-
-
-                if (differentialFunction.getDimensions() == null)
-                    Nd4j.getExecutioner().exec(op);
-                else if (op.isExecSpecial()) {
-                    op.exec();
-                } else {
-                    int[] axes = differentialFunction.getDimensions();
-                    if (differentialFunction instanceof Accumulation) {
-                        Accumulation accumulation = (Accumulation) differentialFunction;
-
-                        Nd4j.getExecutioner().exec(accumulation, axes);
-
-                        if (differentialFunction.outputVariable().getArr() == null) {
-                            val var = differentialFunction.outputVariables()[0];
-                            updateVariable(var.getVarName(), accumulation.z());
-                            updateShapeForVarName(var.getVarName(), accumulation.z().shape());
-                        }
-                    } else if (differentialFunction instanceof BroadcastOp) {
-                        BroadcastOp broadcastOp = (BroadcastOp) differentialFunction;
-                        Nd4j.getExecutioner().exec(broadcastOp, axes);
-                    } else if (differentialFunction instanceof GradientOp) {
-                        Nd4j.getExecutioner().exec(op);
-                    } else if (differentialFunction instanceof IndexAccumulation) {
-                        IndexAccumulation indexAccumulation = (IndexAccumulation) differentialFunction;
-                        Nd4j.getExecutioner().exec(indexAccumulation, axes);
-
-                    } else if (differentialFunction instanceof TransformOp) {
-                        TransformOp t = (TransformOp) differentialFunction;
-                        Nd4j.getExecutioner().exec(t, axes);
-                    }
-                }
-
+                prepareLegacyOp(differentialFunction, memoryPlan);
+                execLegacyOp(differentialFunction);
 
                 flowPath.markExecuted(differentialFunction.getOwnName(), true);
 
@@ -11274,6 +11887,9 @@ public class SameDiff {
             }
         }
 
+        if (memoryPlan != null && !funcs.isEmpty())
+            releaseArrays(memoryPlan, funcs.size() - 1);
+
         if (log.isTraceEnabled()) {
             log.trace("Execution complete");
         }
@@ -11288,6 +11904,116 @@ public class SameDiff {
     }
 
 
+    /**
+     * Prepare a legacy (non-custom) op for execution: set the current input arrays, and allocate the output array
+     * if required
+     *
+     * @param differentialFunction Op to prepare
+     * @param memoryPlan           Memory plan of the current execution, may be null
+     */
+    protected void prepareLegacyOp(DifferentialFunction differentialFunction, MemoryPlan memoryPlan) {
+        val inputs = getInputVariablesForFunction(differentialFunction);
+
+        Op op = (Op) differentialFunction;
+        String outVarName = ((BaseOp) op).outputVariable().getVarName();
+
+        // ops in differential function might have stale NDArrays used. we should renew them
+        if(inputs != null && inputs.length > 0) {
+            op.setX(inputs[0].getArr());
+            if (inputs.length == 2)
+                op.setY(inputs[1].getArr());
+        }
+
+        //Check output shape; allocate a new Z if required
+        //For example, if minibatch size has changed since last op execution
+        List<long[]> outputShape = ((BaseOp)op).calculateOutputShape();
+        Preconditions.checkState(outputShape != null && outputShape.size() == 1, "Could not calculate output shape for op: %s", op.getClass());
+        //Update shape. DynamicCustomOp does this in populateInputsAndOutputsFromSameDiff(); for legacy ops, we'll do it here
+        putOrUpdateShapeForVarName(outVarName, outputShape.get(0), true);
+        if (getArrForVarName(outVarName) == null) {
+            //Output array may have been released by a planned execution, and op result (z) array reused by now,
+            //even if memory planning isn't used for this execution
+            op.setZ(getVariable(outVarName).storeAndAllocateNewArray());
+        }
+        INDArray z = op.z();
+        Preconditions.checkNotNull(z, "Could not get output array for op: %s", op.getClass());
+        if(!Arrays.equals(outputShape.get(0), z.shape())){
+            if(log.isTraceEnabled()){
+                log.trace("Existing op result (z) array shape for op {} was {}, allocating new array of shape {}",
+                        op.getClass().getSimpleName(), Arrays.toString(z.shape()), Arrays.toString(outputShape.get(0)));
+            }
+            //Get output variable:
+            String outputName = outgoingArgsReverse.get(differentialFunction.getOwnName())[0];
+            SDVariable outputVar = getVariable(outputName);
+
+            putOrUpdateShapeForVarName(outputName, outputShape.get(0), true);
+            z = outputVar.storeAndAllocateNewArray();
+            op.setZ(z);
+        }
+        if(getArrForVarName(outVarName) != z){  //Also handles null case
+            putOrUpdateArrayForVarName(outVarName, z);
+        }
+    }
+
+    /**
+     * Execute a legacy (non-custom) op prepared with {@link #prepareLegacyOp(DifferentialFunction, MemoryPlan)}
+     *
+     * @param differentialFunction Op to execute
+     */
+    protected void execLegacyOp(DifferentialFunction differentialFunction) {
+        execBoundLegacyOp(differentialFunction);
+        updateLegacyOpOutput(differentialFunction);
+    }
+
+    /**
+     * Update the output variable of a legacy op after execution, if the op has no output array yet
+     *
+     * @param differentialFunction Op that has been executed
+     */
+    protected void updateLegacyOpOutput(DifferentialFunction differentialFunction) {
+        if (differentialFunction instanceof Accumulation && differentialFunction.getDimensions() != null
+                && !((Op) differentialFunction).isExecSpecial() && differentialFunction.outputVariable().getArr() == null) {
+            Accumulation accumulation = (Accumulation) differentialFunction;
+            val var = differentialFunction.outputVariables()[0];
+            updateVariable(var.getVarName(), accumulation.z());
+            updateShapeForVarName(var.getVarName(), accumulation.z().shape());
+        }
+    }
+
+    /**
+     * Execute a legacy (non-custom) op using the arrays bound to it by
+     * {@link #prepareLegacyOp(DifferentialFunction, MemoryPlan)}. Doesn't update the graph, see
+     * {@link #updateLegacyOpOutput(DifferentialFunction)}
+     *
+     * @param differentialFunction Op to execute
+     */
+    protected static void execBoundLegacyOp(DifferentialFunction differentialFunction) {
+        Op op = (Op) differentialFunction;
+        if (differentialFunction.getDimensions() == null)
+            Nd4j.getExecutioner().exec(op);
+        else if (op.isExecSpecial()) {
+            op.exec();
+        } else {
+            int[] axes = differentialFunction.getDimensions();
+            if (differentialFunction instanceof Accumulation) {
+                Accumulation accumulation = (Accumulation) differentialFunction;
+                Nd4j.getExecutioner().exec(accumulation, axes);
+            } else if (differentialFunction instanceof BroadcastOp) {
+                BroadcastOp broadcastOp = (BroadcastOp) differentialFunction;
+                Nd4j.getExecutioner().exec(broadcastOp, axes);
+            } else if (differentialFunction instanceof GradientOp) {
+                Nd4j.getExecutioner().exec(op);
+            } else if (differentialFunction instanceof IndexAccumulation) {
+                IndexAccumulation indexAccumulation = (IndexAccumulation) differentialFunction;
+                Nd4j.getExecutioner().exec(indexAccumulation, axes);
+
+            } else if (differentialFunction instanceof TransformOp) {
+                TransformOp t = (TransformOp) differentialFunction;
+                Nd4j.getExecutioner().exec(t, axes);
+            }
+        }
+    }
+
     /**
      * Print the given function for debugging (will not print functions)
      *
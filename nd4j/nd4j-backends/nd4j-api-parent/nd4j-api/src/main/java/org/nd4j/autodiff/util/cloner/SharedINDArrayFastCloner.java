@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.nd4j.autodiff.util.cloner;
+
+import com.rits.cloning.IDeepCloner;
+import com.rits.cloning.IFastCloner;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cloner for INDArrays that doesn't copy the arrays of graph variables: arrays from the shared set are shared between
+ * the original and the clone (i.e., same instance), arrays from the discarded set are replaced by null in the clone.
+ * Any other array (for example, an array held internally by an op) is copied, as it is neither safe to share nor
+ * re-created on execution.<br>
+ * Used for inference sessions, where weights are shared and activations are allocated by each session.
+ */
+@AllArgsConstructor
+public class SharedINDArrayFastCloner implements IFastCloner {
+    @NonNull
+    private final Set<Object> sharedArrays;     //Identity set
+    @NonNull
+    private final Set<Object> discardedArrays;  //Identity set
+
+    @Override
+    public Object clone(Object o, IDeepCloner iDeepCloner, Map<Object, Object> map) {
+        if (sharedArrays.contains(o))
+            return o;
+        if (discardedArrays.contains(o))
+            return null;
+        return ((INDArray) o).dup();
+    }
+}
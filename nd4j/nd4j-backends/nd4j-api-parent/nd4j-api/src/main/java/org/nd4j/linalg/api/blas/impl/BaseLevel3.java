@@ -57,6 +57,9 @@ public abstract class BaseLevel3 extends BaseLevel implements Level3 {
         if (Nd4j.getExecutioner().getProfilingMode() == OpExecutioner.ProfilingMode.ALL)
             OpProfiler.getInstance().processBlasCall(true, A, B, C);
 
+        long st = Nd4j.getExecutioner().getProfilingMode() == OpExecutioner.ProfilingMode.SAMPLING
+                        ? OpProfiler.getInstance().getSamplingProfiler().sampleIn() : 0L;
+
         GemmParams params = new GemmParams(A, B, C);
 
         int charOder = Order;
@@ -74,6 +77,8 @@ public abstract class BaseLevel3 extends BaseLevel implements Level3 {
                             params.getA(), params.getLda(), params.getB(), params.getLdb(), 0, C, params.getLdc());
         }
 
+        OpProfiler.getInstance().getSamplingProfiler().sampleOut("gemm", st, A, B, C);
+
         OpExecutionerUtil.checkForAny(C);
     }
 
@@ -85,6 +90,9 @@ public abstract class BaseLevel3 extends BaseLevel implements Level3 {
         if (Nd4j.getExecutioner().getProfilingMode() == OpExecutioner.ProfilingMode.ALL)
             OpProfiler.getInstance().processBlasCall(true, A, B, C);
 
+        long st = Nd4j.getExecutioner().getProfilingMode() == OpExecutioner.ProfilingMode.SAMPLING
+                        ? OpProfiler.getInstance().getSamplingProfiler().sampleIn() : 0L;
+
         GemmParams params = new GemmParams(A, B, C, transposeA, transposeB);
         if (A.data().dataType() == DataBuffer.Type.DOUBLE) {
             DefaultOpExecutioner.validateDataType(DataBuffer.Type.DOUBLE, params.getA(), params.getB(), C);
@@ -103,6 +111,8 @@ public abstract class BaseLevel3 extends BaseLevel implements Level3 {
                             C, params.getLdc());
         }
 
+        OpProfiler.getInstance().getSamplingProfiler().sampleOut("gemm", st, A, B, C);
+
         OpExecutionerUtil.checkForAny(C);
     }
 
@@ -387,6 +387,8 @@ public class DefaultOpExecutioner implements OpExecutioner {
             case OPERATIONS:
                 OpProfiler.getInstance().processOpCall(op, tadBuffers);
                 break;
+            case SAMPLING:
+                return OpProfiler.getInstance().getSamplingProfiler().sampleIn();
             case DISABLED:
             default:
                 return 0L;
@@ -459,6 +461,8 @@ public class DefaultOpExecutioner implements OpExecutioner {
             case SCOPE_PANIC:
                 checkForWorkspaces(op);
                 return 0L;
+            case SAMPLING:
+                return OpProfiler.getInstance().getSamplingProfiler().sampleIn();
             case DISABLED:
             default:
                 return 0L;
@@ -480,6 +484,8 @@ public class DefaultOpExecutioner implements OpExecutioner {
             case SCOPE_PANIC:
                 checkForWorkspaces(op);
                 return 0L;
+            case SAMPLING:
+                return OpProfiler.getInstance().getSamplingProfiler().sampleIn();
             case DISABLED:
             default:
                 return 0L;
@@ -500,6 +506,9 @@ public class DefaultOpExecutioner implements OpExecutioner {
             case OPERATIONS:
                 OpProfiler.getInstance().timeOpCall(op, timeStart);
                 break;
+            case SAMPLING:
+                OpProfiler.getInstance().getSamplingProfiler().sampleOut(op, timeStart);
+                break;
             case NAN_PANIC:
                 OpExecutionerUtil.checkForNaN(op);
                 break;
@@ -536,6 +545,9 @@ public class DefaultOpExecutioner implements OpExecutioner {
             case OPERATIONS:
                 OpProfiler.getInstance().timeOpCall(op, timeStart);
                 break;
+            case SAMPLING:
+                OpProfiler.getInstance().getSamplingProfiler().sampleOut(op, timeStart);
+                break;
             case NAN_PANIC:
                 OpExecutionerUtil.checkForNaN(op);
                 break;
@@ -57,6 +57,7 @@ public interface OpExecutioner {
         ALL,
         SCOPE_PANIC,
         BANDWIDTH,
+        SAMPLING,
     }
 
     /**
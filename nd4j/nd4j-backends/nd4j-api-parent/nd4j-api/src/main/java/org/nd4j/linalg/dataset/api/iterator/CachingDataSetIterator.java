@@ -18,6 +18,7 @@ package org.nd4j.linalg.dataset.api.iterator;
 
 import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.cache.BoundedDataSetCache;
 import org.nd4j.linalg.dataset.api.iterator.cache.DataSetCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -89,6 +90,24 @@ public class CachingDataSetIterator implements DataSetIterator {
     public void reset() {
         sourceIterator.reset();
         currentIndex = 0;
+
+        if (usingCache)
+            prefetch(0);
+    }
+
+    /**
+     * This method asks cache to read ahead batches starting from given index, if cache supports that
+     */
+    private void prefetch(int fromIndex) {
+        if (!(cache instanceof BoundedDataSetCache))
+            return;
+
+        BoundedDataSetCache bounded = (BoundedDataSetCache) cache;
+        String[] keys = new String[bounded.getReadAhead()];
+        for (int e = 0; e < keys.length; e++)
+            keys[e] = makeKey(fromIndex + e);
+
+        bounded.prefetch(keys);
     }
 
     @Override
@@ -134,6 +153,7 @@ public class CachingDataSetIterator implements DataSetIterator {
 
         if (usingCache) {
             ds = cache.get(key);
+            prefetch(currentIndex + 1);
         } else {
             ds = sourceIterator.next();
             cache.put(key, ds);
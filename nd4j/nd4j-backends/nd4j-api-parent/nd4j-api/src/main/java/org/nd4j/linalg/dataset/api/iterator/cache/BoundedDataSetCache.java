@@ -0,0 +1,470 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.nd4j.linalg.dataset.api.iterator.cache;
+
+import lombok.NonNull;
+import org.apache.commons.io.IOUtils;
+import org.nd4j.linalg.dataset.DataSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * DataSetCache implementation with two tiers: in-memory tier bounded by size in bytes, with LRU eviction,
+ * and on-disk tier holding all DataSets, optionally compressed.
+ *
+ * All file I/O happens on dedicated background thread: DataSets are written to disk asynchronously,
+ * and CachingDataSetIterator uses {@link #prefetch(String...)} to read next batches ahead of time,
+ * so training thread doesn't stall on disk reads. DataSets waiting to be written are bounded by the same
+ * size limit as the in-memory tier: {@link #put(String, DataSet)} blocks while the limit is exceeded.
+ *
+ * PLEASE NOTE: Uncompressed files are compatible with InFileDataSetCache.
+ * PLEASE NOTE: Call {@link #shutdown()} once cache isn't needed anymore, to release I/O thread.
+ */
+public class BoundedDataSetCache implements DataSetCache {
+    private static final Logger log = LoggerFactory.getLogger(BoundedDataSetCache.class);
+
+    public static final long DEFAULT_MEMORY_LIMIT = 512L * 1024L * 1024L;
+    public static final int DEFAULT_READ_AHEAD = 4;
+
+    private static final String COMPRESSED_SUFFIX = ".deflate";
+
+    private final File cacheDirectory;
+    private final long maxMemoryBytes;
+    private final int readAhead;
+    private final boolean compress;
+
+    // access-ordered map, so iteration order is LRU -> MRU
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes = 0;
+
+    private final Map<String, byte[]> pendingWrites = new ConcurrentHashMap<>();
+    // guards pendingWriteBytes, put() waits on it while too many bytes are queued for writing
+    private final Object writesLock = new Object();
+    private long pendingWriteBytes = 0;
+    private final Map<String, Future<byte[]>> pendingReads = new ConcurrentHashMap<>();
+    private final ExecutorService ioExecutor;
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong prefetchHits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    protected BoundedDataSetCache(@NonNull File cacheDirectory, long maxMemoryBytes, int readAhead, boolean compress) {
+        if (cacheDirectory.exists() && !cacheDirectory.isDirectory())
+            throw new IllegalArgumentException("can't use path " + cacheDirectory + " as file cache directory "
+                            + "because it already exists, but is not a directory");
+
+        this.cacheDirectory = cacheDirectory;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.readAhead = readAhead;
+        this.compress = compress;
+
+        this.ioExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "BoundedDataSetCache I/O");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    private File resolveKey(String key) {
+        String filename = key.replaceAll("[^a-zA-Z0-9.-]", "_");
+        return new File(cacheDirectory, compress ? filename + COMPRESSED_SUFFIX : filename);
+    }
+
+    private File namespaceFile(String namespace) {
+        String filename = String.format("%s-complete.txt", namespace);
+        return new File(cacheDirectory, filename);
+    }
+
+    /**
+     * @return number of batches CachingDataSetIterator should read ahead
+     */
+    public int getReadAhead() {
+        return readAhead;
+    }
+
+    @Override
+    public boolean isComplete(String namespace) {
+        return namespaceFile(namespace).exists();
+    }
+
+    @Override
+    public void setComplete(String namespace, boolean value) {
+        final File file = namespaceFile(namespace);
+        if (value) {
+            // marker must not appear before all pending writes are on disk
+            flush();
+            if (!file.exists()) {
+                file.getParentFile().mkdirs();
+                try {
+                    file.createNewFile();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        } else if (file.exists()) {
+            file.delete();
+        }
+    }
+
+    @Override
+    public DataSet get(String key) {
+        byte[] data = getBytes(key);
+        if (data == null)
+            return null;
+
+        DataSet ds = new DataSet();
+        ds.load(new ByteArrayInputStream(data));
+        return ds;
+    }
+
+    protected byte[] getBytes(String key) {
+        byte[] data;
+        synchronized (memory) {
+            data = memory.get(key);
+        }
+        if (data != null) {
+            hits.incrementAndGet();
+            return data;
+        }
+
+        data = pendingWrites.get(key);
+        if (data != null) {
+            hits.incrementAndGet();
+            return data;
+        }
+
+        Future<byte[]> future = pendingReads.get(key);
+        if (future != null) {
+            try {
+                data = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+
+            if (data != null) {
+                prefetchHits.incrementAndGet();
+                return data;
+            }
+        }
+
+        // prefetch could complete after memory lookup above, and remove itself from pendingReads before we got there
+        synchronized (memory) {
+            data = memory.get(key);
+        }
+        if (data != null) {
+            prefetchHits.incrementAndGet();
+            return data;
+        }
+
+        misses.incrementAndGet();
+        try {
+            data = readFile(key);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (data != null)
+            store(key, data);
+
+        return data;
+    }
+
+    @Override
+    public void put(String key, DataSet dataSet) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        dataSet.save(os);
+        final byte[] data = os.toByteArray();
+        final String k = key;
+
+        store(key, data);
+
+        // producer waits for disk once pending writes exceed the memory limit, a single DataSet is always accepted
+        synchronized (writesLock) {
+            while (pendingWriteBytes > 0 && pendingWriteBytes + data.length > maxMemoryBytes) {
+                try {
+                    writesLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+            pendingWriteBytes += data.length;
+        }
+
+        pendingWrites.put(key, data);
+        ioExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writeFile(k, data);
+                } catch (IOException e) {
+                    log.error("Failed to write DataSet [{}] to cache directory", k, e);
+                } finally {
+                    pendingWrites.remove(k, data);
+                    synchronized (writesLock) {
+                        pendingWriteBytes -= data.length;
+                        writesLock.notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean contains(String key) {
+        synchronized (memory) {
+            if (memory.containsKey(key))
+                return true;
+        }
+
+        return pendingWrites.containsKey(key) || resolveKey(key).isFile();
+    }
+
+    /**
+     * This method schedules background reads of given keys into memory tier, if they aren't there yet
+     *
+     * @param keys
+     */
+    public void prefetch(String... keys) {
+        for (final String key : keys) {
+            synchronized (memory) {
+                if (memory.containsKey(key))
+                    continue;
+            }
+
+            if (pendingWrites.containsKey(key) || pendingReads.containsKey(key) || !resolveKey(key).isFile())
+                continue;
+
+            FutureTask<byte[]> task = new FutureTask<>(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    try {
+                        byte[] data = readFile(key);
+                        if (data != null)
+                            store(key, data);
+                        return data;
+                    } finally {
+                        pendingReads.remove(key);
+                    }
+                }
+            });
+
+            if (pendingReads.putIfAbsent(key, task) == null)
+                ioExecutor.execute(task);
+        }
+    }
+
+    /**
+     * This method blocks until all pending writes are stored on disk
+     */
+    public void flush() {
+        try {
+            ioExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // no-op: executor is single-threaded, so this one runs after all previous tasks
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * This method flushes pending writes and stops I/O thread
+     */
+    public void shutdown() {
+        flush();
+        ioExecutor.shutdown();
+    }
+
+    private void store(String key, byte[] data) {
+        if (data.length > maxMemoryBytes)
+            return;
+
+        synchronized (memory) {
+            byte[] previous = memory.put(key, data);
+            if (previous != null)
+                memoryBytes -= previous.length;
+            memoryBytes += data.length;
+
+            Iterator<Map.Entry<String, byte[]>> iterator = memory.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && iterator.hasNext()) {
+                Map.Entry<String, byte[]> entry = iterator.next();
+                if (entry.getKey().equals(key))
+                    continue;
+
+                memoryBytes -= entry.getValue().length;
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private void writeFile(String key, byte[] data) throws IOException {
+        File file = resolveKey(key);
+        File parentDir = file.getParentFile();
+        if (!parentDir.exists() && !parentDir.mkdirs())
+            throw new IOException("Cannot create parent directory: " + parentDir);
+
+        // writing to temporary file first, so readers never see partially written file
+        File tmp = new File(parentDir, file.getName() + ".tmp");
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(tmp))) {
+            if (compress) {
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try (DeflaterOutputStream dos = new DeflaterOutputStream(os, deflater, 65536)) {
+                    dos.write(data);
+                } finally {
+                    deflater.end();
+                }
+            } else {
+                os.write(data);
+            }
+        }
+
+        if (file.exists())
+            file.delete();
+
+        if (!tmp.renameTo(file))
+            throw new IOException("Cannot rename " + tmp + " to " + file);
+    }
+
+    private byte[] readFile(String key) throws IOException {
+        File file = resolveKey(key);
+        if (!file.exists())
+            return null;
+
+        if (!file.isFile())
+            throw new IllegalStateException("ERROR: cannot read DataSet: cache path " + file + " is not a file");
+
+        try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+            return IOUtils.toByteArray(compress ? new InflaterInputStream(is) : is);
+        }
+    }
+
+    public long getMemoryBytes() {
+        synchronized (memory) {
+            return memoryBytes;
+        }
+    }
+
+    public long getPendingWriteBytes() {
+        synchronized (writesLock) {
+            return pendingWriteBytes;
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getPrefetchHits() {
+        return prefetchHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public static class Builder {
+        private File cacheDirectory;
+        private long maxMemoryBytes = DEFAULT_MEMORY_LIMIT;
+        private int readAhead = DEFAULT_READ_AHEAD;
+        private boolean compress = false;
+
+        public Builder(@NonNull File cacheDirectory) {
+            this.cacheDirectory = cacheDirectory;
+        }
+
+        public Builder(@NonNull Path cacheDirectory) {
+            this(cacheDirectory.toFile());
+        }
+
+        public Builder(@NonNull String cacheDirectory) {
+            this(new File(cacheDirectory));
+        }
+
+        /**
+         * This method sets size limit for in-memory tier, in bytes. Default value: 512MB
+         *
+         * @param maxMemoryBytes
+         * @return
+         */
+        public Builder maxMemoryBytes(long maxMemoryBytes) {
+            this.maxMemoryBytes = maxMemoryBytes;
+            return this;
+        }
+
+        /**
+         * This method sets number of batches to be read ahead by CachingDataSetIterator. 0 disables prefetching. Default value: 4
+         *
+         * @param readAhead
+         * @return
+         */
+        public Builder readAhead(int readAhead) {
+            this.readAhead = readAhead;
+            return this;
+        }
+
+        /**
+         * If true, DataSets will be stored compressed on disk. Default value: false
+         *
+         * @param compress
+         * @return
+         */
+        public Builder compress(boolean compress) {
+            this.compress = compress;
+            return this;
+        }
+
+        public BoundedDataSetCache build() {
+            if (maxMemoryBytes < 0)
+                throw new IllegalStateException("Memory limit can't be negative");
+
+            if (readAhead < 0)
+                throw new IllegalStateException("Read-ahead can't be negative");
+
+            return new BoundedDataSetCache(cacheDirectory, maxMemoryBytes, readAhead, compress);
+        }
+    }
+}
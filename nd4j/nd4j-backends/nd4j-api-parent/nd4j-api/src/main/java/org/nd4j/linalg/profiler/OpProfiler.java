@@ -101,6 +101,10 @@ public class OpProfiler {
     @Getter
     private StringCounter blasOrderCounter = new StringCounter();
 
+    // this one is used with ProfilingMode.SAMPLING only
+    @Getter
+    private final SamplingProfiler samplingProfiler = new SamplingProfiler();
+
 
     private final long THRESHOLD = 100000;
 
@@ -157,6 +161,7 @@ public class OpProfiler {
         blasOrderCounter.reset();
 
         orderCounter.reset();
+        samplingProfiler.reset();
         listeners.clear();
     }
 
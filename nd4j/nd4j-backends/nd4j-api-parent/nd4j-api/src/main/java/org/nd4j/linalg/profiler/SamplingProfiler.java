@@ -0,0 +1,427 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.nd4j.linalg.profiler;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.CustomOp;
+import org.nd4j.linalg.api.ops.Op;
+import org.nd4j.linalg.profiler.data.SampleRingBuffer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class provides low-overhead op sampling, used with ProfilingMode.SAMPLING.
+ *
+ * Instead of tracking every op call in shared aggregators, only every Nth op (or first op after given time interval)
+ * is timed, and each sample goes to ring buffer of the calling thread. Samples are keyed by op name, operand shapes,
+ * calling DL4J layer (if any) and call stack, and can be exported as collapsed stacks (for flamegraph.pl and compatible tools)
+ * or as Chrome trace JSON (for chrome://tracing or Perfetto).
+ *
+ * PLEASE NOTE: Buffer size changes are applied to threads on next reset() call, or to new threads.
+ */
+@Slf4j
+public class SamplingProfiler {
+    public static final int DEFAULT_FREQUENCY = 100;
+    public static final int DEFAULT_BUFFER_SIZE = 16384;
+    public static final int DEFAULT_STACK_DEPTH = 48;
+
+    private static final String LAYERS_PACKAGE = "org.deeplearning4j.nn.layers.";
+    private static final String VERTICES_PACKAGE = "org.deeplearning4j.nn.graph.vertex.";
+
+    @Getter
+    private volatile int frequency = DEFAULT_FREQUENCY;
+    @Getter
+    private volatile long intervalNanos = 0;
+    @Getter
+    private volatile int bufferSize = DEFAULT_BUFFER_SIZE;
+    @Getter
+    private volatile int maxStackDepth = DEFAULT_STACK_DEPTH;
+    @Getter
+    private volatile boolean captureStacks = true;
+
+    private volatile int generation = 0;
+    private final List<SampleRingBuffer> buffers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<SampleRingBuffer> localBuffer = new ThreadLocal<>();
+
+    protected SamplingProfiler() {
+        //
+    }
+
+    /**
+     * This method enables count-based sampling: every Nth op call will be sampled
+     *
+     * @param frequency
+     */
+    public void setFrequency(int frequency) {
+        if (frequency < 1)
+            throw new IllegalArgumentException("Sampling frequency should be positive value");
+
+        this.frequency = frequency;
+        this.intervalNanos = 0;
+    }
+
+    /**
+     * This method enables time-based sampling: first op call after given interval will be sampled, on each thread
+     *
+     * @param interval
+     * @param timeUnit
+     */
+    public void setInterval(long interval, @NonNull TimeUnit timeUnit) {
+        if (interval < 1)
+            throw new IllegalArgumentException("Sampling interval should be positive value");
+
+        this.intervalNanos = timeUnit.toNanos(interval);
+    }
+
+    /**
+     * This method sets number of samples held per thread. Oldest samples are overwritten once buffer is full.
+     *
+     * @param bufferSize
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < 1)
+            throw new IllegalArgumentException("Buffer size should be positive value");
+
+        this.bufferSize = bufferSize;
+    }
+
+    public void setMaxStackDepth(int maxStackDepth) {
+        if (maxStackDepth < 0)
+            throw new IllegalArgumentException("Stack depth can't be negative");
+
+        this.maxStackDepth = maxStackDepth;
+    }
+
+    /**
+     * If false, call stacks won't be captured for samples. This makes sampling cheaper,
+     * but collapsed stacks will contain only layer and op entries.
+     *
+     * @param captureStacks
+     */
+    public void setCaptureStacks(boolean captureStacks) {
+        this.captureStacks = captureStacks;
+    }
+
+    protected SampleRingBuffer buffer() {
+        SampleRingBuffer buffer = localBuffer.get();
+        if (buffer == null || buffer.getGeneration() != generation) {
+            Thread thread = Thread.currentThread();
+            buffer = new SampleRingBuffer(thread.getId(), thread.getName(), bufferSize, generation);
+            localBuffer.set(buffer);
+            buffers.add(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * This method is called before op execution
+     *
+     * @return start time if this op call should be sampled, 0 otherwise
+     */
+    public long sampleIn() {
+        return buffer().sampleIn(frequency, intervalNanos);
+    }
+
+    /**
+     * This method is called after op execution
+     *
+     * @param op
+     * @param timeStart value returned by sampleIn()
+     */
+    public void sampleOut(Op op, long timeStart) {
+        if (timeStart == 0L)
+            return;
+
+        long time = System.nanoTime();
+        record(op.opName(), describeShapes(op.x(), op.y(), op.z()), timeStart, time);
+    }
+
+    /**
+     * This method is called after custom op execution
+     *
+     * @param op
+     * @param timeStart value returned by sampleIn()
+     */
+    public void sampleOut(CustomOp op, long timeStart) {
+        if (timeStart == 0L)
+            return;
+
+        long time = System.nanoTime();
+        record(op.opName(), describeShapes(op.inputArguments()), timeStart, time);
+    }
+
+    /**
+     * This method is called after execution of anything that isn't an Op, i.e. BLAS calls
+     *
+     * @param name
+     * @param timeStart value returned by sampleIn()
+     * @param operands
+     */
+    public void sampleOut(@NonNull String name, long timeStart, INDArray... operands) {
+        if (timeStart == 0L)
+            return;
+
+        long time = System.nanoTime();
+        record(name, describeShapes(operands), timeStart, time);
+    }
+
+    /**
+     * This method stores single sample into ring buffer of the current thread
+     *
+     * @param opName
+     * @param shapes
+     * @param timeStart
+     * @param timeEnd
+     */
+    public void record(@NonNull String opName, String shapes, long timeStart, long timeEnd) {
+        String layer = null;
+        String stack = null;
+        if (captureStacks) {
+            StackTraceElement[] elements = Thread.currentThread().getStackTrace();
+            int start = 0;
+            while (start < elements.length && isInternalFrame(elements[start].getClassName()))
+                start++;
+
+            int end = Math.min(elements.length, start + maxStackDepth);
+            StringBuilder builder = new StringBuilder();
+            for (int e = end - 1; e >= start; e--) {
+                String className = elements[e].getClassName();
+                if (builder.length() > 0)
+                    builder.append(';');
+                builder.append(className).append('.').append(elements[e].getMethodName());
+            }
+
+            for (int e = start; e < end && layer == null; e++) {
+                String className = elements[e].getClassName();
+                if (className.startsWith(LAYERS_PACKAGE) || className.startsWith(VERTICES_PACKAGE))
+                    layer = className.substring(className.lastIndexOf('.') + 1);
+            }
+
+            stack = builder.toString();
+        }
+
+        buffer().put(timeStart, timeEnd - timeStart, opName, shapes, layer, stack);
+    }
+
+    protected static boolean isInternalFrame(String className) {
+        return className.startsWith("java.lang.Thread") || className.startsWith("org.nd4j.linalg.profiler.")
+                        || className.endsWith("Executioner");
+    }
+
+    protected static String describeShapes(INDArray... arrays) {
+        if (arrays == null)
+            return "";
+
+        StringBuilder builder = new StringBuilder();
+        for (INDArray array : arrays) {
+            if (array == null)
+                continue;
+
+            if (builder.length() > 0)
+                builder.append('x');
+            builder.append(Arrays.toString(array.shape()).replace(" ", ""));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return number of samples currently held, over all threads
+     */
+    public long getSamplesCount() {
+        long count = 0;
+        for (SampleRingBuffer buffer : buffers)
+            count += buffer.size();
+        return count;
+    }
+
+    /**
+     * @return number of samples overwritten in ring buffers, over all threads
+     */
+    public long getDroppedCount() {
+        long count = 0;
+        for (SampleRingBuffer buffer : buffers)
+            count += buffer.getDropped();
+        return count;
+    }
+
+    /**
+     * This method drops all samples, and applies current settings to all threads
+     */
+    public void reset() {
+        generation++;
+        buffers.clear();
+    }
+
+    /**
+     * This method writes samples as collapsed stacks: one line per unique stack, with total time in microseconds.
+     * Output can be used with flamegraph.pl, speedscope and compatible tools.
+     *
+     * @param writer
+     */
+    public void exportCollapsedStacks(@NonNull Writer writer) throws IOException {
+        final Map<String, long[]> totals = new TreeMap<>();
+        for (SampleRingBuffer buffer : buffers) {
+            buffer.forEach(new SampleRingBuffer.SampleConsumer() {
+                @Override
+                public void accept(long threadId, long start, long duration, String opName, String shapes,
+                                String layer, String stack) {
+                    StringBuilder key = new StringBuilder();
+                    if (stack != null && !stack.isEmpty())
+                        key.append(stack).append(';');
+                    else if (layer != null)
+                        key.append(layer).append(';');
+                    key.append(opName);
+                    if (shapes != null && !shapes.isEmpty())
+                        key.append(' ').append(shapes);
+
+                    String k = key.toString();
+                    long[] total = totals.get(k);
+                    if (total == null) {
+                        total = new long[1];
+                        totals.put(k, total);
+                    }
+                    total[0] += duration;
+                }
+            });
+        }
+
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            writer.write(entry.getKey());
+            writer.write(' ');
+            writer.write(String.valueOf(Math.max(1, entry.getValue()[0] / 1000)));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    public void exportCollapsedStacks(@NonNull File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            exportCollapsedStacks(writer);
+        }
+    }
+
+    /**
+     * This method writes samples in Chrome trace event format, as complete events
+     * (one per sample) on per-thread tracks. Output can be opened in chrome://tracing or Perfetto UI.
+     *
+     * @param writer
+     */
+    public void exportChromeTrace(@NonNull final Writer writer) throws IOException {
+        long origin = Long.MAX_VALUE;
+        for (SampleRingBuffer buffer : buffers) {
+            final long[] min = {Long.MAX_VALUE};
+            buffer.forEach(new SampleRingBuffer.SampleConsumer() {
+                @Override
+                public void accept(long threadId, long start, long duration, String opName, String shapes,
+                                String layer, String stack) {
+                    min[0] = Math.min(min[0], start);
+                }
+            });
+            origin = Math.min(origin, min[0]);
+        }
+        final long timeOrigin = origin;
+
+        final StringBuilder builder = new StringBuilder();
+        builder.append("{\"displayTimeUnit\":\"ns\",\"traceEvents\":[");
+        final boolean[] first = {true};
+        for (SampleRingBuffer buffer : buffers) {
+            if (!first[0])
+                builder.append(',');
+            first[0] = false;
+            builder.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(buffer.getThreadId())
+                            .append(",\"args\":{\"name\":");
+            appendJsonString(builder, buffer.getThreadName());
+            builder.append("}}");
+
+            buffer.forEach(new SampleRingBuffer.SampleConsumer() {
+                @Override
+                public void accept(long threadId, long start, long duration, String opName, String shapes,
+                                String layer, String stack) {
+                    builder.append(",{\"name\":");
+                    appendJsonString(builder, opName);
+                    builder.append(",\"cat\":");
+                    appendJsonString(builder, layer == null ? "op" : layer);
+                    builder.append(",\"ph\":\"X\",\"pid\":1,\"tid\":").append(threadId);
+                    builder.append(",\"ts\":").append((start - timeOrigin) / 1000.0);
+                    builder.append(",\"dur\":").append(duration / 1000.0);
+                    builder.append(",\"args\":{\"shapes\":");
+                    appendJsonString(builder, shapes);
+                    if (layer != null) {
+                        builder.append(",\"layer\":");
+                        appendJsonString(builder, layer);
+                    }
+                    builder.append("}}");
+                }
+            });
+
+            // flushing per thread, so we don't hold whole trace in memory
+            writer.write(builder.toString());
+            builder.setLength(0);
+        }
+        writer.write("]}");
+        writer.flush();
+    }
+
+    public void exportChromeTrace(@NonNull File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            exportChromeTrace(writer);
+        }
+    }
+
+    protected static void appendJsonString(StringBuilder builder, String value) {
+        if (value == null) {
+            builder.append("null");
+            return;
+        }
+
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        builder.append(String.format("\\u%04x", (int) c));
+                    else
+                        builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.nd4j.linalg.profiler.data;
+
+import lombok.Getter;
+
+/**
+ * Fixed-size ring buffer holding op samples of a single thread, used by SamplingProfiler.
+ * Only owner thread writes into this buffer, so no synchronization happens on the hot path.
+ *
+ * PLEASE NOTE: Readers (i.e. exporters) may see the most recent entry being overwritten, if they read while owner thread keeps sampling.
+ */
+public class SampleRingBuffer {
+    @Getter
+    private final long threadId;
+    @Getter
+    private final String threadName;
+    @Getter
+    private final int generation;
+
+    private final long[] starts;
+    private final long[] durations;
+    private final String[] opNames;
+    private final String[] shapes;
+    private final String[] layers;
+    private final String[] stacks;
+
+    // total number of samples ever written, position in buffer is derived from it
+    private volatile long written;
+
+    // per-thread sampling state, only accessed by owner thread
+    private long skipped;
+    private long lastSampleTime;
+
+    public SampleRingBuffer(long threadId, String threadName, int capacity) {
+        this(threadId, threadName, capacity, 0);
+    }
+
+    public SampleRingBuffer(long threadId, String threadName, int capacity, int generation) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity should be positive value");
+
+        this.threadId = threadId;
+        this.threadName = threadName;
+        this.generation = generation;
+        this.starts = new long[capacity];
+        this.durations = new long[capacity];
+        this.opNames = new String[capacity];
+        this.shapes = new String[capacity];
+        this.layers = new String[capacity];
+        this.stacks = new String[capacity];
+    }
+
+    /**
+     * This method decides if current op call should be sampled
+     *
+     * @param frequency sample every Nth op, ignored if interval is set
+     * @param intervalNanos minimal time between samples, in nanoseconds. 0 means count-based sampling
+     * @return time stamp if op should be sampled, 0 otherwise
+     */
+    public long sampleIn(int frequency, long intervalNanos) {
+        if (intervalNanos > 0) {
+            long time = System.nanoTime();
+            if (time - lastSampleTime < intervalNanos)
+                return 0L;
+
+            lastSampleTime = time;
+            return time;
+        }
+
+        if (++skipped < frequency)
+            return 0L;
+
+        skipped = 0;
+        return System.nanoTime();
+    }
+
+    public void put(long start, long duration, String opName, String shapes, String layer, String stack) {
+        long w = written;
+        int pos = (int) (w % starts.length);
+        starts[pos] = start;
+        durations[pos] = duration;
+        opNames[pos] = opName;
+        this.shapes[pos] = shapes;
+        layers[pos] = layer;
+        stacks[pos] = stack;
+
+        written = w + 1;
+    }
+
+    /**
+     * @return number of samples currently held in this buffer
+     */
+    public int size() {
+        return (int) Math.min(written, starts.length);
+    }
+
+    /**
+     * @return number of samples dropped due to buffer overflow
+     */
+    public long getDropped() {
+        return Math.max(0, written - starts.length);
+    }
+
+    public void reset() {
+        written = 0;
+        skipped = 0;
+        lastSampleTime = 0;
+    }
+
+    /**
+     * This method passes all held samples, oldest first, to the given consumer
+     */
+    public void forEach(SampleConsumer consumer) {
+        long w = written;
+        long first = Math.max(0, w - starts.length);
+        for (long i = first; i < w; i++) {
+            int pos = (int) (i % starts.length);
+            consumer.accept(threadId, starts[pos], durations[pos], opNames[pos], shapes[pos], layers[pos],
+                            stacks[pos]);
+        }
+    }
+
+    public interface SampleConsumer {
+        void accept(long threadId, long start, long duration, String opName, String shapes, String layer,
+                        String stack);
+    }
+}
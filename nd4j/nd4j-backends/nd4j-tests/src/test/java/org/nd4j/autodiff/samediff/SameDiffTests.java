@@ -66,6 +66,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.*;
 import static org.junit.Assume.assumeNotNull;
@@ -3041,4 +3042,289 @@ public class SameDiffTests {
         sd.createGradFunction();
     }
 
+    @Test
+    public void testExecutionPlanPruning(){
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", -1, 4);
+        SDVariable w = sd.var("w", Nd4j.rand(4, 3));
+        SDVariable mmul = sd.mmul("mmul", in, w);
+        SDVariable out = sd.tanh("out", mmul);
+
+        //Branch not required for "out"
+        SDVariable sigmoid = sd.sigmoid("sigmoid", in);
+        SDVariable sum = sd.sum("sum", sigmoid, 1);
+
+        ExecutionPlan plan = sd.getExecutionPlan(Collections.singletonList("out"));
+        assertEquals(Arrays.asList("mmul", "out"), plan.getFunctionNames());
+        assertSame(plan, sd.getExecutionPlan(Collections.singletonList("out")));
+
+        ExecutionPlan planBoth = sd.getExecutionPlan(Arrays.asList("sum", "out"));
+        assertEquals(4, planBoth.size());
+        assertSame(planBoth, sd.getExecutionPlan(Arrays.asList("out", "sum")));
+
+        INDArray inArr = Nd4j.rand(5, 4);
+        Map<String,INDArray> ph = Collections.singletonMap("in", inArr);
+        Map<String,INDArray> result = sd.exec(ph, "out");
+        assertEquals(1, result.size());
+        assertEquals(Transforms.tanh(inArr.mmul(w.getArr()), true), result.get("out"));
+        assertNull(sd.getArrForVarName("sum"));
+
+        //Different placeholder shape, same plan
+        inArr = Nd4j.rand(2, 4);
+        result = sd.exec(Collections.singletonMap("in", inArr), "out", "sum");
+        assertEquals(Transforms.tanh(inArr.mmul(w.getArr()), true), result.get("out"));
+        assertEquals(Transforms.sigmoid(inArr, true).sum(1), result.get("sum"));
+
+        //Graph changed: plan has to be recalculated
+        SDVariable out2 = sd.sigmoid("out2", out);
+        ExecutionPlan plan2 = sd.getExecutionPlan(Collections.singletonList("out"));
+        assertNotSame(plan, plan2);
+        assertEquals(Arrays.asList("mmul", "out"), plan2.getFunctionNames());
+        assertEquals(Arrays.asList("mmul", "out", "out2"), sd.getExecutionPlan(Collections.singletonList("out2")).getFunctionNames());
+
+        //Graph changed without adding functions: plan has to be recalculated as well
+        ExecutionPlan plan3 = sd.getExecutionPlan(Collections.singletonList("sum"));
+        sd.updateVariableName("sigmoid", "sigmoidRenamed");
+        ExecutionPlan plan4 = sd.getExecutionPlan(Collections.singletonList("sum"));
+        assertNotSame(plan3, plan4);
+        assertEquals(plan3.getFunctionNames(), plan4.getFunctionNames());
+    }
+
+    @Test
+    public void testMemoryPlanning(){
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", -1, 4);
+        SDVariable a = sd.tanh("a", in);
+        SDVariable b = sd.sigmoid("b", a);
+        SDVariable c = a.add("c", b);
+        SDVariable d = sd.neg("d", c);
+        SDVariable out = sd.tanh("out", d);
+
+        MemoryPlan memoryPlan = sd.getExecutionPlan(Collections.singletonList("out")).getMemoryPlan();
+        assertNotNull(memoryPlan);
+        assertEquals(4, memoryPlan.getNumReleased());
+        assertEquals(3, memoryPlan.getMaxLive());
+        assertEquals(Arrays.asList("a", "b"), memoryPlan.getReleaseAfter().get(2));
+        assertEquals(Collections.singletonList("d"), memoryPlan.getReleaseAfter().get(4));
+
+        sd.enableMemoryPlanning();
+        for (int minibatch : new int[]{3, 3, 5}) {
+            INDArray inArr = Nd4j.rand(minibatch, 4);
+            INDArray aArr = Transforms.tanh(inArr, true);
+            INDArray exp = Transforms.tanh(aArr.add(Transforms.sigmoid(aArr, true)).negi(), true);
+
+            INDArray result = sd.exec(Collections.singletonMap("in", inArr), "out").get("out");
+            assertEquals(exp, result);
+
+            //Intermediates are released after execution
+            for (String s : new String[]{"a", "b", "c", "d"})
+                assertNull(s, sd.getArrForVarName(s));
+        }
+    }
+
+    @Test
+    public void testMemoryPlanningDisabled(){
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", -1, 4);
+        SDVariable a = sd.tanh("a", in);
+        SDVariable b = sd.sigmoid("b", a);
+        SDVariable c = a.add("c", b);
+        SDVariable d = sd.neg("d", c);
+        SDVariable out = sd.tanh("out", d);
+
+        INDArray inArr = Nd4j.rand(3, 4);
+        INDArray aArr = Transforms.tanh(inArr, true);
+        INDArray exp = Transforms.tanh(aArr.add(Transforms.sigmoid(aArr, true)).negi(), true);
+
+        //Planned execution releases intermediates and reuses their buffers for other variables
+        sd.enableMemoryPlanning();
+        assertEquals(exp, sd.exec(Collections.singletonMap("in", inArr), "out").get("out"));
+
+        //Stale op results must not be registered again once planning is disabled
+        sd.disableMemoryPlanning();
+        for (int i = 0; i < 2; i++) {
+            assertEquals(exp, sd.exec(Collections.singletonMap("in", inArr), "out").get("out"));
+
+            Set<DataBuffer> buffers = Collections.newSetFromMap(new IdentityHashMap<DataBuffer, Boolean>());
+            for (String s : new String[]{"a", "b", "c", "d", "out"}) {
+                assertNotNull(s, sd.getArrForVarName(s));
+                assertTrue(s, buffers.add(sd.getArrForVarName(s).data()));
+            }
+        }
+    }
+
+    @Test
+    public void testInterOpParallelism(){
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", -1, 4);
+        SDVariable out = null;
+        for (int i = 0; i < 4; i++) {
+            SDVariable w = sd.var("w" + i, Nd4j.rand(4, 5));
+            SDVariable tower = sd.tanh("tower" + i, sd.mmul("mmul" + i, in, w));
+            out = (out == null ? tower : out.add("sum" + i, tower));
+        }
+        out = sd.sigmoid("out", out);
+
+        ExecutionPlan plan = sd.getExecutionPlan(Collections.singletonList("out"));
+        assertNotNull(plan.getDependencies());
+        assertEquals(4, plan.getMaxParallelism());
+
+        for (boolean memoryPlanning : new boolean[]{false, true}) {
+            if (memoryPlanning)
+                sd.enableMemoryPlanning();
+            for (int minibatch : new int[]{3, 7}) {
+                Map<String, INDArray> ph = Collections.singletonMap("in", Nd4j.rand(minibatch, 4));
+                sd.setInterOpParallelism(0);
+                INDArray exp = sd.exec(ph, "out").get("out").dup();
+
+                sd.setInterOpParallelism(4);
+                for (int i = 0; i < 5; i++) {
+                    INDArray act = sd.exec(ph, "out").get("out");
+                    assertEquals(exp, act);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInterOpParallelismManyBranches(){
+        //Many independent branches of legacy ops, so that the graph is updated by the calling thread (preparing ops,
+        //releasing arrays) while other ops are executing
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", -1, 4);
+        SDVariable out = null;
+        for (int i = 0; i < 32; i++) {
+            SDVariable w = sd.var("w" + i, Nd4j.rand(4, 5));
+            SDVariable t = sd.tanh("t" + i, sd.mmul("mmul" + i, in, w));
+            SDVariable s = sd.sigmoid("s" + i, t);
+            SDVariable m = s.mul("m" + i, sd.neg("n" + i, t));
+            SDVariable r = sd.sum("r" + i, m, 1);
+            out = (out == null ? r : out.add("sum" + i, r));
+        }
+        out = sd.tanh("out", out);
+        assertTrue(sd.getExecutionPlan(Collections.singletonList("out")).getMaxParallelism() >= 8);
+
+        for (boolean memoryPlanning : new boolean[]{false, true}) {
+            if (memoryPlanning)
+                sd.enableMemoryPlanning();
+            for (int minibatch : new int[]{3, 7, 3}) {
+                Map<String, INDArray> ph = Collections.singletonMap("in", Nd4j.rand(minibatch, 4));
+                sd.setInterOpParallelism(0);
+                INDArray exp = sd.exec(ph, "out").get("out").dup();
+
+                sd.setInterOpParallelism(8);
+                for (int i = 0; i < 20; i++) {
+                    INDArray act = sd.exec(ph, "out").get("out");
+                    assertEquals(exp, act);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInferenceSessions() throws Exception {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", -1, 4);
+        SDVariable w = sd.var("w", Nd4j.rand(4, 3));
+        SDVariable b = sd.var("b", Nd4j.rand(1, 3));
+        SDVariable out = sd.tanh("out", in.mmul(w).add(b));
+
+        final INDArray wArr = w.getArr();
+        final INDArray bArr = b.getArr();
+
+        int numThreads = 4;
+        final InferenceSession[] sessions = new InferenceSession[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            sessions[i] = sd.createInferenceSession();
+            //Weights are shared, not copied
+            assertSame(wArr, sessions[i].getSameDiff().getArrForVarName("w"));
+            assertNotSame(sd, sessions[i].getSameDiff());
+        }
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            final InferenceSession session = sessions[i];
+            final int minibatch = i + 1;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int iter = 0; iter < 20; iter++) {
+                            INDArray inArr = Nd4j.rand(minibatch, 4);
+                            INDArray exp = Transforms.tanh(inArr.mmul(wArr).addiRowVector(bArr), true);
+                            INDArray act = session.exec(Collections.singletonMap("in", inArr), "out").get("out");
+                            assertTrue(exp.equalsWithEps(act, 1e-5));
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads)
+            t.join();
+
+        //Rethrow the first failure of any thread, so that its cause is reported
+        if (failure.get() instanceof Error)
+            throw (Error) failure.get();
+        if (failure.get() != null)
+            throw (Exception) failure.get();
+        //Original graph: no activations were set by the sessions
+        assertNull(sd.getArrForVarName("out"));
+    }
+
+    @Test
+    public void testInferenceSessionOpInternalArrays() {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", -1, 4);
+        INDArray toAdd = Nd4j.rand(1, 4);
+        SDVariable out = new AddInternalArray(sd, in, toAdd).outputVariables()[0];
+
+        InferenceSession session = sd.createInferenceSession();
+        for (int minibatch = 1; minibatch <= 3; minibatch++) {
+            INDArray inArr = Nd4j.rand(minibatch, 4);
+            INDArray act = session.exec(Collections.singletonMap("in", inArr), out.getVarName()).get(out.getVarName());
+            assertEquals(inArr.addRowVector(toAdd), act);
+        }
+    }
+
+    /**
+     * Custom op adding an array held by the op itself (i.e., not an array of a graph variable) to its input
+     */
+    public static class AddInternalArray extends DynamicCustomOp {
+        private INDArray toAdd;
+
+        public AddInternalArray() {
+        }
+
+        public AddInternalArray(SameDiff sameDiff, SDVariable in, INDArray toAdd) {
+            super(null, sameDiff, new SDVariable[]{in});
+            this.toAdd = toAdd;
+        }
+
+        @Override
+        public String opName() {
+            return "add";
+        }
+
+        @Override
+        public List<long[]> calculateOutputShape() {
+            INDArray in = arg().getArr();
+            return in == null ? Collections.<long[]>emptyList() : Collections.singletonList(in.shape());
+        }
+
+        @Override
+        public void populateInputsAndOutputsFromSameDiff() {
+            super.populateInputsAndOutputsFromSameDiff();
+            addInputArgument(toAdd);
+        }
+
+        @Override
+        public List<SDVariable> doDiff(List<SDVariable> f1) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
 }
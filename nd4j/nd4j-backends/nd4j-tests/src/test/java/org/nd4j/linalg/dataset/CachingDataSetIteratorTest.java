@@ -26,12 +26,14 @@ import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
 import org.nd4j.linalg.dataset.api.iterator.CachingDataSetIterator;
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
 import org.nd4j.linalg.dataset.api.iterator.SamplingDataSetIterator;
+import org.nd4j.linalg.dataset.api.iterator.cache.BoundedDataSetCache;
 import org.nd4j.linalg.dataset.api.iterator.cache.DataSetCache;
 import org.nd4j.linalg.dataset.api.iterator.cache.InFileDataSetCache;
 import org.nd4j.linalg.dataset.api.iterator.cache.InMemoryDataSetCache;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.factory.Nd4jBackend;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -70,6 +72,89 @@ public class CachingDataSetIteratorTest extends BaseNd4jTest {
         FileUtils.deleteDirectory(cacheDir.toFile());
     }
 
+    @Test
+    public void testBounded() throws IOException {
+        Path cacheDir = Files.createTempDirectory("nd4j-data-set-cache-test");
+        BoundedDataSetCache cache = new BoundedDataSetCache.Builder(cacheDir).maxMemoryBytes(100000).readAhead(2).build();
+
+        runDataSetTest(cache);
+
+        cache.shutdown();
+        FileUtils.deleteDirectory(cacheDir.toFile());
+    }
+
+    @Test
+    public void testBoundedCompressed() throws IOException {
+        Path cacheDir = Files.createTempDirectory("nd4j-data-set-cache-test");
+        BoundedDataSetCache cache = new BoundedDataSetCache.Builder(cacheDir).maxMemoryBytes(0).compress(true).build();
+
+        runDataSetTest(cache);
+
+        cache.shutdown();
+        FileUtils.deleteDirectory(cacheDir.toFile());
+    }
+
+    @Test
+    public void testBoundedEviction() throws IOException {
+        Path cacheDir = Files.createTempDirectory("nd4j-data-set-cache-test");
+        DataSet dataSet = new DataSet(Nd4j.ones(10, 100), Nd4j.zeros(10, 2));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        dataSet.save(bos);
+        int size = bos.size();
+
+        // only 2 DataSets fit into memory tier
+        BoundedDataSetCache cache = new BoundedDataSetCache.Builder(cacheDir).maxMemoryBytes(size * 2 + size / 2).build();
+        for (int i = 0; i < 5; i++)
+            cache.put("key-" + i, dataSet);
+
+        assertTrue(cache.getMemoryBytes() <= size * 2 + size / 2);
+        assertEquals(3, cache.getEvictions());
+
+        cache.flush();
+        for (int i = 4; i >= 0; i--) {
+            assertTrue(cache.contains("key-" + i));
+            assertEquals(dataSet.getFeatures(), cache.get("key-" + i).getFeatures());
+        }
+
+        // first 3 keys were evicted, so they were read from disk
+        assertEquals(3, cache.getMisses());
+
+        // key-3 was evicted again, but prefetch brings it back to memory
+        cache.prefetch("key-3");
+        cache.flush();
+        assertEquals(dataSet.getFeatures(), cache.get("key-3").getFeatures());
+        assertEquals(3, cache.getMisses());
+
+        cache.shutdown();
+        FileUtils.deleteDirectory(cacheDir.toFile());
+    }
+
+    @Test
+    public void testBoundedPendingWrites() throws IOException {
+        Path cacheDir = Files.createTempDirectory("nd4j-data-set-cache-test");
+        DataSet dataSet = new DataSet(Nd4j.ones(10, 100), Nd4j.zeros(10, 2));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        dataSet.save(bos);
+        int size = bos.size();
+
+        // put() blocks, so no more than 2 DataSets are waiting for disk at any time
+        BoundedDataSetCache cache = new BoundedDataSetCache.Builder(cacheDir).maxMemoryBytes(size * 2 + size / 2).compress(true).build();
+        for (int i = 0; i < 50; i++) {
+            cache.put("key-" + i, dataSet);
+            assertTrue(cache.getPendingWriteBytes() <= size * 2 + size / 2);
+        }
+
+        cache.flush();
+        assertEquals(0, cache.getPendingWriteBytes());
+        for (int i = 0; i < 50; i++)
+            assertEquals(dataSet.getFeatures(), cache.get("key-" + i).getFeatures());
+
+        cache.shutdown();
+        FileUtils.deleteDirectory(cacheDir.toFile());
+    }
+
     private void runDataSetTest(DataSetCache cache) {
         int rows = 500;
         int inputColumns = 100;
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.nd4j.linalg.profiling;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.executioner.OpExecutioner;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.profiler.OpProfiler;
+import org.nd4j.linalg.profiler.SamplingProfiler;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class SamplingProfilerTests {
+
+    @Before
+    public void setUp() {
+        OpProfiler.getInstance().reset();
+        OpProfiler.getInstance().getSamplingProfiler().setFrequency(1);
+        OpProfiler.getInstance().getSamplingProfiler().setBufferSize(SamplingProfiler.DEFAULT_BUFFER_SIZE);
+        Nd4j.getExecutioner().setProfilingMode(OpExecutioner.ProfilingMode.SAMPLING);
+    }
+
+    @After
+    public void tearDown() {
+        Nd4j.getExecutioner().setProfilingMode(OpExecutioner.ProfilingMode.DISABLED);
+        OpProfiler.getInstance().reset();
+    }
+
+    @Test
+    public void testSampling1() throws Exception {
+        INDArray array = Nd4j.createUninitialized(100);
+
+        array.assign(10f);
+        array.divi(2f);
+
+        SamplingProfiler profiler = OpProfiler.getInstance().getSamplingProfiler();
+        assertEquals(2, profiler.getSamplesCount());
+
+        // sampling mode shouldn't touch regular aggregators
+        assertEquals(0, OpProfiler.getInstance().getInvocationsCount());
+
+        StringWriter writer = new StringWriter();
+        profiler.exportCollapsedStacks(writer);
+        String collapsed = writer.toString();
+        log.info("Collapsed stacks:\n{}", collapsed);
+
+        String[] lines = collapsed.trim().split("\n");
+        assertEquals(2, lines.length);
+        for (String line : lines) {
+            assertTrue(line.contains("SamplingProfilerTests.testSampling1"));
+            assertTrue(line.matches(".* \\d+$"));
+        }
+    }
+
+    @Test
+    public void testSamplingFrequency1() {
+        OpProfiler.getInstance().getSamplingProfiler().setFrequency(10);
+        OpProfiler.getInstance().reset();
+
+        INDArray array = Nd4j.create(100);
+        for (int i = 0; i < 100; i++)
+            array.addi(1.0);
+
+        assertEquals(10, OpProfiler.getInstance().getSamplingProfiler().getSamplesCount());
+    }
+
+    @Test
+    public void testSamplingInterval1() {
+        OpProfiler.getInstance().getSamplingProfiler().setInterval(1, TimeUnit.HOURS);
+        OpProfiler.getInstance().reset();
+
+        INDArray array = Nd4j.create(100);
+        for (int i = 0; i < 100; i++)
+            array.addi(1.0);
+
+        assertEquals(1, OpProfiler.getInstance().getSamplingProfiler().getSamplesCount());
+    }
+
+    @Test
+    public void testRingBuffer1() {
+        OpProfiler.getInstance().getSamplingProfiler().setBufferSize(16);
+        OpProfiler.getInstance().reset();
+
+        INDArray array = Nd4j.create(100);
+        for (int i = 0; i < 100; i++)
+            array.addi(1.0);
+
+        assertEquals(16, OpProfiler.getInstance().getSamplingProfiler().getSamplesCount());
+        assertEquals(84, OpProfiler.getInstance().getSamplingProfiler().getDroppedCount());
+    }
+
+    @Test
+    public void testChromeTrace1() throws Exception {
+        INDArray a = Nd4j.create(10, 20);
+        INDArray b = Nd4j.create(20, 30);
+        a.mmul(b);
+
+        StringWriter writer = new StringWriter();
+        OpProfiler.getInstance().getSamplingProfiler().exportChromeTrace(writer);
+        String json = writer.toString();
+        log.info("Trace: {}", json);
+
+        assertTrue(json.startsWith("{\"displayTimeUnit\":\"ns\",\"traceEvents\":["));
+        assertTrue(json.endsWith("]}"));
+        assertTrue(json.contains("\"name\":\"gemm\""));
+        assertTrue(json.contains("[10,20]x[20,30]x[10,30]"));
+        assertTrue(json.contains("\"ph\":\"X\""));
+    }
+
+    @Test
+    public void testMultipleThreads1() throws Exception {
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    INDArray array = Nd4j.create(100);
+                    for (int i = 0; i < 10; i++)
+                        array.addi(1.0);
+                }
+            });
+            threads[t].start();
+        }
+
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(40, OpProfiler.getInstance().getSamplingProfiler().getSamplesCount());
+    }
+}
@@ -182,12 +182,33 @@ public class VoidConfiguration implements Serializable {
     @Builder.Default
     private int maxChunkSize = 65536;
 
+    /**
+     * This variable defines max number of chunks of a single message that can be in flight towards a given node, before receiver confirms them.
+     * Messages split into fewer chunks are sent without flow control. 0 disables flow control
+     */
+    @Builder.Default
+    private int chunksCreditWindow = 32;
+
     /**
      * This variable defines max number of allowed reconnects per node
      */
     @Builder.Default
     private int maxFailuresPerNode = 3;
 
+    /**
+     * This variable defines interval between heartbeats sent by master node to all other nodes, in milliseconds.
+     * Heartbeat responses are also used to measure delays of individual nodes.
+     */
+    @Builder.Default
+    private long heartbeatInterval = 120000;
+
+    /**
+     * This variable enables periodic mesh rebalancing: nodes with higher measured delays are moved towards leaves of the mesh.
+     * PLEASE NOTE: This option is applicable to MeshBuildMode.MESH only
+     */
+    @Builder.Default
+    private boolean meshRebalancing = true;
+
     /**
      * This optional variable defines IP address of the box which acts as master for gradients training.
      * Leave it null, and Spark Master node will be used as Master for parameter server as well.
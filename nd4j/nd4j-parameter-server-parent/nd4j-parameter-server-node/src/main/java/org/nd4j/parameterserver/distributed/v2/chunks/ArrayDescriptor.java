@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.nd4j.parameterserver.distributed.v2.chunks;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.Serializable;
+
+/**
+ * This class describes INDArray streamed as raw data chunks. It's serialized in place of actual INDArray within
+ * chunk 0 of streamed message, so receiver is able to allocate target array before data chunks arrive.
+ */
+public class ArrayDescriptor implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Getter
+    private final long[] shape;
+
+    @Getter
+    private final char ordering;
+
+    @Getter
+    private final DataBuffer.Type dataType;
+
+    /**
+     * This field holds size of INDArray data in bytes
+     */
+    @Getter
+    private final long length;
+
+    public ArrayDescriptor(@NonNull INDArray array) {
+        this.shape = array.shape();
+        this.ordering = array.ordering();
+        this.dataType = array.data().dataType();
+        this.length = array.lengthLong() * array.data().getElementSize();
+    }
+
+    /**
+     * This method creates uninitialized INDArray of described shape and data type, detached from any workspace
+     * @return
+     */
+    public INDArray createArray() {
+        val buffer = Nd4j.createBufferDetached(shape, dataType);
+        return Nd4j.create(buffer, shape, Nd4j.getStrides(shape, ordering), 0, ordering);
+    }
+}
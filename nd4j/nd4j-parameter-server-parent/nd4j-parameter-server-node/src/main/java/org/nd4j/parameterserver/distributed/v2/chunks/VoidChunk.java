@@ -69,4 +69,18 @@ public class VoidChunk implements VoidMessage {
      */
     @Getter
     private byte[] payload;
+
+    /**
+     * This field is set to true if chunks of original message carry raw INDArray data instead of serialized message.
+     * In this case chunk 0 holds serialized message without payload, and totalSize holds size of INDArray data in bytes
+     */
+    @Getter
+    private boolean streamed;
+
+    /**
+     * This field holds number of chunks sender is allowed to have in flight without receiver confirmation. 0 means no flow control
+     */
+    @Getter
+    @Setter
+    private int creditWindow;
 }
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.nd4j.parameterserver.distributed.v2.chunks.impl;
+
+import lombok.NonNull;
+import lombok.val;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.parameterserver.distributed.v2.chunks.ArrayDescriptor;
+import org.nd4j.parameterserver.distributed.v2.chunks.VoidChunk;
+import org.nd4j.parameterserver.distributed.v2.messages.INDArrayMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class represents INDArrayMessage split into chunks without serialization of INDArray itself:
+ * chunk 0 holds message serialized with ArrayDescriptor in place of payload, and all other chunks are sliced directly
+ * from INDArray data buffer. Chunks are created lazily, upon iteration, so only chunks in flight reside in memory.
+ *
+ * PLEASE NOTE: payload is copied once upon creation, so memory used by the payload is doubled for as long as this
+ * collection is referenced. Chunks might be sent from background threads, while original INDArray keeps being
+ * updated (model parameters) or its memory is reused (updates living in workspaces), so the copy can't be avoided.
+ */
+public class ArrayChunksCollection extends AbstractCollection<VoidChunk> {
+    private final String originalId;
+    private final INDArray array;
+    private final byte[] header;
+    private final int splitSize;
+    private final long length;
+    private final int numChunks;
+
+    public ArrayChunksCollection(@NonNull INDArrayMessage message, int splitSize) throws IOException {
+        val payload = message.getPayload();
+
+        // snapshot of the payload: chunks are sliced lazily, so they must not see updates applied after this point.
+        // views are copied as well, so data chunks could be read from buffer directly
+        this.array = payload.dup(payload.ordering());
+        Nd4j.getAffinityManager().ensureLocation(array, AffinityManager.Location.HOST);
+
+        val descriptor = new ArrayDescriptor(array);
+
+        this.originalId = message.getMessageId();
+        this.splitSize = splitSize;
+        this.length = descriptor.getLength();
+        this.numChunks = 1 + (int) (length / splitSize + (length % splitSize > 0 ? 1 : 0));
+
+        try (val bos = new ByteArrayOutputStream(); val oos = new DescriptorOutputStream(bos, payload, descriptor)) {
+            oos.writeObject(message);
+            oos.flush();
+            header = bos.toByteArray();
+        }
+    }
+
+    /**
+     * This method checks if given array can be streamed with specified chunk size
+     * @param array
+     * @param splitSize
+     * @return
+     */
+    public static boolean isStreamable(INDArray array, int splitSize) {
+        if (array == null || array.isCompressed() || array.isEmpty())
+            return false;
+
+        val bytes = array.lengthLong() * array.data().getElementSize();
+        return bytes > splitSize && bytes < Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int size() {
+        return numChunks;
+    }
+
+    @Override
+    public Iterator<VoidChunk> iterator() {
+        return new Iterator<VoidChunk>() {
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return position < numChunks;
+            }
+
+            @Override
+            public VoidChunk next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                return chunk(position++);
+            }
+        };
+    }
+
+    protected VoidChunk chunk(int chunkId) {
+        byte[] payload;
+        if (chunkId == 0) {
+            payload = header;
+        } else {
+            val offset = (long) (chunkId - 1) * splitSize;
+            payload = new byte[(int) Math.min(splitSize, length - offset)];
+
+            val buffer = array.data().asNio().duplicate();
+            buffer.position((int) offset);
+            buffer.get(payload);
+        }
+
+        return VoidChunk.builder()
+                .messageId(java.util.UUID.randomUUID().toString())
+                .originalId(originalId)
+                .chunkId(chunkId)
+                .numberOfChunks(numChunks)
+                .splitSize(splitSize)
+                .totalSize(length)
+                .streamed(true)
+                .payload(payload)
+                .build();
+    }
+
+    /**
+     * This stream writes ArrayDescriptor instead of specified INDArray
+     */
+    private static class DescriptorOutputStream extends ObjectOutputStream {
+        private final INDArray array;
+        private final ArrayDescriptor descriptor;
+
+        private DescriptorOutputStream(OutputStream out, INDArray array, ArrayDescriptor descriptor) throws IOException {
+            super(out);
+            this.array = array;
+            this.descriptor = descriptor;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            return obj == array ? descriptor : obj;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.nd4j.parameterserver.distributed.v2.chunks.impl;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.parameterserver.distributed.v2.chunks.ArrayDescriptor;
+import org.nd4j.parameterserver.distributed.v2.chunks.ChunksTracker;
+import org.nd4j.parameterserver.distributed.v2.chunks.VoidChunk;
+import org.nd4j.parameterserver.distributed.v2.messages.VoidMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ChunksTracker implementation for streamed INDArrayMessages: data chunks are written directly into the buffer of
+ * target INDArray, so no intermediate copy of the whole message is ever created.
+ * Target INDArray is allocated once chunk 0 arrives, data chunks received before that are kept aside.
+ */
+@Slf4j
+public class ArrayChunksTracker<T extends VoidMessage> implements ChunksTracker<T> {
+    @Getter
+    private final String originId;
+
+    private final int numChunks;
+
+    private final boolean[] received;
+
+    private int numReceived = 0;
+
+    private final long size;
+
+    // data chunks received before message header
+    private final List<VoidChunk> pending = new ArrayList<>();
+
+    private T message;
+
+    private INDArray array;
+
+    public ArrayChunksTracker(@NonNull VoidChunk chunk) {
+        if (!chunk.isStreamed())
+            throw new ND4JIllegalStateException("ArrayChunksTracker can be used only for streamed messages");
+
+        originId = chunk.getOriginalId();
+        numChunks = chunk.getNumberOfChunks();
+        size = chunk.getTotalSize();
+        received = new boolean[numChunks];
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized boolean isComplete() {
+        return numReceived == numChunks;
+    }
+
+    @Override
+    public synchronized boolean append(@NonNull VoidChunk chunk) {
+        if (received[chunk.getChunkId()])
+            return isComplete();
+
+        if (chunk.getChunkId() == 0) {
+            readHeader(chunk.getPayload());
+
+            for (val c : pending)
+                write(c);
+
+            pending.clear();
+        } else if (array == null) {
+            pending.add(chunk);
+        } else
+            write(chunk);
+
+        // tagging this chunk as received
+        received[chunk.getChunkId()] = true;
+        numReceived++;
+
+        if (isComplete())
+            Nd4j.getAffinityManager().tagLocation(array, AffinityManager.Location.HOST);
+
+        return isComplete();
+    }
+
+    protected void readHeader(byte[] header) {
+        try (val bais = new ByteArrayInputStream(header); val ois = new DescriptorInputStream(bais)) {
+            message = (T) ois.readObject();
+            array = ois.getArray();
+        } catch (Exception e) {
+            log.error("Exception: {}",e);
+            throw new RuntimeException(e);
+        }
+
+        if (array == null)
+            throw new ND4JIllegalStateException("Message [" + originId + "] has no streamed INDArray");
+    }
+
+    protected void write(VoidChunk chunk) {
+        val offset = (long) (chunk.getChunkId() - 1) * chunk.getSplitSize();
+
+        val buffer = array.data().asNio().duplicate();
+        buffer.position((int) offset);
+        buffer.put(chunk.getPayload());
+    }
+
+    @Override
+    public synchronized T getMessage() {
+        if (!isComplete())
+            throw new ND4JIllegalStateException("Message isn't ready for concatenation");
+
+        return message;
+    }
+
+    @Override
+    public synchronized void release() {
+        pending.clear();
+    }
+
+    /**
+     * This stream allocates target INDArray instead of ArrayDescriptor
+     */
+    private static class DescriptorInputStream extends ObjectInputStream {
+        @Getter
+        private INDArray array;
+
+        private DescriptorInputStream(InputStream in) throws IOException {
+            super(in);
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof ArrayDescriptor) {
+                array = ((ArrayDescriptor) obj).createArray();
+                return array;
+            }
+
+            return obj;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.nd4j.parameterserver.distributed.v2.messages.impl;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import org.nd4j.parameterserver.distributed.v2.messages.impl.base.BaseVoidMessage;
+
+/**
+ * This message is sent by receiver of chunked message back to sender, and allows sender to put more chunks in flight
+ */
+@NoArgsConstructor
+public class ChunksCreditMessage extends BaseVoidMessage {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * This field holds ID of the chunked message
+     */
+    @Getter
+    private String originalId;
+
+    /**
+     * This field holds number of chunks granted to sender
+     */
+    @Getter
+    private int credits;
+
+    public ChunksCreditMessage(@NonNull String originalId, int credits) {
+        this.originalId = originalId;
+        this.credits = credits;
+    }
+}
@@ -37,11 +37,13 @@ import org.nd4j.linalg.exception.ND4JIllegalStateException;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.util.HashUtil;
 import org.nd4j.parameterserver.distributed.conf.VoidConfiguration;
+import org.nd4j.parameterserver.distributed.v2.chunks.VoidChunk;
 import org.nd4j.parameterserver.distributed.v2.enums.PropagationMode;
 import org.nd4j.parameterserver.distributed.v2.enums.TransmissionStatus;
 import org.nd4j.parameterserver.distributed.v2.messages.INDArrayMessage;
 import org.nd4j.parameterserver.distributed.v2.messages.RequestMessage;
 import org.nd4j.parameterserver.distributed.v2.messages.VoidMessage;
+import org.nd4j.parameterserver.distributed.v2.messages.impl.ChunksCreditMessage;
 import org.nd4j.parameterserver.distributed.v2.transport.MessageCallable;
 import org.nd4j.parameterserver.distributed.v2.util.MeshOrganizer;
 import org.nd4j.parameterserver.distributed.v2.util.MessageSplitter;
@@ -255,6 +257,16 @@ public class AeronUdpTransport extends BaseTransport implements AutoCloseable {
 
         log.debug("Got [{}] message from [{}]", message.getClass().getSimpleName(), message.getOriginatorId());
 
+        // credits are applied right away, since sender waits for them
+        if (message instanceof ChunksCreditMessage) {
+            onChunksCredit((ChunksCreditMessage) message);
+            return;
+        }
+
+        // and granted right away as well, so sender won't wait for our messages processing threads
+        if (message instanceof VoidChunk && ((VoidChunk) message).getCreditWindow() > 0)
+            grantCredits((VoidChunk) message);
+
         // we're just putting deserialized message into the buffer
         try {
             messageQueue.put(message);
@@ -408,9 +420,8 @@ public class AeronUdpTransport extends BaseTransport implements AutoCloseable {
             try {
                 val splits = splitter.split(message, voidConfiguration.getMaxChunkSize());
 
-                for(val m:splits) {
-                    sendMessage(m, id);
-                }
+                // flow-controlled transfers are pushed to background, so caller won't wait for the receiver
+                sendChunksAsync(splits, id);
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -498,8 +509,9 @@ public class AeronUdpTransport extends BaseTransport implements AutoCloseable {
         for (val rc: remoteConnections.values())
             rc.getPublication().close();
 
-        // shutting down executor
+        // shutting down executors
         messagesExecutorService.shutdown();
+        bulkExecutorService.shutdown();
 
         // closing aeron stuff
         aeron.close();
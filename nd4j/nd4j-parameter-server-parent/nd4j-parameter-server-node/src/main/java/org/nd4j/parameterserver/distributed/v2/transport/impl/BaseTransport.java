@@ -18,6 +18,7 @@ package org.nd4j.parameterserver.distributed.v2.transport.impl;
 
 import io.reactivex.Flowable;
 import io.reactivex.functions.Consumer;
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
@@ -33,6 +34,7 @@ import org.nd4j.parameterserver.distributed.v2.chunks.VoidChunk;
 import org.nd4j.parameterserver.distributed.v2.enums.PropagationMode;
 import org.nd4j.parameterserver.distributed.v2.messages.*;
 import org.nd4j.parameterserver.distributed.v2.messages.history.HashHistoryHolder;
+import org.nd4j.parameterserver.distributed.v2.messages.impl.ChunksCreditMessage;
 import org.nd4j.parameterserver.distributed.v2.messages.impl.MeshUpdateMessage;
 import org.nd4j.parameterserver.distributed.v2.messages.pairs.handshake.HandshakeRequest;
 import org.nd4j.parameterserver.distributed.v2.messages.pairs.handshake.HandshakeResponse;
@@ -50,6 +52,7 @@ import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.LockSupport;
 import java.util.stream.Collectors;
 
@@ -102,6 +105,15 @@ public abstract  class BaseTransport  implements Transport {
     // we're keeping Ids of last 2k INDArrayMessages, just to avoid double spending/retransmission
     protected MessagesHistoryHolder<String> historyHolder = new HashHistoryHolder<String>(2048);
 
+    // credits available for chunked messages being sent to other nodes, keyed by message id and target id
+    protected final Map<String, Semaphore> chunksCredits = new ConcurrentHashMap<>();
+
+    // chunks received for chunked messages, keyed by message id and sender id. Used to grant credits back to senders
+    protected final Map<String, ReceivedChunks> chunksReceived = new ConcurrentHashMap<>();
+
+    // time of the last check for chunked messages that stopped arriving (lost chunks, failed senders)
+    protected final AtomicLong lastChunksCleanup = new AtomicLong(System.currentTimeMillis());
+
     // this flag is used to track status of handshake procedure at node side
     protected AtomicBoolean handshakeFlag = new AtomicBoolean(false);
 
@@ -115,6 +127,16 @@ public abstract  class BaseTransport  implements Transport {
         }
     });
 
+    // flow-controlled chunked messages are sent from dedicated threads, so they won't block messages processing
+    protected final ExecutorService bulkExecutorService = Executors.newFixedThreadPool(2, new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            val t = Executors.defaultThreadFactory().newThread(r);
+            t.setDaemon(true);
+            Nd4j.getAffinityManager().attachThreadToDevice(t, 0);
+            return t;
+        }
+    });
 
 
     protected BaseTransport() {
@@ -219,7 +241,7 @@ public abstract  class BaseTransport  implements Transport {
         mesh.get().getRootNode().setId(this.id());
 
         // launching heartbeat thread, that will monitor offline nodes
-        executorService.submit(new HeartbeatThread(120000, this, mesh));
+        executorService.submit(new HeartbeatThread(voidConfiguration.getHeartbeatInterval(), this));
 
         this.launch();
     }
@@ -228,6 +250,7 @@ public abstract  class BaseTransport  implements Transport {
     public synchronized void shutdown() {
         // shuttng down
         executorService.shutdown();
+        bulkExecutorService.shutdown();
     }
 
     protected void propagateArrayMessage(INDArrayMessage message, PropagationMode mode) throws IOException  {
@@ -241,13 +264,131 @@ public abstract  class BaseTransport  implements Transport {
         val chunks = splitter.split(message, voidConfiguration.getMaxChunkSize());
         // send chunks to the upstream
         if (!node.isRootNode() && (PropagationMode.BOTH_WAYS == mode || PropagationMode.ONLY_UP == mode))
-            chunks.forEach(c -> sendMessage(c, upstream.getId()));
+            sendChunksAsync(chunks, upstream.getId());
 
         // and send chunks to all downstreams
         if (PropagationMode.BOTH_WAYS == mode || PropagationMode.ONLY_DOWN == mode)
             downstreams.parallelStream().forEach(n -> {
-                chunks.forEach(c -> sendMessage(c, n.getId()));
+                sendChunksAsync(chunks, n.getId());
+            });
+    }
+
+    /**
+     * This method sends chunks of a single message to the specified node. Flow-controlled transfers are handed over to
+     * bulkExecutorService, so caller never waits for credits. That's important for messages processing threads, since
+     * they relay messages: two nodes relaying large messages to each other would block each other otherwise.
+     *
+     * PLEASE NOTE: chunks must not depend on the state of the caller, i.e. INDArray payload must be copied already
+     * @param chunks
+     * @param id
+     */
+    protected void sendChunksAsync(@NonNull Collection<VoidChunk> chunks, @NonNull String id) {
+        val window = voidConfiguration.getChunksCreditWindow();
+        if (window > 0 && chunks.size() > window)
+            bulkExecutorService.execute(() -> {
+                try {
+                    sendChunks(chunks, id);
+                } catch (Exception e) {
+                    log.error("Wasn't able to send chunks to [{}]", id, e);
+                }
             });
+        else
+            sendChunks(chunks, id);
+    }
+
+    /**
+     * This method sends chunks of a single message to the specified node. If number of chunks exceeds credit window,
+     * no more than window chunks will be in flight: sender waits for ChunksCreditMessage from receiver before sending more.
+     * That way large messages won't saturate connection, and other messages to the same node will be interleaved with chunks.
+     *
+     * PLEASE NOTE: if receiver doesn't grant credits within response timeout, remaining chunks are sent without flow control
+     * @param chunks
+     * @param id
+     */
+    protected void sendChunks(@NonNull Collection<VoidChunk> chunks, @NonNull String id) {
+        val window = voidConfiguration.getChunksCreditWindow();
+        if (window <= 0 || chunks.size() <= window) {
+            chunks.forEach(c -> sendMessage(c, id));
+            return;
+        }
+
+        val credits = new Semaphore(window);
+        String key = null;
+        boolean flowControl = true;
+        try {
+            for (val c : chunks) {
+                if (key == null) {
+                    key = c.getOriginalId() + "_" + id;
+                    chunksCredits.put(key, credits);
+                }
+
+                if (flowControl && !credits.tryAcquire(voidConfiguration.getResponseTimeout(), TimeUnit.MILLISECONDS)) {
+                    log.warn("No credits received from [{}] for message [{}], proceeding without flow control", id, c.getOriginalId());
+                    flowControl = false;
+                }
+
+                c.setCreditWindow(window);
+                sendMessage(c, id);
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (key != null)
+                chunksCredits.remove(key);
+        }
+    }
+
+    /**
+     * This method tracks chunks received from given sender, and grants credits back once half of credit window was received
+     *
+     * PLEASE NOTE: credits are granted upon chunk arrival, before chunk is queued for processing, so sender never depends on
+     * availability of our messages processing threads
+     * @param chunk
+     */
+    protected void grantCredits(@NonNull VoidChunk chunk) {
+        val key = chunk.getOriginalId() + "_" + chunk.getOriginatorId();
+        val step = Math.max(1, chunk.getCreditWindow() / 2);
+
+        val received = chunksReceived.computeIfAbsent(key, k -> new ReceivedChunks());
+        val cnt = received.add(chunk.getChunkId());
+
+        // retransmitted chunk: credits for it were granted already
+        if (cnt < 0)
+            return;
+
+        if (cnt >= chunk.getNumberOfChunks())
+            chunksReceived.remove(key);
+
+        if (cnt % step == 0)
+            sendMessage(new ChunksCreditMessage(chunk.getOriginalId(), step), chunk.getOriginatorId());
+
+        purgeReceivedChunks();
+    }
+
+    /**
+     * This method removes trackers of chunked messages that didn't get any chunks for a while, i.e. messages that
+     * will never be completed due to lost chunks. Runs at most once per response timeout
+     */
+    protected void purgeReceivedChunks() {
+        val now = System.currentTimeMillis();
+        val timeout = voidConfiguration.getResponseTimeout();
+        val last = lastChunksCleanup.get();
+        if (now - last < timeout || !lastChunksCleanup.compareAndSet(last, now))
+            return;
+
+        chunksReceived.entrySet().removeIf(e -> now - e.getValue().getLastUpdate() > 2 * timeout);
+    }
+
+    /**
+     * This method releases credits granted by receiver of chunked message
+     * @param message
+     */
+    protected void onChunksCredit(@NonNull ChunksCreditMessage message) {
+        val credits = chunksCredits.get(message.getOriginalId() + "_" + message.getOriginatorId());
+
+        // transfer might be finished already
+        if (credits != null)
+            credits.release(message.getCredits());
     }
 
     @Override
@@ -360,11 +501,16 @@ public abstract  class BaseTransport  implements Transport {
             sendMessage(msg, message.getOriginatorId());
             return;
         } if (message instanceof PongMessage) {
+            // pong is a reply to heartbeat ping, so we store it to be fetched later
+            val reply = (ResponseMessage) message;
+            replies.putIfAbsent(reply.getRequestId(), reply);
+        } else if (message instanceof ChunksCreditMessage) {
+            onChunksCredit((ChunksCreditMessage) message);
+        } else if (message instanceof VoidChunk) {
+            val chunk = (VoidChunk) message;
 
-            // do nothing
-        }  else if (message instanceof VoidChunk) {
             // we merge chunks to get full INDArrayMessage
-            Optional<INDArrayMessage> opt = splitter.merge((VoidChunk) message, voidConfiguration.getChunksBufferSize());
+            Optional<INDArrayMessage> opt = splitter.merge(chunk, voidConfiguration.getChunksBufferSize());
 
             // if this chunk was the last message, we'll forward it to parameter server for actual use
             if (opt.isPresent())
@@ -532,6 +678,12 @@ public abstract  class BaseTransport  implements Transport {
 
     @Override
     public void processMessage(VoidMessage message) {
+        // credits are processed right away, so senders won't wait for messages queued before them
+        if (message instanceof ChunksCreditMessage) {
+            onChunksCredit((ChunksCreditMessage) message);
+            return;
+        }
+
         try {
             messageQueue.transfer(message);
         } catch (InterruptedException e) {
@@ -649,14 +801,58 @@ public abstract  class BaseTransport  implements Transport {
     }
 
 
+    /**
+     * This method sends Ping message to all known nodes, and updates mesh accordingly: nodes that didn't respond in time
+     * are marked as offline, and round-trip times of all other nodes are stored in the mesh.
+     * After that mesh is rebalanced wrt measured delays, if that's enabled in configuration.
+     *
+     * PLEASE NOTE: This method is supposed to be called on master node only
+     * @throws InterruptedException
+     */
+    public void heartbeat() throws InterruptedException {
+        boolean remapped = false;
+
+        val nodes = mesh.get().flatNodes();
+        for (val n : nodes) {
+            // we're skipping own node
+            if (this.id().equals(n.getId()))
+                continue;
+
+            val timeStart = System.nanoTime();
+            PongMessage m = sendMessageBlocking(new PingMessage(), n.getId(), 100, TimeUnit.MILLISECONDS);
+            val timeStop = System.nanoTime();
+
+            // if we're not getting response in reasonable time - we're considering this node as failed
+            if (m == null) {
+                mesh.get().remapNode(n);
+                mesh.get().markNodeOffline(n);
+                remapped = true;
+            } else {
+                mesh.get().updateNodeDelay(n.getId(), TimeUnit.NANOSECONDS.toMicros(timeStop - timeStart));
+            }
+        }
+
+        // slow nodes are moved to leaves, so the whole mesh won't wait for them
+        val rebalanced = voidConfiguration.isMeshRebalancing() && mesh.get().rebalance();
+
+        if (rebalanced) {
+            // positions of all nodes might change, so everyone gets new mesh directly
+            propagateMessageDirect(new MeshUpdateMessage(mesh.get()));
+        } else if (remapped) {
+            try {
+                propagateMessage(new MeshUpdateMessage(mesh.get()), PropagationMode.ONLY_DOWN);
+            } catch (IOException e) {
+                // hm.
+            }
+        }
+    }
+
     protected static class HeartbeatThread extends Thread implements Runnable {
         protected final long delay;
-        protected final Atomic<MeshOrganizer> mesh;
-        protected final Transport transport;
+        protected final BaseTransport transport;
 
-        protected HeartbeatThread(long delayMilliseconds, @NonNull Transport transport, @NonNull Atomic<MeshOrganizer> mesh) {
+        protected HeartbeatThread(long delayMilliseconds, @NonNull BaseTransport transport) {
             this.delay = delayMilliseconds;
-            this.mesh = mesh;
             this.transport = transport;
         }
 
@@ -665,31 +861,7 @@ public abstract  class BaseTransport  implements Transport {
             try {
                 while (true) {
                     Thread.sleep(delay);
-                    val remapped = new AtomicBoolean(false);
-
-                    val nodes = mesh.get().flatNodes();
-                    for (val n : nodes) {
-                        // we're skipping own node
-                        if (transport.id().equals(n.getId()))
-                            continue;
-
-                        PongMessage m = transport.sendMessageBlocking(new PingMessage(), n.getId(), 100, TimeUnit.MILLISECONDS);
-
-                        // if we're not getting response in reasonable time - we're considering this node as failed
-                        if (m == null) {
-                            mesh.get().remapNode(n);
-                            mesh.get().markNodeOffline(n);
-                            remapped.set(true);
-                        }
-                    }
-
-                    if (remapped.get()) {
-                        try {
-                            transport.propagateMessage(new MeshUpdateMessage(mesh.get()), PropagationMode.ONLY_DOWN);
-                        } catch (IOException e) {
-                            // hm.
-                        }
-                    }
+                    transport.heartbeat();
                 }
             } catch (InterruptedException e) {
                 //
@@ -729,4 +901,28 @@ public abstract  class BaseTransport  implements Transport {
     public void ensureConnection(String id) {
         // no-op for local transports
     }
+
+    /**
+     * This class tracks ids of chunks received for single chunked message
+     */
+    protected static class ReceivedChunks {
+        private final BitSet chunkIds = new BitSet();
+        private int count;
+        @Getter
+        private volatile long lastUpdate = System.currentTimeMillis();
+
+        /**
+         * This method registers given chunk id
+         *
+         * @return number of distinct chunks received so far, or -1 if chunk with given id was received already
+         */
+        protected synchronized int add(int chunkId) {
+            lastUpdate = System.currentTimeMillis();
+            if (chunkIds.get(chunkId))
+                return -1;
+
+            chunkIds.set(chunkId);
+            return ++count;
+        }
+    }
 }
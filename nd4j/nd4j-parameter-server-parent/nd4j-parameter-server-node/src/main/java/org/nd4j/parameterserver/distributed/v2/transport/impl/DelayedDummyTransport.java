@@ -20,6 +20,7 @@ import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.apache.commons.lang3.RandomUtils;
+import org.nd4j.base.Preconditions;
 import org.nd4j.linalg.util.SerializationUtils;
 import org.nd4j.parameterserver.distributed.conf.VoidConfiguration;
 import org.nd4j.parameterserver.distributed.v2.messages.VoidMessage;
@@ -30,6 +31,9 @@ import java.util.concurrent.locks.LockSupport;
 
 @Slf4j
 public class DelayedDummyTransport extends DummyTransport {
+    // delays applied to outgoing messages, in microseconds
+    protected volatile long minDelay = 50;
+    protected volatile long maxDelay = 200;
 
     public DelayedDummyTransport(@NonNull String id, @NonNull Connector connector) {
         super(id, connector);
@@ -43,6 +47,19 @@ public class DelayedDummyTransport extends DummyTransport {
         super(id, connector, rootId, configuration);
     }
 
+    /**
+     * This method allows to imitate slower (or faster) network connection of this node
+     *
+     * @param minDelay min delay of outgoing messages, in microseconds
+     * @param maxDelay max delay of outgoing messages, in microseconds
+     */
+    public void setDelays(long minDelay, long maxDelay) {
+        Preconditions.checkArgument(minDelay >= 0 && maxDelay >= minDelay, "Delays should be non-negative, and maxDelay should be >= minDelay");
+
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+    }
+
     @Override
     public void sendMessage(@NonNull VoidMessage message, @NonNull String id) {
         val bos = new ByteArrayOutputStream();
@@ -62,8 +79,8 @@ public class DelayedDummyTransport extends DummyTransport {
             @Override
             public void run() {
                 try {
-                    // imitate some bad network here, latency of 0.05ms - 0.2ms
-                    val sleepTime = RandomUtils.nextInt(50, 200) * 1000;
+                    // imitate some bad network here, latency of 0.05ms - 0.2ms by default
+                    val sleepTime = RandomUtils.nextLong(minDelay, maxDelay) * 1000;
                     LockSupport.parkNanos(sleepTime);
 
                     DelayedDummyTransport.super.sendMessage(msg, id);
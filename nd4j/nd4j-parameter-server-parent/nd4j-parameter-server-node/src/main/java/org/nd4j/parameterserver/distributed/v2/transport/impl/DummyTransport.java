@@ -21,6 +21,7 @@ import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.nd4j.linalg.exception.ND4JIllegalStateException;
 import org.nd4j.parameterserver.distributed.conf.VoidConfiguration;
+import org.nd4j.parameterserver.distributed.v2.chunks.VoidChunk;
 import org.nd4j.parameterserver.distributed.v2.messages.RequestMessage;
 import org.nd4j.parameterserver.distributed.v2.messages.VoidMessage;
 import org.nd4j.parameterserver.distributed.v2.messages.impl.GradientsUpdateMessage;
@@ -120,6 +121,10 @@ public class DummyTransport extends BaseTransport {
 
     @Override
     public void processMessage(@NonNull VoidMessage message) {
+        // credits are granted upon arrival, same as in AeronUdpTransport
+        if (message instanceof VoidChunk && ((VoidChunk) message).getCreditWindow() > 0)
+            grantCredits((VoidChunk) message);
+
         val name = message.getClass().getCanonicalName();
         val callable = interceptors.get(name);
 
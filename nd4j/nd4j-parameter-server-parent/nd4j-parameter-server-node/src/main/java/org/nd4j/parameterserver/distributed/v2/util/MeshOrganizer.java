@@ -50,6 +50,9 @@ public class MeshOrganizer implements Serializable {
     // max distance from root
     public static final int MAX_DEPTH = 5;
 
+    // rebalancing happens only if slowest node with downstreams is this much slower than the fastest leaf
+    public static final double REBALANCE_RATIO = 2.0;
+
     // just shortcut to the root node of the tree
     @Getter(AccessLevel.PUBLIC)
     private Node rootNode = new Node(true);
@@ -246,6 +249,93 @@ public class MeshOrganizer implements Serializable {
         }
     }
 
+    /**
+     * This method updates measured delay of the given node
+     *
+     * @param id
+     * @param delay round-trip time between master node and given node, in microseconds
+     */
+    public void updateNodeDelay(@NonNull String id, long delay) {
+        getNodeById(id).updateDelay(delay);
+    }
+
+    /**
+     * This method rebuilds the mesh wrt measured delays of nodes: nodes with lowest delays take positions closer
+     * to the root node, so nodes with highest delays become leaves and don't slow down propagation for other nodes.
+     *
+     * PLEASE NOTE: Mesh is rebuilt only if slowest node that has downstreams is at least REBALANCE_RATIO times slower than the fastest leaf
+     * @return true if mesh was changed, false otherwise
+     */
+    public synchronized boolean rebalance() {
+        if (buildMode != MeshBuildMode.MESH)
+            return false;
+
+        // we're traversing mesh breadth-first, so nodes with equal delays will keep their relative positions
+        val nodes = new ArrayList<Node>();
+        val queue = new LinkedList<Node>(rootNode.getDownstreamNodes());
+        while (!queue.isEmpty()) {
+            val n = queue.poll();
+            nodes.add(n);
+            queue.addAll(n.getDownstreamNodes());
+        }
+
+        long slowestInternal = -1;
+        long fastestLeaf = Long.MAX_VALUE;
+        for (val n : nodes) {
+            if (!n.status().equals(NodeStatus.ONLINE) || n.getDelay() <= 0)
+                continue;
+
+            if (n.numberOfDownstreams() > 0)
+                slowestInternal = Math.max(slowestInternal, n.getDelay());
+            else
+                fastestLeaf = Math.min(fastestLeaf, n.getDelay());
+        }
+
+        if (slowestInternal < 0 || fastestLeaf == Long.MAX_VALUE || slowestInternal < fastestLeaf * REBALANCE_RATIO)
+            return false;
+
+        // online nodes go first, fastest first. unmeasured nodes are considered fast ones
+        Collections.sort(nodes, new Comparator<Node>() {
+            @Override
+            public int compare(Node o1, Node o2) {
+                val on1 = o1.status().equals(NodeStatus.ONLINE);
+                val on2 = o2.status().equals(NodeStatus.ONLINE);
+                if (on1 != on2)
+                    return on1 ? -1 : 1;
+
+                return Long.compare(o1.getDelay(), o2.getDelay());
+            }
+        });
+
+        // now we're building mesh from scratch, the same way addNode() does
+        version++;
+
+        rootNode.truncateDownstreams();
+        for (val n : nodes)
+            n.truncateDownstreams();
+
+        fillQueue.clear();
+        for (int e = 0; e < MAX_DOWNSTREAMS; e++)
+            fillQueue.add(rootNode);
+
+        for (val n : nodes) {
+            // offline nodes can't have downstreams, so they don't take slots and go to the rootNode, same as in remapNode()
+            if (!n.status().equals(NodeStatus.ONLINE)) {
+                rootNode.addDownstreamNode(n);
+                continue;
+            }
+
+            fillQueue.poll().addDownstreamNode(n);
+
+            for (int e = 0; e < MAX_DOWNSTREAMS; e++)
+                fillQueue.add(n);
+        }
+
+        Collections.sort(sortedNodes);
+
+        return true;
+    }
+
     /**
      * This method removes  node from tree
      */
@@ -392,6 +482,11 @@ public class MeshOrganizer implements Serializable {
         @Builder.Default
         private Atomic<NodeStatus> status = new Atomic<>(NodeStatus.ONLINE);
 
+        // smoothed round-trip time between master node and this node, in microseconds. 0 means there were no measurements yet
+        @Getter
+        @Setter(AccessLevel.NONE)
+        private volatile long delay;
+
         /**
          * This method returns current status of this node
          * @return
@@ -411,6 +506,45 @@ public class MeshOrganizer implements Serializable {
 
 
 
+        /**
+         * This method updates delay of this node with new measurement
+         *
+         * @param measurement round-trip time, in microseconds
+         */
+        protected synchronized void updateDelay(long measurement) {
+            // exponential moving average, so single spike won't cause mesh rebuild
+            if (delay <= 0)
+                delay = measurement;
+            else
+                delay = (3 * delay + measurement) / 4;
+        }
+
+        /**
+         * This method returns estimated delay of the connection between this node and its upstream, in microseconds.
+         * Delay of connection is estimated as delay of the slowest node on it
+         *
+         * @return
+         */
+        public long getUpstreamDelay() {
+            if (upstream == null)
+                return 0L;
+
+            return upstream.isRootNode() ? delay : Math.max(delay, upstream.getDelay());
+        }
+
+        /**
+         * This method returns estimated delay of the slowest connection between this node and its downstreams, in microseconds
+         *
+         * @return
+         */
+        public long getDownstreamDelay() {
+            long result = 0L;
+            for (val n : downstream)
+                result = Math.max(result, n.getUpstreamDelay());
+
+            return result;
+        }
+
         /**
          * This method return candidate for new connection
          *
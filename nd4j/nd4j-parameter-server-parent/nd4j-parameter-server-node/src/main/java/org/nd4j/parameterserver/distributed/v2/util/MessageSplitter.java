@@ -23,9 +23,12 @@ import org.nd4j.linalg.primitives.AtomicBoolean;
 import org.nd4j.linalg.util.ND4JFileUtils;
 import org.nd4j.linalg.util.SerializationUtils;
 import org.nd4j.parameterserver.distributed.v2.chunks.ChunksTracker;
+import org.nd4j.parameterserver.distributed.v2.chunks.impl.ArrayChunksCollection;
+import org.nd4j.parameterserver.distributed.v2.chunks.impl.ArrayChunksTracker;
 import org.nd4j.parameterserver.distributed.v2.chunks.impl.FileChunksTracker;
 import org.nd4j.parameterserver.distributed.v2.chunks.VoidChunk;
 import org.nd4j.parameterserver.distributed.v2.chunks.impl.InmemoryChunksTracker;
+import org.nd4j.parameterserver.distributed.v2.messages.INDArrayMessage;
 import org.nd4j.parameterserver.distributed.v2.messages.VoidMessage;
 import org.nd4j.linalg.primitives.Optional;
 
@@ -65,6 +68,9 @@ public class MessageSplitter {
 
     /**
      * This method splits VoidMessage into chunks, and returns them as Collection
+     *
+     * PLEASE NOTE: INDArrayMessages with large enough payload are streamed: INDArray isn't serialized, and chunks are
+     * created lazily from its data buffer upon iteration. See ArrayChunksCollection for details.
      * @param message
      * @return
      */
@@ -72,6 +78,9 @@ public class MessageSplitter {
         if (maxBytes <= 0)
             throw new ND4JIllegalStateException("MaxBytes must be > 0");
 
+        if (message instanceof INDArrayMessage && ArrayChunksCollection.isStreamable(((INDArrayMessage) message).getPayload(), maxBytes))
+            return new ArrayChunksCollection((INDArrayMessage) message, maxBytes);
+
         val tempFile = ND4JFileUtils.createTempFile("messageSplitter","temp");
         val result = new ArrayList<VoidChunk>();
 
@@ -165,7 +174,11 @@ public class MessageSplitter {
         val checker = new AtomicBoolean(false);
         ChunksTracker tracker = null;
 
-        if (memoryUse.get() + chunk.getTotalSize() < memoryLimit) {
+        if (chunk.isStreamed()) {
+            // streamed messages are assembled directly into target INDArray, so they're not counted as buffered memory
+            tracker = new ArrayChunksTracker(chunk);
+            tracker = trackers.putIfAbsent(originalId, tracker);
+        } else if (memoryUse.get() + chunk.getTotalSize() < memoryLimit) {
             tracker = new InmemoryChunksTracker(chunk);
             tracker = trackers.putIfAbsent(originalId, tracker);
             if (tracker == null) {
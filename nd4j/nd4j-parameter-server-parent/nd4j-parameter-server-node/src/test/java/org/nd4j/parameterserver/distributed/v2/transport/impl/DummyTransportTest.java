@@ -16,19 +16,33 @@
 
 package org.nd4j.parameterserver.distributed.v2.transport.impl;
 
+import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.junit.Test;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.parameterserver.distributed.conf.VoidConfiguration;
+import org.nd4j.parameterserver.distributed.v2.chunks.VoidChunk;
+import org.nd4j.parameterserver.distributed.v2.enums.MeshBuildMode;
 import org.nd4j.parameterserver.distributed.v2.enums.PropagationMode;
+import org.nd4j.parameterserver.distributed.v2.messages.INDArrayMessage;
 import org.nd4j.parameterserver.distributed.v2.messages.VoidMessage;
+import org.nd4j.parameterserver.distributed.v2.messages.impl.ChunksCreditMessage;
 import org.nd4j.parameterserver.distributed.v2.messages.impl.GradientsUpdateMessage;
 import org.nd4j.parameterserver.distributed.v2.messages.pairs.handshake.HandshakeRequest;
 import org.nd4j.parameterserver.distributed.v2.messages.pairs.handshake.HandshakeResponse;
 import org.nd4j.parameterserver.distributed.v2.transport.MessageCallable;
-
+import org.nd4j.parameterserver.distributed.v2.util.MeshOrganizer;
+import org.nd4j.parameterserver.distributed.v2.util.MessageSplitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.*;
 
@@ -205,4 +219,214 @@ public class DummyTransportTest {
         assertNotEquals(version, newMesh.getVersion());
         assertTrue(restarted.get());
     }
-}
\ No newline at end of file
+
+    @Test(timeout = 30000L)
+    public void testMeshRebalance_1() throws Exception {
+        val config = VoidConfiguration.builder().meshBuildMode(MeshBuildMode.MESH).build();
+        val connector = new DummyTransport.Connector();
+        val transportA = new DelayedDummyTransport("alpha", connector, "alpha", config);
+        connector.register(transportA);
+
+        val transports = new ArrayList<DelayedDummyTransport>();
+        for (int e = 0; e < 20; e++) {
+            val transport = new DelayedDummyTransport("node_" + e, connector, "alpha", config);
+
+            // first nodes will get downstreams, and they have slow connection
+            if (e < 2)
+                transport.setDelays(20000, 25000);
+
+            connector.register(transport);
+            transport.sendMessageBlocking(new HandshakeRequest(), "alpha");
+            transports.add(transport);
+        }
+
+        MeshOrganizer meshA = transportA.getMesh();
+        assertEquals(8, meshA.getNodeById("node_0").numberOfDownstreams());
+
+        long version = meshA.getVersion();
+
+        transportA.heartbeat();
+
+        // slow nodes should become leaves
+        assertNotEquals(version, meshA.getVersion());
+        assertEquals(0, meshA.getNodeById("node_0").numberOfDownstreams());
+        assertEquals(0, meshA.getNodeById("node_1").numberOfDownstreams());
+        assertTrue(meshA.getNodeById("node_0").getUpstreamDelay() > meshA.getNodeById("node_2").getUpstreamDelay());
+
+        // all nodes should get updated mesh
+        connector.blockUntilFinished();
+        for (val t : transports)
+            assertEquals(meshA, t.getMesh());
+    }
+
+    @Test(timeout = 30000L)
+    public void testChunksFlowControl_1() throws Exception {
+        val chunks = new AtomicInteger(0);
+        val credits = new AtomicInteger(0);
+        val inFlight = new AtomicInteger(0);
+        val maxInFlight = new AtomicInteger(0);
+        val result = new AtomicReference<GradientsUpdateMessage>();
+
+        val configuration = VoidConfiguration.builder()
+                .maxChunkSize(64)
+                .chunksCreditWindow(8)
+                .build();
+
+        val connector = new DummyTransport.Connector();
+        val transportA = new DummyTransport("alpha", connector, "alpha", configuration);
+        val transportB = new DummyTransport("beta", connector, "alpha", configuration);
+
+        connector.register(transportA, transportB);
+
+        transportB.addPrecursor(VoidChunk.class, (VoidChunk message) -> {
+            chunks.incrementAndGet();
+            maxInFlight.set(Math.max(maxInFlight.get(), inFlight.incrementAndGet()));
+        });
+
+        transportA.addPrecursor(ChunksCreditMessage.class, (ChunksCreditMessage message) -> {
+            credits.incrementAndGet();
+            inFlight.addAndGet(-message.getCredits());
+        });
+
+        transportB.addPrecursor(GradientsUpdateMessage.class, (GradientsUpdateMessage message) -> result.set(message));
+
+        val array = Nd4j.linspace(1, 1000, 1000);
+        val message = new GradientsUpdateMessage("message", array);
+
+        // 4000 bytes of data in 64 bytes chunks, plus header
+        transportA.sendChunks(new MessageSplitter().split(message, 64), "beta");
+
+        assertEquals(64, chunks.get());
+        assertEquals(16, credits.get());
+        assertTrue(maxInFlight.get() <= 8);
+
+        assertNotNull(result.get());
+        assertEquals(array, result.get().getPayload());
+
+        assertTrue(transportA.chunksCredits.isEmpty());
+        assertTrue(transportB.chunksReceived.isEmpty());
+    }
+
+    @Test(timeout = 30000L)
+    public void testChunksFlowControl_3() throws Exception {
+        val credits = new AtomicInteger(0);
+
+        val configuration = VoidConfiguration.builder()
+                .maxChunkSize(64)
+                .chunksCreditWindow(8)
+                .responseTimeout(100L)
+                .build();
+
+        val connector = new DummyTransport.Connector();
+        val transportA = new DummyTransport("alpha", connector, "alpha", configuration);
+        val transportB = new DummyTransport("beta", connector, "alpha", configuration);
+
+        connector.register(transportA, transportB);
+
+        transportA.addPrecursor(ChunksCreditMessage.class, (ChunksCreditMessage message) -> credits.addAndGet(message.getCredits()));
+
+        val chunks = new ArrayList<VoidChunk>(new MessageSplitter().split(new GradientsUpdateMessage("first", Nd4j.linspace(1, 1000, 1000)), 64));
+
+        // every chunk arrives twice, but only distinct chunks are credited
+        for (int e = 0; e < 4; e++) {
+            val chunk = chunks.get(e);
+            chunk.setCreditWindow(8);
+            transportA.sendMessage(chunk, "beta");
+            transportA.sendMessage(chunk, "beta");
+        }
+
+        assertEquals(4, credits.get());
+        assertEquals(1, transportB.chunksReceived.size());
+
+        // rest of chunks is lost: tracker expires, once other chunked messages arrive
+        Thread.sleep(300);
+
+        val chunk = new MessageSplitter().split(new GradientsUpdateMessage("second", Nd4j.linspace(1, 1000, 1000)), 64).iterator().next();
+        chunk.setCreditWindow(8);
+        transportA.sendMessage(chunk, "beta");
+
+        assertEquals(1, transportB.chunksReceived.size());
+        assertTrue(transportB.chunksReceived.containsKey("second_alpha"));
+    }
+
+    @Test(timeout = 30000L)
+    public void testChunksFlowControl_2() throws Exception {
+        val received = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        // response timeout is longer than test timeout, so any transfer that fell back to no flow control fails the test
+        val configuration = VoidConfiguration.builder()
+                .maxChunkSize(64)
+                .chunksCreditWindow(8)
+                .responseTimeout(60000L)
+                .build();
+
+        val connector = new DummyTransport.Connector();
+        val transportA = new ChunkingTransport("alpha", connector, "alpha", configuration);
+        val transportB = new ChunkingTransport("beta", connector, "alpha", configuration);
+        val transportG = new ChunkingTransport("gamma", connector, "alpha", configuration);
+        val transportD = new ChunkingTransport("delta", connector, "alpha", configuration);
+
+        connector.register(transportA, transportB, transportG, transportD);
+
+        transportB.sendMessage(new HandshakeRequest(), "alpha");
+        transportG.sendMessage(new HandshakeRequest(), "alpha");
+        transportD.sendMessage(new HandshakeRequest(), "alpha");
+
+        val arrayB = Nd4j.linspace(1, 1000, 1000);
+        val arrayG = Nd4j.linspace(-1000, -1, 1000);
+
+        for (val t : Arrays.asList(transportA, transportB, transportG, transportD)) {
+            t.addPrecursor(GradientsUpdateMessage.class, (GradientsUpdateMessage message) -> {
+                val expected = message.getMessageId().equals("beta_update") ? arrayB : arrayG;
+                if (expected.equals(message.getPayload()))
+                    received.add(t.id() + "_" + message.getMessageId());
+            });
+        }
+
+        val msgB = new GradientsUpdateMessage("beta_update", arrayB);
+        msgB.setOriginatorId("beta");
+
+        val msgG = new GradientsUpdateMessage("gamma_update", arrayG);
+        msgG.setOriginatorId("gamma");
+
+        // both messages go up to the root node, and root node relays each of them to the other downstreams at the same time
+        transportB.propagateMessage(msgB, PropagationMode.BOTH_WAYS);
+        transportG.propagateMessage(msgG, PropagationMode.BOTH_WAYS);
+
+        val expected = Arrays.asList("alpha_beta_update", "gamma_beta_update", "delta_beta_update",
+                        "alpha_gamma_update", "beta_gamma_update", "delta_gamma_update");
+        while (!received.containsAll(expected))
+            Thread.sleep(10);
+
+        for (val t : Arrays.asList(transportA, transportB, transportG, transportD)) {
+            while (!t.chunksCredits.isEmpty())
+                Thread.sleep(10);
+        }
+    }
+
+    /**
+     * This transport splits INDArrayMessages into chunks, the same way AeronUdpTransport does, so relayed messages are flow-controlled as well
+     */
+    private static class ChunkingTransport extends DummyTransport {
+        private ChunkingTransport(String id, Connector connector, @NonNull String rootId, @NonNull VoidConfiguration configuration) {
+            super(id, connector, rootId, configuration);
+        }
+
+        @Override
+        public void sendMessage(@NonNull VoidMessage message, @NonNull String id) {
+            if (!(message instanceof INDArrayMessage)) {
+                super.sendMessage(message, id);
+                return;
+            }
+
+            if (message.getOriginatorId() == null)
+                message.setOriginatorId(this.id());
+
+            try {
+                sendChunksAsync(splitter.split(message, voidConfiguration.getMaxChunkSize()), id);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.junit.Test;
 import org.nd4j.linalg.util.SerializationUtils;
+import org.nd4j.parameterserver.distributed.enums.NodeStatus;
 import org.nd4j.parameterserver.distributed.v2.enums.MeshBuildMode;
 
 import java.io.ByteArrayInputStream;
@@ -337,4 +338,91 @@ public class MeshOrganizerTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testRebalance_1() throws Exception {
+        val mesh = new MeshOrganizer(MeshBuildMode.MESH);
+
+        for (int e = 0; e < 20; e++)
+            mesh.addNode(String.valueOf(e));
+
+        // first 2 nodes have downstreams now, and they are slow
+        for (int e = 0; e < 20; e++)
+            mesh.updateNodeDelay(String.valueOf(e), e < 2 ? 10000 : 100 + e);
+
+        assertEquals(8, mesh.getNodeById("0").numberOfDownstreams());
+        assertEquals(10000, mesh.getNodeById("0").getDownstreamDelay());
+        assertEquals(10000, mesh.getRootNode().getDownstreamDelay());
+
+        val version = mesh.getVersion();
+        assertTrue(mesh.rebalance());
+        assertNotEquals(version, mesh.getVersion());
+
+        // slow nodes are leaves now, and fastest nodes got their downstreams
+        assertEquals(21, mesh.totalNodes());
+        assertEquals(0, mesh.getNodeById("0").numberOfDownstreams());
+        assertEquals(0, mesh.getNodeById("1").numberOfDownstreams());
+        assertEquals(8, mesh.getNodeById("2").numberOfDownstreams());
+        assertEquals(4, mesh.getNodeById("3").numberOfDownstreams());
+        assertEquals(8, mesh.getRootNode().numberOfDownstreams());
+
+        assertEquals(10000, mesh.getNodeById("0").getUpstreamDelay());
+        assertEquals(0, mesh.getNodeById("0").getDownstreamDelay());
+        assertEquals(102, mesh.getNodeById("2").getUpstreamDelay());
+
+        // mesh is balanced already, so nothing should change
+        assertFalse(mesh.rebalance());
+
+        // and mesh survives serialization
+        assertEquals(mesh, mesh.clone());
+        assertEquals(10000, mesh.clone().getNodeById("0").getDelay());
+    }
+
+    @Test
+    public void testRebalance_2() throws Exception {
+        val mesh = new MeshOrganizer(MeshBuildMode.MESH);
+
+        for (int e = 0; e < 20; e++)
+            mesh.addNode(String.valueOf(e));
+
+        // no measurements - no changes
+        assertFalse(mesh.rebalance());
+
+        // small difference isn't worth rebuilding the mesh
+        for (int e = 0; e < 20; e++)
+            mesh.updateNodeDelay(String.valueOf(e), e < 2 ? 150 : 100);
+
+        assertFalse(mesh.rebalance());
+        assertEquals(8, mesh.getNodeById("0").numberOfDownstreams());
+    }
+
+    @Test
+    public void testRebalance_3() throws Exception {
+        val mesh = new MeshOrganizer(MeshBuildMode.MESH);
+
+        for (int e = 0; e < 33; e++)
+            mesh.addNode(String.valueOf(e));
+
+        // only 3 nodes stay online, that's more offline nodes than free slots
+        for (int e = 1; e < 33; e++)
+            if (e != 6 && e != 7)
+                mesh.getNodeById(String.valueOf(e)).status(NodeStatus.OFFLINE);
+
+        // node 0 has downstreams and it's slow, nodes 6 and 7 are fast leaves
+        mesh.updateNodeDelay("0", 10000);
+        mesh.updateNodeDelay("6", 100);
+        mesh.updateNodeDelay("7", 100);
+
+        assertTrue(mesh.rebalance());
+
+        assertEquals(34, mesh.totalNodes());
+        assertEquals(33, mesh.getRootNode().numberOfDownstreams());
+        for (int e = 0; e < 33; e++)
+            assertEquals(0, mesh.getNodeById(String.valueOf(e)).numberOfDownstreams());
+
+        // offline nodes didn't take any slots, so rootNode still has free ones
+        val node = mesh.addNode("33");
+        assertTrue(node.getUpstreamNode().isRootNode());
+
+        assertEquals(mesh, mesh.clone());
+    }
+}
@@ -22,9 +22,11 @@ import org.junit.Test;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.primitives.Atomic;
 import org.nd4j.linalg.primitives.Optional;
+import org.nd4j.parameterserver.distributed.v2.chunks.VoidChunk;
 import org.nd4j.parameterserver.distributed.v2.messages.impl.GradientsUpdateMessage;
 
 import java.util.ArrayList;
+import java.util.Collections;
 
 import static org.junit.Assert.*;
 
@@ -99,4 +101,36 @@ public class MessageSplitterTest {
             assertEquals(0, splitter.trackers.size());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testStreamedSplit_1() throws Exception {
+        val array = Nd4j.linspace(1, 100000, 100000).reshape(-1, 1000);
+        val splitter = new MessageSplitter();
+
+        val message = new GradientsUpdateMessage("123", array);
+        message.setIteration(17);
+
+        val chunks = new ArrayList<VoidChunk>(splitter.split(message, 16384));
+
+        // header chunk + 400000 bytes of data in 16384 bytes chunks
+        assertEquals(26, chunks.size());
+
+        for (val c:chunks) {
+            assertTrue(c.isStreamed());
+            assertEquals(400000, c.getTotalSize());
+        }
+
+        // we want data chunks to arrive before header
+        Collections.reverse(chunks);
+
+        Optional<GradientsUpdateMessage> dec = null;
+        for (val c:chunks)
+            dec = splitter.merge(c);
+
+        assertTrue(dec.isPresent());
+        assertEquals(17, dec.get().getIteration());
+        assertEquals(array, dec.get().getPayload());
+        assertEquals(0, splitter.memoryUse.intValue());
+        assertEquals(0, splitter.trackers.size());
+    }
+}